@@ -2,50 +2,179 @@ package com.onedlvb.advice;
 
 import com.onedlvb.advice.annotation.AuditLog;
 import com.onedlvb.advice.exception.KafkaSendMessageException;
+import com.onedlvb.coalescing.EventCoalescer;
 import com.onedlvb.config.AuditLibProperties;
+import com.onedlvb.dispatch.AuditDispatcher;
+import com.onedlvb.event.AuditEvent;
 import com.onedlvb.kafka.AuditProducer;
-import com.onedlvb.util.LevelConverter;
+import com.onedlvb.kafka.KeyStrategy;
+import com.onedlvb.latency.LatencyRegistry;
+import com.onedlvb.metrics.AuditMetrics;
+import com.onedlvb.util.NanoClock;
+import lombok.Builder;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
 
-import java.util.Arrays;
-import java.util.LinkedHashMap;
+import java.lang.reflect.Method;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
 
 /**
  * Aspect for logging basic information of a method.
  * Logs method name, args, returned value (if there is one) and exception (if there is one).
+ * Args and returned values are rendered by the {@link BoundedRenderer}, so their size is limited.
+ * Calls returning {@link CompletionStage}, Mono or Flux are audited when the result completes, without blocking.
+ * In synchronous mode their events are sent by a sender thread of the aspect, so the thread completing the result,
+ * often an event loop, never waits for the broker. The aspect should be closed to send the events still waiting.
+ * Events carry the start of the call in epoch nanoseconds and its duration, latencies of all calls of a method
+ * are recorded into its histogram of the {@link LatencyRegistry}.
  * @author Matushkin Anton
  */
 @Aspect
 @Component
-@RequiredArgsConstructor
 public class AuditLogAspect {
 
     private static final Logger LOGGER = LogManager.getLogger(AuditLogAspect.class);
 
+    private static final boolean REACTOR_PRESENT =
+            ClassUtils.isPresent("reactor.core.publisher.Flux", AuditLogAspect.class.getClassLoader());
+
+    /**
+     * Capacity of the queue of events of asynchronous results waiting for the sender thread, events above it are dropped.
+     */
+    static final int ASYNC_RESULT_QUEUE_CAPACITY = 1024;
+
+    private static final long CLOSE_TIMEOUT_MS = 5000;
+
+    /**
+     * Length of the record key column of the receiver, longer keys are cut off.
+     */
+    static final int MAX_KEY_LENGTH = 255;
+
     @Value("${spring.application.name}")
     private String applicationName;
 
     @Value("${spring.kafka.template.default-topic}")
     private String defaultTopic;
 
-    @NonNull
     private final AuditProducer producer;
 
-    @NonNull
     private final AuditLibProperties properties;
 
+    /**
+     * Dispatcher of the asynchronous mode, null when events are sent synchronously.
+     */
+    private final AuditDispatcher dispatcher;
+
+    /**
+     * Strategy of the record keys for methods without {@link AuditLog#keyArg()}, null for records without keys.
+     */
+    private final KeyStrategy keyStrategy;
+
+    private final AuditMetrics metrics;
+
+    private final BoundedRenderer renderer;
+
+    /**
+     * Sample rates overriding {@link AuditLog#sampleRate()} by qualified names of methods, null if there are none.
+     */
+    private final Map<String, Double> sampleRates;
+
+    /**
+     * Registry of the latency histograms of methods, null if latencies are not recorded.
+     */
+    private final LatencyRegistry latencies;
+
+    /**
+     * Coalescer merging identical events ahead of the Kafka, null when every event is sent.
+     */
+    private final EventCoalescer coalescer;
+
+    /**
+     * Sender of the events of asynchronous results in synchronous mode, null when events are handed to the
+     * dispatcher or the coalescer anyway. Its thread is started by the first event and stops when it is idle.
+     */
+    private final ThreadPoolExecutor asyncResultSender;
+
+    private final Map<Method, AuditMethodMetadata> metadataCache = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the aspect, see {@link #builder()}. Only the producer and the properties are required.
+     * <p>
+     * @param producer    producer sending events in synchronous mode
+     * @param properties  properties of the starter
+     * @param dispatcher  dispatcher of the asynchronous mode, null when events are sent synchronously
+     * @param keyStrategy strategy of the record keys, null for records without keys
+     * @param metrics     metrics of the audit path, {@link AuditMetrics#NOOP} if null
+     * @param renderer    renderer of args and returned values, the default {@link BoundedRenderer} if null
+     * @param sampleRates sample rates by qualified names of methods, null if there are none
+     * @param latencies   registry of the latency histograms of methods, null if latencies are not recorded
+     * @param coalescer   coalescer of identical events, null when every event is sent
+     */
+    @Builder
+    public AuditLogAspect(@NonNull AuditProducer producer,
+                          @NonNull AuditLibProperties properties,
+                          AuditDispatcher dispatcher,
+                          KeyStrategy keyStrategy,
+                          AuditMetrics metrics,
+                          BoundedRenderer renderer,
+                          Map<String, Double> sampleRates,
+                          LatencyRegistry latencies,
+                          EventCoalescer coalescer) {
+        this.producer = producer;
+        this.properties = properties;
+        this.dispatcher = dispatcher;
+        this.keyStrategy = keyStrategy;
+        this.metrics = metrics != null ? metrics : AuditMetrics.NOOP;
+        this.renderer = renderer != null ? renderer : new BoundedRenderer();
+        this.sampleRates = sampleRates;
+        this.latencies = latencies;
+        this.coalescer = coalescer;
+        this.asyncResultSender = dispatcher == null && coalescer == null ? createAsyncResultSender() : null;
+    }
+
+    /**
+     * Sends the events of asynchronous results still waiting for the sender thread, for at most {@value #CLOSE_TIMEOUT_MS} ms.
+     */
+    public void close() {
+        if (asyncResultSender == null) {
+            return;
+        }
+        asyncResultSender.shutdown();
+        try {
+            if (!asyncResultSender.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("{} audit events of asynchronous results are not sent", asyncResultSender.shutdownNow().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * Performs logging of method execution details using the logging level specified in the AuditLog annotation.
+     * If neither the level is enabled nor Kafka logging is on, the method is just called and only its latency is recorded.
+     * Calls not sampled by {@link AuditLog#sampleRate()} are just called too, unless they throw an exception
+     * and {@link AuditLog#keepErrors()} is set.
+     * Arguments of sampled calls are rendered before the method is called, so the audit records them as they were passed,
+     * not as the method left them. Arguments of calls audited only because they failed are rendered after the call.
+     * Every value is rendered at most once for both the log and the Kafka.
      * <p>
      * @param joinPoint provides the context of the method execution
      * @param auditLog  the annotation containing logging settings for the method
@@ -54,111 +183,274 @@ public class AuditLogAspect {
      */
     @Around("@annotation(auditLog)")
     public Object logMethodInfo(ProceedingJoinPoint joinPoint, AuditLog auditLog) throws Throwable {
-        String methodName = joinPoint.getSignature().getName();
-        String methodArgsLog = formatMethodArgs(joinPoint.getArgs());
-
-        Map<String, String> message = createMessageForKafka(methodName, methodArgsLog);
+        long startNs = System.nanoTime();
+        AuditMethodMetadata metadata = getMetadata(joinPoint.getSignature(), auditLog);
+        Level level = metadata.getLevel();
+        boolean logEnabled = LOGGER.isEnabled(level);
+        boolean kafkaEnabled = properties.isKafkaLogEnabled();
+        if (!logEnabled && !kafkaEnabled) {
+            return proceedTimed(joinPoint, metadata.getLatencyTimer());
+        }
+        boolean sampled = metadata.sample();
+        if (!sampled && !metadata.isKeepErrors()) {
+            return proceedTimed(joinPoint, metadata.getLatencyTimer());
+        }
 
-        Level level = LevelConverter.convertLevel(auditLog.logLevel());
+        long invocationStartNs = NanoClock.epochNanos();
+        Object[] methodArgs = joinPoint.getArgs();
+        LazyRendering renderedArgs = LazyRendering.ofArgs(renderer, methodArgs);
+        String key = null;
+        if (sampled) {
+            renderedArgs.render();
+            key = kafkaEnabled ? resolveKey(metadata, methodArgs) : null;
+        }
+        Invocation invocation = new Invocation(metadata, sampled, logEnabled, kafkaEnabled,
+                invocationStartNs, methodArgs, renderedArgs, key);
+        long proceedStartNs = System.nanoTime();
+        Object returnValue;
         try {
-            Object returnValue = joinPoint.proceed();
-            logMethodExecution(level, methodName, methodArgsLog, returnValue);
-            addReturnValueToMessage(message, returnValue);
-            return returnValue;
+            returnValue = joinPoint.proceed();
         } catch (Throwable throwable) {
-            logMethodWithException(level, methodName, methodArgsLog, throwable);
-            addExceptionToMessage(throwable, message);
+            long proceedNs = System.nanoTime() - proceedStartNs;
+            try {
+                complete(invocation, null, throwable, proceedNs, false);
+            } finally {
+                metadata.getOverheadTimer().accept(System.nanoTime() - startNs - proceedNs);
+            }
             throw throwable;
+        }
+        long proceedNs = System.nanoTime() - proceedStartNs;
+        try {
+            if (returnValue instanceof CompletionStage<?> stage) {
+                stage.whenComplete((result, throwable) ->
+                        completeAsync(invocation, result, unwrap(throwable), System.nanoTime() - proceedStartNs));
+                return returnValue;
+            }
+            if (REACTOR_PRESENT && ReactiveAuditSupport.isReactive(returnValue)) {
+                return ReactiveAuditSupport.audit(returnValue, (result, throwable, durationNs) ->
+                        completeAsync(invocation, result, throwable, durationNs));
+            }
+            complete(invocation, returnValue, null, proceedNs, false);
+            return returnValue;
         } finally {
-            sendKafkaMessage(message);
+            metadata.getOverheadTimer().accept(System.nanoTime() - startNs - proceedNs);
         }
     }
 
     /**
-     * Performs sending messages to the kafka broker.
+     * Calls a method which is not audited, recording only its latency up to the completion of its result.
+     * <p>
+     * @param joinPoint    provides the context of the method execution
+     * @param latencyTimer histogram of the method, {@link AuditMetrics#NOOP_TIMER} if latencies are not recorded
+     * @return the object returned by the target method
+     * @throws Throwable any exceptions thrown by the target method during execution
+     */
+    private static Object proceedTimed(ProceedingJoinPoint joinPoint, LongConsumer latencyTimer) throws Throwable {
+        if (latencyTimer == AuditMetrics.NOOP_TIMER) {
+            return joinPoint.proceed();
+        }
+        long proceedStartNs = System.nanoTime();
+        Object returnValue;
+        try {
+            returnValue = joinPoint.proceed();
+        } catch (Throwable throwable) {
+            latencyTimer.accept(System.nanoTime() - proceedStartNs);
+            throw throwable;
+        }
+        if (returnValue instanceof CompletionStage<?> stage) {
+            stage.whenComplete((result, throwable) -> latencyTimer.accept(System.nanoTime() - proceedStartNs));
+            return returnValue;
+        }
+        if (REACTOR_PRESENT && ReactiveAuditSupport.isReactive(returnValue)) {
+            return ReactiveAuditSupport.audit(returnValue, (result, throwable, durationNs) -> latencyTimer.accept(durationNs));
+        }
+        latencyTimer.accept(System.nanoTime() - proceedStartNs);
+        return returnValue;
+    }
+
+    /**
+     * Records the latency of the call, logs it and sends it to the Kafka. Calls which are not sampled are audited only if they failed.
      * <p>
-     * @param message message that should be sent to the Kafka
+     * @param invocation state of the call
+     * @param result     result of the call, null for void methods and failed calls
+     * @param failure    exception of the call, null if the call did not fail
+     * @param durationNs duration of the call up to its completion
+     * @param async      true if the call is completed from a callback of its asynchronous result
      */
-    private void sendKafkaMessage(Map<String, String> message) throws KafkaSendMessageException {
-        if (properties.isKafkaLogEnabled()) {
-            producer.sendMessage(defaultTopic, message);
+    private void complete(Invocation invocation, Object result, Throwable failure, long durationNs, boolean async)
+            throws KafkaSendMessageException {
+        AuditMethodMetadata metadata = invocation.metadata();
+        metadata.getLatencyTimer().accept(durationNs);
+        if (!invocation.sampled() && failure == null) {
+            return;
+        }
+        LazyRendering renderedResult = result != null ? LazyRendering.of(renderer, result) : null;
+        if (invocation.logEnabled()) {
+            LOGGER.log(metadata.getLevel(), failure != null
+                    ? AuditLogMessage.failed(metadata.getMethodName(), invocation.renderedArgs(), failure)
+                    : AuditLogMessage.returned(metadata.getMethodName(), invocation.renderedArgs(), renderedResult));
+        }
+        if (invocation.kafkaEnabled()) {
+            sendKafkaMessage(metadata.getTopic(), createEventForKafka(invocation, renderedResult, failure, durationNs), async);
         }
     }
 
     /**
-     * @param message message, that should be sent to the Kafka
-     * @param returnValue return value of the method
+     * Completes the call from a callback of an asynchronous result, where the failure to send can only be logged.
      */
-    private void addReturnValueToMessage(Map<String, String> message, Object returnValue) {
-        if (returnValue != null) {
-            message.put("returnValue", returnValue.toString());
+    private void completeAsync(Invocation invocation, Object result, Throwable failure, long durationNs) {
+        try {
+            complete(invocation, result, failure, durationNs, true);
+        } catch (KafkaSendMessageException e) {
+            LOGGER.warn("Unable to send audit event of {} to kafka: {}", invocation.metadata().getMethodName(), e.getMessage());
         }
     }
 
     /**
-     * @param throwable exception, that should be added to the message
-     * @param message message, that should be sent to the Kafka
+     * @return cause of the {@link CompletionException} wrapping the failure of a dependent stage, the throwable otherwise
      */
-    private static void addExceptionToMessage(Throwable throwable, Map<String, String> message) {
-        message.put("exception", String.valueOf(throwable));
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
     }
 
     /**
-     * Logs basic info about method annotated with @AuditLog annotation.
+     * Returns metadata of the method, resolving it on the first invocation.
+     * Metadata is cached by {@link Method}, other signatures are resolved on every call.
      * <p>
-     * @param level logging level
-     * @param methodName name of the method to log
-     * @param methodArgs arguments of the method to log
-     * @param returnValue return value of method to log
-     */
-    private void logMethodExecution(Level level, String methodName, String methodArgs, Object returnValue) {
-        if (returnValue != null) {
-            LOGGER.log(level, "Method name: {}, {}, Return value: {}", methodName, methodArgs, returnValue);
-        } else {
-            LOGGER.log(level, "Method name: {}, {}, Return type: void", methodName, methodArgs);
+     * @param signature signature of the audited method
+     * @param auditLog  annotation of the audited method
+     * @return metadata of the method
+     */
+    private AuditMethodMetadata getMetadata(Signature signature, AuditLog auditLog) {
+        if (!(signature instanceof MethodSignature methodSignature)) {
+            return AuditMethodMetadata.resolve(signature, auditLog, applicationName, defaultTopic, keyStrategy, metrics, sampleRates, latencies);
         }
+        AuditMethodMetadata metadata = metadataCache.get(methodSignature.getMethod());
+        if (metadata == null) {
+            metadata = metadataCache.computeIfAbsent(methodSignature.getMethod(), method ->
+                    AuditMethodMetadata.resolve(signature, auditLog, applicationName, defaultTopic, keyStrategy, metrics, sampleRates, latencies));
+        }
+        return metadata;
     }
 
     /**
-     * Logs basic info about method and exception annotated with @AuditLog annotation.
+     * Performs sending messages to the kafka broker.
+     * In asynchronous mode the event is only handed to the {@link AuditDispatcher}.
+     * With coalescing the event is held by the {@link EventCoalescer}, which sends it when its window is over.
+     * Otherwise events of asynchronous results are handed to the sender thread of the aspect.
      * <p>
-     * @param level logging level
-     * @param methodName name of the method to log
-     * @param methodArgs arguments of the method to log
-     * @param throwable method execution exception
-     */
-    private void logMethodWithException(Level level, String methodName, String methodArgs, Throwable throwable) {
-        LOGGER.log(level, "Method name: {}, {}, Exception occurred: {}",
-                methodName,
-                methodArgs,
-                throwable.toString());
+     * @param topic the Kafka topic to which the event should be sent
+     * @param event event that should be sent to the Kafka
+     * @param async true if the event is of an asynchronous result
+     */
+    private void sendKafkaMessage(String topic, AuditEvent event, boolean async) throws KafkaSendMessageException {
+        if (coalescer != null) {
+            coalescer.coalesce(topic, event);
+        } else if (dispatcher != null) {
+            dispatcher.dispatch(topic, event);
+        } else if (async) {
+            sendFromSender(topic, event);
+        } else {
+            producer.sendEvent(topic, event);
+        }
+    }
+
+    /**
+     * Hands the event of an asynchronous result to the sender thread, drops it if the queue of the sender is full or closed.
+     */
+    private void sendFromSender(String topic, AuditEvent event) {
+        try {
+            asyncResultSender.execute(() -> {
+                try {
+                    producer.sendEvent(topic, event);
+                } catch (KafkaSendMessageException e) {
+                    LOGGER.warn("Unable to send audit event of {} to kafka: {}", event.getMethodName(), e.getMessage());
+                } catch (RuntimeException e) {
+                    LOGGER.error("Unexpected error while sending audit event of {} to kafka", event.getMethodName(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Audit event of {} is dropped, the sender of asynchronous results is full or closed", event.getMethodName());
+        }
+    }
+
+    private static ThreadPoolExecutor createAsyncResultSender() {
+        ThreadPoolExecutor sender = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(ASYNC_RESULT_QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "audit-async-result-sender");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        sender.allowCoreThreadTimeOut(true);
+        return sender;
     }
 
     /**
-     * Formats args of the method that should be logged.
+     * Resolves the key of the Kafka record. The argument marked by {@link AuditLog#keyArg()} wins over the key strategy.
+     * The argument is rendered by the {@link BoundedRenderer}, never by its own toString(), so a key can not leak redacted fields.
+     * Keys are cut off at {@link #MAX_KEY_LENGTH}, so they fit into the column of the receiver.
      * <p>
-     * If method has args method returns "Args: ...", otherwise "No args".
-     * @param methodArgs arguments to format
-     * @return formatted method arguments that should be logged
+     * @param metadata   metadata of the audited method
+     * @param methodArgs arguments of the audited method
+     * @return key of the record, null for records without key
      */
-    private static String formatMethodArgs(Object[] methodArgs) {
-        return methodArgs != null && methodArgs.length > 0 ? String.format("Args: %s",
-                Arrays.toString(methodArgs)) : "No args";
+    private String resolveKey(AuditMethodMetadata metadata, Object[] methodArgs) {
+        int keyArg = metadata.getKeyArg();
+        String key = metadata.getKey();
+        if (keyArg >= 0 && methodArgs != null && keyArg < methodArgs.length) {
+            key = methodArgs[keyArg] == null ? null : renderer.render("", methodArgs[keyArg]).toString();
+        }
+        return key != null && key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key;
     }
 
     /**
-     * Creates basic message for kafka.
+     * Creates event for kafka, reusing renderings already computed for the log.
      * <p>
-     * @param methodName method name, that should be added to the kafka
-     * @param methodArgs arguments of the method, that should be added to the kafka
-     * @return initialized message
-     */
-    private Map<String, String> createMessageForKafka(String methodName, String methodArgs) {
-        Map<String, String> message = new LinkedHashMap<>();
-        message.put("serviceName", applicationName);
-        message.put("methodName", methodName);
-        message.put("methodArgs", methodArgs);
-        return message;
+     * @param invocation  state of the call, that should be added to the kafka
+     * @param returnValue rendering of the returned value, null if there is none
+     * @param throwable   exception thrown by the method, null if there is none
+     * @param durationNs  duration of the call up to its completion
+     * @return event for kafka
+     */
+    private AuditEvent createEventForKafka(Invocation invocation,
+                                           LazyRendering returnValue,
+                                           Throwable throwable,
+                                           long durationNs) {
+        AuditMethodMetadata metadata = invocation.metadata();
+        LazyRendering renderedArgs = invocation.renderedArgs();
+        return AuditEvent.builder()
+                .timestamp(NanoClock.toEpochMillis(invocation.startNs()))
+                .startNs(invocation.startNs())
+                .durationNs(durationNs)
+                .serviceName(metadata.getServiceName())
+                .methodName(metadata.getMethodName())
+                .methodArgs(renderedArgs.toString())
+                .returnValue(returnValue != null ? returnValue.toString() : null)
+                .exception(throwable != null ? String.valueOf(throwable) : null)
+                .truncated(renderedArgs.isTruncated() || returnValue != null && returnValue.isTruncated())
+                .key(invocation.sampled() ? invocation.key() : resolveKey(metadata, invocation.methodArgs()))
+                .build();
     }
 
+    /**
+     * State of an audited call, kept until the call completes.
+     * <p>
+     * @param metadata     metadata of the method
+     * @param sampled      true if the call is sampled
+     * @param logEnabled   true if the level of the method is enabled
+     * @param kafkaEnabled true if events are sent to the kafka
+     * @param startNs      epoch nanoseconds of the method invocation
+     * @param methodArgs   arguments of the method
+     * @param renderedArgs rendering of the arguments, rendered before the call if it is sampled
+     * @param key          key of the record resolved before the call, null if it is not sampled
+     */
+    private record Invocation(AuditMethodMetadata metadata,
+                              boolean sampled,
+                              boolean logEnabled,
+                              boolean kafkaEnabled,
+                              long startNs,
+                              Object[] methodArgs,
+                              LazyRendering renderedArgs,
+                              String key) {}
+
 }
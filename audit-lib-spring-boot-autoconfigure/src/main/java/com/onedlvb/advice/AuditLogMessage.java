@@ -0,0 +1,98 @@
+package com.onedlvb.advice;
+
+import org.apache.logging.log4j.message.Message;
+
+/**
+ * Log4j message of an audited method call.
+ * Created only when the level of the method is enabled and formatted by Log4j only when it is written,
+ * so arguments and the returned value are rendered as late as possible.
+ * @author Matushkin Anton
+ */
+final class AuditLogMessage implements Message {
+
+    private static final String RETURNED_FORMAT = "Method name: {}, {}, Return value: {}";
+
+    private static final String VOID_FORMAT = "Method name: {}, {}, Return type: void";
+
+    private static final String FAILED_FORMAT = "Method name: {}, {}, Exception occurred: {}";
+
+    private final String methodName;
+
+    private final transient LazyRendering methodArgs;
+
+    private final transient LazyRendering returnValue;
+
+    private final transient Throwable throwable;
+
+    private String formattedMessage;
+
+    private AuditLogMessage(String methodName, LazyRendering methodArgs, LazyRendering returnValue, Throwable throwable) {
+        this.methodName = methodName;
+        this.methodArgs = methodArgs;
+        this.returnValue = returnValue;
+        this.throwable = throwable;
+    }
+
+    /**
+     * @param methodName  name of the method
+     * @param methodArgs  rendering of the arguments
+     * @param returnValue rendering of the returned value, null for void methods and null values
+     * @return message of a method which returned normally
+     */
+    static AuditLogMessage returned(String methodName, LazyRendering methodArgs, LazyRendering returnValue) {
+        return new AuditLogMessage(methodName, methodArgs, returnValue, null);
+    }
+
+    /**
+     * @param methodName name of the method
+     * @param methodArgs rendering of the arguments
+     * @param throwable  exception thrown by the method
+     * @return message of a method which threw an exception
+     */
+    static AuditLogMessage failed(String methodName, LazyRendering methodArgs, Throwable throwable) {
+        return new AuditLogMessage(methodName, methodArgs, null, throwable);
+    }
+
+    @Override
+    public String getFormattedMessage() {
+        if (formattedMessage == null) {
+            StringBuilder builder = new StringBuilder(128)
+                    .append("Method name: ").append(methodName)
+                    .append(", ").append(methodArgs);
+            if (throwable != null) {
+                builder.append(", Exception occurred: ").append(throwable);
+            } else if (returnValue != null) {
+                builder.append(", Return value: ").append(returnValue);
+            } else {
+                builder.append(", Return type: void");
+            }
+            formattedMessage = builder.toString();
+        }
+        return formattedMessage;
+    }
+
+    @Override
+    public String getFormat() {
+        if (throwable != null) {
+            return FAILED_FORMAT;
+        }
+        return returnValue != null ? RETURNED_FORMAT : VOID_FORMAT;
+    }
+
+    @Override
+    public Object[] getParameters() {
+        if (throwable != null) {
+            return new Object[] {methodName, methodArgs, throwable.toString()};
+        }
+        return returnValue != null ? new Object[] {methodName, methodArgs, returnValue} : new Object[] {methodName, methodArgs};
+    }
+
+    /**
+     * The exception is a part of the message, its stack trace is not logged.
+     */
+    @Override
+    public Throwable getThrowable() {
+        return null;
+    }
+
+}
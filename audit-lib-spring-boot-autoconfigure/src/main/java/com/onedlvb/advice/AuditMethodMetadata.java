@@ -0,0 +1,121 @@
+package com.onedlvb.advice;
+
+import com.onedlvb.advice.annotation.AuditLog;
+import com.onedlvb.kafka.KeyStrategy;
+import com.onedlvb.latency.LatencyRegistry;
+import com.onedlvb.metrics.AuditMetrics;
+import com.onedlvb.util.LevelConverter;
+import com.onedlvb.util.Sampling;
+import lombok.Value;
+import org.apache.logging.log4j.Level;
+import org.aspectj.lang.Signature;
+import org.aspectj.lang.reflect.MethodSignature;
+
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Everything {@link AuditLogAspect} needs to know about an annotated method, which does not change between calls.
+ * Resolved once per method, so the per-call path only deals with arguments and results.
+ * @author Matushkin Anton
+ */
+@Value
+class AuditMethodMetadata {
+
+    private Level level;
+
+    private String methodName;
+
+    /**
+     * Name of the method with its declaring type.
+     */
+    private String qualifiedName;
+
+    private String serviceName;
+
+    private String topic;
+
+    /**
+     * Index of the argument used as the record key, negative if there is none.
+     */
+    private int keyArg;
+
+    /**
+     * Record key resolved from the key strategy, used when the method has no key argument.
+     */
+    private String key;
+
+    private LongConsumer overheadTimer;
+
+    /**
+     * Histogram of the latencies of the method, {@link AuditMetrics#NOOP_TIMER} if latencies are not recorded.
+     */
+    private LongConsumer latencyTimer;
+
+    /**
+     * Share of the audited calls, from 0 to 1.
+     */
+    private double sampleRate;
+
+    /**
+     * True to audit calls throwing an exception even if they are not sampled.
+     */
+    private boolean keepErrors;
+
+    /**
+     * Resolves metadata of the method.
+     * <p>
+     * @param signature   signature of the annotated method
+     * @param auditLog    annotation of the method
+     * @param serviceName name of the application
+     * @param topic       topic of the audit events
+     * @param keyStrategy strategy of the record keys, null for records without keys
+     * @param metrics     metrics registering the aspect timer of the method
+     * @param sampleRates sample rates overriding the annotation by qualified names of methods, null if there are none
+     * @param latencies   registry of the latency histograms, null if latencies are not recorded
+     * @return metadata of the method
+     */
+    static AuditMethodMetadata resolve(Signature signature,
+                                       AuditLog auditLog,
+                                       String serviceName,
+                                       String topic,
+                                       KeyStrategy keyStrategy,
+                                       AuditMetrics metrics,
+                                       Map<String, Double> sampleRates,
+                                       LatencyRegistry latencies) {
+        String qualifiedName = signature.getDeclaringTypeName() + "." + signature.getName();
+        String key = null;
+        if (keyStrategy != null) {
+            key = switch (keyStrategy) {
+                case SERVICE -> serviceName;
+                case METHOD -> qualifiedName;
+                default -> null;
+            };
+        }
+        LongConsumer overheadTimer = signature instanceof MethodSignature methodSignature
+                ? metrics.aspectOverheadTimer(methodSignature.getMethod())
+                : AuditMetrics.NOOP_TIMER;
+        return new AuditMethodMetadata(
+                LevelConverter.convertLevel(auditLog.logLevel()),
+                signature.getName(),
+                qualifiedName,
+                serviceName,
+                topic,
+                auditLog.keyArg(),
+                key,
+                overheadTimer,
+                latencies != null ? latencies.methodHistogram(qualifiedName) : AuditMetrics.NOOP_TIMER,
+                Sampling.resolveSampleRate(qualifiedName, auditLog.sampleRate(), sampleRates),
+                auditLog.keepErrors());
+    }
+
+    /**
+     * Decides whether the current call is audited. Lock-free, takes no time for methods audited on every call.
+     * <p>
+     * @return true if the call is sampled
+     */
+    boolean sample() {
+        return Sampling.sample(sampleRate);
+    }
+
+}
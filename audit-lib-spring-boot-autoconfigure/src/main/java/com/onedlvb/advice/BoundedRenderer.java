@@ -0,0 +1,257 @@
+package com.onedlvb.advice;
+
+import com.onedlvb.redaction.Redactor;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Renders method arguments and returned values into strings of a bounded size.
+ * <p>
+ * Arrays, collections and maps are iterated by the renderer itself, in the format of {@link java.util.Arrays#toString}
+ * and {@link java.util.AbstractCollection#toString}, so iteration stops as soon as one of the limits is reached:
+ * <ul>
+ *     <li>maxChars - maximum number of rendered characters, the rest is cut off</li>
+ *     <li>maxElements - maximum number of rendered elements of an array, a collection or a map</li>
+ *     <li>maxDepth - maximum nesting of arrays, collections and maps, deeper ones are rendered as [...] or {...}</li>
+ * </ul>
+ * Any cut is marked with {@link #TRUNCATION_MARK}. Other objects are rendered with toString(), only its first
+ * maxChars characters are kept, except objects with redacted fields. They are rendered field by field like Lombok does,
+ * e.g. Card(holder=John, number=****), with the values of the redacted fields replaced by the mask of the {@link Redactor}.
+ * Every thread renders into its own reusable buffer.
+ * @author Matushkin Anton
+ */
+public class BoundedRenderer {
+
+    public static final String TRUNCATION_MARK = "...";
+
+    public static final int DEFAULT_MAX_CHARS = 2048;
+
+    public static final int DEFAULT_MAX_ELEMENTS = 100;
+
+    public static final int DEFAULT_MAX_DEPTH = 3;
+
+    private final int maxChars;
+
+    private final int maxElements;
+
+    private final int maxDepth;
+
+    private final Redactor redactor;
+
+    private final ThreadLocal<Buffer> buffers;
+
+    public BoundedRenderer() {
+        this(DEFAULT_MAX_CHARS, DEFAULT_MAX_ELEMENTS, DEFAULT_MAX_DEPTH);
+    }
+
+    public BoundedRenderer(int maxChars, int maxElements, int maxDepth) {
+        this(maxChars, maxElements, maxDepth, new Redactor());
+    }
+
+    /**
+     * @param maxChars    maximum number of rendered characters
+     * @param maxElements maximum number of rendered elements of an array, a collection or a map
+     * @param maxDepth    maximum nesting of arrays, collections and maps
+     * @param redactor    redactor of the fields of rendered objects
+     */
+    public BoundedRenderer(int maxChars, int maxElements, int maxDepth, Redactor redactor) {
+        if (maxChars <= 0 || maxElements <= 0 || maxDepth <= 0) {
+            throw new IllegalArgumentException("Rendering limits must be greater than 0");
+        }
+        this.maxChars = maxChars;
+        this.maxElements = maxElements;
+        this.maxDepth = maxDepth;
+        this.redactor = redactor;
+        this.buffers = ThreadLocal.withInitial(() -> new Buffer(maxChars));
+    }
+
+    /**
+     * Renders the value after the prefix into the buffer of the current thread.
+     * The buffer is valid until the next call on the same thread.
+     * <p>
+     * @param prefix prefix of the rendering, not counted in maxChars
+     * @param value  value to render
+     * @return buffer with the rendering
+     */
+    Buffer render(String prefix, Object value) {
+        Buffer buffer = buffers.get();
+        buffer.reset(prefix, maxChars);
+        appendValue(buffer, value, 0);
+        return buffer;
+    }
+
+    private void appendValue(Buffer buffer, Object value, int depth) {
+        if (value == null) {
+            buffer.append("null");
+        } else if (value instanceof CharSequence charSequence) {
+            buffer.append(charSequence);
+        } else if (value.getClass().isArray()) {
+            appendArray(buffer, value, depth);
+        } else if (value instanceof Collection<?> collection) {
+            appendElements(buffer, collection.iterator(), depth, '[', ']');
+        } else if (value instanceof Map<?, ?> map) {
+            appendElements(buffer, map.entrySet().iterator(), depth, '{', '}');
+        } else if (value instanceof Map.Entry<?, ?> entry) {
+            appendValue(buffer, entry.getKey(), depth);
+            buffer.append('=');
+            if (entry.getKey() instanceof String key && redactor.isRedactedName(key)) {
+                buffer.append(redactor.getMask());
+            } else {
+                appendValue(buffer, entry.getValue(), depth);
+            }
+        } else {
+            Redactor.RedactedType redactedType = redactor.typeOf(value.getClass());
+            if (redactedType != null) {
+                appendFields(buffer, value, redactedType, depth);
+            } else {
+                buffer.append(value.toString());
+            }
+        }
+    }
+
+    private void appendFields(Buffer buffer, Object value, Redactor.RedactedType type, int depth) {
+        char open = type.isRecord() ? '[' : '(';
+        char close = type.isRecord() ? ']' : ')';
+        buffer.append(type.getName()).append(open);
+        if (depth >= maxDepth) {
+            buffer.appendMark().append(close);
+            return;
+        }
+        for (int i = 0; i < type.getFieldCount() && !buffer.isFull(); i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            buffer.append(type.getFieldName(i)).append('=');
+            if (type.isRedacted(i)) {
+                buffer.append(redactor.getMask());
+            } else {
+                appendValue(buffer, type.getValue(value, i), depth + 1);
+            }
+        }
+        buffer.append(close);
+    }
+
+    private void appendArray(Buffer buffer, Object array, int depth) {
+        if (depth >= maxDepth) {
+            buffer.append('[').appendMark().append(']');
+            return;
+        }
+        int length = Array.getLength(array);
+        buffer.append('[');
+        for (int i = 0; i < length && !buffer.isFull(); i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            if (i == maxElements) {
+                buffer.appendMark();
+                break;
+            }
+            appendValue(buffer, Array.get(array, i), depth + 1);
+        }
+        buffer.append(']');
+    }
+
+    private void appendElements(Buffer buffer, Iterator<?> iterator, int depth, char open, char close) {
+        if (depth >= maxDepth) {
+            buffer.append(open).appendMark().append(close);
+            return;
+        }
+        buffer.append(open);
+        for (int i = 0; iterator.hasNext() && !buffer.isFull(); i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            if (i == maxElements) {
+                buffer.appendMark();
+                break;
+            }
+            appendValue(buffer, iterator.next(), depth + 1);
+        }
+        buffer.append(close);
+    }
+
+    /**
+     * Reusable buffer, which is closed with {@link #TRUNCATION_MARK} once its limit is reached.
+     */
+    static final class Buffer {
+
+        private final StringBuilder builder;
+
+        private int limit;
+
+        private boolean closed;
+
+        private boolean truncated;
+
+        private Buffer(int maxChars) {
+            this.builder = new StringBuilder(maxChars + 64);
+        }
+
+        private void reset(String prefix, int maxChars) {
+            builder.setLength(0);
+            builder.append(prefix);
+            limit = prefix.length() + maxChars;
+            closed = false;
+            truncated = false;
+        }
+
+        /**
+         * @return true if anything was cut off
+         */
+        boolean isTruncated() {
+            return truncated;
+        }
+
+        private boolean isFull() {
+            return closed;
+        }
+
+        private Buffer append(CharSequence value) {
+            if (closed) {
+                return this;
+            }
+            int remaining = limit - builder.length();
+            if (value.length() <= remaining) {
+                builder.append(value);
+            } else {
+                builder.append(value, 0, remaining);
+                close();
+            }
+            return this;
+        }
+
+        private Buffer append(char value) {
+            if (closed) {
+                return this;
+            }
+            if (builder.length() < limit) {
+                builder.append(value);
+            } else {
+                close();
+            }
+            return this;
+        }
+
+        private Buffer appendMark() {
+            append(TRUNCATION_MARK);
+            truncated = true;
+            return this;
+        }
+
+        private void close() {
+            builder.append(TRUNCATION_MARK);
+            closed = true;
+            truncated = true;
+        }
+
+        @Override
+        public String toString() {
+            return builder.toString();
+        }
+
+    }
+
+}
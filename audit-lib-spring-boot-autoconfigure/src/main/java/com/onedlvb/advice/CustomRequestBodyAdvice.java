@@ -16,12 +16,26 @@ import java.lang.reflect.Type;
 /**
  * The CustomRequestBodyAdvice class is used to intercept the HTTP request body before it is passed to the controller.
  * This class specifically checks for the presence of the @AuditLogHttp annotation on controller methods to determine
- * if the request should be logged.
+ * if the request should be logged. The body is captured as its rendering by the {@link BoundedRenderer},
+ * so it is limited in size and its redacted fields are masked.
  * @author Matushkin Anton
  */
 @ControllerAdvice
 public class CustomRequestBodyAdvice implements RequestBodyAdvice {
 
+    private final BoundedRenderer renderer;
+
+    public CustomRequestBodyAdvice() {
+        this(new BoundedRenderer());
+    }
+
+    /**
+     * @param renderer renderer of the captured body
+     */
+    public CustomRequestBodyAdvice(@NonNull BoundedRenderer renderer) {
+        this.renderer = renderer;
+    }
+
     /**
      * Determines if the advice is applicable to the method based on the presence of the @AuditLogHttp annotation.
      *
@@ -73,7 +87,7 @@ public class CustomRequestBodyAdvice implements RequestBodyAdvice {
                                 @NonNull Class<? extends HttpMessageConverter<?>> converterType) {
         RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
         if (requestAttributes != null) {
-            requestAttributes.setAttribute("INTERCEPTED_REQUEST_BODY", body, RequestAttributes.SCOPE_REQUEST);
+            requestAttributes.setAttribute("INTERCEPTED_REQUEST_BODY", renderer.render("", body).toString(), RequestAttributes.SCOPE_REQUEST);
         }
         return body;
     }
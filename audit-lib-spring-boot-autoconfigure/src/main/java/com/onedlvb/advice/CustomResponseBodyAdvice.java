@@ -16,12 +16,25 @@ import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
 /**
  * The CustomResponseBodyAdvice class is used to intercept the HTTP response body before it is passed to the controller.
  * This class specifically checks for the presence of the @AuditLogHttp annotation on controller methods to determine
- * if the response should be logged.
+ * if the response should be logged. The body is captured as its rendering by the {@link BoundedRenderer},
+ * so it is limited in size and its redacted fields are masked.
  * @author Matushkin Anton
  */
 @ControllerAdvice
 public class CustomResponseBodyAdvice implements ResponseBodyAdvice<Object> {
 
+    private final BoundedRenderer renderer;
+
+    public CustomResponseBodyAdvice() {
+        this(new BoundedRenderer());
+    }
+
+    /**
+     * @param renderer renderer of the captured body
+     */
+    public CustomResponseBodyAdvice(@NonNull BoundedRenderer renderer) {
+        this.renderer = renderer;
+    }
 
     /**
      * Determines if the advice is applicable to the controller method based on the presence of the @AuditLogHttp annotation.
@@ -57,8 +70,8 @@ public class CustomResponseBodyAdvice implements ResponseBodyAdvice<Object> {
 
         if (request instanceof ServletServerHttpRequest) {
             RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
-            if (requestAttributes != null) {
-                requestAttributes.setAttribute("INTERCEPTED_RESPONSE_BODY", body, RequestAttributes.SCOPE_REQUEST);
+            if (requestAttributes != null && body != null) {
+                requestAttributes.setAttribute("INTERCEPTED_RESPONSE_BODY", renderer.render("", body).toString(), RequestAttributes.SCOPE_REQUEST);
             }
         }
         return body;
@@ -0,0 +1,88 @@
+package com.onedlvb.advice;
+
+/**
+ * String rendering of method arguments or of a returned value, computed on first use by the {@link BoundedRenderer}.
+ * Shared by the log message and the audit event, so values are rendered at most once per call
+ * and not at all when neither of them needs the rendering.
+ * The rendering is published through a volatile field, so it can be shared with the callbacks of asynchronous results
+ * running on other threads. A value rendered by several threads at the same time is rendered by each of them.
+ * @author Matushkin Anton
+ */
+final class LazyRendering {
+
+    private static final String NO_ARGS = "No args";
+
+    private static final String ARGS_PREFIX = "Args: ";
+
+    private final BoundedRenderer renderer;
+
+    private final Object value;
+
+    private final boolean methodArgs;
+
+    private volatile String rendered;
+
+    private boolean truncated;
+
+    private LazyRendering(BoundedRenderer renderer, Object value, boolean methodArgs) {
+        this.renderer = renderer;
+        this.value = value;
+        this.methodArgs = methodArgs;
+    }
+
+    /**
+     * @param renderer   renderer limiting the size of the rendering
+     * @param methodArgs arguments of the method
+     * @return rendering "Args: [...]" or "No args"
+     */
+    static LazyRendering ofArgs(BoundedRenderer renderer, Object[] methodArgs) {
+        return new LazyRendering(renderer, methodArgs, true);
+    }
+
+    /**
+     * @param renderer renderer limiting the size of the rendering
+     * @param value    value returned by the method, not null
+     * @return rendering of the value
+     */
+    static LazyRendering of(BoundedRenderer renderer, Object value) {
+        return new LazyRendering(renderer, value, false);
+    }
+
+    /**
+     * Renders the value now, e.g. before the audited method can change its arguments.
+     * <p>
+     * @return this rendering
+     */
+    LazyRendering render() {
+        toString();
+        return this;
+    }
+
+    /**
+     * Renders the value if it is not rendered yet.
+     * <p>
+     * @return true if the rendering was cut off by the limits of the renderer
+     */
+    boolean isTruncated() {
+        toString();
+        return truncated;
+    }
+
+    @Override
+    public String toString() {
+        String result = rendered;
+        if (result == null) {
+            if (methodArgs && (value == null || ((Object[]) value).length == 0)) {
+                result = NO_ARGS;
+            } else {
+                BoundedRenderer.Buffer buffer = renderer.render(methodArgs ? ARGS_PREFIX : "", value);
+                // Written before the volatile write of the rendering, which publishes it
+                truncated = buffer.isTruncated();
+                result = buffer.toString();
+            }
+            rendered = result;
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.onedlvb.advice;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Audit of methods returning Reactor publishers. Loaded by {@link AuditLogAspect} only when Reactor is on the classpath.
+ * <p>
+ * Every subscription is audited separately when it terminates: a Mono with its value, a Flux with the number
+ * of its elements, both with their error. The duration is measured from the subscription, as nothing is executed
+ * before it. Cancelled subscriptions are not audited.
+ * @author Matushkin Anton
+ */
+final class ReactiveAuditSupport {
+
+    private ReactiveAuditSupport() {}
+
+    /**
+     * @param value value returned by the audited method
+     * @return true if the value is a Mono or a Flux
+     */
+    static boolean isReactive(Object value) {
+        return value instanceof Mono || value instanceof Flux;
+    }
+
+    /**
+     * Decorates the publisher with the completion of the audit.
+     * <p>
+     * @param publisher  Mono or Flux returned by the audited method
+     * @param completion completion of the audit
+     * @return publisher of the same type emitting the same signals
+     */
+    @SuppressWarnings("unchecked")
+    static Object audit(Object publisher, Completion completion) {
+        if (publisher instanceof Mono) {
+            Mono<Object> mono = (Mono<Object>) publisher;
+            return Mono.defer(() -> {
+                long subscribedNs = System.nanoTime();
+                return mono
+                        .doOnSuccess(value -> completion.complete(value, null, System.nanoTime() - subscribedNs))
+                        .doOnError(throwable -> completion.complete(null, throwable, System.nanoTime() - subscribedNs));
+            });
+        }
+        Flux<Object> flux = (Flux<Object>) publisher;
+        return Flux.defer(() -> {
+            long subscribedNs = System.nanoTime();
+            AtomicLong elements = new AtomicLong();
+            return flux
+                    .doOnNext(value -> elements.incrementAndGet())
+                    .doOnComplete(() -> completion.complete("Elements: " + elements.get(), null, System.nanoTime() - subscribedNs))
+                    .doOnError(throwable -> completion.complete(null, throwable, System.nanoTime() - subscribedNs));
+        });
+    }
+
+    /**
+     * Callback completing the audit of a call.
+     */
+    @FunctionalInterface
+    interface Completion {
+
+        /**
+         * @param result     result of the call, null if there is none
+         * @param throwable  error of the call, null if the call did not fail
+         * @param durationNs duration of the call
+         */
+        void complete(Object result, Throwable throwable, long durationNs);
+
+    }
+
+}
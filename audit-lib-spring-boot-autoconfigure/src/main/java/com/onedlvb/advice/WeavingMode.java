@@ -0,0 +1,20 @@
+package com.onedlvb.advice;
+
+/**
+ * How the audit advice is applied to methods annotated with {@link com.onedlvb.advice.annotation.AuditLog}.
+ * @author Matushkin Anton
+ */
+public enum WeavingMode {
+
+    /**
+     * Audited beans are wrapped into Spring AOP proxies, calls of a bean to itself are not audited.
+     */
+    PROXY,
+
+    /**
+     * Advice of the {@link WovenAuditLogAspect} is woven into the audited classes by AspectJ at compile time
+     * (aspectj-maven-plugin) or at load time (-javaagent:aspectjweaver.jar), every call is audited.
+     */
+    ASPECTJ
+
+}
@@ -0,0 +1,64 @@
+package com.onedlvb.advice;
+
+import com.onedlvb.advice.annotation.AuditLog;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+/**
+ * Aspect woven by AspectJ into the classes with methods annotated with {@link AuditLog},
+ * used with audit-lib-spring-boot-starter.weaving.mode=aspectj instead of Spring proxies.
+ * <p>
+ * The advice is inlined into the audited methods, so calls are not routed through a proxy and calls of an object
+ * to itself are audited too. The aspect is a singleton created by AspectJ, not by Spring, the auto-configuration
+ * hands it the {@link AuditLogAspect} doing the audit. Until then annotated methods are just called.
+ * @author Matushkin Anton
+ */
+@Aspect
+public class WovenAuditLogAspect {
+
+    private volatile AuditLogAspect delegate;
+
+    /**
+     * @param delegate aspect auditing the woven calls, null to just call annotated methods
+     */
+    public void setDelegate(AuditLogAspect delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return aspect auditing the woven calls, null if there is none
+     */
+    public AuditLogAspect getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Closes the delegate, annotated methods are just called afterwards.
+     */
+    public void close() {
+        AuditLogAspect auditLogAspect = delegate;
+        delegate = null;
+        if (auditLogAspect != null) {
+            auditLogAspect.close();
+        }
+    }
+
+    /**
+     * Audits the execution of an annotated method with the {@link AuditLogAspect}.
+     * <p>
+     * @param joinPoint provides the context of the method execution
+     * @param auditLog  the annotation containing logging settings for the method
+     * @return          the object returned by the target method, or null if the method returns void
+     * @throws Throwable any exceptions thrown by the target method during execution
+     */
+    @Around("execution(* *(..)) && @annotation(auditLog)")
+    public Object audit(ProceedingJoinPoint joinPoint, AuditLog auditLog) throws Throwable {
+        AuditLogAspect auditLogAspect = delegate;
+        if (auditLogAspect == null) {
+            return joinPoint.proceed();
+        }
+        return auditLogAspect.logMethodInfo(joinPoint, auditLog);
+    }
+
+}
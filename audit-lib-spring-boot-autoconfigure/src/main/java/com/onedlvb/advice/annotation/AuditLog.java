@@ -21,4 +21,23 @@ public @interface AuditLog {
      */
     LogLevel logLevel() default LogLevel.DEBUG;
 
+    /**
+     * Index of the argument used as the key of the Kafka record, e.g. an entity id.
+     * The argument is rendered like the other arguments, so its size is limited and its redacted fields are masked.
+     * Keys longer than 255 characters are cut off.
+     * Overrides audit-lib-spring-boot-starter.kafka.key-strategy. By default the argument is not used
+     */
+    int keyArg() default -1;
+
+    /**
+     * Share of the calls to audit, from 0 to 1. Overridden by audit-lib-spring-boot-starter.sampling.rates.
+     * By default every call is audited
+     */
+    double sampleRate() default 1.0;
+
+    /**
+     * True to audit every call which throws an exception, even if it is not sampled
+     */
+    boolean keepErrors() default true;
+
 }
@@ -22,4 +22,15 @@ public @interface AuditLogHttp {
      */
     LogLevel logLevel() default LogLevel.DEBUG;
 
+    /**
+     * Share of the requests to audit, from 0 to 1. Overridden by audit-lib-spring-boot-starter.sampling.rates.
+     * By default every request is audited
+     */
+    double sampleRate() default 1.0;
+
+    /**
+     * True to audit every request which failed with an exception or a 5xx status, even if it is not sampled
+     */
+    boolean keepErrors() default true;
+
 }
@@ -0,0 +1,17 @@
+package com.onedlvb.advice.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for fields of audited arguments, return values and HTTP bodies, which values must not be logged,
+ * e.g. card numbers or passwords. The value is replaced with audit-lib-spring-boot-starter.redaction.mask.
+ * @author Matushkin Anton
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Redact {
+
+}
@@ -0,0 +1,104 @@
+package com.onedlvb.appender;
+
+import org.apache.logging.log4j.core.appender.AppenderLoggingException;
+import org.apache.logging.log4j.core.layout.ByteBufferDestination;
+import org.apache.logging.log4j.core.layout.ByteBufferDestinationHelper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Destination of layouts encoding events into a reused direct buffer, which is written to a channel when it is full
+ * or when it is flushed. Layouts of Log4j encode events straight into the buffer, so no byte array is created per event.
+ * Not thread-safe, the appender writing to it holds its lock.
+ * @author Matushkin Anton
+ */
+final class ChannelByteBufferDestination implements ByteBufferDestination {
+
+    private final ByteBuffer buffer;
+
+    private WritableByteChannel channel;
+
+    private long written;
+
+    /**
+     * @param capacity size of the buffer in bytes
+     */
+    ChannelByteBufferDestination(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Buffer size must be greater than 0");
+        }
+        this.buffer = ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * @param channel channel the buffer is written to, buffered bytes must be flushed before it is replaced
+     */
+    void setChannel(WritableByteChannel channel) {
+        this.channel = channel;
+        this.written = 0L;
+    }
+
+    /**
+     * @return number of bytes written to the channel and buffered since it was set
+     */
+    long length() {
+        return written + buffer.position();
+    }
+
+    /**
+     * @return true if there are bytes which are not written to the channel
+     */
+    boolean hasBufferedBytes() {
+        return buffer.position() > 0;
+    }
+
+    /**
+     * Writes the buffered bytes to the channel.
+     * @throws IOException if the channel could not be written
+     */
+    void flush() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public ByteBuffer getByteBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public ByteBuffer drain(ByteBuffer buf) {
+        try {
+            flush();
+        } catch (IOException e) {
+            throw new AppenderLoggingException("Error while writing log events", e);
+        }
+        return buf;
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer data) {
+        if (data.remaining() > 0) {
+            ByteBufferDestinationHelper.writeToUnsynchronized(data, this);
+        }
+    }
+
+    @Override
+    public void writeBytes(byte[] data, int offset, int length) {
+        if (length > 0) {
+            ByteBufferDestinationHelper.writeToUnsynchronized(data, offset, length, this);
+        }
+    }
+
+}
@@ -4,34 +4,143 @@ import org.apache.logging.log4j.core.Filter;
 import org.apache.logging.log4j.core.Layout;
 import org.apache.logging.log4j.core.LogEvent;
 import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.appender.AppenderLoggingException;
 import org.apache.logging.log4j.core.config.Property;
 import org.apache.logging.log4j.core.config.plugins.Plugin;
 import org.apache.logging.log4j.core.config.plugins.PluginAttribute;
 import org.apache.logging.log4j.core.config.plugins.PluginElement;
 import org.apache.logging.log4j.core.config.plugins.PluginFactory;
 
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Custom appender for logging to a console.
+ * <p>
+ * Events are encoded by the layout in its own charset straight into a reused direct buffer, which is written
+ * to the standard output through a channel. Neither a string nor a byte array is created per event.
+ * With immediate flush every event is written right away, otherwise the buffer is written when it is full
+ * and at the end of a batch, so events handed over by an asynchronous appender are written once per batch.
+ * <p>
+ * By default the buffer is written through {@link System#out} as it is when the appender is started, so the output
+ * redirected by a test harness or an agent with {@link System#setOut} keeps the events. A direct appender writes
+ * to the file descriptor of the standard output with one syscall per write and does not take the lock of {@link System#out},
+ * but it bypasses such redirections, and events printed through {@link System#out} by the application
+ * are not ordered with its events.
  * @author Matushkin Anton
  */
 @Plugin(name = "CustomConsoleAppender", category = "Core", elementType = "appender", printObject = true)
 public class CustomConsoleAppender extends AbstractAppender {
 
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    private boolean immediateFlush = true;
+
+    private boolean direct;
+
+    private WritableByteChannel channel;
+
+    private ChannelByteBufferDestination destination;
+
     protected CustomConsoleAppender(String name, Filter filter, Layout<? extends Serializable> layout,
                                     boolean ignoreExceptions, Property[] properties) {
         super(name, filter, layout, ignoreExceptions, properties);
     }
 
+    /**
+     * Allocates the buffer and opens the channel of the standard output, unless another channel is set.
+     */
+    @Override
+    public void start() {
+        if (channel == null) {
+            // The stream of the standard output is never closed, so the file descriptor stays open
+            channel = direct ? new FileOutputStream(FileDescriptor.out).getChannel() : new PrintStreamChannel(System.out);
+        }
+        destination = new ChannelByteBufferDestination(bufferSize);
+        destination.setChannel(channel);
+        super.start();
+    }
+
     /**
      * Provides output to a console
      * @param event event to output
      */
     @Override
     public void append(LogEvent event) {
-        String message = new String(getLayout().toByteArray(event));
-        System.out.print(message);
+        lock.lock();
+        try {
+            getLayout().encode(event, destination);
+            if (immediateFlush || event.isEndOfBatch()) {
+                destination.flush();
+            }
+        } catch (IOException e) {
+            throw new AppenderLoggingException("Error while writing to the console", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes buffered events, the standard output stays open.
+     */
+    @Override
+    public boolean stop(long timeout, TimeUnit timeUnit) {
+        setStopping();
+        boolean stopped = super.stop(timeout, timeUnit, false);
+        lock.lock();
+        try {
+            if (destination != null) {
+                destination.flush();
+            }
+        } catch (IOException e) {
+            error("Unable to write to the console", e);
+            stopped = false;
+        } finally {
+            lock.unlock();
+        }
+        setStopped();
+        return stopped;
+    }
+
+    /**
+     * @param bufferSize size of the buffer of events in bytes, set before the appender is started
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @param immediateFlush true to write every event right away, false to write events at the end of a batch
+     */
+    public void setImmediateFlush(boolean immediateFlush) {
+        this.immediateFlush = immediateFlush;
+    }
+
+    /**
+     * @param direct true to write to the file descriptor of the standard output bypassing {@link System#out},
+     *               false to write through {@link System#out}, set before the appender is started
+     */
+    public void setDirect(boolean direct) {
+        this.direct = direct;
+    }
+
+    /**
+     * @param channel channel events are written to instead of the standard output, set before the appender is started
+     */
+    void setChannel(WritableByteChannel channel) {
+        this.channel = channel;
     }
 
     /**
@@ -53,4 +162,37 @@ public class CustomConsoleAppender extends AbstractAppender {
         return new CustomConsoleAppender(name, filter, layout, ignoreExceptions, properties);
     }
 
+    /**
+     * Channel over {@link System#out}, flushing the stream after every write and never closing it.
+     */
+    private static final class PrintStreamChannel implements WritableByteChannel {
+
+        private final PrintStream out;
+
+        private final WritableByteChannel channel;
+
+        private PrintStreamChannel(PrintStream out) {
+            this.out = out;
+            this.channel = Channels.newChannel(out);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int written = channel.write(src);
+            out.flush();
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+            out.flush();
+        }
+
+    }
+
 }
@@ -4,52 +4,164 @@ import org.apache.logging.log4j.core.Filter;
 import org.apache.logging.log4j.core.Layout;
 import org.apache.logging.log4j.core.LogEvent;
 import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.appender.AppenderLoggingException;
 import org.apache.logging.log4j.core.config.Property;
 import org.apache.logging.log4j.core.config.plugins.Plugin;
 import org.apache.logging.log4j.core.config.plugins.PluginAttribute;
 import org.apache.logging.log4j.core.config.plugins.PluginElement;
 import org.apache.logging.log4j.core.config.plugins.PluginFactory;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 /**
  * Custom appender for logging to a file.
+ * <p>
+ * The file is opened with the first event and kept open until the appender is stopped. Events are encoded by the layout
+ * straight into a reused direct buffer, which is written to the file channel when it is full, at the end of a batch
+ * of asynchronous loggers and at least every flush interval by a background thread, so most events cost no syscall.
+ * What a crash can lose is set by the {@link FileDurability}. Buffered events are written when the appender is stopped.
+ * <p>
+ * With a segment size or a roll interval the file is rolled over before the next event when it is that large
+ * or that old, by the time of the event: it is closed and renamed to its next segment (see {@link SegmentFiles}),
+ * and events go to a new file. Closed segments are compressed and deleted by the retention limits
+ * on a background thread of the {@link SegmentArchiver}, so rolling over costs an append no more than a rename.
  * @author Matushkin Anton
  */
 @Plugin(name = "CustomFileAppender", category = "Core", elementType = "appender", printObject = true)
 public class CustomFileAppender extends AbstractAppender {
 
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 1000L;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
     private String path;
 
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    private long flushIntervalMs = DEFAULT_FLUSH_INTERVAL_MS;
+
+    private FileDurability durability = FileDurability.BUFFERED;
+
+    private long segmentSize;
+
+    private long rollIntervalMs;
+
+    private FileCompression compression = FileCompression.NONE;
+
+    private long maxAgeMs;
+
+    private long maxTotalSize;
+
+    private ChannelByteBufferDestination destination;
+
+    private SegmentArchiver archiver;
+
+    private FileChannel channel;
+
+    private long openedLength;
+
+    private long nextSequence = -1L;
+
+    private long rollAtMillis;
+
+    private Thread flusherThread;
+
+    private volatile boolean running;
+
     protected CustomFileAppender(String name, Filter filter, Layout<? extends Serializable> layout, boolean ignoreExceptions, Property[] properties) {
         super(name, filter, layout, ignoreExceptions, properties);
     }
 
+    /**
+     * Allocates the buffer and starts the threads flushing it every flush interval and archiving closed segments.
+     */
+    @Override
+    public void start() {
+        destination = new ChannelByteBufferDestination(bufferSize);
+        if (SegmentArchiver.isNeeded(compression, maxAgeMs, maxTotalSize)) {
+            archiver = new SegmentArchiver(Path.of(path), compression, maxAgeMs, maxTotalSize, getName());
+            archiver.start();
+        }
+        if (durability != FileDurability.WRITE_THROUGH) {
+            running = true;
+            flusherThread = new Thread(this::flushPeriodically, "audit-file-flusher-" + getName());
+            flusherThread.setDaemon(true);
+            flusherThread.start();
+        }
+        super.start();
+    }
+
     /**
      * Provides output to a file
      * @param event event to output
      */
     @Override
     public void append(LogEvent event) {
-        final byte[] bytes = getLayout().toByteArray(event);
+        lock.lock();
         try {
-            File logFile = new File(path);
-            if (!logFile.getParentFile().exists()) {
-                logFile.getParentFile().mkdirs();
+            if (channel == null) {
+                open(event.getTimeMillis());
+            } else if (isRollingOver(event.getTimeMillis())) {
+                rollOver(event.getTimeMillis());
+            }
+            getLayout().encode(event, destination);
+            if (durability == FileDurability.WRITE_THROUGH || event.isEndOfBatch()) {
+                flush();
             }
-            if (!logFile.exists()) {
-                logFile.createNewFile();
+        } catch (IOException e) {
+            throw new AppenderLoggingException("Error while writing log file " + path, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the flusher thread, writes buffered events and closes the file.
+     */
+    @Override
+    public boolean stop(long timeout, TimeUnit timeUnit) {
+        setStopping();
+        boolean stopped = super.stop(timeout, timeUnit, false);
+        running = false;
+        if (flusherThread != null) {
+            LockSupport.unpark(flusherThread);
+            try {
+                flusherThread.join(Math.max(timeUnit.toMillis(timeout), flushIntervalMs));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-            try (FileOutputStream fos = new FileOutputStream(logFile, true)) {
-                fos.write(bytes);
+        }
+        lock.lock();
+        try {
+            if (channel != null) {
+                flush();
+                channel.close();
+                channel = null;
             }
         } catch (IOException e) {
-            throw new RuntimeException("Error while log file  creation.");
+            error("Unable to close log file " + path, e);
+            stopped = false;
+        } finally {
+            lock.unlock();
         }
+        if (archiver != null) {
+            archiver.stop(timeUnit.toMillis(timeout));
+        }
+        setStopped();
+        return stopped;
     }
 
     /**
@@ -59,6 +171,146 @@ public class CustomFileAppender extends AbstractAppender {
         this.path = path;
     }
 
+    /**
+     * @param bufferSize size of the buffer of events in bytes, set before the appender is started
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @param flushIntervalMs how long events can stay in the buffer, set before the appender is started
+     */
+    public void setFlushIntervalMs(long flushIntervalMs) {
+        if (flushIntervalMs <= 0) {
+            throw new IllegalArgumentException("Flush interval must be greater than 0");
+        }
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    /**
+     * @param durability what a crash can lose, set before the appender is started
+     */
+    public void setDurability(FileDurability durability) {
+        this.durability = durability;
+    }
+
+    /**
+     * @param segmentSize size in bytes the file is rolled over at, 0 to not roll it over by size
+     */
+    public void setSegmentSize(long segmentSize) {
+        if (segmentSize < 0) {
+            throw new IllegalArgumentException("Segment size must not be negative");
+        }
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * @param rollIntervalMs how long events are written to the file before it is rolled over, 0 to not roll it over by time
+     */
+    public void setRollIntervalMs(long rollIntervalMs) {
+        if (rollIntervalMs < 0) {
+            throw new IllegalArgumentException("Roll interval must not be negative");
+        }
+        this.rollIntervalMs = rollIntervalMs;
+    }
+
+    /**
+     * @param compression compression of closed segments, set before the appender is started
+     */
+    public void setCompression(FileCompression compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * @param maxAgeMs age after which closed segments are deleted, 0 to keep them, set before the appender is started
+     */
+    public void setMaxAgeMs(long maxAgeMs) {
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    /**
+     * @param maxTotalSize total size in bytes of closed segments after which the oldest are deleted, 0 to keep them,
+     *                     set before the appender is started
+     */
+    public void setMaxTotalSize(long maxTotalSize) {
+        this.maxTotalSize = maxTotalSize;
+    }
+
+    /**
+     * Writes buffered events to the file, forced to the disk with {@link FileDurability#FSYNC}.
+     * @throws IOException if the file could not be written
+     */
+    private void flush() throws IOException {
+        if (!destination.hasBufferedBytes()) {
+            return;
+        }
+        destination.flush();
+        if (durability == FileDurability.FSYNC) {
+            channel.force(false);
+        }
+    }
+
+    private void flushPeriodically() {
+        long intervalNs = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (running) {
+            LockSupport.parkNanos(this, intervalNs);
+            lock.lock();
+            try {
+                if (channel != null) {
+                    flush();
+                }
+            } catch (IOException e) {
+                error("Error while writing log file " + path, e);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Opens the file. The first time the sequence of the next segment is found among the segments of the previous run.
+     */
+    private void open(long timeMillis) throws IOException {
+        Path file = Path.of(path);
+        if (nextSequence < 0) {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            List<Path> segments = SegmentFiles.list(file);
+            nextSequence = segments.isEmpty() ? 0L : SegmentFiles.sequenceOf(file, segments.get(segments.size() - 1)) + 1;
+            if (archiver != null && nextSequence > 0) {
+                archiver.closed(nextSequence - 1);
+            }
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        openedLength = channel.size();
+        destination.setChannel(channel);
+        rollAtMillis = rollIntervalMs > 0 ? timeMillis + rollIntervalMs : Long.MAX_VALUE;
+    }
+
+    private boolean isRollingOver(long timeMillis) {
+        long length = openedLength + destination.length();
+        return length > 0 && (segmentSize > 0 && length >= segmentSize || timeMillis >= rollAtMillis);
+    }
+
+    /**
+     * Closes the file, renames it to the next segment and opens a new one.
+     */
+    private void rollOver(long timeMillis) throws IOException {
+        flush();
+        channel.close();
+        channel = null;
+        Path file = Path.of(path);
+        Files.move(file, SegmentFiles.segment(file, nextSequence), StandardCopyOption.ATOMIC_MOVE);
+        if (archiver != null) {
+            archiver.closed(nextSequence);
+        }
+        nextSequence++;
+        open(timeMillis);
+    }
+
     /**
      * @param name name of an appender
      * @param filter filters for appender
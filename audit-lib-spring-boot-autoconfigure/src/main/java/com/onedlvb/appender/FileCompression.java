@@ -0,0 +1,15 @@
+package com.onedlvb.appender;
+
+/**
+ * Enum for how closed segments of the log file are compressed
+ * Possible compressions:
+ * {@link #NONE} - segments are kept as they were written,
+ * {@link #GZIP} - segments are compressed into audit.log.SEQUENCE.gz in the background.
+ * @author Matushkin Anton
+ */
+public enum FileCompression {
+
+    NONE,
+    GZIP
+
+}
@@ -0,0 +1,20 @@
+package com.onedlvb.appender;
+
+/**
+ * Enum for what {@link CustomFileAppender} can lose on a crash
+ * Possible policies:
+ * {@link #BUFFERED} - events are written when the buffer is full, at the end of a batch and every flush interval,
+ * a crash of the process loses at most the events of the last interval,
+ * {@link #WRITE_THROUGH} - every event is written right away, a crash of the process loses nothing,
+ * a crash of the operating system loses what it has not written to the disk yet,
+ * {@link #FSYNC} - events are written like {@link #BUFFERED} and forced to the disk on every flush,
+ * a crash of the operating system loses at most the events of the last interval.
+ * @author Matushkin Anton
+ */
+public enum FileDurability {
+
+    BUFFERED,
+    WRITE_THROUGH,
+    FSYNC
+
+}
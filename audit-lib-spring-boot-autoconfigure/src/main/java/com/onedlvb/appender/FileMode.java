@@ -0,0 +1,16 @@
+package com.onedlvb.appender;
+
+/**
+ * Enum for how the log file is written
+ * Possible modes:
+ * {@link #CHANNEL} - {@link CustomFileAppender} writes events to the log file through a buffer,
+ * {@link #MMAP} - {@link MappedSegmentFileAppender} writes events to memory-mapped segments of the log file
+ * without write syscalls.
+ * @author Matushkin Anton
+ */
+public enum FileMode {
+
+    CHANNEL,
+    MMAP
+
+}
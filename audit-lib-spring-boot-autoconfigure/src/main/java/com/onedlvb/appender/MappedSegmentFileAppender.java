@@ -0,0 +1,448 @@
+package com.onedlvb.appender;
+
+import org.apache.logging.log4j.core.Filter;
+import org.apache.logging.log4j.core.Layout;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.appender.AppenderLoggingException;
+import org.apache.logging.log4j.core.config.Property;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginElement;
+import org.apache.logging.log4j.core.config.plugins.PluginFactory;
+import org.apache.logging.log4j.core.layout.ByteBufferDestination;
+import org.apache.logging.log4j.core.layout.ByteBufferDestinationHelper;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Custom appender for logging to memory-mapped segment files.
+ * <p>
+ * Events are written to segments of the log file named after it (see {@link SegmentFiles}). A segment is pre-allocated
+ * with the segment size and mapped into memory, layouts encode events straight into the mapping, so appending an event
+ * makes no syscall and the operating system writes the pages to the disk. An event which does not fit into the rest
+ * of the segment is written past its end, so events are never split between segments. The segment is rolled over
+ * before the next event when it is full or older than the roll interval, by the time of the event.
+ * <p>
+ * Pre-allocated bytes after the last event are zeros. A segment is truncated to its real length when it is rolled over
+ * and when the appender is stopped; after a crash the segments are truncated when the appender is started again,
+ * and events go to a new segment. Events are in the page cache as soon as they are appended, so a crash of the process
+ * loses nothing and {@link FileDurability#WRITE_THROUGH} is the same as {@link FileDurability#BUFFERED},
+ * with {@link FileDurability#FSYNC} mappings are also forced to the disk every flush interval.
+ * <p>
+ * Mappings are released by the garbage collector, so a closed segment is still mapped when it is truncated. Systems
+ * which do not allow to truncate a mapped file, like Windows, leave the segment with its zeros, the error is reported
+ * and the segment is truncated when the appender is started again.
+ * <p>
+ * Closed segments are compressed and deleted by the retention limits on a background thread of the {@link SegmentArchiver}.
+ * @author Matushkin Anton
+ */
+@Plugin(name = "MappedSegmentFileAppender", category = "Core", elementType = "appender", printObject = true)
+public class MappedSegmentFileAppender extends AbstractAppender {
+
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    public static final long DEFAULT_ROLL_INTERVAL_MS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Largest region mapped past the end of a full segment for the event which does not fit into it.
+     */
+    private static final int OVERFLOW_REGION_SIZE = 1024 * 1024;
+
+    private static final int RECOVERY_CHUNK_SIZE = 8 * 1024;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final SegmentDestination destination = new SegmentDestination();
+
+    private String path;
+
+    private long segmentSize = DEFAULT_SEGMENT_SIZE;
+
+    private long rollIntervalMs = DEFAULT_ROLL_INTERVAL_MS;
+
+    private long flushIntervalMs = CustomFileAppender.DEFAULT_FLUSH_INTERVAL_MS;
+
+    private FileDurability durability = FileDurability.BUFFERED;
+
+    private FileCompression compression = FileCompression.NONE;
+
+    private long maxAgeMs;
+
+    private long maxTotalSize;
+
+    private SegmentArchiver archiver;
+
+    private Path segment;
+
+    private long nextSequence = -1L;
+
+    private long rollAtMillis;
+
+    private Thread flusherThread;
+
+    private volatile boolean running;
+
+    protected MappedSegmentFileAppender(String name, Filter filter, Layout<? extends Serializable> layout, boolean ignoreExceptions,
+                                        Property[] properties) {
+        super(name, filter, layout, ignoreExceptions, properties);
+    }
+
+    /**
+     * Starts the threads forcing mappings to the disk every flush interval with {@link FileDurability#FSYNC}
+     * and archiving closed segments.
+     */
+    @Override
+    public void start() {
+        if (SegmentArchiver.isNeeded(compression, maxAgeMs, maxTotalSize)) {
+            archiver = new SegmentArchiver(Path.of(path), compression, maxAgeMs, maxTotalSize, getName());
+            archiver.start();
+        }
+        if (durability == FileDurability.FSYNC) {
+            running = true;
+            flusherThread = new Thread(this::forcePeriodically, "audit-mmap-flusher-" + getName());
+            flusherThread.setDaemon(true);
+            flusherThread.start();
+        }
+        super.start();
+    }
+
+    /**
+     * Provides output to a segment of the file
+     * @param event event to output
+     */
+    @Override
+    public void append(LogEvent event) {
+        lock.lock();
+        try {
+            if (segment == null) {
+                openSegment(event.getTimeMillis());
+            } else if (destination.length() >= segmentSize || event.getTimeMillis() >= rollAtMillis) {
+                closeSegment();
+                openSegment(event.getTimeMillis());
+            }
+            getLayout().encode(event, destination);
+        } catch (IOException | UncheckedIOException e) {
+            throw new AppenderLoggingException("Error while writing log file " + path, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the flusher thread and truncates the current segment to its real length.
+     */
+    @Override
+    public boolean stop(long timeout, TimeUnit timeUnit) {
+        setStopping();
+        boolean stopped = super.stop(timeout, timeUnit, false);
+        running = false;
+        if (flusherThread != null) {
+            LockSupport.unpark(flusherThread);
+            try {
+                flusherThread.join(Math.max(timeUnit.toMillis(timeout), flushIntervalMs));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        lock.lock();
+        try {
+            if (segment != null && !closeSegment()) {
+                stopped = false;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (archiver != null) {
+            archiver.stop(timeUnit.toMillis(timeout));
+        }
+        setStopped();
+        return stopped;
+    }
+
+    /**
+     * @param path path for log file, segments are created next to it.
+     */
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    /**
+     * @param segmentSize size of a pre-allocated segment in bytes
+     */
+    public void setSegmentSize(long segmentSize) {
+        if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size must be greater than 0 and less than 2GB");
+        }
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * @param rollIntervalMs how long events are written to a segment before it is rolled over
+     */
+    public void setRollIntervalMs(long rollIntervalMs) {
+        if (rollIntervalMs <= 0) {
+            throw new IllegalArgumentException("Roll interval must be greater than 0");
+        }
+        this.rollIntervalMs = rollIntervalMs;
+    }
+
+    /**
+     * @param flushIntervalMs how often mappings are forced to the disk with {@link FileDurability#FSYNC}
+     */
+    public void setFlushIntervalMs(long flushIntervalMs) {
+        if (flushIntervalMs <= 0) {
+            throw new IllegalArgumentException("Flush interval must be greater than 0");
+        }
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    /**
+     * @param durability what a crash can lose, set before the appender is started,
+     *                   {@link FileDurability#WRITE_THROUGH} is the same as {@link FileDurability#BUFFERED}
+     */
+    public void setDurability(FileDurability durability) {
+        this.durability = durability;
+    }
+
+    /**
+     * @param compression compression of closed segments, set before the appender is started
+     */
+    public void setCompression(FileCompression compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * @param maxAgeMs age after which closed segments are deleted, 0 to keep them, set before the appender is started
+     */
+    public void setMaxAgeMs(long maxAgeMs) {
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    /**
+     * @param maxTotalSize total size in bytes of closed segments after which the oldest are deleted, 0 to keep them,
+     *                     set before the appender is started
+     */
+    public void setMaxTotalSize(long maxTotalSize) {
+        this.maxTotalSize = maxTotalSize;
+    }
+
+    /**
+     * Creates and maps the next segment. The first segment recovers the segments of the previous run.
+     */
+    private void openSegment(long timeMillis) throws IOException {
+        Path file = Path.of(path);
+        if (nextSequence < 0) {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            nextSequence = recover(file);
+            if (archiver != null && nextSequence > 0) {
+                archiver.closed(nextSequence - 1);
+            }
+        }
+        Path next = SegmentFiles.segment(file, nextSequence++);
+        destination.map(next, 0L, segmentSize, StandardOpenOption.CREATE_NEW);
+        segment = next;
+        rollAtMillis = timeMillis + rollIntervalMs;
+    }
+
+    /**
+     * Releases the mapping of the current segment and truncates the segment to its real length.
+     * The next event goes to a new segment even if the segment can not be truncated.
+     * @return true if the segment is truncated, otherwise the error is reported and the next start truncates it
+     */
+    private boolean closeSegment() {
+        try {
+            long length = destination.length();
+            destination.unmap(durability == FileDurability.FSYNC);
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                channel.truncate(length);
+            }
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            error("Unable to truncate segment " + segment + " of log file " + path, e);
+            return false;
+        } finally {
+            segment = null;
+            if (archiver != null) {
+                archiver.closed(nextSequence - 1);
+            }
+        }
+    }
+
+    /**
+     * Truncates the segments left by the previous run to their real length, the last one after a crash
+     * and the ones which could not be truncated when they were closed. Compressed segments are skipped.
+     * @param file path of the log file
+     * @return sequence number of the next segment
+     */
+    private static long recover(Path file) throws IOException {
+        List<Path> segments = SegmentFiles.list(file);
+        if (segments.isEmpty()) {
+            return 0L;
+        }
+        for (Path segment : segments) {
+            if (SegmentFiles.isCompressed(segment)) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long length = realLength(channel);
+                if (length < channel.size()) {
+                    channel.truncate(length);
+                }
+            }
+        }
+        return SegmentFiles.sequenceOf(file, segments.get(segments.size() - 1)) + 1;
+    }
+
+    /**
+     * @return length of the segment up to its last byte which is not zero
+     */
+    private static long realLength(FileChannel channel) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(RECOVERY_CHUNK_SIZE);
+        long end = channel.size();
+        while (end > 0) {
+            long start = Math.max(0L, end - RECOVERY_CHUNK_SIZE);
+            chunk.clear().limit((int) (end - start));
+            int read = 0;
+            while (chunk.hasRemaining() && read >= 0) {
+                read = channel.read(chunk, start + chunk.position());
+            }
+            for (int i = chunk.position() - 1; i >= 0; i--) {
+                if (chunk.get(i) != 0) {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0L;
+    }
+
+    private void forcePeriodically() {
+        long intervalNs = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (running) {
+            LockSupport.parkNanos(this, intervalNs);
+            lock.lock();
+            try {
+                destination.force();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @param name name of an appender
+     * @param filter filters for appender
+     * @param layout layout for appender
+     * @param ignoreExceptions true to ignore, false to not ingonre
+     * @param properties properties for appender
+     * @return new {@link MappedSegmentFileAppender}
+     */
+    @PluginFactory
+    public static MappedSegmentFileAppender createAppender(
+            @PluginAttribute("name") String name,
+            @PluginElement("Filters") Filter filter,
+            @PluginElement("Layout") Layout<? extends Serializable> layout,
+            @PluginAttribute("ignoreExceptions") boolean ignoreExceptions,
+            @PluginElement("Properties") Property[] properties) {
+        return new MappedSegmentFileAppender(name, filter, layout, ignoreExceptions, properties);
+    }
+
+    /**
+     * Destination of layouts encoding events into the mapping of the current segment. When the mapping is full,
+     * the region after the last written byte is mapped, so the event goes on past the end of the segment.
+     * Accessed under the lock of the appender.
+     */
+    private final class SegmentDestination implements ByteBufferDestination {
+
+        private Path path;
+
+        private MappedByteBuffer buffer;
+
+        private long regionOffset;
+
+        /**
+         * Maps a region of the segment, the file grows to its end if it is shorter.
+         */
+        private void map(Path path, long offset, long size, StandardOpenOption option) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, option, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, offset, size);
+            }
+            this.path = path;
+            this.regionOffset = offset;
+        }
+
+        private void unmap(boolean force) {
+            try {
+                if (force) {
+                    buffer.force();
+                }
+            } finally {
+                buffer = null;
+                path = null;
+            }
+        }
+
+        private void force() {
+            if (buffer != null) {
+                buffer.force();
+            }
+        }
+
+        /**
+         * @return number of bytes written to the segment
+         */
+        private long length() {
+            return regionOffset + buffer.position();
+        }
+
+        @Override
+        public ByteBuffer getByteBuffer() {
+            return buffer;
+        }
+
+        @Override
+        public ByteBuffer drain(ByteBuffer buf) {
+            if (durability == FileDurability.FSYNC) {
+                buffer.force();
+            }
+            try {
+                map(path, length(), OVERFLOW_REGION_SIZE, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return buffer;
+        }
+
+        @Override
+        public void writeBytes(ByteBuffer data) {
+            if (data.remaining() > 0) {
+                ByteBufferDestinationHelper.writeToUnsynchronized(data, this);
+            }
+        }
+
+        @Override
+        public void writeBytes(byte[] data, int offset, int length) {
+            if (length > 0) {
+                ByteBufferDestinationHelper.writeToUnsynchronized(data, offset, length, this);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,286 @@
+package com.onedlvb.appender;
+
+import com.onedlvb.dispatch.OverflowPolicy;
+import org.apache.logging.log4j.core.Appender;
+import org.apache.logging.log4j.core.LifeCycle2;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.impl.MutableLogEvent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appender handing events to another appender on its own thread, so slow disks or a piped console
+ * do not stall the threads which log.
+ * <p>
+ * Events are copied into the reused slots of a pre-allocated ring buffer, no object is created per event.
+ * Logging threads claim the next sequence with a compare-and-set and publish the slot by writing its sequence,
+ * a single thread reads the published slots in order and appends them to the wrapped appender, marking the last one
+ * of every batch as its end, so the file appender writes its buffer once per batch. There are no locks:
+ * the thread waits for events by the {@link WaitStrategy}, and what happens when the ring buffer is full
+ * is decided by the {@link OverflowPolicy}.
+ * <p>
+ * The wrapped appender is owned by this appender: it is stopped after the events left in the ring buffer
+ * are appended, or the shutdown timeout passes.
+ * @author Matushkin Anton
+ */
+public class RingBufferAsyncAppender extends AbstractAppender {
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final int SPIN_TRIES = 100;
+
+    private static final int YIELD_TRIES = 200;
+
+    private static final long SLEEP_NS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private static final long BLOCKING_PARK_NS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final long FULL_PARK_NS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    private final Appender delegate;
+
+    private final MutableLogEvent[] slots;
+
+    private final AtomicLongArray published;
+
+    private final int mask;
+
+    private final WaitStrategy waitStrategy;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final long shutdownTimeoutMs;
+
+    private final AtomicLong claimed = new AtomicLong();
+
+    private final AtomicLong consumed = new AtomicLong();
+
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    private final Thread consumerThread;
+
+    private volatile boolean consumerParked;
+
+    private volatile boolean running;
+
+    /**
+     * @param name              name of the appender
+     * @param delegate          started appender the events are handed to
+     * @param bufferSize        number of slots, rounded up to a power of two
+     * @param waitStrategy      how the thread waits for events
+     * @param overflowPolicy    behaviour when the ring buffer is full, {@link OverflowPolicy#BLOCK} or {@link OverflowPolicy#DROP_NEWEST}
+     * @param shutdownTimeoutMs how long stopping waits for the events left in the ring buffer
+     */
+    public RingBufferAsyncAppender(String name,
+                                   Appender delegate,
+                                   int bufferSize,
+                                   WaitStrategy waitStrategy,
+                                   OverflowPolicy overflowPolicy,
+                                   long shutdownTimeoutMs) {
+        super(name, null, null, true, null);
+        if (bufferSize <= 0 || bufferSize > 1 << 30) {
+            throw new IllegalArgumentException("Ring buffer size must be greater than 0 and at most 2^30");
+        }
+        if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+            throw new IllegalArgumentException("Ring buffer can not drop the oldest event, its only reader may be appending it");
+        }
+        int capacity = Integer.highestOneBit(bufferSize) == bufferSize ? bufferSize : Integer.highestOneBit(bufferSize) << 1;
+        this.delegate = delegate;
+        this.slots = new MutableLogEvent[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new MutableLogEvent();
+            published.set(i, -1L);
+        }
+        this.mask = capacity - 1;
+        this.waitStrategy = waitStrategy;
+        this.overflowPolicy = overflowPolicy;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.consumerThread = new Thread(this::consume, "audit-async-appender-" + name);
+        this.consumerThread.setDaemon(true);
+    }
+
+    /**
+     * Starts the thread appending the events.
+     */
+    @Override
+    public void start() {
+        running = true;
+        consumerThread.start();
+        super.start();
+    }
+
+    /**
+     * Copies the event into the next slot of the ring buffer. Never waits for the wrapped appender.
+     * Can wait for a free slot only with {@link OverflowPolicy#BLOCK}.
+     * @param event event to output
+     */
+    @Override
+    public void append(LogEvent event) {
+        long sequence = claim();
+        if (sequence < 0) {
+            droppedEvents.incrementAndGet();
+            return;
+        }
+        int index = (int) (sequence & mask);
+        slots[index].initFrom(event);
+        published.set(index, sequence);
+        if (consumerParked) {
+            LockSupport.unpark(consumerThread);
+        }
+    }
+
+    /**
+     * Appends the events left in the ring buffer and stops the wrapped appender.
+     */
+    @Override
+    public boolean stop(long timeout, TimeUnit timeUnit) {
+        setStopping();
+        boolean stopped = super.stop(timeout, timeUnit, false);
+        running = false;
+        LockSupport.unpark(consumerThread);
+        try {
+            consumerThread.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long lost = claimed.get() - consumed.get();
+        if (lost > 0) {
+            droppedEvents.addAndGet(lost);
+            error("Async appender " + getName() + " stopped with " + lost + " events not appended");
+        }
+        if (delegate instanceof LifeCycle2 lifeCycle) {
+            stopped &= lifeCycle.stop(timeout, timeUnit);
+        } else {
+            delegate.stop();
+        }
+        setStopped();
+        return stopped;
+    }
+
+    /**
+     * @return number of events waiting in the ring buffer
+     */
+    public long getQueueSize() {
+        return claimed.get() - consumed.get();
+    }
+
+    /**
+     * @return number of events dropped because of a full ring buffer or a stopped appender
+     */
+    public long getDroppedCount() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * @return wrapped appender
+     */
+    public Appender getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @return sequence of the claimed slot, -1 if the event is dropped
+     */
+    private long claim() {
+        int tries = 0;
+        while (running) {
+            long sequence = claimed.get();
+            if (sequence - consumed.get() > mask) {
+                if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                    return -1L;
+                }
+                tries = waitForSlot(tries);
+            } else if (claimed.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+        return -1L;
+    }
+
+    private static int waitForSlot(int tries) {
+        if (tries < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(FULL_PARK_NS);
+        }
+        return tries + 1;
+    }
+
+    /**
+     * Appends published events in the order of their sequences. Every run of events published in a row is a batch.
+     */
+    private void consume() {
+        long next = 0L;
+        int tries = 0;
+        while (true) {
+            long last = next - 1;
+            while (last + 1 - next <= mask && published.get((int) ((last + 1) & mask)) == last + 1) {
+                last++;
+            }
+            if (last >= next) {
+                for (long sequence = next; sequence <= last; sequence++) {
+                    MutableLogEvent event = slots[(int) (sequence & mask)];
+                    event.setEndOfBatch(sequence == last);
+                    appendToDelegate(event);
+                    event.clear();
+                    consumed.lazySet(sequence + 1);
+                }
+                next = last + 1;
+                tries = 0;
+            } else if (!running && claimed.get() == next) {
+                return;
+            } else {
+                tries = waitForEvents(next, tries);
+            }
+        }
+    }
+
+    private void appendToDelegate(LogEvent event) {
+        try {
+            delegate.append(event);
+        } catch (RuntimeException e) {
+            error("Async appender " + getName() + " failed to append event", event, e);
+        }
+    }
+
+    private int waitForEvents(long next, int tries) {
+        switch (waitStrategy) {
+            case BLOCKING -> {
+                if (tries < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else {
+                    consumerParked = true;
+                    if (running && published.get((int) (next & mask)) != next) {
+                        LockSupport.parkNanos(this, BLOCKING_PARK_NS);
+                    }
+                    consumerParked = false;
+                }
+            }
+            case SLEEPING -> {
+                if (tries < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else if (tries < YIELD_TRIES) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(this, SLEEP_NS);
+                }
+            }
+            case YIELDING -> {
+                if (tries < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            case BUSY_SPIN -> Thread.onSpinWait();
+            default -> throw new IllegalStateException("Unknown wait strategy: " + waitStrategy);
+        }
+        return tries + 1;
+    }
+
+}
@@ -0,0 +1,183 @@
+package com.onedlvb.appender;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.status.StatusLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses and deletes closed segments of a log file on a low-priority background thread, so appending events
+ * never waits for the disk work of old segments.
+ * <p>
+ * Appenders report the sequence number of every segment they close. The thread then compresses the closed segments
+ * which are not compressed yet, and deletes the oldest ones which are older than the max age
+ * or do not fit into the max total size. Age limits are also checked every archive interval, when nothing is rolled over.
+ * Segments left by a previous run are archived as soon as the appender reports them.
+ * Errors are reported to the status logger of Log4j, the logging of the application may be going through the appender.
+ * @author Matushkin Anton
+ */
+final class SegmentArchiver {
+
+    private static final Logger LOGGER = StatusLogger.getLogger();
+
+    private static final long ARCHIVE_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final int COMPRESSION_BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+
+    private final FileCompression compression;
+
+    private final long maxAgeMs;
+
+    private final long maxTotalSize;
+
+    private final Thread thread;
+
+    private volatile long lastClosedSequence = -1L;
+
+    private volatile boolean running;
+
+    /**
+     * @param file         path of the log file
+     * @param compression  compression of closed segments
+     * @param maxAgeMs     age of the last modification after which a closed segment is deleted, 0 to keep segments of any age
+     * @param maxTotalSize total size of closed segments after which the oldest ones are deleted, 0 to keep segments of any size
+     * @param name         name of the appender, for the name of the thread
+     */
+    SegmentArchiver(Path file, FileCompression compression, long maxAgeMs, long maxTotalSize, String name) {
+        this.file = file;
+        this.compression = compression;
+        this.maxAgeMs = maxAgeMs;
+        this.maxTotalSize = maxTotalSize;
+        this.thread = new Thread(this::archivePeriodically, "audit-file-archiver-" + name);
+        this.thread.setDaemon(true);
+        this.thread.setPriority(Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * @return true if closed segments are compressed or deleted, otherwise the archiver has nothing to do
+     */
+    static boolean isNeeded(FileCompression compression, long maxAgeMs, long maxTotalSize) {
+        return compression != FileCompression.NONE || maxAgeMs > 0 || maxTotalSize > 0;
+    }
+
+    void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Stops the thread, segments it is compressing after the timeout are archived by the next run.
+     * @param timeoutMs how long to wait for the thread
+     */
+    void stop(long timeoutMs) {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hands the closed segment to the thread, does not wait for it.
+     * @param sequence sequence number of the closed segment, segments before it are closed as well
+     */
+    void closed(long sequence) {
+        if (sequence > lastClosedSequence) {
+            lastClosedSequence = sequence;
+        }
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Compresses closed segments and deletes the ones which are out of the retention limits.
+     */
+    void archive() {
+        long lastClosed = lastClosedSequence;
+        if (lastClosed < 0) {
+            return;
+        }
+        try {
+            List<Path> segments = SegmentFiles.list(file);
+            if (compression == FileCompression.GZIP) {
+                for (int i = 0; i < segments.size(); i++) {
+                    Path segment = segments.get(i);
+                    if (!SegmentFiles.isCompressed(segment) && SegmentFiles.sequenceOf(file, segment) <= lastClosed) {
+                        segments.set(i, compress(segment));
+                    }
+                }
+            }
+            retain(segments, lastClosed);
+        } catch (IOException e) {
+            LOGGER.error("Unable to archive segments of log file {}", file, e);
+        }
+    }
+
+    /**
+     * Deletes the oldest closed segments which are older than the max age or do not fit into the max total size.
+     */
+    private void retain(List<Path> segments, long lastClosed) throws IOException {
+        if (maxAgeMs <= 0 && maxTotalSize <= 0) {
+            return;
+        }
+        long deleteBeforeMillis = maxAgeMs > 0 ? System.currentTimeMillis() - maxAgeMs : Long.MIN_VALUE;
+        long totalSize = 0L;
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Path segment = segments.get(i);
+            if (SegmentFiles.sequenceOf(file, segment) > lastClosed || !Files.exists(segment)) {
+                continue;
+            }
+            totalSize += Files.size(segment);
+            if (maxTotalSize > 0 && totalSize > maxTotalSize || Files.getLastModifiedTime(segment).toMillis() < deleteBeforeMillis) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+
+    /**
+     * Writes the segment into a temporary file, which replaces the segment when it is complete.
+     * @return path of the compressed segment
+     */
+    private static Path compress(Path segment) throws IOException {
+        Path compressed = segment.resolveSibling(segment.getFileName() + SegmentFiles.COMPRESSED_SUFFIX);
+        Path temporary = compressed.resolveSibling(compressed.getFileName() + TEMPORARY_SUFFIX);
+        try (InputStream in = Files.newInputStream(segment);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(temporary), COMPRESSION_BUFFER_SIZE)) {
+            in.transferTo(out);
+        }
+        Files.setLastModifiedTime(temporary, Files.getLastModifiedTime(segment));
+        Files.move(temporary, compressed, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(segment);
+        return compressed;
+    }
+
+    private void archivePeriodically() {
+        long intervalNs = TimeUnit.MILLISECONDS.toNanos(ARCHIVE_INTERVAL_MS);
+        long archivedSequence = -1L;
+        long archivedAtNs = System.nanoTime();
+        while (running) {
+            LockSupport.parkNanos(this, intervalNs);
+            long now = System.nanoTime();
+            if (running && (lastClosedSequence > archivedSequence || now - archivedAtNs >= intervalNs)) {
+                archivedSequence = lastClosedSequence;
+                archivedAtNs = now;
+                archive();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.onedlvb.appender;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Naming of the segment files of a log file. A segment of the log file audit.log is named audit.log.SEQUENCE,
+ * the sequence is zero-padded, so segments sort by their names in the order they were written.
+ * A compressed segment is named audit.log.SEQUENCE.gz.
+ * @author Matushkin Anton
+ */
+final class SegmentFiles {
+
+    static final String COMPRESSED_SUFFIX = ".gz";
+
+    private static final int SEQUENCE_LENGTH = 20;
+
+    private SegmentFiles() {
+    }
+
+    /**
+     * @param file     path of the log file
+     * @param sequence sequence number of the segment
+     * @return path of the segment, in the directory of the log file
+     */
+    static Path segment(Path file, long sequence) {
+        return file.resolveSibling(String.format("%s.%020d", file.getFileName(), sequence));
+    }
+
+    /**
+     * @param file    path of the log file
+     * @param segment path of a file in the directory of the log file
+     * @return sequence number of the segment, compressed or not, -1 if the file is not a segment of the log file
+     */
+    static long sequenceOf(Path file, Path segment) {
+        String prefix = file.getFileName() + ".";
+        String name = segment.getFileName().toString();
+        int end = prefix.length() + SEQUENCE_LENGTH;
+        if (!name.startsWith(prefix) || name.length() != end && !(name.length() == end + COMPRESSED_SUFFIX.length() && name.endsWith(COMPRESSED_SUFFIX))) {
+            return -1L;
+        }
+        String sequence = name.substring(prefix.length(), end);
+        for (int i = 0; i < sequence.length(); i++) {
+            if (!Character.isDigit(sequence.charAt(i))) {
+                return -1L;
+            }
+        }
+        try {
+            return Long.parseLong(sequence);
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * @param segment path of a segment
+     * @return true if the segment is compressed
+     */
+    static boolean isCompressed(Path segment) {
+        return segment.getFileName().toString().endsWith(COMPRESSED_SUFFIX);
+    }
+
+    /**
+     * @param file path of the log file
+     * @return segments of the log file in the order they were written, empty if its directory does not exist
+     * @throws IOException if the directory can not be read
+     */
+    static List<Path> list(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        List<Path> segments = new ArrayList<>();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, file.getFileName() + ".*")) {
+            for (Path path : stream) {
+                if (sequenceOf(file, path) >= 0) {
+                    segments.add(path);
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.onedlvb.appender;
+
+/**
+ * Enum for how the thread of {@link RingBufferAsyncAppender} waits for events
+ * Possible strategies:
+ * {@link #BLOCKING} - the thread parks and is unparked by the next event, uses no CPU when idle,
+ * but the first event after a pause pays for the unpark,
+ * {@link #SLEEPING} - the thread spins, then yields, then sleeps for a short time, events are never unparked for,
+ * {@link #YIELDING} - the thread spins, then yields, takes a core when idle but reacts sooner,
+ * {@link #BUSY_SPIN} - the thread spins all the time, the lowest latency for a dedicated core.
+ * @author Matushkin Anton
+ */
+public enum WaitStrategy {
+
+    BLOCKING,
+    SLEEPING,
+    YIELDING,
+    BUSY_SPIN
+
+}
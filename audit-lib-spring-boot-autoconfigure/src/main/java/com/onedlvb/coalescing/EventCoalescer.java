@@ -0,0 +1,284 @@
+package com.onedlvb.coalescing;
+
+import com.onedlvb.advice.exception.KafkaSendMessageException;
+import com.onedlvb.event.AuditEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Merges identical audit events seen within a time window into one event, ahead of the {@link Sink}.
+ * <p>
+ * Events are identical if they have the same topic, service, method, args, result, exception and key,
+ * and for HTTP exchanges the same HTTP method, path and status.
+ * They are found by a 64-bit fingerprint of these fields in a table of fixed capacity, where every fingerprint
+ * has exactly one slot. The first event of a fingerprint opens a window, identical events within the window
+ * only increment the count of the slot. When the window is over, the event is sent with the number of merged events
+ * and the timestamp of the last of them. An event of another fingerprint mapped to an occupied slot sends
+ * the event of the slot right away, so the table never grows and never blocks.
+ * <p>
+ * Slots are swapped and counted with compare-and-set only, a background thread sends events of expired windows.
+ * On {@link #close()} all held events are sent.
+ * @author Matushkin Anton
+ */
+public class EventCoalescer implements AutoCloseable {
+
+    private static final Logger LOGGER = LogManager.getLogger(EventCoalescer.class);
+
+    private static final long MIN_FLUSH_INTERVAL_MS = 10L;
+
+    private static final long FINGERPRINT_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final AtomicReferenceArray<Slot> slots;
+
+    private final int mask;
+
+    private final long windowMs;
+
+    private final Sink sink;
+
+    private final Thread flusherThread;
+
+    private final AtomicLong coalescedEvents = new AtomicLong();
+
+    private volatile boolean running;
+
+    private volatile boolean closed;
+
+    /**
+     * @param sink     sink of the coalesced events
+     * @param capacity maximum number of distinct events held at once, rounded up to a power of two
+     * @param windowMs how long identical events are merged after the first of them
+     */
+    public EventCoalescer(Sink sink, int capacity, long windowMs) {
+        if (capacity <= 0 || windowMs <= 0) {
+            throw new IllegalArgumentException("Coalescing capacity and window must be greater than 0");
+        }
+        this.slots = new AtomicReferenceArray<>(capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1);
+        this.mask = slots.length() - 1;
+        this.windowMs = windowMs;
+        this.sink = sink;
+        this.flusherThread = new Thread(this::flush, "audit-coalescer");
+        this.flusherThread.setDaemon(true);
+    }
+
+    /**
+     * Starts the thread sending events of expired windows.
+     */
+    public void start() {
+        running = true;
+        flusherThread.start();
+    }
+
+    /**
+     * Holds the event or merges it into an identical event of an open window.
+     * After {@link #close()} events are sent right away. An event installed while the coalescer is closing
+     * is taken back and sent, unless the final flush of {@link #close()} has already taken it.
+     * <p>
+     * @param topic the Kafka topic to which the event should be sent
+     * @param event event to coalesce
+     */
+    public void coalesce(String topic, AuditEvent event) {
+        if (closed) {
+            send(topic, event);
+            return;
+        }
+        long fingerprint = fingerprint(topic, event);
+        int index = (int) fingerprint & mask;
+        while (true) {
+            Slot slot = slots.get(index);
+            if (slot != null
+                    && slot.matches(fingerprint, topic, event)
+                    && event.getTimestamp() - slot.event.getTimestamp() < windowMs
+                    && slot.merge(event.getTimestamp())) {
+                coalescedEvents.incrementAndGet();
+                return;
+            }
+            Slot installed = new Slot(fingerprint, topic, event);
+            if (slots.compareAndSet(index, slot, installed)) {
+                if (slot != null) {
+                    emit(slot);
+                }
+                if (closed && slots.compareAndSet(index, installed, null)) {
+                    emit(installed);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return number of events merged into other events instead of being sent
+     */
+    public long getCoalescedCount() {
+        return coalescedEvents.get();
+    }
+
+    /**
+     * Stops the flusher thread and sends all held events.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        running = false;
+        LockSupport.unpark(flusherThread);
+        try {
+            flusherThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushExpired(Long.MAX_VALUE);
+    }
+
+    /**
+     * Sends events whose window is over.
+     * <p>
+     * @param nowMs current time in epoch milliseconds
+     * @return number of sent events
+     */
+    int flushExpired(long nowMs) {
+        int flushed = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            Slot slot = slots.get(i);
+            if (slot != null && nowMs - slot.event.getTimestamp() >= windowMs && slots.compareAndSet(i, slot, null)) {
+                emit(slot);
+                flushed++;
+            }
+        }
+        return flushed;
+    }
+
+    private void flush() {
+        long intervalNs = TimeUnit.MILLISECONDS.toNanos(Math.max(MIN_FLUSH_INTERVAL_MS, windowMs / 2));
+        while (running) {
+            flushExpired(System.currentTimeMillis());
+            LockSupport.parkNanos(this, intervalNs);
+        }
+    }
+
+    /**
+     * Sends the event of a slot removed from the table, with the number of merged events if there were any.
+     */
+    private void emit(Slot slot) {
+        long count = slot.close();
+        if (count <= 0) {
+            return;
+        }
+        AuditEvent event = count == 1 ? slot.event : slot.event.toBuilder()
+                .count(count)
+                .lastTimestamp(slot.lastTimestamp.get())
+                .build();
+        send(slot.topic, event);
+    }
+
+    private void send(String topic, AuditEvent event) {
+        try {
+            sink.send(topic, event);
+        } catch (KafkaSendMessageException | RuntimeException e) {
+            LOGGER.warn("Unable to send coalesced audit event of {} to kafka: {}", event.getMethodName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Cheap 64-bit fingerprint of the fields identifying an event, based on cached hash codes of strings.
+     * Events with the same fingerprint are compared field by field before they are merged.
+     */
+    static long fingerprint(String topic, AuditEvent event) {
+        long hash = Objects.hashCode(topic);
+        hash = hash * FINGERPRINT_MULTIPLIER + Objects.hashCode(event.getServiceName());
+        hash = hash * FINGERPRINT_MULTIPLIER + Objects.hashCode(event.getMethodName());
+        hash = hash * FINGERPRINT_MULTIPLIER + Objects.hashCode(event.getMethodArgs());
+        hash = hash * FINGERPRINT_MULTIPLIER + Objects.hashCode(event.getReturnValue());
+        hash = hash * FINGERPRINT_MULTIPLIER + Objects.hashCode(event.getException());
+        hash = hash * FINGERPRINT_MULTIPLIER + Objects.hashCode(event.getKey());
+        hash = hash * FINGERPRINT_MULTIPLIER + Objects.hashCode(event.getPath());
+        hash = hash * FINGERPRINT_MULTIPLIER + event.getStatus();
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Receiver of the coalesced events.
+     */
+    @FunctionalInterface
+    public interface Sink {
+
+        /**
+         * @param topic the Kafka topic to which the event should be sent
+         * @param event event to send, with the number of merged events
+         * @throws KafkaSendMessageException if the event could not be sent
+         */
+        void send(String topic, AuditEvent event) throws KafkaSendMessageException;
+
+    }
+
+    /**
+     * First event of a window with the number of identical events seen since.
+     */
+    private static final class Slot {
+
+        private static final long CLOSED = 0L;
+
+        private final long fingerprint;
+
+        private final String topic;
+
+        private final AuditEvent event;
+
+        private final AtomicLong count = new AtomicLong(1L);
+
+        private final AtomicLong lastTimestamp;
+
+        private Slot(long fingerprint, String topic, AuditEvent event) {
+            this.fingerprint = fingerprint;
+            this.topic = topic;
+            this.event = event;
+            this.lastTimestamp = new AtomicLong(event.getTimestamp());
+        }
+
+        private boolean matches(long fingerprint, String topic, AuditEvent event) {
+            return this.fingerprint == fingerprint
+                    && Objects.equals(this.topic, topic)
+                    && Objects.equals(this.event.getServiceName(), event.getServiceName())
+                    && Objects.equals(this.event.getMethodName(), event.getMethodName())
+                    && Objects.equals(this.event.getMethodArgs(), event.getMethodArgs())
+                    && Objects.equals(this.event.getReturnValue(), event.getReturnValue())
+                    && Objects.equals(this.event.getException(), event.getException())
+                    && Objects.equals(this.event.getKey(), event.getKey())
+                    && Objects.equals(this.event.getHttpMethod(), event.getHttpMethod())
+                    && Objects.equals(this.event.getPath(), event.getPath())
+                    && this.event.getStatus() == event.getStatus();
+        }
+
+        /**
+         * @return false if the slot was already closed and the event must open a new window
+         */
+        private boolean merge(long timestamp) {
+            long current = count.get();
+            while (current != CLOSED) {
+                if (count.compareAndSet(current, current + 1)) {
+                    lastTimestamp.accumulateAndGet(timestamp, Math::max);
+                    return true;
+                }
+                current = count.get();
+            }
+            return false;
+        }
+
+        /**
+         * @return number of merged events, {@link #CLOSED} if the slot was already closed
+         */
+        private long close() {
+            return count.getAndSet(CLOSED);
+        }
+
+    }
+
+}
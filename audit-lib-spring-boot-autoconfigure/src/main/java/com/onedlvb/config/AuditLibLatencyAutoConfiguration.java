@@ -0,0 +1,37 @@
+package com.onedlvb.config;
+
+import com.onedlvb.latency.AuditLatencyEndpoint;
+import com.onedlvb.latency.LatencyRegistry;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Class for autoconfiguring the actuator endpoint of latency histograms.
+ * Active when the actuator is on the classpath and the endpoint is exposed,
+ * e.g. management.endpoints.web.exposure.include=auditlatency
+ * <ul>
+ *     <li>/actuator/auditlatency - percentiles of all annotated methods and endpoints</li>
+ *     <li>/actuator/auditlatency/{name} - percentiles of one method by its qualified name</li>
+ * </ul>
+ * @author Matushkin Anton
+ */
+@Configuration
+@ConditionalOnClass(Endpoint.class)
+@ConditionalOnBean(LatencyRegistry.class)
+@ConditionalOnAvailableEndpoint(endpoint = AuditLatencyEndpoint.class)
+@AutoConfigureAfter(AuditLibSpringBootStarterAutoConfiguration.class)
+public class AuditLibLatencyAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AuditLatencyEndpoint auditLatencyEndpoint(LatencyRegistry latencyRegistry) {
+        return new AuditLatencyEndpoint(latencyRegistry);
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.onedlvb.config;
+
+import com.onedlvb.dispatch.AuditDispatcher;
+import com.onedlvb.journal.AuditJournal;
+import com.onedlvb.metrics.AuditMetrics;
+import com.onedlvb.metrics.MicrometerAuditMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Class for autoconfiguring Micrometer metrics of the audit path.
+ * Active when Micrometer is on the classpath and the application has a {@link MeterRegistry},
+ * to turn it off set audit-lib-spring-boot-starter.metrics.enabled=false
+ * <ul>
+ *     <li>audit.aspect.overhead - time spent by the aspect around every annotated method</li>
+ *     <li>audit.kafka.send, audit.kafka.commit - latency histograms of Kafka transactions</li>
+ *     <li>audit.kafka.failures - records the producer failed to send</li>
+ *     <li>audit.dispatcher.queue.size, audit.dispatcher.dropped, audit.dispatcher.failed - state of the asynchronous mode</li>
+ *     <li>audit.journal.pending, audit.journal.rejected - state of the journal</li>
+ *     <li>audit.http.events - HTTP exchanges seen by the interceptor by status</li>
+ * </ul>
+ * @author Matushkin Anton
+ */
+@Configuration
+@ConditionalOnClass(MeterRegistry.class)
+@ConditionalOnBean(MeterRegistry.class)
+@ConditionalOnProperty(prefix = "audit-lib-spring-boot-starter.metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+@AutoConfigureAfter(name = "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration")
+public class AuditLibMetricsAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AuditMetrics auditMetrics(MeterRegistry meterRegistry) {
+        return new MicrometerAuditMetrics(meterRegistry);
+    }
+
+    /**
+     * Gauges and counters read from the dispatcher and the journal when they are configured.
+     */
+    @Bean
+    public MeterBinder auditLibMeterBinder(ObjectProvider<AuditDispatcher> auditDispatcher, ObjectProvider<AuditJournal> auditJournal) {
+        return registry -> {
+            auditDispatcher.ifAvailable(dispatcher -> {
+                Gauge.builder("audit.dispatcher.queue.size", dispatcher, AuditDispatcher::getQueueSize)
+                        .description("Audit events waiting in the dispatcher queue")
+                        .register(registry);
+                FunctionCounter.builder("audit.dispatcher.dropped", dispatcher, AuditDispatcher::getDroppedCount)
+                        .description("Audit events dropped because of a full dispatcher queue")
+                        .register(registry);
+                FunctionCounter.builder("audit.dispatcher.failed", dispatcher, AuditDispatcher::getFailedCount)
+                        .description("Audit events the dispatcher failed to send")
+                        .register(registry);
+            });
+            auditJournal.ifAvailable(journal -> {
+                Gauge.builder("audit.journal.pending", journal, AuditJournal::getPendingCount)
+                        .description("Audit records waiting in the journal to be replayed")
+                        .register(registry);
+                FunctionCounter.builder("audit.journal.rejected", journal, AuditJournal::getRejectedCount)
+                        .description("Audit records rejected because the journal was full")
+                        .register(registry);
+            });
+        };
+    }
+
+}
@@ -1,7 +1,29 @@
 package com.onedlvb.config;
 
+import com.onedlvb.advice.BoundedRenderer;
+import com.onedlvb.advice.WeavingMode;
+import com.onedlvb.appender.CustomFileAppender;
+import com.onedlvb.appender.FileCompression;
+import com.onedlvb.appender.FileDurability;
+import com.onedlvb.appender.FileMode;
+import com.onedlvb.appender.MappedSegmentFileAppender;
+import com.onedlvb.appender.RingBufferAsyncAppender;
+import com.onedlvb.appender.WaitStrategy;
+import com.onedlvb.dispatch.DispatchMode;
+import com.onedlvb.dispatch.OverflowPolicy;
+import com.onedlvb.interceptor.BodyCaptureMode;
+import com.onedlvb.kafka.KeyStrategy;
+import com.onedlvb.redaction.Redactor;
+import com.onedlvb.serialization.WireFormat;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 
 /**
@@ -14,6 +36,12 @@ public class AuditLibProperties {
 
     private boolean consoleEnabled;
 
+    /**
+     * True to write the console output straight to the file descriptor of the standard output,
+     * bypassing System.out and its redirections.
+     */
+    private boolean consoleDirect;
+
     private boolean fileEnabled;
 
     private boolean kafkaLogEnabled;
@@ -22,4 +50,413 @@ public class AuditLibProperties {
 
     private String filePath;
 
+    private final Kafka kafka = new Kafka();
+
+    private final Dispatch dispatch = new Dispatch();
+
+    private final Journal journal = new Journal();
+
+    private final Metrics metrics = new Metrics();
+
+    private final Rendering rendering = new Rendering();
+
+    private final Sampling sampling = new Sampling();
+
+    private final Redaction redaction = new Redaction();
+
+    private final Weaving weaving = new Weaving();
+
+    private final Latency latency = new Latency();
+
+    private final Coalescing coalescing = new Coalescing();
+
+    private final Http http = new Http();
+
+    private final File file = new File();
+
+    private final Async async = new Async();
+
+    /**
+     * Properties of the kafka producing, prefixed with audit-lib-spring-boot-starter.kafka
+     */
+    @Data
+    public static class Kafka {
+
+        /**
+         * Number of long-lived transactional producers, each one gets its own transactional id.
+         */
+        private int producerPoolSize = 2;
+
+        /**
+         * BINARY for the versioned binary format, TEXT to keep the legacy toString() of the message map.
+         */
+        private WireFormat wireFormat = WireFormat.BINARY;
+
+        /**
+         * Strategy of the record keys, records have no keys by default.
+         * Methods can use one of their arguments as the key with {@link com.onedlvb.advice.annotation.AuditLog#keyArg()}.
+         */
+        private KeyStrategy keyStrategy;
+
+        private final Batch batch = new Batch();
+
+    }
+
+    /**
+     * Properties of the micro-batching, prefixed with audit-lib-spring-boot-starter.kafka.batch
+     * Batches are collected by the dispatcher threads, so they take effect with dispatch.mode=async.
+     */
+    @Data
+    public static class Batch {
+
+        /**
+         * True to send several events in a single transaction.
+         */
+        private boolean enabled;
+
+        /**
+         * Maximum number of events in one transaction.
+         */
+        private int maxRecords = 500;
+
+        /**
+         * Maximum size of messages in one transaction.
+         */
+        private DataSize maxBytes = DataSize.ofMegabytes(1);
+
+        /**
+         * How long to wait for more events before an incomplete batch is sent.
+         */
+        private Duration linger = Duration.ofMillis(20);
+
+    }
+
+    /**
+     * Properties of the audit events dispatching, prefixed with audit-lib-spring-boot-starter.dispatch
+     */
+    @Data
+    public static class Dispatch {
+
+        /**
+         * SYNC to send events on the thread of the audited method, ASYNC to send them by dispatcher threads.
+         */
+        private DispatchMode mode = DispatchMode.SYNC;
+
+        /**
+         * Maximum number of events waiting to be sent.
+         */
+        private int queueCapacity = 8192;
+
+        /**
+         * What to do with an event when the queue is full.
+         */
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+        /**
+         * Number of dispatcher threads. Every thread has its own part of the queue, events of one key are sent
+         * by the same thread, so they stay in order.
+         */
+        private int threads = 1;
+
+        /**
+         * How long the queue is flushed on shutdown.
+         */
+        private Duration shutdownTimeout = Duration.ofSeconds(5);
+
+    }
+
+    /**
+     * Properties of the journal of events not sent to the kafka, prefixed with audit-lib-spring-boot-starter.journal
+     */
+    @Data
+    public static class Journal {
+
+        /**
+         * True to store events in the journal while the broker is unavailable.
+         */
+        private boolean enabled;
+
+        /**
+         * Directory of the journal segment files.
+         */
+        private String directory = "audit-journal";
+
+        /**
+         * Size of one segment file.
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(16);
+
+        /**
+         * Maximum number of segment files, events are rejected when all of them are full.
+         */
+        private int maxSegments = 8;
+
+        /**
+         * Maximum number of journaled events sent in one transaction.
+         */
+        private int replayBatchSize = 500;
+
+        /**
+         * How long to wait before the next attempt to replay the journal.
+         */
+        private Duration replayInterval = Duration.ofSeconds(1);
+
+    }
+
+    /**
+     * Properties of the rendering of method args and returned values, prefixed with audit-lib-spring-boot-starter.rendering
+     * Longer renderings are cut off and the event is marked as truncated.
+     */
+    @Data
+    public static class Rendering {
+
+        /**
+         * Maximum number of characters of the args or of the returned value.
+         */
+        private int maxChars = BoundedRenderer.DEFAULT_MAX_CHARS;
+
+        /**
+         * Maximum number of rendered elements of an array, a collection or a map.
+         */
+        private int maxElements = BoundedRenderer.DEFAULT_MAX_ELEMENTS;
+
+        /**
+         * Maximum nesting of arrays, collections and maps.
+         */
+        private int maxDepth = BoundedRenderer.DEFAULT_MAX_DEPTH;
+
+    }
+
+    /**
+     * Properties of the redaction of rendered values, prefixed with audit-lib-spring-boot-starter.redaction
+     * Fields annotated with {@link com.onedlvb.advice.annotation.Redact} are redacted as well.
+     */
+    @Data
+    public static class Redaction {
+
+        /**
+         * Names of the fields and of the map keys redacted in every class, e.g. password, cardNumber.
+         */
+        private Set<String> fields = new HashSet<>();
+
+        /**
+         * Replacement of the redacted values.
+         */
+        private String mask = Redactor.DEFAULT_MASK;
+
+    }
+
+    /**
+     * Properties of the sampling of audited calls, prefixed with audit-lib-spring-boot-starter.sampling
+     */
+    @Data
+    public static class Sampling {
+
+        /**
+         * Sample rates from 0 to 1 by qualified names of methods, e.g. rates[com.example.PaymentService.pay]=0.01
+         * Override sampleRate of {@link com.onedlvb.advice.annotation.AuditLog} and
+         * {@link com.onedlvb.advice.annotation.AuditLogHttp}.
+         */
+        private Map<String, Double> rates = new HashMap<>();
+
+    }
+
+    /**
+     * Properties of the weaving of the audit advice, prefixed with audit-lib-spring-boot-starter.weaving
+     */
+    @Data
+    public static class Weaving {
+
+        /**
+         * ASPECTJ when the application is woven by aspectj-maven-plugin or runs with -javaagent:aspectjweaver.jar,
+         * so the audit advice is not applied by Spring proxies.
+         */
+        private WeavingMode mode = WeavingMode.PROXY;
+
+    }
+
+    /**
+     * Properties of the coalescing of identical events, prefixed with audit-lib-spring-boot-starter.coalescing
+     */
+    @Data
+    public static class Coalescing {
+
+        /**
+         * True to merge identical events sent to the Kafka within the window into one event with a count.
+         */
+        private boolean enabled;
+
+        /**
+         * How long identical events are merged after the first of them, the first event is delayed by up to 1.5 windows.
+         */
+        private Duration window = Duration.ofSeconds(1);
+
+        /**
+         * Maximum number of distinct events held at once.
+         */
+        private int capacity = 1024;
+
+    }
+
+    /**
+     * Properties of the HTTP audit, prefixed with audit-lib-spring-boot-starter.http
+     */
+    @Data
+    public static class Http {
+
+        /**
+         * True to send events of exchanges of methods annotated with AuditLogHttp to the kafka,
+         * requires kafka-log-enabled and dispatch.mode=async.
+         */
+        private boolean kafkaEnabled;
+
+        /**
+         * Kafka topic of the events of HTTP exchanges, spring.kafka.template.default-topic if not set.
+         */
+        private String topic;
+
+        private final Capture capture = new Capture();
+
+    }
+
+    /**
+     * Properties of the capture of HTTP bodies, prefixed with audit-lib-spring-boot-starter.http.capture
+     */
+    @Data
+    public static class Capture {
+
+        /**
+         * ADVICE to log rendered bodies of annotated controller methods, STREAM to log the first bytes of raw bodies
+         * of every exchange, teed by a servlet filter.
+         */
+        private BodyCaptureMode mode = BodyCaptureMode.ADVICE;
+
+        /**
+         * Maximum number of captured bytes of a body in STREAM mode.
+         */
+        private DataSize maxBytes = DataSize.ofBytes(BoundedRenderer.DEFAULT_MAX_CHARS);
+
+        /**
+         * Maximum number of idle capture buffers kept for reuse in STREAM mode.
+         */
+        private int poolSize = 64;
+
+    }
+
+    /**
+     * Properties of the file appender, prefixed with audit-lib-spring-boot-starter.file
+     */
+    @Data
+    public static class File {
+
+        /**
+         * CHANNEL to write the log file through a buffer, MMAP to write it to memory-mapped segments.
+         */
+        private FileMode mode = FileMode.CHANNEL;
+
+        /**
+         * Size of the buffer the events are encoded into before they are written to the file.
+         */
+        private DataSize bufferSize = DataSize.ofBytes(CustomFileAppender.DEFAULT_BUFFER_SIZE);
+
+        /**
+         * How long events can stay in the buffer before they are written to the file.
+         */
+        private Duration flushInterval = Duration.ofMillis(CustomFileAppender.DEFAULT_FLUSH_INTERVAL_MS);
+
+        /**
+         * BUFFERED to write events by size and time, WRITE_THROUGH to write every event right away,
+         * FSYNC to also force them to the disk on every flush. In the MMAP mode every event is written right away,
+         * so WRITE_THROUGH is the same as BUFFERED.
+         */
+        private FileDurability durability = FileDurability.BUFFERED;
+
+        /**
+         * Size the log file is rolled over into a segment at, pre-allocated in the MMAP mode, at most 2GB.
+         */
+        private DataSize segmentSize = DataSize.ofBytes(MappedSegmentFileAppender.DEFAULT_SEGMENT_SIZE);
+
+        /**
+         * How long events are written to the log file before it is rolled over into a segment.
+         */
+        private Duration rollInterval = Duration.ofMillis(MappedSegmentFileAppender.DEFAULT_ROLL_INTERVAL_MS);
+
+        /**
+         * GZIP to compress closed segments in the background, NONE to keep them as they were written.
+         */
+        private FileCompression compression = FileCompression.GZIP;
+
+        /**
+         * Age after which closed segments are deleted, segments of any age are kept if not set.
+         */
+        private Duration maxAge;
+
+        /**
+         * Total size of closed segments after which the oldest ones are deleted, segments of any size are kept if not set.
+         */
+        private DataSize maxTotalSize;
+
+    }
+
+    /**
+     * Properties of the asynchronous console and file output, prefixed with audit-lib-spring-boot-starter.async
+     */
+    @Data
+    public static class Async {
+
+        /**
+         * True to hand events to the console and file appenders on a thread of a ring buffer.
+         */
+        private boolean enabled;
+
+        /**
+         * Number of slots of the ring buffer, rounded up to a power of two.
+         */
+        private int bufferSize = RingBufferAsyncAppender.DEFAULT_BUFFER_SIZE;
+
+        /**
+         * BLOCKING, SLEEPING, YIELDING or BUSY_SPIN, how the thread of the ring buffer waits for events.
+         */
+        private WaitStrategy waitStrategy = WaitStrategy.BLOCKING;
+
+        /**
+         * BLOCK or DROP_NEWEST, what happens with an event when the ring buffer is full.
+         */
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+        /**
+         * How long the events left in the ring buffer are appended on shutdown.
+         */
+        private Duration shutdownTimeout = Duration.ofSeconds(5);
+
+    }
+
+    /**
+     * Properties of the latency histograms, prefixed with audit-lib-spring-boot-starter.latency
+     * Histograms are exposed by the actuator endpoint auditlatency when the actuator is on the classpath.
+     */
+    @Data
+    public static class Latency {
+
+        /**
+         * False to not record latencies of annotated methods and endpoints.
+         */
+        private boolean enabled = true;
+
+    }
+
+    /**
+     * Properties of the metrics, prefixed with audit-lib-spring-boot-starter.metrics
+     * Metrics are registered only when the application has a Micrometer MeterRegistry.
+     */
+    @Data
+    public static class Metrics {
+
+        /**
+         * False to not register metrics of the audit path.
+         */
+        private boolean enabled = true;
+
+    }
+
 }
@@ -1,14 +1,30 @@
 package com.onedlvb.config;
 
 import com.onedlvb.advice.AuditLogAspect;
-import com.onedlvb.advice.CustomRequestBodyAdvice;
-import com.onedlvb.advice.CustomResponseBodyAdvice;
+import com.onedlvb.advice.BoundedRenderer;
+import com.onedlvb.advice.WovenAuditLogAspect;
 import com.onedlvb.advice.annotation.AuditLog;
 import com.onedlvb.advice.annotation.AuditLogHttp;
 import com.onedlvb.appender.CustomConsoleAppender;
 import com.onedlvb.appender.CustomFileAppender;
-import com.onedlvb.interceptor.HttpInterceptor;
+import com.onedlvb.appender.FileMode;
+import com.onedlvb.appender.MappedSegmentFileAppender;
+import com.onedlvb.appender.RingBufferAsyncAppender;
+import com.onedlvb.coalescing.EventCoalescer;
+import com.onedlvb.dispatch.AuditDispatcher;
+import com.onedlvb.interceptor.BodyBufferPool;
+import com.onedlvb.journal.AuditJournal;
+import com.onedlvb.journal.JournalReplayer;
 import com.onedlvb.kafka.AuditProducer;
+import com.onedlvb.kafka.TransactionalProducerFactory;
+import com.onedlvb.kafka.TransactionalProducerPool;
+import com.onedlvb.latency.LatencyRegistry;
+import com.onedlvb.metrics.AuditMetrics;
+import com.onedlvb.redaction.Redactor;
+import com.onedlvb.serialization.AuditEventSerializer;
+import com.onedlvb.serialization.BinaryAuditEventSerializer;
+import com.onedlvb.serialization.LegacyTextAuditEventSerializer;
+import com.onedlvb.serialization.WireFormat;
 import lombok.NonNull;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
@@ -16,18 +32,20 @@ import org.apache.logging.log4j.core.Appender;
 import org.apache.logging.log4j.core.LoggerContext;
 import org.apache.logging.log4j.core.config.LoggerConfig;
 import org.apache.logging.log4j.core.layout.PatternLayout;
+import org.aspectj.lang.Aspects;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
-import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
-import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
-import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.io.IOException;
+import java.nio.file.Path;
 
 /**
  * Class for autoconfiguring Spring Starter
@@ -36,7 +54,29 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
  *     <li>To turn on file logging set audit-lib-spring-boot-starter.file-enabled=true</li>
  *     <li>To turn on messaging to kafka set audit-lib-spring-boot-starter.kafka-log-enabled=true</li>
  *     <li>Set up the path for logs: audit-lib-spring-boot-starter.file-path=...</li>
+ *     <li>To write every log event to the file right away set audit-lib-spring-boot-starter.file.durability=write-through</li>
+ *     <li>To write the log file to memory-mapped segments set audit-lib-spring-boot-starter.file.mode=mmap</li>
+ *     <li>To write console and file output on a thread of a ring buffer set audit-lib-spring-boot-starter.async.enabled=true</li>
+ *     <li>To delete old segments of the log file set audit-lib-spring-boot-starter.file.max-age=... or file.max-total-size=...</li>
  *     <li>Set up the transactional id: audit-lib-spring-boot-starter.kafka-transactional-id=yourID</li>
+ *     <li>Set up the number of pooled producers: audit-lib-spring-boot-starter.kafka.producer-pool-size=2</li>
+ *     <li>To send kafka messages off the request thread set audit-lib-spring-boot-starter.dispatch.mode=async</li>
+ *     <li>To group kafka messages into transactions set audit-lib-spring-boot-starter.kafka.batch.enabled=true</li>
+ *     <li>To keep the legacy text format of kafka messages set audit-lib-spring-boot-starter.kafka.wire-format=text</li>
+ *     <li>To store kafka messages on the disk while the broker is unavailable set audit-lib-spring-boot-starter.journal.enabled=true</li>
+ *     <li>To key kafka messages by the service or the method set audit-lib-spring-boot-starter.kafka.key-strategy=service|method</li>
+ *     <li>To turn off metrics of the audit path set audit-lib-spring-boot-starter.metrics.enabled=false</li>
+ *     <li>To limit the size of rendered args and returned values set audit-lib-spring-boot-starter.rendering.max-chars=...</li>
+ *     <li>To mask fields of audited values set audit-lib-spring-boot-starter.redaction.fields=password,cardNumber</li>
+ *     <li>To audit a share of calls of a method set audit-lib-spring-boot-starter.sampling.rates[qualified.method.name]=0.01</li>
+ *     <li>To merge identical kafka messages within a window set audit-lib-spring-boot-starter.coalescing.enabled=true</li>
+ *     <li>To turn off latency histograms of annotated methods and endpoints set audit-lib-spring-boot-starter.latency.enabled=false</li>
+ *     <li>To send events of HTTP exchanges to their own kafka topic set audit-lib-spring-boot-starter.http.kafka-enabled=true
+ *     and audit-lib-spring-boot-starter.http.topic=...</li>
+ *     <li>WebFlux applications are audited by a web filter when spring-boot-starter-web is excluded or
+ *     spring.main.web-application-type=reactive</li>
+ *     <li>To log the first bytes of raw HTTP bodies teed from the servlet streams set audit-lib-spring-boot-starter.http.capture.mode=stream</li>
+ *     <li>To audit methods woven by AspectJ instead of Spring proxies set audit-lib-spring-boot-starter.weaving.mode=aspectj</li>
  * </ul>
  * Configure these variables in application.properties file.
  * @author Matushkin Anton
@@ -44,9 +84,8 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 @Configuration
 @EnableAspectJAutoProxy
 @EnableConfigurationProperties(AuditLibProperties.class)
-@AutoConfigureAfter(WebMvcAutoConfiguration.class)
 @ConditionalOnClass({AuditLog.class, AuditLogHttp.class})
-public class AuditLibSpringBootStarterAutoConfiguration implements WebMvcConfigurer {
+public class AuditLibSpringBootStarterAutoConfiguration {
 
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
@@ -54,37 +93,266 @@ public class AuditLibSpringBootStarterAutoConfiguration implements WebMvcConfigu
     @NonNull
     private final AuditLibProperties properties;
 
-    public AuditLibSpringBootStarterAutoConfiguration(@NonNull AuditLibProperties properties) {
+    /**
+     * Metrics registered by {@link AuditLibMetricsAutoConfiguration}, {@link AuditMetrics#NOOP} without a meter registry.
+     */
+    private final ObjectProvider<AuditMetrics> auditMetrics;
+
+    /**
+     * Coalescer of identical events, available with audit-lib-spring-boot-starter.coalescing.enabled=true
+     */
+    private final ObjectProvider<EventCoalescer> eventCoalescer;
+
+    /**
+     * Latency histograms, not available with audit-lib-spring-boot-starter.latency.enabled=false
+     */
+    private final ObjectProvider<LatencyRegistry> latencyRegistry;
+
+    public AuditLibSpringBootStarterAutoConfiguration(@NonNull AuditLibProperties properties,
+                                                      ObjectProvider<AuditMetrics> auditMetrics,
+                                                      ObjectProvider<LatencyRegistry> latencyRegistry,
+                                                      ObjectProvider<EventCoalescer> eventCoalescer) {
         this.properties = properties;
+        this.auditMetrics = auditMetrics;
+        this.latencyRegistry = latencyRegistry;
+        this.eventCoalescer = eventCoalescer;
     }
 
-    @Bean
+    @Bean(destroyMethod = "close")
     @ConditionalOnMissingBean
-    public AuditLogAspect auditLogAspect() {
+    @ConditionalOnProperty(prefix = "audit-lib-spring-boot-starter.weaving", name = "mode", havingValue = "proxy", matchIfMissing = true)
+    public AuditLogAspect auditLogAspect(AuditProducer auditProducer,
+                                         ObjectProvider<AuditDispatcher> auditDispatcher,
+                                         BoundedRenderer auditRenderer) {
         configureLoggers();
-        return new AuditLogAspect(auditProducer(), properties);
+        return createAuditLogAspect(auditProducer, auditDispatcher, auditRenderer);
+    }
+
+    /**
+     * Aspect woven into the audited classes by AspectJ, replaces the Spring proxies of {@link #auditLogAspect}.
+     * The aspect instance is created by AspectJ, the audit is delegated to an {@link AuditLogAspect} which is not a bean,
+     * so Spring does not proxy the annotated methods again. Aspects compiled by AspectJ are not turned into Spring advisors.
+     * @throws IllegalStateException if the application is woven neither at compile time nor at load time
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "audit-lib-spring-boot-starter.weaving", name = "mode", havingValue = "aspectj")
+    public WovenAuditLogAspect wovenAuditLogAspect(AuditProducer auditProducer,
+                                                   ObjectProvider<AuditDispatcher> auditDispatcher,
+                                                   BoundedRenderer auditRenderer,
+                                                   AutowireCapableBeanFactory beanFactory) {
+        if (!Aspects.hasAspect(WovenAuditLogAspect.class)) {
+            throw new IllegalStateException("WovenAuditLogAspect is not woven, build the application with aspectj-maven-plugin "
+                    + "or run it with -javaagent:aspectjweaver.jar, or set audit-lib-spring-boot-starter.weaving.mode=proxy");
+        }
+        configureLoggers();
+        AuditLogAspect delegate = createAuditLogAspect(auditProducer, auditDispatcher, auditRenderer);
+        beanFactory.autowireBean(delegate);
+        WovenAuditLogAspect wovenAuditLogAspect = Aspects.aspectOf(WovenAuditLogAspect.class);
+        wovenAuditLogAspect.setDelegate(delegate);
+        return wovenAuditLogAspect;
+    }
+
+    /**
+     * Latency histograms of annotated methods and endpoints, exposed by {@link AuditLibLatencyAutoConfiguration}.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "audit-lib-spring-boot-starter.latency", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public LatencyRegistry latencyRegistry() {
+        return new LatencyRegistry();
     }
 
+    /**
+     * Renderer of method args, returned values and HTTP bodies limited by audit-lib-spring-boot-starter.rendering.
+     */
     @Bean
     @ConditionalOnMissingBean
-    public CustomResponseBodyAdvice customResponseBodyAdvice() {
-        return new CustomResponseBodyAdvice();
+    public BoundedRenderer auditRenderer(Redactor auditRedactor) {
+        AuditLibProperties.Rendering rendering = properties.getRendering();
+        return new BoundedRenderer(rendering.getMaxChars(), rendering.getMaxElements(), rendering.getMaxDepth(), auditRedactor);
     }
 
+    /**
+     * Redactor of fields annotated with @Redact and of fields named in audit-lib-spring-boot-starter.redaction.fields.
+     */
     @Bean
     @ConditionalOnMissingBean
-    public CustomRequestBodyAdvice customRequestBodyAdvice() {
-        return new CustomRequestBodyAdvice();
+    public Redactor auditRedactor() {
+        AuditLibProperties.Redaction redaction = properties.getRedaction();
+        return new Redactor(redaction.getFields(), redaction.getMask());
     }
 
     @Bean
-    public AuditProducer auditProducer() {
-        return new AuditProducer(properties);
+    public AuditProducer auditProducer(TransactionalProducerPool transactionalProducerPool,
+                                       AuditEventSerializer auditEventSerializer,
+                                       ObjectProvider<AuditJournal> auditJournal) {
+        return new AuditProducer(
+                transactionalProducerPool,
+                auditEventSerializer,
+                auditJournal.getIfAvailable(),
+                auditMetrics.getIfAvailable(() -> AuditMetrics.NOOP));
+    }
+
+    /**
+     * Journal of kafka messages not sent because the broker is unavailable.
+     * Segments left by the previous run are recovered on startup.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "audit-lib-spring-boot-starter.journal", name = "enabled", havingValue = "true")
+    public AuditJournal auditJournal() throws IOException {
+        AuditLibProperties.Journal journal = properties.getJournal();
+        return new AuditJournal(
+                Path.of(journal.getDirectory()),
+                Math.toIntExact(journal.getSegmentSize().toBytes()),
+                journal.getMaxSegments());
     }
 
-    @Override
-    public void addInterceptors(InterceptorRegistry registry) {
-        registry.addInterceptor(new HttpInterceptor());
+    /**
+     * Sends journaled kafka messages once the broker is reachable again.
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "audit-lib-spring-boot-starter.journal", name = "enabled", havingValue = "true")
+    public JournalReplayer journalReplayer(AuditProducer auditProducer, AuditJournal auditJournal) {
+        AuditLibProperties.Journal journal = properties.getJournal();
+        return new JournalReplayer(
+                auditProducer,
+                auditJournal,
+                journal.getReplayBatchSize(),
+                journal.getReplayInterval().toMillis());
+    }
+
+    /**
+     * Serializer of the format configured by audit-lib-spring-boot-starter.kafka.wire-format.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public AuditEventSerializer auditEventSerializer() {
+        if (properties.getKafka().getWireFormat() == WireFormat.TEXT) {
+            return new LegacyTextAuditEventSerializer();
+        }
+        return new BinaryAuditEventSerializer();
+    }
+
+    /**
+     * Pool of transactional producers, closed together with the context.
+     * Transactional ids of the producers are audit-lib-spring-boot-starter.kafka-transactional-id
+     * with the index of the producer appended.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    public TransactionalProducerPool transactionalProducerPool() {
+        String transactionalIdPrefix = "default-transactional-id";
+        if (properties.getKafkaTransactionalId() != null) {
+            transactionalIdPrefix = properties.getKafkaTransactionalId();
+        }
+        return new TransactionalProducerPool(
+                properties.getKafka().getProducerPoolSize(),
+                transactionalIdPrefix,
+                new TransactionalProducerFactory(bootstrapServers),
+                TransactionalProducerFactory.MAX_BLOCK_MS);
+    }
+
+    /**
+     * Dispatcher of the asynchronous mode, flushes its queue before the producers are closed.
+     * With audit-lib-spring-boot-starter.kafka.batch.enabled=true it sends events in batches.
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "audit-lib-spring-boot-starter.dispatch", name = "mode", havingValue = "async")
+    public AuditDispatcher auditDispatcher(AuditProducer auditProducer, AuditEventSerializer auditEventSerializer) {
+        AuditLibProperties.Dispatch dispatch = properties.getDispatch();
+        AuditLibProperties.Batch batch = properties.getKafka().getBatch();
+        if (!batch.isEnabled()) {
+            return new AuditDispatcher(
+                    auditProducer,
+                    auditEventSerializer,
+                    dispatch.getQueueCapacity(),
+                    dispatch.getOverflowPolicy(),
+                    dispatch.getThreads(),
+                    dispatch.getShutdownTimeout().toMillis());
+        }
+        return new AuditDispatcher(
+                auditProducer,
+                auditEventSerializer,
+                dispatch.getQueueCapacity(),
+                dispatch.getOverflowPolicy(),
+                dispatch.getThreads(),
+                dispatch.getShutdownTimeout().toMillis(),
+                batch.getMaxRecords(),
+                batch.getMaxBytes().toBytes(),
+                batch.getLinger().toMillis());
+    }
+
+    /**
+     * Coalescer merging identical events within audit-lib-spring-boot-starter.coalescing.window.
+     * Coalesced events are handed to the dispatcher in asynchronous mode and sent by the producer otherwise,
+     * the coalescer is closed first, so held events are sent before the dispatcher and the producers are closed.
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "audit-lib-spring-boot-starter.coalescing", name = "enabled", havingValue = "true")
+    public EventCoalescer eventCoalescer(AuditProducer auditProducer, ObjectProvider<AuditDispatcher> auditDispatcher) {
+        AuditLibProperties.Coalescing coalescing = properties.getCoalescing();
+        AuditDispatcher dispatcher = auditDispatcher.getIfAvailable();
+        EventCoalescer.Sink sink = dispatcher != null ? dispatcher::dispatch : auditProducer::sendEvent;
+        return new EventCoalescer(sink, coalescing.getCapacity(), coalescing.getWindow().toMillis());
+    }
+
+    /**
+     * Events of HTTP exchanges are only handed to the coalescer or the dispatcher, so the thread of the exchange
+     * never waits for the broker.
+     *
+     * @return sink of the events of HTTP exchanges, null if they are not sent to the kafka
+     * @throws IllegalStateException if the events should be sent to the kafka without the asynchronous dispatcher
+     */
+    static EventCoalescer.Sink createHttpEventSink(AuditLibProperties properties,
+                                                   ObjectProvider<AuditDispatcher> auditDispatcher,
+                                                   ObjectProvider<EventCoalescer> eventCoalescer) {
+        if (!properties.isKafkaLogEnabled() || !properties.getHttp().isKafkaEnabled()) {
+            return null;
+        }
+        AuditDispatcher dispatcher = auditDispatcher.getIfAvailable();
+        if (dispatcher == null) {
+            throw new IllegalStateException("audit-lib-spring-boot-starter.http.kafka-enabled=true requires "
+                    + "audit-lib-spring-boot-starter.dispatch.mode=async");
+        }
+        EventCoalescer coalescer = eventCoalescer.getIfAvailable();
+        return coalescer != null ? coalescer::coalesce : dispatcher::dispatch;
+    }
+
+    /**
+     * @return audit-lib-spring-boot-starter.http.topic, the default topic if it is not set
+     */
+    static String resolveHttpTopic(AuditLibProperties properties, String defaultTopic) {
+        String topic = properties.getHttp().getTopic();
+        return topic != null && !topic.isBlank() ? topic : defaultTopic;
+    }
+
+    /**
+     * @return pool of the buffers of captured HTTP bodies limited by audit-lib-spring-boot-starter.http.capture
+     */
+    static BodyBufferPool createBodyBufferPool(AuditLibProperties properties) {
+        AuditLibProperties.Capture capture = properties.getHttp().getCapture();
+        return new BodyBufferPool(capture.getPoolSize(), Math.toIntExact(capture.getMaxBytes().toBytes()));
+    }
+
+    private AuditLogAspect createAuditLogAspect(AuditProducer auditProducer,
+                                                ObjectProvider<AuditDispatcher> auditDispatcher,
+                                                BoundedRenderer auditRenderer) {
+        return AuditLogAspect.builder()
+                .producer(auditProducer)
+                .properties(properties)
+                .dispatcher(auditDispatcher.getIfAvailable())
+                .keyStrategy(properties.getKafka().getKeyStrategy())
+                .metrics(auditMetrics.getIfAvailable(() -> AuditMetrics.NOOP))
+                .renderer(auditRenderer)
+                .sampleRates(properties.getSampling().getRates())
+                .latencies(latencyRegistry.getIfAvailable())
+                .coalescer(eventCoalescer.getIfAvailable())
+                .build();
     }
 
     /**
@@ -96,33 +364,105 @@ public class AuditLibSpringBootStarterAutoConfiguration implements WebMvcConfigu
         org.apache.logging.log4j.core.config.Configuration config = context.getConfiguration();
         LoggerConfig rootLoggerConfig = config.getRootLogger();
 
-        rootLoggerConfig.getAppenders().forEach((name, appender) -> rootLoggerConfig.removeAppender(name));
+        rootLoggerConfig.getAppenders().forEach((name, appender) -> {
+            rootLoggerConfig.removeAppender(name);
+            if (appender instanceof CustomFileAppender || appender instanceof MappedSegmentFileAppender
+                    || appender instanceof RingBufferAsyncAppender) {
+                // Writes the buffered or queued events of the previous configuration and closes its file
+                appender.stop();
+                config.getAppenders().remove(name, appender);
+            }
+        });
 
         if (properties.isConsoleEnabled()) {
-            Appender consoleAppender = CustomConsoleAppender
+            CustomConsoleAppender consoleAppender = CustomConsoleAppender
                     .createAppender(
                             "ConsoleAppender",
                             null,
                             PatternLayout.newBuilder().withPattern("%d{yyyy-MM-dd HH:mm:ss.SSS} [%t] %-5level %logger{36} - %msg%n").build(),
                             true,
                             null);
+            // Events handed over by the ring buffer are written once per batch
+            consoleAppender.setImmediateFlush(!properties.getAsync().isEnabled());
+            consoleAppender.setDirect(properties.isConsoleDirect());
             consoleAppender.start();
-            rootLoggerConfig.addAppender(consoleAppender, Level.ALL, null);
+            if (properties.getAsync().isEnabled()) {
+                addAsyncAppender(config, rootLoggerConfig, consoleAppender);
+            } else {
+                rootLoggerConfig.addAppender(consoleAppender, Level.ALL, null);
+            }
         }
 
         if (properties.isFileEnabled()) {
-            CustomFileAppender fileAppender = CustomFileAppender.createAppender(
-                    "FileAppender",
-                    null,
-                    PatternLayout.newBuilder().withPattern("%d{yyyy-MM-dd HH:mm:ss.SSS} [%t] %-5level %logger{36} - %msg%n").build(),
-                    true,
-                    null);
-            fileAppender.setPath(properties.getFilePath());
+            Appender fileAppender = properties.getFile().getMode() == FileMode.MMAP ? createMappedFileAppender() : createFileAppender();
             fileAppender.start();
-            rootLoggerConfig.addAppender(fileAppender, Level.ALL, null);
+            if (properties.getAsync().isEnabled()) {
+                addAsyncAppender(config, rootLoggerConfig, fileAppender);
+            } else {
+                // Appenders of the configuration are stopped with the logger context, so buffered events are written on shutdown
+                config.addAppender(fileAppender);
+                rootLoggerConfig.addAppender(fileAppender, Level.ALL, null);
+            }
         }
 
         context.updateLoggers();
     }
 
+    /**
+     * Wraps the appender into a {@link RingBufferAsyncAppender}, which stops the appender when it is stopped
+     * with the logger context.
+     */
+    private void addAsyncAppender(org.apache.logging.log4j.core.config.Configuration config, LoggerConfig rootLoggerConfig, Appender appender) {
+        AuditLibProperties.Async async = properties.getAsync();
+        RingBufferAsyncAppender asyncAppender = new RingBufferAsyncAppender(
+                "Async" + appender.getName(),
+                appender,
+                async.getBufferSize(),
+                async.getWaitStrategy(),
+                async.getOverflowPolicy(),
+                async.getShutdownTimeout().toMillis());
+        asyncAppender.start();
+        config.addAppender(asyncAppender);
+        rootLoggerConfig.addAppender(asyncAppender, Level.ALL, null);
+    }
+
+    private CustomFileAppender createFileAppender() {
+        CustomFileAppender fileAppender = CustomFileAppender.createAppender(
+                "FileAppender",
+                null,
+                PatternLayout.newBuilder().withPattern("%d{yyyy-MM-dd HH:mm:ss.SSS} [%t] %-5level %logger{36} - %msg%n").build(),
+                true,
+                null);
+        AuditLibProperties.File file = properties.getFile();
+        fileAppender.setPath(properties.getFilePath());
+        fileAppender.setBufferSize(Math.toIntExact(file.getBufferSize().toBytes()));
+        fileAppender.setFlushIntervalMs(file.getFlushInterval().toMillis());
+        fileAppender.setDurability(file.getDurability());
+        fileAppender.setSegmentSize(file.getSegmentSize().toBytes());
+        fileAppender.setRollIntervalMs(file.getRollInterval().toMillis());
+        fileAppender.setCompression(file.getCompression());
+        fileAppender.setMaxAgeMs(file.getMaxAge() != null ? file.getMaxAge().toMillis() : 0L);
+        fileAppender.setMaxTotalSize(file.getMaxTotalSize() != null ? file.getMaxTotalSize().toBytes() : 0L);
+        return fileAppender;
+    }
+
+    private MappedSegmentFileAppender createMappedFileAppender() {
+        MappedSegmentFileAppender fileAppender = MappedSegmentFileAppender.createAppender(
+                "FileAppender",
+                null,
+                PatternLayout.newBuilder().withPattern("%d{yyyy-MM-dd HH:mm:ss.SSS} [%t] %-5level %logger{36} - %msg%n").build(),
+                true,
+                null);
+        AuditLibProperties.File file = properties.getFile();
+        fileAppender.setPath(properties.getFilePath());
+        fileAppender.setSegmentSize(file.getSegmentSize().toBytes());
+        fileAppender.setRollIntervalMs(file.getRollInterval().toMillis());
+        fileAppender.setFlushIntervalMs(file.getFlushInterval().toMillis());
+        fileAppender.setDurability(file.getDurability());
+        fileAppender.setCompression(file.getCompression());
+        fileAppender.setMaxAgeMs(file.getMaxAge() != null ? file.getMaxAge().toMillis() : 0L);
+        fileAppender.setMaxTotalSize(file.getMaxTotalSize() != null ? file.getMaxTotalSize().toBytes() : 0L);
+        return fileAppender;
+    }
+
 }
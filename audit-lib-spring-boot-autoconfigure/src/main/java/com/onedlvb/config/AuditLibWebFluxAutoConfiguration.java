@@ -0,0 +1,69 @@
+package com.onedlvb.config;
+
+import com.onedlvb.coalescing.EventCoalescer;
+import com.onedlvb.dispatch.AuditDispatcher;
+import com.onedlvb.dispatch.OverflowPolicy;
+import com.onedlvb.interceptor.AuditWebFilter;
+import com.onedlvb.latency.LatencyRegistry;
+import com.onedlvb.metrics.AuditMetrics;
+import com.onedlvb.redaction.Redactor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.DispatcherHandler;
+
+/**
+ * Class for autoconfiguring the audit of HTTP exchanges of Spring WebFlux applications.
+ * Registers the {@link AuditWebFilter}, which captures the first audit-lib-spring-boot-starter.http.capture.max-bytes
+ * of the bodies of audited exchanges from their data buffers.
+ * Events of HTTP exchanges are handed to the dispatcher from the event loop, so with
+ * audit-lib-spring-boot-starter.http.kafka-enabled=true the dispatcher must drop events instead of waiting for the queue.
+ * @author Matushkin Anton
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@ConditionalOnClass(DispatcherHandler.class)
+@AutoConfigureAfter(AuditLibSpringBootStarterAutoConfiguration.class)
+public class AuditLibWebFluxAutoConfiguration {
+
+    @Value("${spring.application.name:}")
+    private String applicationName;
+
+    @Value("${spring.kafka.template.default-topic:}")
+    private String defaultTopic;
+
+    /**
+     * @throws IllegalStateException if events should be sent to the kafka by a dispatcher which blocks when its queue is full
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public AuditWebFilter auditWebFilter(AuditLibProperties properties,
+                                         ObjectProvider<AuditMetrics> auditMetrics,
+                                         ObjectProvider<LatencyRegistry> latencyRegistry,
+                                         ObjectProvider<EventCoalescer> eventCoalescer,
+                                         ObjectProvider<AuditDispatcher> auditDispatcher,
+                                         Redactor auditRedactor) {
+        EventCoalescer.Sink sink = AuditLibSpringBootStarterAutoConfiguration.createHttpEventSink(properties, auditDispatcher, eventCoalescer);
+        if (sink != null && properties.getDispatch().getOverflowPolicy() == OverflowPolicy.BLOCK) {
+            throw new IllegalStateException("audit-lib-spring-boot-starter.http.kafka-enabled=true on WebFlux requires "
+                    + "audit-lib-spring-boot-starter.dispatch.overflow-policy=drop-oldest or drop-newest, "
+                    + "so the event loop never waits for the queue");
+        }
+        return AuditWebFilter.builder()
+                .pool(AuditLibSpringBootStarterAutoConfiguration.createBodyBufferPool(properties))
+                .redactor(auditRedactor)
+                .metrics(auditMetrics.getIfAvailable(() -> AuditMetrics.NOOP))
+                .sampleRates(properties.getSampling().getRates())
+                .latencies(latencyRegistry.getIfAvailable())
+                .serviceName(applicationName)
+                .topic(AuditLibSpringBootStarterAutoConfiguration.resolveHttpTopic(properties, defaultTopic))
+                .sink(sink)
+                .build();
+    }
+
+}
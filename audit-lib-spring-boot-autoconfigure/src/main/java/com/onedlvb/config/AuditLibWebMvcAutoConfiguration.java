@@ -0,0 +1,111 @@
+package com.onedlvb.config;
+
+import com.onedlvb.advice.BoundedRenderer;
+import com.onedlvb.advice.CustomRequestBodyAdvice;
+import com.onedlvb.advice.CustomResponseBodyAdvice;
+import com.onedlvb.coalescing.EventCoalescer;
+import com.onedlvb.dispatch.AuditDispatcher;
+import com.onedlvb.interceptor.BodyCaptureFilter;
+import com.onedlvb.interceptor.HttpInterceptor;
+import com.onedlvb.latency.LatencyRegistry;
+import com.onedlvb.metrics.AuditMetrics;
+import com.onedlvb.redaction.Redactor;
+import lombok.NonNull;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Class for autoconfiguring the audit of HTTP exchanges of Spring MVC applications.
+ * Registers the {@link HttpInterceptor} and the body advices, or the {@link BodyCaptureFilter}
+ * with audit-lib-spring-boot-starter.http.capture.mode=stream.
+ * Kept apart from {@link AuditLibSpringBootStarterAutoConfiguration}, so WebFlux applications without Spring MVC
+ * on the classpath are audited by {@link AuditLibWebFluxAutoConfiguration}.
+ * @author Matushkin Anton
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnClass(WebMvcConfigurer.class)
+@AutoConfigureAfter({WebMvcAutoConfiguration.class, AuditLibSpringBootStarterAutoConfiguration.class})
+public class AuditLibWebMvcAutoConfiguration implements WebMvcConfigurer {
+
+    @Value("${spring.application.name:}")
+    private String applicationName;
+
+    @Value("${spring.kafka.template.default-topic:}")
+    private String defaultTopic;
+
+    @NonNull
+    private final AuditLibProperties properties;
+
+    private final ObjectProvider<AuditMetrics> auditMetrics;
+
+    private final ObjectProvider<LatencyRegistry> latencyRegistry;
+
+    private final ObjectProvider<EventCoalescer> eventCoalescer;
+
+    private final ObjectProvider<AuditDispatcher> auditDispatcher;
+
+    public AuditLibWebMvcAutoConfiguration(@NonNull AuditLibProperties properties,
+                                           ObjectProvider<AuditMetrics> auditMetrics,
+                                           ObjectProvider<LatencyRegistry> latencyRegistry,
+                                           ObjectProvider<EventCoalescer> eventCoalescer,
+                                           ObjectProvider<AuditDispatcher> auditDispatcher) {
+        this.properties = properties;
+        this.auditMetrics = auditMetrics;
+        this.latencyRegistry = latencyRegistry;
+        this.eventCoalescer = eventCoalescer;
+        this.auditDispatcher = auditDispatcher;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "audit-lib-spring-boot-starter.http.capture", name = "mode", havingValue = "advice", matchIfMissing = true)
+    public CustomResponseBodyAdvice customResponseBodyAdvice(BoundedRenderer auditRenderer) {
+        return new CustomResponseBodyAdvice(auditRenderer);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "audit-lib-spring-boot-starter.http.capture", name = "mode", havingValue = "advice", matchIfMissing = true)
+    public CustomRequestBodyAdvice customRequestBodyAdvice(BoundedRenderer auditRenderer) {
+        return new CustomRequestBodyAdvice(auditRenderer);
+    }
+
+    /**
+     * Filter teeing the first audit-lib-spring-boot-starter.http.capture.max-bytes of raw HTTP bodies into pooled buffers,
+     * replaces the body advices. Buffers are released by the {@link HttpInterceptor} when the exchange is completed.
+     */
+    @Bean
+    @ConditionalOnMissingBean(name = "bodyCaptureFilter")
+    @ConditionalOnProperty(prefix = "audit-lib-spring-boot-starter.http.capture", name = "mode", havingValue = "stream")
+    public FilterRegistrationBean<BodyCaptureFilter> bodyCaptureFilter(Redactor auditRedactor) {
+        BodyCaptureFilter filter = new BodyCaptureFilter(AuditLibSpringBootStarterAutoConfiguration.createBodyBufferPool(properties), auditRedactor);
+        FilterRegistrationBean<BodyCaptureFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setOrder(BodyCaptureFilter.ORDER);
+        return registration;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(HttpInterceptor.builder()
+                .metrics(auditMetrics.getIfAvailable(() -> AuditMetrics.NOOP))
+                .sampleRates(properties.getSampling().getRates())
+                .latencies(latencyRegistry.getIfAvailable())
+                .serviceName(applicationName)
+                .topic(AuditLibSpringBootStarterAutoConfiguration.resolveHttpTopic(properties, defaultTopic))
+                .sink(AuditLibSpringBootStarterAutoConfiguration.createHttpEventSink(properties, auditDispatcher, eventCoalescer))
+                .build());
+    }
+
+}
@@ -0,0 +1,330 @@
+package com.onedlvb.dispatch;
+
+import com.onedlvb.advice.exception.KafkaSendMessageException;
+import com.onedlvb.event.AuditEvent;
+import com.onedlvb.kafka.AuditProducer;
+import com.onedlvb.serialization.AuditEventSerializer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dispatches audit events to the Kafka off the thread of the audited method.
+ * <p>
+ * Every dedicated dispatcher thread drains its own bounded queue to the {@link AuditProducer}, the capacity is split
+ * evenly between the queues. Events with a key always go to the queue chosen by the hash of the key, so events
+ * of one key are sent in the order they were dispatched, events without a key are spread over the queues in turn.
+ * When the queue of an event is full the {@link OverflowPolicy} decides what happens with the event.
+ * With batching every dispatcher thread groups up to maxBatchRecords events (or maxBatchBytes of serialized events)
+ * waiting at most lingerMs for more events, and sends them in a single Kafka transaction.
+ * On {@link #close()} the dispatcher threads send everything left in their queues before they stop,
+ * events dispatched after that are dropped.
+ * @author Matushkin Anton
+ */
+public class AuditDispatcher implements AutoCloseable {
+
+    private static final Logger LOGGER = LogManager.getLogger(AuditDispatcher.class);
+
+    private static final long POLL_TIMEOUT_MS = 100L;
+
+    private final List<BlockingQueue<PendingEvent>> queues;
+
+    private final AtomicInteger nextQueue = new AtomicInteger();
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final AuditProducer producer;
+
+    private final AuditEventSerializer serializer;
+
+    private final Thread[] dispatcherThreads;
+
+    private final long shutdownTimeoutMs;
+
+    private final int maxBatchRecords;
+
+    private final long maxBatchBytes;
+
+    private final long lingerNs;
+
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    private final AtomicLong failedEvents = new AtomicLong();
+
+    private volatile boolean running;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates dispatcher sending every event in its own transaction.
+     * <p>
+     * @param producer          producer sending the events
+     * @param serializer        serializer converting events to record values
+     * @param capacity          maximum number of queued events, split between the queues of the dispatcher threads
+     * @param overflowPolicy    behaviour when the queue is full
+     * @param threads           number of dispatcher threads
+     * @param shutdownTimeoutMs how long {@link #close()} waits for the queue to be flushed
+     */
+    public AuditDispatcher(AuditProducer producer,
+                           AuditEventSerializer serializer,
+                           int capacity,
+                           OverflowPolicy overflowPolicy,
+                           int threads,
+                           long shutdownTimeoutMs) {
+        this(producer, serializer, capacity, overflowPolicy, threads, shutdownTimeoutMs, 1, Long.MAX_VALUE, 0L);
+    }
+
+    /**
+     * @param producer          producer sending the events
+     * @param serializer        serializer converting events to record values
+     * @param capacity          maximum number of queued events, split between the queues of the dispatcher threads
+     * @param overflowPolicy    behaviour when the queue is full
+     * @param threads           number of dispatcher threads
+     * @param shutdownTimeoutMs how long {@link #close()} waits for the queue to be flushed
+     * @param maxBatchRecords   maximum number of events sent in one transaction
+     * @param maxBatchBytes     maximum size of serialized events sent in one transaction
+     * @param lingerMs          how long a dispatcher thread waits for more events before sending an incomplete batch
+     */
+    public AuditDispatcher(AuditProducer producer,
+                           AuditEventSerializer serializer,
+                           int capacity,
+                           OverflowPolicy overflowPolicy,
+                           int threads,
+                           long shutdownTimeoutMs,
+                           int maxBatchRecords,
+                           long maxBatchBytes,
+                           long lingerMs) {
+        if (capacity <= 0 || threads <= 0 || maxBatchRecords <= 0) {
+            throw new IllegalArgumentException("Dispatcher capacity, number of threads and batch size must be greater than 0");
+        }
+        this.producer = producer;
+        this.serializer = serializer;
+        this.queues = new ArrayList<>(threads);
+        this.overflowPolicy = overflowPolicy;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.maxBatchRecords = maxBatchRecords;
+        this.maxBatchBytes = maxBatchBytes;
+        this.lingerNs = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.dispatcherThreads = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            BlockingQueue<PendingEvent> queue = new ArrayBlockingQueue<>(Math.max(1, capacity / threads));
+            queues.add(queue);
+            dispatcherThreads[i] = new Thread(() -> drain(queue), "audit-dispatcher-" + i);
+            dispatcherThreads[i].setDaemon(true);
+        }
+    }
+
+    /**
+     * Starts dispatcher threads.
+     */
+    public void start() {
+        running = true;
+        for (Thread thread : dispatcherThreads) {
+            thread.start();
+        }
+    }
+
+    /**
+     * Hands the event to the dispatcher threads. Never waits for the Kafka.
+     * Can wait for free space in the queue only with {@link OverflowPolicy#BLOCK}, until the dispatcher is closed.
+     * <p>
+     * @param topic the Kafka topic to which the event should be sent
+     * @param event event to send
+     */
+    public void dispatch(String topic, AuditEvent event) {
+        if (closed) {
+            droppedEvents.incrementAndGet();
+            return;
+        }
+        PendingEvent pendingEvent = new PendingEvent(topic, event);
+        BlockingQueue<PendingEvent> queue = queueOf(event);
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                try {
+                    while (!queue.offer(pendingEvent, POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                        if (closed) {
+                            droppedEvents.incrementAndGet();
+                            return;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    droppedEvents.incrementAndGet();
+                    return;
+                }
+            }
+            case DROP_OLDEST -> {
+                while (!queue.offer(pendingEvent)) {
+                    if (queue.poll() != null) {
+                        droppedEvents.incrementAndGet();
+                    }
+                }
+            }
+            case DROP_NEWEST -> {
+                if (!queue.offer(pendingEvent)) {
+                    droppedEvents.incrementAndGet();
+                }
+            }
+            default -> throw new IllegalStateException("Unknown overflow policy: " + overflowPolicy);
+        }
+        // The dispatcher may have been closed while the event was queued, whoever removes it counts it
+        if (closed && queue.remove(pendingEvent)) {
+            droppedEvents.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return number of events waiting in the queues
+     */
+    public int getQueueSize() {
+        int size = 0;
+        for (BlockingQueue<PendingEvent> queue : queues) {
+            size += queue.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return number of events dropped because of a full queue or a closed dispatcher
+     */
+    public long getDroppedCount() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * @return number of events that failed to be serialized or sent
+     */
+    public long getFailedCount() {
+        return failedEvents.get();
+    }
+
+    /**
+     * Stops accepting new work and waits until dispatcher threads flush the queue.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        running = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMs);
+        for (Thread thread : dispatcherThreads) {
+            try {
+                thread.join(Math.max(1L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        int lost = 0;
+        for (BlockingQueue<PendingEvent> queue : queues) {
+            while (queue.poll() != null) {
+                lost++;
+            }
+        }
+        if (lost > 0) {
+            droppedEvents.addAndGet(lost);
+            LOGGER.warn("Audit dispatcher stopped with {} events not sent to kafka", lost);
+        }
+    }
+
+    /**
+     * @return queue of the thread sending the events of the key of the event, the next queue for events without a key
+     */
+    private BlockingQueue<PendingEvent> queueOf(AuditEvent event) {
+        if (queues.size() == 1) {
+            return queues.get(0);
+        }
+        String key = event.getKey();
+        int hash = key != null ? key.hashCode() : nextQueue.getAndIncrement();
+        return queues.get(Math.floorMod(hash, queues.size()));
+    }
+
+    private void drain(BlockingQueue<PendingEvent> queue) {
+        List<ProducerRecord<String, byte[]>> batch = List.of();
+        try {
+            while (running || !queue.isEmpty()) {
+                PendingEvent pendingEvent = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (pendingEvent != null) {
+                    // Every batch is a new list, the producer and the journal may keep the list they are given
+                    batch = new ArrayList<>(Math.min(maxBatchRecords, queue.size() + 1));
+                    fillBatch(queue, batch, pendingEvent);
+                    send(batch);
+                    batch = List.of();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(batch);
+        }
+    }
+
+    /**
+     * Collects events into the batch until it is full or the linger time is over.
+     * <p>
+     * @param queue queue of the dispatcher thread
+     * @param batch batch to fill
+     * @param first first event of the batch
+     */
+    private void fillBatch(BlockingQueue<PendingEvent> queue, List<ProducerRecord<String, byte[]>> batch, PendingEvent first)
+            throws InterruptedException {
+        long batchBytes = addToBatch(batch, first);
+        long lingerDeadline = System.nanoTime() + lingerNs;
+        while (batch.size() < maxBatchRecords && batchBytes < maxBatchBytes) {
+            PendingEvent next = queue.poll();
+            if (next == null) {
+                long remainingNs = lingerDeadline - System.nanoTime();
+                if (remainingNs <= 0 || !running) {
+                    return;
+                }
+                next = queue.poll(remainingNs, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    return;
+                }
+            }
+            batchBytes += addToBatch(batch, next);
+        }
+    }
+
+    /**
+     * Serializes the event on the dispatcher thread and adds it to the batch.
+     * <p>
+     * @return size of the serialized event in bytes
+     */
+    private long addToBatch(List<ProducerRecord<String, byte[]>> batch, PendingEvent pendingEvent) {
+        byte[] value;
+        try {
+            value = serializer.serialize(pendingEvent.event());
+        } catch (RuntimeException e) {
+            failedEvents.incrementAndGet();
+            LOGGER.error("Unable to serialize audit event, it is not dispatched", e);
+            return 0L;
+        }
+        batch.add(new ProducerRecord<>(pendingEvent.topic(), pendingEvent.event().getKey(), value));
+        return value.length;
+    }
+
+    private void send(List<ProducerRecord<String, byte[]>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            producer.sendMessages(batch);
+        } catch (KafkaSendMessageException e) {
+            failedEvents.addAndGet(batch.size());
+            LOGGER.warn("Unable to dispatch {} audit events to kafka: {}", batch.size(), e.getMessage());
+        } catch (RuntimeException e) {
+            failedEvents.addAndGet(batch.size());
+            LOGGER.error("Unable to dispatch {} audit events to kafka", batch.size(), e);
+        }
+    }
+
+    private record PendingEvent(String topic, AuditEvent event) {}
+
+}
@@ -0,0 +1,15 @@
+package com.onedlvb.dispatch;
+
+/**
+ * Enum for the ways audit events are handed to the Kafka
+ * Possible modes:
+ * {@link #SYNC} - the event is sent on the thread of the audited method,
+ * {@link #ASYNC} - the event is put into a bounded queue and sent by dispatcher threads.
+ * @author Matushkin Anton
+ */
+public enum DispatchMode {
+
+    SYNC,
+    ASYNC
+
+}
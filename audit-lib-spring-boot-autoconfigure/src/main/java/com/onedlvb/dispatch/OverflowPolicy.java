@@ -0,0 +1,17 @@
+package com.onedlvb.dispatch;
+
+/**
+ * Enum for the behaviour of {@link AuditDispatcher} when its queue is full
+ * Possible policies:
+ * {@link #BLOCK} - the audited method waits until there is free space in the queue,
+ * {@link #DROP_OLDEST} - the oldest queued event is dropped,
+ * {@link #DROP_NEWEST} - the new event is dropped.
+ * @author Matushkin Anton
+ */
+public enum OverflowPolicy {
+
+    BLOCK,
+    DROP_OLDEST,
+    DROP_NEWEST
+
+}
@@ -0,0 +1,121 @@
+package com.onedlvb.event;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable audit event of a method annotated with {@link com.onedlvb.advice.annotation.AuditLog}
+ * or of an HTTP exchange of a method annotated with {@link com.onedlvb.advice.annotation.AuditLogHttp}.
+ * Events of HTTP exchanges carry the HTTP method, the path and the status, methodArgs holds the request body
+ * and returnValue the response body.
+ * Safe to be handed over to other threads.
+ * @author Matushkin Anton
+ */
+@Value
+@Builder(toBuilder = true)
+public class AuditEvent {
+
+    private String serviceName;
+
+    private String methodName;
+
+    private String methodArgs;
+
+    private String returnValue;
+
+    private String exception;
+
+    /**
+     * Epoch milliseconds of the method invocation.
+     */
+    private long timestamp;
+
+    /**
+     * Epoch nanoseconds of the method invocation, 0 if not captured.
+     */
+    private long startNs;
+
+    /**
+     * Nanoseconds from the invocation to the completion of the method, including completion of asynchronous results.
+     */
+    private long durationNs;
+
+    /**
+     * True if methodArgs or returnValue were cut off by the limits of the rendering.
+     */
+    private boolean truncated;
+
+    /**
+     * Number of identical events merged into this one by {@link com.onedlvb.coalescing.EventCoalescer}, 1 for a single call.
+     */
+    @Builder.Default
+    private long count = 1;
+
+    /**
+     * Epoch milliseconds of the last of the merged events, 0 for a single call.
+     */
+    private long lastTimestamp;
+
+    /**
+     * HTTP method of the exchange, null for events of annotated methods.
+     */
+    private String httpMethod;
+
+    /**
+     * Request URI of the exchange, null for events of annotated methods.
+     */
+    private String path;
+
+    /**
+     * Status code of the response, 0 for events of annotated methods.
+     */
+    private int status;
+
+    /**
+     * Key of the Kafka record, null for records without key. Not a part of the message.
+     */
+    private String key;
+
+    /**
+     * @return epoch nanoseconds of the completion of the method, 0 if the start was not captured
+     */
+    public long getEndNs() {
+        return startNs == 0 ? 0 : startNs + durationNs;
+    }
+
+    /**
+     * Converts the event to the message format sent to the Kafka.
+     * <p>
+     * @return message with serviceName, methodName, methodArgs and returnValue or exception (if there is one),
+     * truncated=true if the event is truncated, count if identical events were merged into it,
+     * httpMethod, path and status for events of HTTP exchanges
+     */
+    public Map<String, String> toMessage() {
+        Map<String, String> message = new LinkedHashMap<>();
+        message.put("serviceName", serviceName);
+        message.put("methodName", methodName);
+        message.put("methodArgs", methodArgs);
+        if (returnValue != null) {
+            message.put("returnValue", returnValue);
+        }
+        if (exception != null) {
+            message.put("exception", exception);
+        }
+        if (truncated) {
+            message.put("truncated", "true");
+        }
+        if (count > 1) {
+            message.put("count", String.valueOf(count));
+        }
+        if (httpMethod != null) {
+            message.put("httpMethod", httpMethod);
+            message.put("path", path);
+            message.put("status", String.valueOf(status));
+        }
+        return message;
+    }
+
+}
@@ -0,0 +1,258 @@
+package com.onedlvb.interceptor;
+
+import com.onedlvb.coalescing.EventCoalescer;
+import com.onedlvb.latency.LatencyRegistry;
+import com.onedlvb.metrics.AuditMetrics;
+import com.onedlvb.redaction.Redactor;
+import lombok.Builder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.reactivestreams.Publisher;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.lang.NonNull;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Web filter for logging HTTP-requests and HTTP-responses of Spring WebFlux applications,
+ * the reactive counterpart of the {@link HttpInterceptor} and the {@link BodyCaptureFilter}.
+ * To activate logging you should annotate your controller method with @AuditLogHttp annotation.
+ * <p>
+ * Nothing blocks the event loop. The request and the response are decorated, so the {@link DataBuffer}s of their bodies
+ * are teed into {@link CapturedBody} buffers from a {@link BodyBufferPool} as they pass: only the first bytes are copied,
+ * the data buffers are neither retained nor consumed. Bodies are captured only for exchanges which can be audited,
+ * the handler is already resolved when its body is read or written.
+ * <p>
+ * The exchange is audited by the {@link HttpExchangeAuditor} shared with the interceptor when the chain completes or fails,
+ * and its events are handed to the sink, which must not block. Buffers of captured bodies are released then.
+ * Cancelled exchanges are not audited, and their buffers are left to the garbage collector instead of the pool:
+ * the bodies may still be teed on the event loop after the cancellation, into a buffer another exchange would be using.
+ * Values of JSON and form bodies are masked by the field names of the {@link Redactor}.
+ * @author Matushkin Anton
+ */
+public class AuditWebFilter implements WebFilter, Ordered {
+
+    private static final Logger LOGGER = LogManager.getLogger(AuditWebFilter.class);
+
+    /**
+     * Before the filters of the application, so their time is a part of the audited exchange.
+     * Bodies read by them before the handler is resolved are not captured.
+     */
+    public static final int ORDER = Ordered.HIGHEST_PRECEDENCE + 1;
+
+    private final BodyBufferPool pool;
+
+    /**
+     * Redactor masking values of the captured bodies by their names, null if bodies are not masked.
+     */
+    private final Redactor redactor;
+
+    private final HttpExchangeAuditor auditor;
+
+    /**
+     * Creates the filter, see {@link #builder()}. Only the pool is required.
+     *
+     * @param pool        pool of the buffers of the captured bodies
+     * @param redactor    redactor masking values of the captured bodies by their names, null if bodies are not masked
+     * @param metrics     metrics counting audited HTTP exchanges by status, {@link AuditMetrics#NOOP} if null
+     * @param sampleRates sample rates overriding the annotation by qualified names of methods, null if there are none
+     * @param latencies   registry of the latency histograms of endpoints, null if latencies are not recorded
+     * @param serviceName name of the application
+     * @param topic       Kafka topic of the events of HTTP exchanges
+     * @param sink        sink of the events which does not block the event loop, null if events are not sent to the Kafka
+     */
+    @Builder
+    public AuditWebFilter(@NonNull BodyBufferPool pool,
+                          Redactor redactor,
+                          AuditMetrics metrics,
+                          Map<String, Double> sampleRates,
+                          LatencyRegistry latencies,
+                          String serviceName,
+                          String topic,
+                          EventCoalescer.Sink sink) {
+        this.pool = pool;
+        this.redactor = redactor;
+        this.auditor = new HttpExchangeAuditor(LOGGER, metrics != null ? metrics : AuditMetrics.NOOP,
+                sampleRates, latencies, serviceName, topic, sink);
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    @NonNull
+    public Mono<Void> filter(@NonNull ServerWebExchange exchange, @NonNull WebFilterChain chain) {
+        long startNanoTime = System.nanoTime();
+        long startEpochNs = HttpExchangeAuditor.currentEpochNanos();
+        CapturedBody requestBody = new CapturedBody(pool, redactor);
+        CapturedBody responseBody = new CapturedBody(pool, redactor);
+        ServerWebExchange capturingExchange = exchange.mutate()
+                .request(new CapturingRequest(exchange, requestBody))
+                .response(new CapturingResponse(exchange, responseBody))
+                .build();
+        return chain.filter(capturingExchange)
+                .doOnSuccess(ignored -> complete(exchange, null, startNanoTime, startEpochNs, requestBody, responseBody))
+                .doOnError(ex -> complete(exchange, ex, startNanoTime, startEpochNs, requestBody, responseBody));
+    }
+
+    /**
+     * Audits the exchange, on the thread which completed it.
+     *
+     * @param exchange      The exchange
+     * @param ex            Any exception that was thrown during processing of the request
+     * @param startNanoTime The start of the exchange by {@link System#nanoTime()}
+     * @param startEpochNs  The start of the exchange in nanoseconds since the epoch
+     * @param requestBody   The captured request body
+     * @param responseBody  The captured response body
+     */
+    private void complete(ServerWebExchange exchange,
+                          Throwable ex,
+                          long startNanoTime,
+                          long startEpochNs,
+                          CapturedBody requestBody,
+                          CapturedBody responseBody) {
+        try {
+            ServerHttpRequest request = exchange.getRequest();
+            auditor.complete(handlerOf(exchange), request.getMethod().name(), request.getPath().value(), statusOf(exchange, ex), ex,
+                    startEpochNs, System.nanoTime() - startNanoTime, requestBody, responseBody);
+        } finally {
+            release(requestBody, responseBody);
+        }
+    }
+
+    /**
+     * @param exchange The exchange
+     * @param ex       Any exception that was thrown during processing of the request
+     * @return int The status code of the response, of the exception if the exchange failed before the error was handled
+     */
+    private static int statusOf(ServerWebExchange exchange, Throwable ex) {
+        if (ex != null) {
+            return ex instanceof ResponseStatusException responseStatusException ? responseStatusException.getStatusCode().value() : 500;
+        }
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        return status != null ? status.value() : 200;
+    }
+
+    /**
+     * @param exchange The exchange
+     * @return Object The handler method resolved for the exchange, null if it is not resolved yet
+     */
+    private static Object handlerOf(ServerWebExchange exchange) {
+        return exchange.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+    }
+
+    private static void release(CapturedBody requestBody, CapturedBody responseBody) {
+        HttpExchangeAuditor.releaseCapturedBody(requestBody);
+        HttpExchangeAuditor.releaseCapturedBody(responseBody);
+    }
+
+    /**
+     * Copies the first readable bytes of the data buffer, its read position is not moved.
+     *
+     * @param buffer The data buffer of the body
+     * @param body   The captured body
+     */
+    private static void capture(DataBuffer buffer, CapturedBody body) {
+        if (body.remaining() <= 0) {
+            body.skip(buffer.readableByteCount());
+            return;
+        }
+        try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+            while (iterator.hasNext()) {
+                body.capture(iterator.next());
+            }
+        }
+    }
+
+    private static Charset charsetOf(MediaType contentType) {
+        Charset charset = contentType != null ? contentType.getCharset() : null;
+        return charset != null ? charset : StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Request teeing its body to the captured body, if the handler of the exchange is audited.
+     */
+    private final class CapturingRequest extends ServerHttpRequestDecorator {
+
+        private final ServerWebExchange exchange;
+
+        private final CapturedBody body;
+
+        private CapturingRequest(ServerWebExchange exchange, CapturedBody body) {
+            super(exchange.getRequest());
+            this.exchange = exchange;
+            this.body = body;
+        }
+
+        @Override
+        @NonNull
+        public Flux<DataBuffer> getBody() {
+            return Flux.defer(() -> {
+                if (!auditor.capturesBodies(handlerOf(exchange))) {
+                    return super.getBody();
+                }
+                body.setCharset(charsetOf(getHeaders().getContentType()));
+                return super.getBody().doOnNext(buffer -> capture(buffer, body));
+            });
+        }
+
+    }
+
+    /**
+     * Response teeing its body to the captured body, if the handler of the exchange is audited.
+     * A single buffer written as a {@link Mono} stays a Mono, so the server can still write it at once.
+     */
+    private final class CapturingResponse extends ServerHttpResponseDecorator {
+
+        private final ServerWebExchange exchange;
+
+        private final CapturedBody body;
+
+        private CapturingResponse(ServerWebExchange exchange, CapturedBody body) {
+            super(exchange.getResponse());
+            this.exchange = exchange;
+            this.body = body;
+        }
+
+        @Override
+        @NonNull
+        public Mono<Void> writeWith(@NonNull Publisher<? extends DataBuffer> buffers) {
+            if (!auditor.capturesBodies(handlerOf(exchange))) {
+                return super.writeWith(buffers);
+            }
+            body.setCharset(charsetOf(getHeaders().getContentType()));
+            return super.writeWith(buffers instanceof Mono<? extends DataBuffer> mono
+                    ? mono.doOnNext(buffer -> capture(buffer, body))
+                    : Flux.from(buffers).doOnNext(buffer -> capture(buffer, body)));
+        }
+
+        @Override
+        @NonNull
+        public Mono<Void> writeAndFlushWith(@NonNull Publisher<? extends Publisher<? extends DataBuffer>> buffers) {
+            if (!auditor.capturesBodies(handlerOf(exchange))) {
+                return super.writeAndFlushWith(buffers);
+            }
+            body.setCharset(charsetOf(getHeaders().getContentType()));
+            return super.writeAndFlushWith(Flux.from(buffers).map(chunk -> Flux.from(chunk).doOnNext(buffer -> capture(buffer, body))));
+        }
+
+    }
+
+}
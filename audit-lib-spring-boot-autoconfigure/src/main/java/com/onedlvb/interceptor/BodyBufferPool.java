@@ -0,0 +1,61 @@
+package com.onedlvb.interceptor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded pool of fixed-size buffers for the captured HTTP bodies.
+ * <p>
+ * Buffers are taken by {@link CapturedBody} on the first captured byte and given back when the exchange is completed,
+ * so the memory of the capture is bounded by the number of concurrent exchanges, not by the size of their bodies.
+ * The pool never blocks: when all buffers are taken a new one is allocated, and it is dropped on release
+ * if the pool is already full.
+ * @author Matushkin Anton
+ */
+public class BodyBufferPool {
+
+    private final BlockingQueue<byte[]> idleBuffers;
+
+    private final int bufferSize;
+
+    /**
+     * @param size       maximum number of idle buffers kept by the pool
+     * @param bufferSize size of every buffer, the maximum number of captured bytes of a body
+     */
+    public BodyBufferPool(int size, int bufferSize) {
+        if (size <= 0 || bufferSize <= 0) {
+            throw new IllegalArgumentException("Body buffer pool size and buffer size must be greater than 0");
+        }
+        this.idleBuffers = new ArrayBlockingQueue<>(size);
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @return an idle buffer, a new one if there is none
+     */
+    public byte[] acquire() {
+        byte[] buffer = idleBuffers.poll();
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+
+    /**
+     * @param buffer buffer taken by {@link #acquire()}, not used by the caller anymore
+     */
+    public void release(byte[] buffer) {
+        if (buffer.length == bufferSize) {
+            idleBuffers.offer(buffer);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return number of buffers waiting in the pool
+     */
+    public int getIdleCount() {
+        return idleBuffers.size();
+    }
+
+}
@@ -0,0 +1,309 @@
+package com.onedlvb.interceptor;
+
+import com.onedlvb.redaction.Redactor;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.core.Ordered;
+import org.springframework.lang.NonNull;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Servlet filter capturing raw HTTP bodies for {@link HttpInterceptor}, used with
+ * audit-lib-spring-boot-starter.http.capture.mode=stream instead of the body advices.
+ * <p>
+ * The request and the response are wrapped so their streams are teed into {@link CapturedBody} buffers from a
+ * {@link BodyBufferPool} as the application reads and writes them. Only the first bytes of a body are copied,
+ * so raw, multipart and streamed bodies are captured without being held in memory as a whole.
+ * The bodies are stored in the request attributes read by {@link HttpInterceptor}, which releases their buffers
+ * in {@link HttpInterceptor#afterCompletion}. Buffers of exchanges not completed by the interceptor are released
+ * by the filter, unless the exchange went asynchronous.
+ * Multipart requests parsed by the servlet container itself are read past the wrapper and are not captured.
+ * Values of JSON and form bodies are masked by the field names of the {@link Redactor}.
+ * @author Matushkin Anton
+ */
+public class BodyCaptureFilter extends OncePerRequestFilter {
+
+    /**
+     * Right after the character encoding filter, so bodies read by other filters are captured as well.
+     */
+    public static final int ORDER = Ordered.HIGHEST_PRECEDENCE + 1;
+
+    private final BodyBufferPool pool;
+
+    private final Redactor redactor;
+
+    /**
+     * @param pool     pool of the buffers of the captured bodies
+     * @param redactor redactor masking values of the captured bodies by their names
+     */
+    public BodyCaptureFilter(@NonNull BodyBufferPool pool, @NonNull Redactor redactor) {
+        this.pool = pool;
+        this.redactor = redactor;
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        CapturedBody requestBody = new CapturedBody(pool, redactor);
+        CapturedBody responseBody = new CapturedBody(pool, redactor);
+        request.setAttribute(HttpInterceptor.REQUEST_BODY_ATTRIBUTE, requestBody);
+        request.setAttribute(HttpInterceptor.RESPONSE_BODY_ATTRIBUTE, responseBody);
+        try {
+            filterChain.doFilter(new CapturingRequest(request, requestBody), new CapturingResponse(response, responseBody));
+        } finally {
+            if (!request.isAsyncStarted()) {
+                requestBody.release();
+                responseBody.release();
+            }
+        }
+    }
+
+    private static Charset charsetOf(String encoding, Charset defaultCharset) {
+        try {
+            return encoding != null ? Charset.forName(encoding) : defaultCharset;
+        } catch (IllegalArgumentException e) {
+            return defaultCharset;
+        }
+    }
+
+    /**
+     * Request teeing what the application reads from its body.
+     */
+    private static final class CapturingRequest extends HttpServletRequestWrapper {
+
+        private final CapturedBody body;
+
+        private ServletInputStream inputStream;
+
+        private BufferedReader reader;
+
+        private CapturingRequest(HttpServletRequest request, CapturedBody body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                body.setCharset(charsetOf(getCharacterEncoding(), StandardCharsets.UTF_8));
+                inputStream = new CapturingInputStream(super.getInputStream(), body);
+            }
+            return inputStream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            if (reader == null) {
+                reader = new BufferedReader(new InputStreamReader(getInputStream(), charsetOf(getCharacterEncoding(), StandardCharsets.ISO_8859_1)));
+            }
+            return reader;
+        }
+
+    }
+
+    /**
+     * Response teeing what the application writes to its body.
+     */
+    private static final class CapturingResponse extends HttpServletResponseWrapper {
+
+        private final CapturedBody body;
+
+        private ServletOutputStream outputStream;
+
+        private PrintWriter writer;
+
+        private CapturingResponse(HttpServletResponse response, CapturedBody body) {
+            super(response);
+            this.body = body;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                body.setCharset(charsetOf(getCharacterEncoding(), StandardCharsets.UTF_8));
+                outputStream = new CapturingOutputStream(super.getOutputStream(), body);
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                Charset charset = charsetOf(getCharacterEncoding(), StandardCharsets.ISO_8859_1);
+                body.setCharset(charset);
+                writer = new PrintWriter(new CapturingWriter(super.getWriter(), body, charset));
+            }
+            return writer;
+        }
+
+    }
+
+    private static final class CapturingInputStream extends ServletInputStream {
+
+        private final ServletInputStream delegate;
+
+        private final CapturedBody body;
+
+        private CapturingInputStream(ServletInputStream delegate, CapturedBody body) {
+            this.delegate = delegate;
+            this.body = body;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b >= 0) {
+                body.capture(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(@NonNull byte[] bytes, int offset, int length) throws IOException {
+            int count = delegate.read(bytes, offset, length);
+            body.capture(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return delegate.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            delegate.setReadListener(readListener);
+        }
+
+    }
+
+    private static final class CapturingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+
+        private final CapturedBody body;
+
+        private CapturingOutputStream(ServletOutputStream delegate, CapturedBody body) {
+            this.delegate = delegate;
+            this.body = body;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            body.capture(b);
+        }
+
+        @Override
+        public void write(@NonNull byte[] bytes, int offset, int length) throws IOException {
+            delegate.write(bytes, offset, length);
+            body.capture(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+
+    }
+
+    /**
+     * Writer teeing characters into the captured body. Characters are encoded only while the buffer has room for them,
+     * characters past the buffer are counted as one byte each.
+     */
+    private static final class CapturingWriter extends Writer {
+
+        private final Writer delegate;
+
+        private final CapturedBody body;
+
+        private final Charset charset;
+
+        private CapturingWriter(Writer delegate, CapturedBody body, Charset charset) {
+            this.delegate = delegate;
+            this.body = body;
+            this.charset = charset;
+        }
+
+        @Override
+        public void write(@NonNull char[] chars, int offset, int length) throws IOException {
+            delegate.write(chars, offset, length);
+            int copied = Math.min(length, body.remaining());
+            if (copied > 0) {
+                byte[] bytes = new String(chars, offset, copied).getBytes(charset);
+                body.capture(bytes, 0, bytes.length);
+            }
+            body.skip(length - copied);
+        }
+
+        @Override
+        public void write(@NonNull String string, int offset, int length) throws IOException {
+            delegate.write(string, offset, length);
+            int copied = Math.min(length, body.remaining());
+            if (copied > 0) {
+                byte[] bytes = string.substring(offset, offset + copied).getBytes(charset);
+                body.capture(bytes, 0, bytes.length);
+            }
+            body.skip(length - copied);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+    }
+
+}
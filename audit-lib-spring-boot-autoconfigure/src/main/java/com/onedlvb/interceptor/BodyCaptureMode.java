@@ -0,0 +1,19 @@
+package com.onedlvb.interceptor;
+
+/**
+ * Source of the HTTP bodies logged by {@link HttpInterceptor}.
+ * @author Matushkin Anton
+ */
+public enum BodyCaptureMode {
+
+    /**
+     * Bodies of annotated controller methods rendered by the body advices after they are converted.
+     */
+    ADVICE,
+
+    /**
+     * First bytes of the raw bodies, teed from the servlet streams by {@link BodyCaptureFilter}.
+     */
+    STREAM
+
+}
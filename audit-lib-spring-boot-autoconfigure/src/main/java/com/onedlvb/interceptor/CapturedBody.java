@@ -0,0 +1,187 @@
+package com.onedlvb.interceptor;
+
+import com.onedlvb.advice.BoundedRenderer;
+import com.onedlvb.redaction.Redactor;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * First bytes of an HTTP body, copied while the body is read or written by {@link BodyCaptureFilter}
+ * or {@link AuditWebFilter}.
+ * <p>
+ * Only the first {@link BodyBufferPool#getBufferSize()} bytes are kept, the rest are counted,
+ * so a body is never materialized as a whole. The buffer is taken from the pool on the first byte
+ * and given back by {@link #release()}, bytes seen after the release are ignored.
+ * A body is captured by one thread at a time, the thread of the exchange or the event loop passing its buffers.
+ * Values of the field names configured in the {@link Redactor} are masked when the body is decoded.
+ * @author Matushkin Anton
+ */
+public class CapturedBody {
+
+    private final BodyBufferPool pool;
+
+    /**
+     * Redactor masking values of JSON and form bodies by their names, null if bodies are not masked.
+     */
+    private final Redactor redactor;
+
+    private byte[] buffer;
+
+    private int length;
+
+    private long totalBytes;
+
+    private boolean released;
+
+    private Charset charset = StandardCharsets.UTF_8;
+
+    /**
+     * @param pool pool of the buffers
+     */
+    public CapturedBody(BodyBufferPool pool) {
+        this(pool, null);
+    }
+
+    /**
+     * @param pool     pool of the buffers
+     * @param redactor redactor masking values of JSON and form bodies by their names, null if bodies are not masked
+     */
+    public CapturedBody(BodyBufferPool pool, Redactor redactor) {
+        this.pool = pool;
+        this.redactor = redactor;
+    }
+
+    /**
+     * @param b byte of the body
+     */
+    void capture(int b) {
+        if (released) {
+            return;
+        }
+        totalBytes++;
+        if (length < pool.getBufferSize()) {
+            buffer()[length++] = (byte) b;
+        }
+    }
+
+    /**
+     * Copies bytes of the body as long as the buffer has room for them.
+     * <p>
+     * @param bytes  bytes of the body
+     * @param offset offset of the first byte
+     * @param count  number of bytes
+     */
+    void capture(byte[] bytes, int offset, int count) {
+        if (released || count <= 0) {
+            return;
+        }
+        totalBytes += count;
+        int copied = Math.min(count, pool.getBufferSize() - length);
+        if (copied > 0) {
+            System.arraycopy(bytes, offset, buffer(), length, copied);
+            length += copied;
+        }
+    }
+
+    /**
+     * Copies readable bytes of the body as long as the buffer has room for them, the position of the bytes is not moved.
+     * <p>
+     * @param bytes bytes of the body
+     */
+    void capture(ByteBuffer bytes) {
+        int count = bytes.remaining();
+        if (released || count <= 0) {
+            return;
+        }
+        totalBytes += count;
+        int copied = Math.min(count, pool.getBufferSize() - length);
+        if (copied > 0) {
+            bytes.get(bytes.position(), buffer(), length, copied);
+            length += copied;
+        }
+    }
+
+    /**
+     * Counts bytes of the body which are not copied.
+     * <p>
+     * @param count number of bytes
+     */
+    void skip(long count) {
+        if (!released && count > 0) {
+            totalBytes += count;
+        }
+    }
+
+    /**
+     * @return number of bytes which can still be copied
+     */
+    int remaining() {
+        return released ? 0 : pool.getBufferSize() - length;
+    }
+
+    /**
+     * @param charset charset of the body, used to decode the captured bytes
+     */
+    void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * @return number of bytes of the body seen so far
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return true if nothing of the body was seen
+     */
+    public boolean isEmpty() {
+        return totalBytes == 0;
+    }
+
+    /**
+     * @return true if the body is longer than the captured bytes
+     */
+    public boolean isTruncated() {
+        return totalBytes > length;
+    }
+
+    /**
+     * Gives the buffer back to the pool, the captured bytes are lost.
+     */
+    public void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        if (buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+        }
+        length = 0;
+    }
+
+    /**
+     * @return captured bytes decoded by the charset of the body with masked values, marked with
+     *         {@link BoundedRenderer#TRUNCATION_MARK} if the body is longer
+     */
+    @Override
+    public String toString() {
+        String text = buffer != null ? new String(buffer, 0, length, charset) : "";
+        if (redactor != null) {
+            text = redactor.redactBody(text);
+        }
+        return isTruncated() ? text + BoundedRenderer.TRUNCATION_MARK : text;
+    }
+
+    private byte[] buffer() {
+        if (buffer == null) {
+            buffer = pool.acquire();
+        }
+        return buffer;
+    }
+
+}
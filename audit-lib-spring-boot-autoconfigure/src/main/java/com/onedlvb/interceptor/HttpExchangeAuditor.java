@@ -0,0 +1,320 @@
+package com.onedlvb.interceptor;
+
+import com.onedlvb.advice.annotation.AuditLogHttp;
+import com.onedlvb.advice.exception.KafkaSendMessageException;
+import com.onedlvb.coalescing.EventCoalescer;
+import com.onedlvb.event.AuditEvent;
+import com.onedlvb.latency.LatencyHistogram;
+import com.onedlvb.latency.LatencyRegistry;
+import com.onedlvb.metrics.AuditMetrics;
+import com.onedlvb.util.LevelConverter;
+import com.onedlvb.util.NanoClock;
+import com.onedlvb.util.Sampling;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.time.MutableInstant;
+import org.apache.logging.log4j.core.util.Clock;
+import org.apache.logging.log4j.core.util.ClockFactory;
+import org.apache.logging.log4j.core.util.datetime.FixedDateFormat;
+import org.apache.logging.log4j.util.Constants;
+import org.springframework.web.method.HandlerMethod;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Audit of completed HTTP exchanges, shared by the {@link HttpInterceptor} of Spring MVC
+ * and the {@link AuditWebFilter} of Spring WebFlux. Depends neither on the servlet API nor on Reactor.
+ * <p>
+ * Records the metrics and the latency of every exchange, logs sampled exchanges and sends them to the Kafka
+ * when there is a sink. The record of an exchange is built without garbage: the annotation of a handler method
+ * is resolved once, the record is appended to a builder reused by the thread, and the start is taken
+ * from the Log4j clock and formatted into a reused buffer. Nothing is built if the level of the handler is disabled.
+ * @author Matushkin Anton
+ */
+final class HttpExchangeAuditor {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private static final int INITIAL_RECORD_CAPACITY = 256;
+
+    /**
+     * Builders grown above this capacity by large bodies are not kept by the thread.
+     */
+    private static final int MAX_REUSABLE_RECORD_CAPACITY = 16 * 1024;
+
+    /**
+     * Length of the path column of the receiver, longer paths are cut off before they are sent.
+     */
+    static final int MAX_PATH_LENGTH = 2048;
+
+    private static final Clock CLOCK = ClockFactory.getClock();
+
+    /**
+     * Formats "yyyy-MM-dd HH:mm:ss.SSS" in the default time zone, thread-safe.
+     */
+    private static final FixedDateFormat DATE_FORMAT = FixedDateFormat.create(FixedDateFormat.FixedFormat.DEFAULT_PERIOD);
+
+    private static final ThreadLocal<StringBuilder> RECORDS = ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_RECORD_CAPACITY));
+
+    private static final ThreadLocal<char[]> DATE_BUFFERS = ThreadLocal.withInitial(() -> new char[DATE_FORMAT.getLength()]);
+
+    private static final ThreadLocal<MutableInstant> INSTANTS = ThreadLocal.withInitial(MutableInstant::new);
+
+    /**
+     * Metadata of handlers which are not methods annotated with {@link AuditLogHttp}, logged on every exchange at DEBUG.
+     */
+    private static final HandlerMetadata NOT_ANNOTATED = new HandlerMetadata(null, Level.DEBUG, 1.0, false, null);
+
+    private final Logger logger;
+
+    private final AuditMetrics metrics;
+
+    /**
+     * Sample rates overriding {@link AuditLogHttp#sampleRate()} by qualified names of methods, null if there are none.
+     */
+    private final Map<String, Double> sampleRates;
+
+    /**
+     * Registry of the latency histograms of endpoints, null if latencies are not recorded.
+     */
+    private final LatencyRegistry latencies;
+
+    private final String serviceName;
+
+    /**
+     * Kafka topic of the events of HTTP exchanges.
+     */
+    private final String topic;
+
+    /**
+     * Sink of the events of HTTP exchanges, the dispatcher or the coalescer, null if events are not sent to the Kafka.
+     */
+    private final EventCoalescer.Sink sink;
+
+    private final Map<Method, HandlerMetadata> handlers = new ConcurrentHashMap<>();
+
+    /**
+     * @param logger      logger of the records of exchanges
+     * @param metrics     metrics counting audited HTTP exchanges by status
+     * @param sampleRates sample rates overriding the annotation by qualified names of methods, null if there are none
+     * @param latencies   registry of the latency histograms of endpoints, null if latencies are not recorded
+     * @param serviceName name of the application
+     * @param topic       Kafka topic of the events of HTTP exchanges
+     * @param sink        sink of the events which does not block the calling thread, null if events are not sent to the Kafka
+     */
+    HttpExchangeAuditor(Logger logger,
+                        AuditMetrics metrics,
+                        Map<String, Double> sampleRates,
+                        LatencyRegistry latencies,
+                        String serviceName,
+                        String topic,
+                        EventCoalescer.Sink sink) {
+        this.logger = logger;
+        this.metrics = metrics;
+        this.sampleRates = sampleRates;
+        this.latencies = latencies;
+        this.serviceName = serviceName;
+        this.topic = topic;
+        this.sink = sink;
+    }
+
+    /**
+     * @param handler The handler of the exchange, null if it is not known yet
+     * @return boolean True if bodies of exchanges of the handler can be logged or sent
+     */
+    boolean capturesBodies(Object handler) {
+        return resolve(handler) != NOT_ANNOTATED || logger.isEnabled(NOT_ANNOTATED.level());
+    }
+
+    /**
+     * Records the metrics and the latency of the exchange, logs it if the level is enabled and the exchange is sampled,
+     * and sends it to the Kafka if the handler is annotated. Bodies are rendered before the call returns.
+     * Paths are cut off at {@link #MAX_PATH_LENGTH} in the sent event.
+     *
+     * @param handler      The handler that processed the request
+     * @param httpMethod   The HTTP method of the request
+     * @param path         The path of the request
+     * @param status       The status code of the response
+     * @param ex           Any exception that was thrown during processing of the request
+     * @param startEpochNs The start of the exchange in nanoseconds since the epoch, 0 if it was not captured
+     * @param durationNs   The duration of the exchange in nanoseconds, negative if the start was not captured
+     * @param requestBody  The rendered or captured request body, null if there is none
+     * @param responseBody The rendered or captured response body, null if there is none
+     */
+    void complete(Object handler,
+                  String httpMethod,
+                  String path,
+                  int status,
+                  Throwable ex,
+                  long startEpochNs,
+                  long durationNs,
+                  Object requestBody,
+                  Object responseBody) {
+        metrics.recordHttpEvent(status);
+        HandlerMetadata metadata = resolve(handler);
+        if (durationNs >= 0 && metadata.histogram() != null) {
+            metadata.histogram().record(durationNs);
+        }
+        boolean logEnabled = logger.isEnabled(metadata.level());
+        boolean kafkaEnabled = sink != null && metadata.methodName() != null;
+        if (!logEnabled && !kafkaEnabled || !metadata.isSampled(status, ex)) {
+            return;
+        }
+        if (logEnabled) {
+            StringBuilder record = buildRecord(httpMethod, status, startEpochNs, requestBody, responseBody, durationNs);
+            try {
+                // Reusable messages of garbage-free Log4j copy the text, otherwise the event may outlive the builder
+                logger.log(metadata.level(), Constants.ENABLE_THREADLOCALS ? record : record.toString());
+            } finally {
+                if (record.capacity() > MAX_REUSABLE_RECORD_CAPACITY) {
+                    RECORDS.remove();
+                }
+            }
+        }
+        if (kafkaEnabled) {
+            send(AuditEvent.builder()
+                    .timestamp(startEpochNs != 0 ? NanoClock.toEpochMillis(startEpochNs) : CLOCK.currentTimeMillis())
+                    .startNs(startEpochNs)
+                    .durationNs(Math.max(durationNs, 0L))
+                    .serviceName(serviceName)
+                    .methodName(metadata.methodName())
+                    .httpMethod(httpMethod)
+                    .path(path != null && path.length() > MAX_PATH_LENGTH ? path.substring(0, MAX_PATH_LENGTH) : path)
+                    .status(status)
+                    .methodArgs(isPresent(requestBody) ? requestBody.toString() : null)
+                    .returnValue(isPresent(responseBody) ? responseBody.toString() : null)
+                    .exception(ex != null ? String.valueOf(ex) : null)
+                    .truncated(isTruncated(requestBody) || isTruncated(responseBody))
+                    .build());
+        }
+    }
+
+    /**
+     * Builds the record of the exchange into the builder of the current thread, valid until the next call on the thread.
+     *
+     * @param httpMethod   The HTTP method of the request
+     * @param status       The status code of the response
+     * @param startEpochNs The start of the exchange in nanoseconds since the epoch, 0 if it was not captured
+     * @param requestBody  The rendered or captured request body, null if there is none
+     * @param responseBody The rendered or captured response body, null if there is none
+     * @param durationNs   The duration of the exchange in nanoseconds, negative if the start was not captured
+     * @return StringBuilder The record of the exchange
+     */
+    StringBuilder buildRecord(String httpMethod, int status, long startEpochNs, Object requestBody, Object responseBody, long durationNs) {
+        StringBuilder record = RECORDS.get();
+        record.setLength(0);
+        long startMillis = startEpochNs != 0 ? NanoClock.toEpochMillis(startEpochNs) : CLOCK.currentTimeMillis();
+        char[] date = DATE_BUFFERS.get();
+        record.append(date, 0, DATE_FORMAT.format(startMillis, date, 0))
+                .append(' ')
+                .append(httpMethod)
+                .append(" Status code: ")
+                .append(status);
+        if (isPresent(requestBody)) {
+            record.append(" Request body: ").append(requestBody);
+        }
+        if (isPresent(responseBody)) {
+            record.append(" Response body: ").append(responseBody);
+        }
+        if (durationNs >= 0) {
+            record.append(" Duration: ").append(durationNs).append(" ns");
+        }
+        return record;
+    }
+
+    /**
+     * Utility method to get the current time from the Log4j clock, with the precision of the clock.
+     *
+     * @return long Nanoseconds since the epoch
+     */
+    static long currentEpochNanos() {
+        MutableInstant instant = INSTANTS.get();
+        instant.initFrom(CLOCK);
+        return instant.getEpochSecond() * NANOS_PER_SECOND + instant.getNanoOfSecond();
+    }
+
+    /**
+     * Gives the buffer of a captured body back to its pool once the exchange is audited.
+     *
+     * @param body The rendered or captured body
+     */
+    static void releaseCapturedBody(Object body) {
+        if (body instanceof CapturedBody capturedBody) {
+            capturedBody.release();
+        }
+    }
+
+    /**
+     * Hands the event to the sink, failures are only logged, so they never fail the exchange.
+     *
+     * @param event The event of the exchange
+     */
+    private void send(AuditEvent event) {
+        try {
+            sink.send(topic, event);
+        } catch (KafkaSendMessageException | RuntimeException e) {
+            logger.warn("Unable to send audit event of {} {} to kafka: {}", event.getHttpMethod(), event.getPath(), e.getMessage());
+        }
+    }
+
+    /**
+     * @param body The body stored by the body advices or captured from the streams
+     * @return boolean True if there is a body to log
+     */
+    private static boolean isPresent(Object body) {
+        return body != null && !(body instanceof CapturedBody capturedBody && capturedBody.isEmpty());
+    }
+
+    private static boolean isTruncated(Object body) {
+        return body instanceof CapturedBody capturedBody && capturedBody.isTruncated();
+    }
+
+    /**
+     * Resolves the level, the sampling and the latency histogram of the handler once per handler method.
+     *
+     * @param handler The handler that processed the request
+     * @return HandlerMetadata Metadata of the handler, {@link #NOT_ANNOTATED} if it is not annotated with {@link AuditLogHttp}
+     */
+    private HandlerMetadata resolve(Object handler) {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return NOT_ANNOTATED;
+        }
+        Method method = handlerMethod.getMethod();
+        HandlerMetadata metadata = handlers.get(method);
+        return metadata != null ? metadata : handlers.computeIfAbsent(method, this::resolveMethod);
+    }
+
+    private HandlerMetadata resolveMethod(Method method) {
+        AuditLogHttp auditLogHttp = method.getAnnotation(AuditLogHttp.class);
+        if (auditLogHttp == null) {
+            return NOT_ANNOTATED;
+        }
+        String qualifiedName = method.getDeclaringClass().getName() + "." + method.getName();
+        return new HandlerMetadata(
+                method.getName(),
+                LevelConverter.convertLevel(auditLogHttp.logLevel()),
+                Sampling.resolveSampleRate(qualifiedName, auditLogHttp.sampleRate(), sampleRates),
+                auditLogHttp.keepErrors(),
+                latencies != null ? latencies.endpointHistogram(qualifiedName) : null);
+    }
+
+    /**
+     * Everything the auditor needs to know about a handler method, which does not change between exchanges.
+     *
+     * @param methodName The name of the handler method, null for handlers not annotated with {@link AuditLogHttp}
+     * @param level      The log level of the records
+     * @param sampleRate Share of the logged exchanges, from 0 to 1
+     * @param keepErrors True to log every exchange which failed with an exception or a 5xx status
+     * @param histogram  The latency histogram of the endpoint, null if latencies are not recorded
+     */
+    private record HandlerMetadata(String methodName, Level level, double sampleRate, boolean keepErrors, LatencyHistogram histogram) {
+
+        private boolean isSampled(int status, Throwable ex) {
+            return keepErrors && (ex != null || status >= 500) || Sampling.sample(sampleRate);
+        }
+
+    }
+
+}
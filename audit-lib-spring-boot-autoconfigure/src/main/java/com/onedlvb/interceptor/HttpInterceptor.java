@@ -1,28 +1,41 @@
 package com.onedlvb.interceptor;
 
 import com.onedlvb.advice.annotation.AuditLogHttp;
-import com.onedlvb.util.LevelConverter;
+import com.onedlvb.coalescing.EventCoalescer;
+import com.onedlvb.event.AuditEvent;
+import com.onedlvb.latency.LatencyRegistry;
+import com.onedlvb.metrics.AuditMetrics;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.apache.logging.log4j.Level;
+import lombok.Builder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
-import org.springframework.web.context.request.RequestAttributes;
-import org.springframework.web.context.request.RequestContextHolder;
-import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerInterceptor;
 
-import java.lang.reflect.Method;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.Map;
 
 /**
  * Http interceptor for logging HTTP-requests and HTTP-responses.
  * To activate logging you should annotate your controller method with @AuditLogHttp annotation.
  * To specify where logs should be printed configure auditlog.console.enabled=, auditlog.file.enabled=,
  * auditlog.file.path=logs/app.log variables.
+ * Requests to annotated methods are sampled by {@link AuditLogHttp#sampleRate()}.
+ * The start of the exchange is captured in {@link #preHandle}, the log carries the start and the duration in nanoseconds.
+ * The start is kept in an {@link ExchangeStart} reused by the thread, so neither of them is boxed.
+ * Latencies of all exchanges of annotated methods are recorded into their histograms of the {@link LatencyRegistry}.
+ * <p>
+ * The exchange is audited by the {@link HttpExchangeAuditor} shared with the {@link AuditWebFilter} of WebFlux,
+ * which builds the record without garbage. Nothing is built if the level of the handler is disabled.
+ * <p>
+ * Bodies are stored in the request attributes by the body advices, or by the {@link BodyCaptureFilter}
+ * with audit-lib-spring-boot-starter.http.capture.mode=stream. Buffers of captured bodies are released
+ * in {@link #afterCompletion} whether the exchange is logged or not.
+ * <p>
+ * Sampled exchanges of annotated methods are also sent to the Kafka as {@link AuditEvent} with the HTTP method, the path,
+ * the status, the duration and the bodies, when the interceptor has a sink. The sink is the asynchronous dispatcher,
+ * so the request thread only hands the event over.
  * @see com.onedlvb.advice.AuditLogAspect
  * @author Matushkin Anton
  */
@@ -31,8 +44,41 @@ public class HttpInterceptor implements HandlerInterceptor {
 
     private static final Logger LOGGER = LogManager.getLogger(HttpInterceptor.class);
 
+    static final String START_ATTRIBUTE = HttpInterceptor.class.getName() + ".START";
+
+    static final String REQUEST_BODY_ATTRIBUTE = "INTERCEPTED_REQUEST_BODY";
+
+    static final String RESPONSE_BODY_ATTRIBUTE = "INTERCEPTED_RESPONSE_BODY";
+
+    private final HttpExchangeAuditor auditor;
+
+    public HttpInterceptor() {
+        this(null, null, null, null, null, null);
+    }
+
     /**
-     * Pre-handle method that logs the current date and time along with the HTTP method of the request.
+     * Creates the interceptor, see {@link #builder()}. Every argument is optional.
+     *
+     * @param metrics     metrics counting intercepted HTTP exchanges by status, {@link AuditMetrics#NOOP} if null
+     * @param sampleRates sample rates overriding the annotation by qualified names of methods, null if there are none
+     * @param latencies   registry of the latency histograms of endpoints, null if latencies are not recorded
+     * @param serviceName name of the application
+     * @param topic       Kafka topic of the events of HTTP exchanges
+     * @param sink        sink of the events which does not block the request thread, null if events are not sent to the Kafka
+     */
+    @Builder
+    public HttpInterceptor(AuditMetrics metrics,
+                           Map<String, Double> sampleRates,
+                           LatencyRegistry latencies,
+                           String serviceName,
+                           String topic,
+                           EventCoalescer.Sink sink) {
+        this.auditor = new HttpExchangeAuditor(LOGGER, metrics != null ? metrics : AuditMetrics.NOOP,
+                sampleRates, latencies, serviceName, topic, sink);
+    }
+
+    /**
+     * Pre-handle method that captures the start of the exchange in request attributes.
      *
      * @param request  The HTTP request
      * @param response The HTTP response
@@ -44,6 +90,10 @@ public class HttpInterceptor implements HandlerInterceptor {
     public boolean preHandle(@NonNull HttpServletRequest request,
                              @NonNull HttpServletResponse response,
                              @NonNull Object handler) throws Exception {
+        ExchangeStart start = request.getAttribute(START_ATTRIBUTE) instanceof ExchangeStart captured ? captured : ExchangeStart.acquire();
+        start.nanoTime = System.nanoTime();
+        start.epochNanos = HttpExchangeAuditor.currentEpochNanos();
+        request.setAttribute(START_ATTRIBUTE, start);
         return true;
     }
 
@@ -62,54 +112,81 @@ public class HttpInterceptor implements HandlerInterceptor {
                                 Exception ex)
             throws Exception {
 
-        StringBuilder logBuilder = new StringBuilder();
-        logBuilder.append(getCurrentDateTime())
-                .append(" ")
-                .append(request.getMethod());
-        logBuilder.append(String.format(" Status code: %s", response.getStatus()));
-        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
-        Object responseBody = requestAttributes != null
-                ? requestAttributes.getAttribute("INTERCEPTED_RESPONSE_BODY", RequestAttributes.SCOPE_REQUEST) : null;
-        Object requestBody = requestAttributes != null
-                ? requestAttributes.getAttribute("INTERCEPTED_REQUEST_BODY", RequestAttributes.SCOPE_REQUEST) : null;
-
-        if (requestBody != null) {
-            logBuilder.append(" Request body: ").append(requestBody);
-        }
-        if (responseBody != null) {
-            logBuilder.append(" Response body: ").append(responseBody);
+        Object requestBody = request.getAttribute(REQUEST_BODY_ATTRIBUTE);
+        Object responseBody = request.getAttribute(RESPONSE_BODY_ATTRIBUTE);
+        ExchangeStart start = request.getAttribute(START_ATTRIBUTE) instanceof ExchangeStart captured ? captured : null;
+        try {
+            long durationNs = start != null ? System.nanoTime() - start.nanoTime : -1;
+            auditor.complete(handler, request.getMethod(), request.getRequestURI(), response.getStatus(), ex,
+                    start != null ? start.epochNanos : 0L, durationNs, requestBody, responseBody);
+        } finally {
+            HttpExchangeAuditor.releaseCapturedBody(requestBody);
+            HttpExchangeAuditor.releaseCapturedBody(responseBody);
+            if (start != null) {
+                request.removeAttribute(START_ATTRIBUTE);
+                start.release();
+            }
         }
-        LOGGER.log(getLogLevel(handler, AuditLogHttp.class), logBuilder);
     }
 
     /**
-     * Utility method to get the current date and time formatted as "yyyy-MM-dd HH:mm:ss.SSS".
+     * Builds the record of the exchange into the builder of the current thread, valid until the next call on the thread.
      *
-     * @return String The current date and time formatted
+     * @param request    The HTTP request
+     * @param status     The status code of the response
+     * @param durationNs The duration of the exchange in nanoseconds, negative if the start was not captured
+     * @return StringBuilder The record of the exchange
      */
-    private String getCurrentDateTime() {
-        LocalDateTime localDateTime = LocalDateTime.now();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
-        return localDateTime.format(formatter);
+    StringBuilder buildRecord(HttpServletRequest request, int status, long durationNs) {
+        return auditor.buildRecord(request.getMethod(), status, startEpochNanos(request),
+                request.getAttribute(REQUEST_BODY_ATTRIBUTE), request.getAttribute(RESPONSE_BODY_ATTRIBUTE), durationNs);
+    }
+
+    private static long startEpochNanos(HttpServletRequest request) {
+        return request.getAttribute(START_ATTRIBUTE) instanceof ExchangeStart start ? start.epochNanos : 0L;
     }
 
     /**
-     * Utility method to get the log level specified by the {@link AuditLogHttp} annotation on the handler.
-     *
-     * @param handler The handler (or controller method) that may have the @AuditLogHttp annotation
-     * @param clazz   The @AuditLogHttp annotation class
-     * @return Level The log level specified by the annotation, or DEBUG if not specified
+     * Start of an exchange, stored in a request attribute from {@link #preHandle} to {@link #afterCompletion}.
+     * Every thread keeps one released start, so exchanges do not allocate even if they are completed on another thread.
      */
-    private Level getLogLevel(Object handler, Class clazz) {
-        if (handler instanceof HandlerMethod handlerMethod) {
-            Method method = handlerMethod.getMethod();
-            if (method.isAnnotationPresent(clazz)) {
-                AuditLogHttp auditLogHttp = method.getAnnotation(AuditLogHttp.class);
-                return LevelConverter.convertLevel(auditLogHttp.logLevel());
+    static final class ExchangeStart {
+
+        private static final ThreadLocal<ExchangeStart> RELEASED = new ThreadLocal<>();
+
+        private long nanoTime;
+
+        private long epochNanos;
+
+        /**
+         * @return start released on this thread, a new one if there is none
+         */
+        static ExchangeStart acquire() {
+            ExchangeStart start = RELEASED.get();
+            if (start == null) {
+                return new ExchangeStart();
             }
+            RELEASED.set(null);
+            return start;
+        }
+
+        /**
+         * @param epochNanos start of the exchange in nanoseconds since the epoch
+         * @return start which is not captured by an exchange
+         */
+        static ExchangeStart of(long epochNanos) {
+            ExchangeStart start = new ExchangeStart();
+            start.epochNanos = epochNanos;
+            return start;
+        }
+
+        /**
+         * Keeps the start for the next exchange of this thread, it must not be used afterwards.
+         */
+        void release() {
+            RELEASED.set(this);
         }
 
-        return Level.DEBUG;
     }
 
 }
@@ -0,0 +1,379 @@
+package com.onedlvb.journal;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Local append-only journal of Kafka records that could not be sent to the broker.
+ * <p>
+ * Records are stored in memory-mapped segment files of a fixed size in the journal directory.
+ * A segment starts with a header (magic number and the offset of the first record not replayed yet),
+ * followed by records: payload length, CRC32 of the payload and the payload itself
+ * (topic, key and value of the record). The length is written last, so a record torn by a crash
+ * has either zero length or a wrong checksum and is cut off when the journal is opened again.
+ * <p>
+ * Records are read in the order they were appended. Replayed records are committed by moving the read offset
+ * of the segment, fully replayed segments are deleted. Replay is at-least-once: records sent right before a crash
+ * may be sent again. The journal never takes more than maxSegments segments of segmentSize bytes,
+ * records which do not fit are rejected.
+ * @author Matushkin Anton
+ */
+public class AuditJournal implements AutoCloseable {
+
+    private static final Logger LOGGER = LogManager.getLogger(AuditJournal.class);
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private static final int SEQUENCE_LENGTH = 20;
+
+    private static final int SEGMENT_MAGIC = 0x41554A31;
+
+    private static final int READ_OFFSET_POSITION = 4;
+
+    private static final int SEGMENT_HEADER_SIZE = 8;
+
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final int NULL_KEY = -1;
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final int maxSegments;
+
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    private long nextSequence;
+
+    private volatile long pendingRecords;
+
+    private volatile long rejectedRecords;
+
+    /**
+     * Opens the journal and recovers segments left by the previous run.
+     * <p>
+     * @param directory   directory of the segment files, created if it does not exist
+     * @param segmentSize size of a segment file in bytes
+     * @param maxSegments maximum number of segment files
+     * @throws IOException if the directory or the segments can not be read
+     */
+    public AuditJournal(Path directory, int segmentSize, int maxSegments) throws IOException {
+        if (segmentSize <= SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE || maxSegments <= 0) {
+            throw new IllegalArgumentException("Journal segment size and number of segments are too small");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    /**
+     * Appends records to the end of the journal.
+     * <p>
+     * @param records records to store
+     * @return true if all records were stored, false if some of them were rejected because the journal is full
+     */
+    public synchronized boolean append(List<ProducerRecord<String, byte[]>> records) {
+        int appended = 0;
+        for (ProducerRecord<String, byte[]> record : records) {
+            if (!append(record)) {
+                break;
+            }
+            appended++;
+        }
+        pendingRecords += appended;
+        if (appended < records.size()) {
+            rejectedRecords += records.size() - appended;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads records from the head of the journal without removing them.
+     * Only one thread is supposed to read the journal.
+     * <p>
+     * @param maxRecords maximum number of records to read
+     * @return records in the order they were appended, empty if there is nothing to replay
+     */
+    public synchronized List<ProducerRecord<String, byte[]>> peek(int maxRecords) {
+        Segment head = segments.peekFirst();
+        if (head == null) {
+            return Collections.emptyList();
+        }
+        List<ProducerRecord<String, byte[]>> records = new ArrayList<>(Math.min(maxRecords, 64));
+        int position = head.readPosition;
+        while (records.size() < maxRecords && position < head.writePosition) {
+            int length = head.buffer.getInt(position);
+            records.add(readRecord(head.buffer, position + RECORD_HEADER_SIZE, length));
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return records;
+    }
+
+    /**
+     * Removes records returned by {@link #peek(int)} after they were sent.
+     * <p>
+     * @param count number of records from the head of the journal to remove
+     */
+    public synchronized void commit(int count) {
+        Segment head = segments.peekFirst();
+        if (head == null) {
+            return;
+        }
+        int committed = 0;
+        while (committed < count && head.readPosition < head.writePosition) {
+            head.readPosition += RECORD_HEADER_SIZE + head.buffer.getInt(head.readPosition);
+            committed++;
+        }
+        head.buffer.putInt(READ_OFFSET_POSITION, head.readPosition);
+        pendingRecords -= committed;
+        if (head.readPosition == head.writePosition) {
+            delete(segments.pollFirst());
+        }
+    }
+
+    /**
+     * @return true if there are no records to replay
+     */
+    public boolean isEmpty() {
+        return pendingRecords == 0;
+    }
+
+    /**
+     * @return number of records waiting to be replayed
+     */
+    public long getPendingCount() {
+        return pendingRecords;
+    }
+
+    /**
+     * @return number of records rejected because the journal was full
+     */
+    public long getRejectedCount() {
+        return rejectedRecords;
+    }
+
+    /**
+     * Flushes segments to the disk.
+     */
+    @Override
+    public synchronized void close() {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+        segments.clear();
+    }
+
+    private boolean append(ProducerRecord<String, byte[]> record) {
+        byte[] topic = record.topic().getBytes(StandardCharsets.UTF_8);
+        byte[] key = record.key() == null ? null : record.key().getBytes(StandardCharsets.UTF_8);
+        byte[] value = record.value();
+        int length = Short.BYTES + topic.length + Integer.BYTES + (key == null ? 0 : key.length) + value.length;
+        if (SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE + length > segmentSize) {
+            LOGGER.warn("Audit record of {} bytes is larger than a journal segment", length);
+            return false;
+        }
+        Segment tail = segments.peekLast();
+        if (tail == null || !tail.hasSpace(RECORD_HEADER_SIZE + length)) {
+            if (segments.size() >= maxSegments) {
+                return false;
+            }
+            try {
+                tail = createSegment();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to create audit journal segment: {}", e.toString());
+                return false;
+            }
+            segments.addLast(tail);
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = tail.buffer;
+        int position = tail.writePosition;
+        buffer.position(position + RECORD_HEADER_SIZE);
+        buffer.putShort((short) topic.length).put(topic);
+        if (key == null) {
+            buffer.putInt(NULL_KEY);
+        } else {
+            buffer.putInt(key.length).put(key);
+        }
+        buffer.put(value);
+        crc.update(buffer.slice(position + RECORD_HEADER_SIZE, length));
+        buffer.putInt(position + Integer.BYTES, (int) crc.getValue());
+        buffer.putInt(position, length);
+        tail.writePosition = position + RECORD_HEADER_SIZE + length;
+        return true;
+    }
+
+    private Segment createSegment() throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", nextSequence++, SEGMENT_SUFFIX));
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        buffer.putInt(0, SEGMENT_MAGIC);
+        buffer.putInt(READ_OFFSET_POSITION, SEGMENT_HEADER_SIZE);
+        return new Segment(path, buffer, SEGMENT_HEADER_SIZE, SEGMENT_HEADER_SIZE);
+    }
+
+    /**
+     * Opens existing segments in the order of their sequence numbers.
+     * Every segment is scanned from its read offset up to the first record with a wrong length or checksum,
+     * the rest of the segment is zeroed. Segments without records to replay are deleted,
+     * files which are not named like segments are skipped and left in place.
+     */
+    private void recover() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(paths::add);
+        }
+        Collections.sort(paths);
+        for (Path path : paths) {
+            long sequence = sequenceOf(path);
+            if (sequence < 0) {
+                LOGGER.warn("Skipping file {} which is not an audit journal segment", path);
+                continue;
+            }
+            nextSequence = Math.max(nextSequence, sequence + 1);
+            Segment segment = openSegment(path);
+            if (segment == null || segment.readPosition == segment.writePosition) {
+                Files.deleteIfExists(path);
+                continue;
+            }
+            segments.addLast(segment);
+        }
+        if (pendingRecords > 0) {
+            LOGGER.info("Recovered {} audit records from the journal", pendingRecords);
+        }
+    }
+
+    /**
+     * @return sequence number of the segment, -1 if the name is not a sequence number of 20 digits followed by the suffix
+     */
+    private static long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        if (name.length() != SEQUENCE_LENGTH + SEGMENT_SUFFIX.length() || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1L;
+        }
+        for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return -1L;
+            }
+        }
+        try {
+            return Long.parseLong(name.substring(0, SEQUENCE_LENGTH));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private Segment openSegment(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < SEGMENT_HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                LOGGER.warn("Skipping audit journal segment {} of unexpected size", path);
+                return null;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        if (buffer.getInt(0) != SEGMENT_MAGIC) {
+            LOGGER.warn("Skipping audit journal segment {} with unknown header", path);
+            return null;
+        }
+        int readPosition = buffer.getInt(READ_OFFSET_POSITION);
+        if (readPosition < SEGMENT_HEADER_SIZE || readPosition > buffer.capacity()) {
+            readPosition = SEGMENT_HEADER_SIZE;
+        }
+        int position = readPosition;
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || length > buffer.capacity() - position - RECORD_HEADER_SIZE) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(position + RECORD_HEADER_SIZE, length));
+            if ((int) crc.getValue() != buffer.getInt(position + Integer.BYTES)) {
+                LOGGER.warn("Cutting off torn record at offset {} of audit journal segment {}", position, path);
+                break;
+            }
+            position += RECORD_HEADER_SIZE + length;
+            pendingRecords++;
+        }
+        for (int i = position; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) 0);
+        }
+        return new Segment(path, buffer, readPosition, position);
+    }
+
+    private static ProducerRecord<String, byte[]> readRecord(ByteBuffer segment, int position, int length) {
+        ByteBuffer buffer = segment.slice(position, length);
+        byte[] topic = new byte[buffer.getShort()];
+        buffer.get(topic);
+        int keyLength = buffer.getInt();
+        String key = null;
+        if (keyLength != NULL_KEY) {
+            byte[] keyBytes = new byte[keyLength];
+            buffer.get(keyBytes);
+            key = new String(keyBytes, StandardCharsets.UTF_8);
+        }
+        byte[] value = new byte[buffer.remaining()];
+        buffer.get(value);
+        return new ProducerRecord<>(new String(topic, StandardCharsets.UTF_8), key, value);
+    }
+
+    private static void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to delete audit journal segment {}: {}", segment.path, e.toString());
+        }
+    }
+
+    /**
+     * Mapped segment file. The mapping is released by the garbage collector after the segment is deleted.
+     */
+    private static final class Segment {
+
+        private final Path path;
+
+        private final MappedByteBuffer buffer;
+
+        private int readPosition;
+
+        private int writePosition;
+
+        private Segment(Path path, MappedByteBuffer buffer, int readPosition, int writePosition) {
+            this.path = path;
+            this.buffer = buffer;
+            this.readPosition = readPosition;
+            this.writePosition = writePosition;
+        }
+
+        private boolean hasSpace(int bytes) {
+            return buffer.capacity() - writePosition >= bytes;
+        }
+
+    }
+
+}
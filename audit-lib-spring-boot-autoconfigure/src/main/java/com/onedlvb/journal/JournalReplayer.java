@@ -0,0 +1,110 @@
+package com.onedlvb.journal;
+
+import com.onedlvb.advice.exception.KafkaSendMessageException;
+import com.onedlvb.kafka.AuditProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background task sending records of the {@link AuditJournal} to the Kafka once the broker is reachable again.
+ * <p>
+ * Records are replayed in the order they were journaled, every batch in its own transaction.
+ * A batch is removed from the journal only after its transaction is committed.
+ * If the broker is still unavailable, or the batch fails for any other reason, the replayer waits for the replay interval
+ * and tries again.
+ * @author Matushkin Anton
+ */
+public class JournalReplayer implements AutoCloseable {
+
+    private static final Logger LOGGER = LogManager.getLogger(JournalReplayer.class);
+
+    private final AuditProducer producer;
+
+    private final AuditJournal journal;
+
+    private final int batchSize;
+
+    private final long replayIntervalNs;
+
+    private final Thread replayerThread;
+
+    private volatile boolean running;
+
+    /**
+     * @param producer         producer sending the records
+     * @param journal          journal to replay
+     * @param batchSize        maximum number of records sent in one transaction
+     * @param replayIntervalMs how long to wait before the next attempt when the journal is empty or the broker is unavailable
+     */
+    public JournalReplayer(AuditProducer producer, AuditJournal journal, int batchSize, long replayIntervalMs) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Journal replay batch size must be greater than 0");
+        }
+        this.producer = producer;
+        this.journal = journal;
+        this.batchSize = batchSize;
+        this.replayIntervalNs = TimeUnit.MILLISECONDS.toNanos(replayIntervalMs);
+        this.replayerThread = new Thread(this::replay, "audit-journal-replayer");
+        this.replayerThread.setDaemon(true);
+    }
+
+    /**
+     * Starts the replayer thread.
+     */
+    public void start() {
+        running = true;
+        replayerThread.start();
+    }
+
+    /**
+     * Stops the replayer thread after the batch being sent. Records left in the journal are replayed on the next start.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(replayerThread);
+        try {
+            replayerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends one batch from the head of the journal.
+     * <p>
+     * @return number of replayed records
+     * @throws KafkaSendMessageException if the batch could not be sent, the batch stays in the journal
+     */
+    int replayBatch() throws KafkaSendMessageException {
+        List<ProducerRecord<String, byte[]>> records = journal.peek(batchSize);
+        if (records.isEmpty()) {
+            return 0;
+        }
+        producer.sendTransaction(records);
+        journal.commit(records.size());
+        return records.size();
+    }
+
+    private void replay() {
+        while (running) {
+            int replayed = 0;
+            try {
+                replayed = replayBatch();
+            } catch (KafkaSendMessageException e) {
+                LOGGER.debug("Kafka is still unavailable, {} audit records stay in the journal", journal.getPendingCount());
+            } catch (RuntimeException e) {
+                LOGGER.error("Unable to replay audit journal, {} audit records stay in it", journal.getPendingCount(), e);
+            }
+            if (replayed == 0 && running) {
+                LockSupport.parkNanos(this, replayIntervalNs);
+            }
+        }
+    }
+
+}
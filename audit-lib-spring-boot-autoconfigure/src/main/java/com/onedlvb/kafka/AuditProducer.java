@@ -1,80 +1,174 @@
 package com.onedlvb.kafka;
 
 import com.onedlvb.advice.exception.KafkaSendMessageException;
-import com.onedlvb.config.AuditLibProperties;
+import com.onedlvb.event.AuditEvent;
+import com.onedlvb.journal.AuditJournal;
+import com.onedlvb.metrics.AuditMetrics;
+import com.onedlvb.serialization.AuditEventSerializer;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
-import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.errors.AuthorizationException;
+import org.apache.kafka.common.errors.OutOfOrderSequenceException;
 import org.apache.kafka.common.errors.ProducerFencedException;
-import org.springframework.beans.factory.annotation.Value;
+import org.apache.kafka.common.errors.UnsupportedVersionException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
-import java.util.Properties;
 
 /**
  * A component responsible for producing audit messages to Kafka topics.
+ * Producers are taken from the {@link TransactionalProducerPool} and returned to it after every call.
+ * Events are converted to record values by the configured {@link AuditEventSerializer}.
+ * With an {@link AuditJournal} records that can not be sent are stored in the journal instead of being lost.
+ * While the journal is not empty new records are appended to it as well, so they are replayed in order.
  * @author Matushkin Anton
  */
 @Component
-@RequiredArgsConstructor
 public class AuditProducer {
 
-    @Value("${spring.kafka.bootstrap-servers}")
-    private String bootstrapServers;
+    private static final Logger LOGGER = LogManager.getLogger(AuditProducer.class);
 
-    @NonNull
-    private final AuditLibProperties properties;
+    private final TransactionalProducerPool producerPool;
+
+    private final AuditEventSerializer serializer;
+
+    private final AuditJournal journal;
+
+    private final AuditMetrics metrics;
+
+    public AuditProducer(@NonNull TransactionalProducerPool producerPool, @NonNull AuditEventSerializer serializer) {
+        this(producerPool, serializer, null, AuditMetrics.NOOP);
+    }
 
     /**
-     * Sends a message to the specified Kafka topic.
+     * @param producerPool pool of transactional producers
+     * @param serializer   serializer converting events to record values
+     * @param journal      journal of records that could not be sent, null to throw an exception instead
+     * @param metrics      metrics of the Kafka transactions
+     */
+    public AuditProducer(@NonNull TransactionalProducerPool producerPool,
+                         @NonNull AuditEventSerializer serializer,
+                         AuditJournal journal,
+                         @NonNull AuditMetrics metrics) {
+        this.producerPool = producerPool;
+        this.serializer = serializer;
+        this.journal = journal;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sends a message to the specified Kafka topic in the legacy text format.
      * Uses transactions.
      * <p>
      * @param topic   the Kafka topic to which the message should be sent
      * @param message the message to be sent, represented as a map of key-value pairs
      */
     public void sendMessage(String topic, Map<String, String> message) throws KafkaSendMessageException {
-        KafkaProducer<String, String> producer = null;
+        sendMessages(List.of(new ProducerRecord<>(topic, message.toString().getBytes(StandardCharsets.UTF_8))));
+    }
+
+    /**
+     * Sends an event to the specified Kafka topic in the configured format.
+     * Uses transactions.
+     * <p>
+     * @param topic the Kafka topic to which the event should be sent
+     * @param event the event to be sent
+     */
+    public void sendEvent(String topic, AuditEvent event) throws KafkaSendMessageException {
+        sendMessages(List.of(toRecord(topic, event)));
+    }
+
+    /**
+     * Sends all records in a single transaction.
+     * Consumers reading with read_committed see either all of them or none of them.
+     * If the records can not be sent they are stored in the journal, when it is configured.
+     * <p>
+     * @param records records to be sent, may belong to different topics
+     * @throws KafkaSendMessageException if the records were neither sent nor journaled
+     */
+    public void sendMessages(List<ProducerRecord<String, byte[]>> records) throws KafkaSendMessageException {
+        if (journal == null) {
+            sendTransaction(records);
+            return;
+        }
+        if (journal.isEmpty()) {
+            try {
+                sendTransaction(records);
+                return;
+            } catch (KafkaSendMessageException e) {
+                LOGGER.warn("Kafka is unavailable, audit records are stored in the journal: {}", e.getMessage());
+            }
+        }
+        if (!journal.append(records)) {
+            throw new KafkaSendMessageException("Unable to send message to kafka broker, audit journal is full.");
+        }
+    }
+
+    /**
+     * Sends all records in a single transaction, never uses the journal.
+     * <p>
+     * @param records records to be sent, may belong to different topics
+     */
+    public void sendTransaction(List<ProducerRecord<String, byte[]>> records) throws KafkaSendMessageException {
+        Producer<String, byte[]> producer;
         try {
-            producer = getKafkaProducer();
+            producer = producerPool.borrow();
+        } catch (KafkaSendMessageException e) {
+            metrics.recordKafkaFailure(records.size());
+            throw e;
+        }
+        try {
+            long beginNs = System.nanoTime();
             producer.beginTransaction();
-            producer.send(new ProducerRecord<>(topic, message.toString()));
-            producer.commitTransaction();
-        } catch (ProducerFencedException e) {
-            if (producer != null) {
-                producer.close();
+            for (ProducerRecord<String, byte[]> record : records) {
+                producer.send(record);
             }
+            long commitNs = System.nanoTime();
+            metrics.recordKafkaSend(commitNs - beginNs);
+            producer.commitTransaction();
+            metrics.recordKafkaCommit(System.nanoTime() - commitNs);
+            producerPool.release(producer);
+        } catch (ProducerFencedException | OutOfOrderSequenceException
+                 | AuthorizationException | UnsupportedVersionException e) {
+            producerPool.invalidate(producer);
+            metrics.recordKafkaFailure(records.size());
+            throw new KafkaSendMessageException("Unable to send message to kafka broker.");
         } catch (KafkaException e) {
-            if (producer != null) {
-                producer.abortTransaction();
-            }
+            abortTransaction(producer);
+            metrics.recordKafkaFailure(records.size());
+            throw new KafkaSendMessageException("Unable to send message to kafka broker.");
+        } catch (RuntimeException e) {
+            // The state of the transaction is unknown, the producer must not be borrowed again
+            producerPool.invalidate(producer);
+            metrics.recordKafkaFailure(records.size());
+            LOGGER.error("Unexpected error while sending audit records to kafka", e);
             throw new KafkaSendMessageException("Unable to send message to kafka broker.");
         }
-
     }
 
     /**
-     * @return configured producer.
+     * Aborts the current transaction and returns the producer to the pool.
+     * If the transaction can not be aborted the producer is recreated.
+     * <p>
+     * @param producer producer with an open transaction
      */
-    private KafkaProducer<String, String> getKafkaProducer() {
-        String defaultTransactionalId = "default-transactional-id";
-        if (properties.getKafkaTransactionalId() != null) {
-            defaultTransactionalId = properties.getKafkaTransactionalId();
+    private void abortTransaction(Producer<String, byte[]> producer) {
+        try {
+            producer.abortTransaction();
+            producerPool.release(producer);
+        } catch (KafkaException e) {
+            producerPool.invalidate(producer);
         }
-        Properties props = new Properties();
-        props.put("bootstrap.servers", bootstrapServers);
-        props.put("acks", "all");
-        props.put("enable.idempotence", "true");
-        props.put("transactional.id", defaultTransactionalId);
-        props.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
-        props.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
-        props.put("max.block.ms", "5000");
-
-        KafkaProducer<String, String> producer = new KafkaProducer<>(props);
-        producer.initTransactions();
-        return producer;
+    }
+
+    private ProducerRecord<String, byte[]> toRecord(String topic, AuditEvent event) {
+        return new ProducerRecord<>(topic, event.getKey(), serializer.serialize(event));
     }
 
 }
@@ -0,0 +1,16 @@
+package com.onedlvb.kafka;
+
+/**
+ * Enum for the keys of Kafka records with audit events.
+ * Records with the same key go to the same partition, so they are consumed in the order they were sent.
+ * Possible strategies:
+ * {@link #SERVICE} - the key is the name of the application,
+ * {@link #METHOD} - the key is the name of the audited method with its declaring type.
+ * @author Matushkin Anton
+ */
+public enum KeyStrategy {
+
+    SERVICE,
+    METHOD
+
+}
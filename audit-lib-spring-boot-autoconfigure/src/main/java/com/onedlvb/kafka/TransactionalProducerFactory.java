@@ -0,0 +1,41 @@
+package com.onedlvb.kafka;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+
+import java.util.Properties;
+import java.util.function.Function;
+
+/**
+ * Factory creating transactional Kafka producers for a given transactional id.
+ * Transactions are not initialized here, it is done by {@link TransactionalProducerPool}.
+ * @author Matushkin Anton
+ */
+@RequiredArgsConstructor
+public class TransactionalProducerFactory implements Function<String, Producer<String, byte[]>> {
+
+    public static final long MAX_BLOCK_MS = 5000L;
+
+    @NonNull
+    private final String bootstrapServers;
+
+    /**
+     * @param transactionalId transactional id of the producer
+     * @return configured producer.
+     */
+    @Override
+    public Producer<String, byte[]> apply(String transactionalId) {
+        Properties props = new Properties();
+        props.put("bootstrap.servers", bootstrapServers);
+        props.put("acks", "all");
+        props.put("enable.idempotence", "true");
+        props.put("transactional.id", transactionalId);
+        props.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+        props.put("value.serializer", "org.apache.kafka.common.serialization.ByteArraySerializer");
+        props.put("max.block.ms", String.valueOf(MAX_BLOCK_MS));
+        return new KafkaProducer<>(props);
+    }
+
+}
@@ -0,0 +1,173 @@
+package com.onedlvb.kafka;
+
+import com.onedlvb.advice.exception.KafkaSendMessageException;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.KafkaException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A fixed-size pool of long-lived transactional Kafka producers.
+ * <p>
+ * Every producer of the pool owns its own transactional id ({@code prefix-0}, {@code prefix-1}, ...),
+ * so several transactions can be in flight at the same time. Producers are created lazily on first use,
+ * reused across calls and recreated with the same transactional id only after they were invalidated
+ * because of fencing or a fatal error. All producers are closed when the pool is closed.
+ * @author Matushkin Anton
+ */
+public class TransactionalProducerPool implements AutoCloseable {
+
+    private static final Logger LOGGER = LogManager.getLogger(TransactionalProducerPool.class);
+
+    private static final long POLL_INTERVAL_MS = 50L;
+
+    private final BlockingQueue<Producer<String, byte[]>> idleProducers;
+
+    /**
+     * Vacant ids are taken from the head, ids of invalidated producers are returned to the head,
+     * so a recreated producer gets the transactional id of the producer it replaces.
+     */
+    private final BlockingDeque<String> vacantTransactionalIds;
+
+    private final Map<Producer<String, byte[]>, String> transactionalIds = new ConcurrentHashMap<>();
+
+    private final Function<String, Producer<String, byte[]>> producerFactory;
+
+    private final long borrowTimeoutMs;
+
+    private volatile boolean closed;
+
+    /**
+     * @param size                  maximum number of producers in the pool
+     * @param transactionalIdPrefix prefix of the transactional ids of the producers
+     * @param producerFactory       factory creating a producer for a transactional id
+     * @param borrowTimeoutMs       how long {@link #borrow()} waits for a free producer
+     */
+    public TransactionalProducerPool(int size,
+                                     String transactionalIdPrefix,
+                                     Function<String, Producer<String, byte[]>> producerFactory,
+                                     long borrowTimeoutMs) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Producer pool size must be greater than 0");
+        }
+        this.idleProducers = new ArrayBlockingQueue<>(size);
+        this.vacantTransactionalIds = new LinkedBlockingDeque<>(size);
+        for (int i = 0; i < size; i++) {
+            vacantTransactionalIds.add(transactionalIdPrefix + "-" + i);
+        }
+        this.producerFactory = producerFactory;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+    }
+
+    /**
+     * Takes an idle producer from the pool, creates a new one if the pool is not full yet,
+     * otherwise waits until another caller releases its producer.
+     * <p>
+     * @return producer with initialized transactions
+     * @throws KafkaSendMessageException if no producer could be obtained
+     */
+    public Producer<String, byte[]> borrow() throws KafkaSendMessageException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMs);
+        try {
+            while (!closed) {
+                Producer<String, byte[]> producer = idleProducers.poll();
+                if (producer != null) {
+                    return producer;
+                }
+                String transactionalId = vacantTransactionalIds.poll();
+                if (transactionalId != null) {
+                    return create(transactionalId);
+                }
+                long remainingNs = deadline - System.nanoTime();
+                if (remainingNs <= 0) {
+                    throw new KafkaSendMessageException("No kafka producer available.");
+                }
+                producer = idleProducers.poll(Math.min(remainingNs, TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MS)),
+                        TimeUnit.NANOSECONDS);
+                if (producer != null) {
+                    return producer;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KafkaSendMessageException("Interrupted while waiting for a kafka producer.");
+        }
+        throw new KafkaSendMessageException("Kafka producer pool is closed.");
+    }
+
+    /**
+     * Returns a healthy producer back to the pool.
+     * <p>
+     * @param producer producer obtained by {@link #borrow()}
+     */
+    public void release(Producer<String, byte[]> producer) {
+        if (closed || !idleProducers.offer(producer)) {
+            invalidate(producer);
+            return;
+        }
+        if (closed && idleProducers.remove(producer)) {
+            invalidate(producer);
+        }
+    }
+
+    /**
+     * Closes a producer that must not be used anymore (fenced or failed fatally).
+     * Its transactional id becomes vacant, so a new producer is created on demand.
+     * <p>
+     * @param producer producer obtained by {@link #borrow()}
+     */
+    public void invalidate(Producer<String, byte[]> producer) {
+        String transactionalId = transactionalIds.remove(producer);
+        closeQuietly(producer);
+        if (transactionalId != null && !closed) {
+            vacantTransactionalIds.offerFirst(transactionalId);
+        }
+    }
+
+    /**
+     * Closes all idle producers. Borrowed producers are closed as soon as they are released.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Producer<String, byte[]> producer;
+        while ((producer = idleProducers.poll()) != null) {
+            invalidate(producer);
+        }
+    }
+
+    private Producer<String, byte[]> create(String transactionalId) throws KafkaSendMessageException {
+        Producer<String, byte[]> producer = null;
+        try {
+            producer = producerFactory.apply(transactionalId);
+            producer.initTransactions();
+            transactionalIds.put(producer, transactionalId);
+            return producer;
+        } catch (KafkaException e) {
+            if (producer != null) {
+                closeQuietly(producer);
+            }
+            vacantTransactionalIds.offerFirst(transactionalId);
+            throw new KafkaSendMessageException("Unable to initialize kafka producer.");
+        }
+    }
+
+    private static void closeQuietly(Producer<String, byte[]> producer) {
+        try {
+            producer.close(Duration.ZERO);
+        } catch (KafkaException e) {
+            LOGGER.warn("Unable to close kafka producer: {}", e.toString());
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.onedlvb.latency;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Actuator endpoint /actuator/auditlatency with latency percentiles of audited methods and endpoints.
+ * /actuator/auditlatency/{name} returns the histogram of one method by its qualified name.
+ * @author Matushkin Anton
+ */
+@Endpoint(id = "auditlatency")
+public class AuditLatencyEndpoint {
+
+    private final LatencyRegistry registry;
+
+    public AuditLatencyEndpoint(LatencyRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * @return snapshots of all histograms grouped into methods and endpoints
+     */
+    @ReadOperation
+    public Map<String, Map<String, LatencyHistogram.Snapshot>> latencies() {
+        Map<String, Map<String, LatencyHistogram.Snapshot>> latencies = new LinkedHashMap<>();
+        latencies.put("methods", registry.methodSnapshots());
+        latencies.put("endpoints", registry.endpointSnapshots());
+        return latencies;
+    }
+
+    /**
+     * @param name qualified name of an annotated method or controller method
+     * @return snapshot of the histogram of the method, null (404) if the method was not called yet
+     */
+    @ReadOperation
+    public LatencyHistogram.Snapshot latency(@Selector String name) {
+        LatencyHistogram histogram = registry.findHistogram(name);
+        return histogram != null ? histogram.snapshot() : null;
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.onedlvb.latency;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongConsumer;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds with a fixed memory footprint.
+ * <p>
+ * Buckets are log-linear like in HdrHistogram: values below {@value #SUB_BUCKET_COUNT} have a bucket each,
+ * every higher power of two is split into {@value #SUB_BUCKET_COUNT} buckets of equal width,
+ * so a value is reported with a relative error of at most 1/{@value #SUB_BUCKET_COUNT}.
+ * All values of a long fit into {@value #BUCKET_COUNT} buckets, recording is a few atomic increments without allocation.
+ * @author Matushkin Anton
+ */
+public class LatencyHistogram implements LongConsumer {
+
+    static final int SUB_BUCKET_BITS = 5;
+
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong totalNs = new AtomicLong();
+
+    private final AtomicLong maxNs = new AtomicLong();
+
+    /**
+     * @param nanos latency of a call, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0L);
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        totalNs.addAndGet(value);
+        long max = maxNs.get();
+        while (value > max && !maxNs.compareAndSet(max, value)) {
+            max = maxNs.get();
+        }
+    }
+
+    @Override
+    public void accept(long nanos) {
+        record(nanos);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxNs() {
+        return maxNs.get();
+    }
+
+    /**
+     * Reads the histogram without stopping the recording threads, so counts of a snapshot may lag behind by a few calls.
+     * <p>
+     * @return percentiles and totals of the recorded latencies
+     */
+    public Snapshot snapshot() {
+        long[] bucketCounts = copyCounts();
+        long total = sum(bucketCounts);
+        long max = maxNs.get();
+        return new Snapshot(
+                total,
+                total == 0 ? 0.0 : (double) totalNs.get() / Math.max(count.get(), 1L),
+                valueAtPercentile(bucketCounts, total, 50.0, max),
+                valueAtPercentile(bucketCounts, total, 90.0, max),
+                valueAtPercentile(bucketCounts, total, 99.0, max),
+                valueAtPercentile(bucketCounts, total, 99.9, max),
+                max);
+    }
+
+    /**
+     * @param percentile percentile from 0 to 100
+     * @return the highest value of the bucket holding the percentile, never above the recorded maximum
+     */
+    public long valueAtPercentile(double percentile) {
+        long[] bucketCounts = copyCounts();
+        return valueAtPercentile(bucketCounts, sum(bucketCounts), percentile, maxNs.get());
+    }
+
+    private long[] copyCounts() {
+        long[] bucketCounts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            bucketCounts[i] = counts.get(i);
+        }
+        return bucketCounts;
+    }
+
+    private static long sum(long[] bucketCounts) {
+        long total = 0;
+        for (long bucketCount : bucketCounts) {
+            total += bucketCount;
+        }
+        return total;
+    }
+
+    private static long valueAtPercentile(long[] bucketCounts, long total, double percentile, long max) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            seen += bucketCounts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @param value non-negative value
+     * @return index of the bucket of the value
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int magnitude = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * @param bucket index of a bucket
+     * @return the highest value counted in the bucket
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        long subBucket = SUB_BUCKET_COUNT + (bucket - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Latencies recorded by a histogram, in nanoseconds.
+     * <p>
+     * @param count  number of recorded calls
+     * @param meanNs mean latency
+     * @param p50Ns  median latency
+     * @param p90Ns  90th percentile
+     * @param p99Ns  99th percentile
+     * @param p999Ns 99.9th percentile
+     * @param maxNs  the highest latency
+     */
+    public record Snapshot(long count, double meanNs, long p50Ns, long p90Ns, long p99Ns, long p999Ns, long maxNs) {}
+
+}
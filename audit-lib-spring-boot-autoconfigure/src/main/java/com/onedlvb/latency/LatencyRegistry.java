@@ -0,0 +1,67 @@
+package com.onedlvb.latency;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latency histograms of methods annotated with {@link com.onedlvb.advice.annotation.AuditLog}
+ * and of endpoints annotated with {@link com.onedlvb.advice.annotation.AuditLogHttp}, by qualified names of the methods.
+ * <p>
+ * A histogram is created on the first call of its method and kept by the caller, so the registry is not touched per call.
+ * Every histogram takes a fixed amount of memory, so the footprint is bounded by the number of annotated methods.
+ * @author Matushkin Anton
+ */
+public class LatencyRegistry {
+
+    private final Map<String, LatencyHistogram> methods = new ConcurrentHashMap<>();
+
+    private final Map<String, LatencyHistogram> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * @param qualifiedName name of an annotated method with its declaring type
+     * @return histogram of the method, created on the first call
+     */
+    public LatencyHistogram methodHistogram(String qualifiedName) {
+        return methods.computeIfAbsent(qualifiedName, name -> new LatencyHistogram());
+    }
+
+    /**
+     * @param qualifiedName name of an annotated controller method with its declaring type
+     * @return histogram of the endpoint, created on the first call
+     */
+    public LatencyHistogram endpointHistogram(String qualifiedName) {
+        return endpoints.computeIfAbsent(qualifiedName, name -> new LatencyHistogram());
+    }
+
+    /**
+     * @param qualifiedName name of an annotated method or controller method with its declaring type
+     * @return histogram of the method, null if the method was not called yet
+     */
+    public LatencyHistogram findHistogram(String qualifiedName) {
+        LatencyHistogram histogram = methods.get(qualifiedName);
+        return histogram != null ? histogram : endpoints.get(qualifiedName);
+    }
+
+    /**
+     * @return snapshots of the histograms of methods sorted by names
+     */
+    public Map<String, LatencyHistogram.Snapshot> methodSnapshots() {
+        return snapshots(methods);
+    }
+
+    /**
+     * @return snapshots of the histograms of endpoints sorted by names
+     */
+    public Map<String, LatencyHistogram.Snapshot> endpointSnapshots() {
+        return snapshots(endpoints);
+    }
+
+    private static Map<String, LatencyHistogram.Snapshot> snapshots(Map<String, LatencyHistogram> histograms) {
+        Map<String, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+        histograms.forEach((name, histogram) -> snapshots.put(name, histogram.snapshot()));
+        return Collections.unmodifiableMap(snapshots);
+    }
+
+}
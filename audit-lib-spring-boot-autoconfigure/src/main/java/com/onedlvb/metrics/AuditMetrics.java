@@ -0,0 +1,53 @@
+package com.onedlvb.metrics;
+
+import java.lang.reflect.Method;
+import java.util.function.LongConsumer;
+
+/**
+ * Metrics of the audit path. Implementations are called on hot paths,
+ * so they must neither lock nor allocate when recording.
+ * {@link #NOOP} is used when no meter registry is available.
+ * @author Matushkin Anton
+ */
+public interface AuditMetrics {
+
+    AuditMetrics NOOP = new AuditMetrics() { };
+
+    LongConsumer NOOP_TIMER = nanos -> { };
+
+    /**
+     * Registers the timer of the aspect overhead of the method. Called once per method,
+     * the timer is kept by the aspect together with other metadata of the method.
+     * <p>
+     * @param method audited method
+     * @return timer accepting nanoseconds spent by the aspect around the method, without the method itself
+     */
+    default LongConsumer aspectOverheadTimer(Method method) {
+        return NOOP_TIMER;
+    }
+
+    /**
+     * @param nanos time from the beginning of the Kafka transaction until all records were handed to the producer
+     */
+    default void recordKafkaSend(long nanos) {
+    }
+
+    /**
+     * @param nanos time of the commit of the Kafka transaction
+     */
+    default void recordKafkaCommit(long nanos) {
+    }
+
+    /**
+     * @param records number of records not sent because of a failure
+     */
+    default void recordKafkaFailure(int records) {
+    }
+
+    /**
+     * @param status status code of the intercepted HTTP response
+     */
+    default void recordHttpEvent(int status) {
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.onedlvb.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * {@link AuditMetrics} backed by a Micrometer {@link MeterRegistry}.
+ * <p>
+ * All meters are registered up front, the aspect timer of a method once and kept by the aspect.
+ * Recording uses registered meters only, so no tags or meter ids are created per call.
+ * @author Matushkin Anton
+ */
+public class MicrometerAuditMetrics implements AuditMetrics {
+
+    private static final String[] STATUS_CLASSES = {"unknown", "1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private final MeterRegistry registry;
+
+    private final Timer kafkaSend;
+
+    private final Timer kafkaCommit;
+
+    private final Counter kafkaFailures;
+
+    private final Counter[] httpEvents = new Counter[STATUS_CLASSES.length];
+
+    public MicrometerAuditMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.kafkaSend = Timer.builder("audit.kafka.send")
+                .description("Time to hand records of a transaction to the Kafka producer")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.kafkaCommit = Timer.builder("audit.kafka.commit")
+                .description("Time to commit a Kafka transaction")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.kafkaFailures = Counter.builder("audit.kafka.failures")
+                .description("Audit records the Kafka producer failed to send")
+                .register(registry);
+        for (int i = 0; i < STATUS_CLASSES.length; i++) {
+            httpEvents[i] = Counter.builder("audit.http.events")
+                    .description("HTTP exchanges seen by the audit interceptor")
+                    .tag("status", STATUS_CLASSES[i])
+                    .register(registry);
+        }
+    }
+
+    @Override
+    public LongConsumer aspectOverheadTimer(Method method) {
+        Timer timer = Timer.builder("audit.aspect.overhead")
+                .description("Time spent by the audit aspect around an annotated method")
+                .tag("class", method.getDeclaringClass().getSimpleName())
+                .tag("method", method.getName())
+                .register(registry);
+        return nanos -> timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordKafkaSend(long nanos) {
+        kafkaSend.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordKafkaCommit(long nanos) {
+        kafkaCommit.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordKafkaFailure(int records) {
+        kafkaFailures.increment(records);
+    }
+
+    @Override
+    public void recordHttpEvent(int status) {
+        int statusClass = status / 100;
+        httpEvents[statusClass > 0 && statusClass < STATUS_CLASSES.length ? statusClass : 0].increment();
+    }
+
+}
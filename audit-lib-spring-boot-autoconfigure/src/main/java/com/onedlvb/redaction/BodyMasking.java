@@ -0,0 +1,148 @@
+package com.onedlvb.redaction;
+
+import java.util.Set;
+
+/**
+ * Masks values of named fields in raw JSON and form-urlencoded bodies, which are never parsed into objects.
+ * <p>
+ * A body starting with { or [ is scanned as JSON: the value of every member with a masked name is replaced
+ * with the quoted mask, objects and arrays included. Any other body is scanned as a form: the value of every
+ * field with a masked name is replaced with the mask. Bodies cut off in the middle of a value are masked up to their end,
+ * so a captured prefix of a body can not leak the beginning of a value either.
+ * @author Matushkin Anton
+ */
+final class BodyMasking {
+
+    private BodyMasking() {}
+
+    /**
+     * @param body  JSON, form or any other text
+     * @param names names of the masked fields
+     * @param mask  replacement of the masked values
+     * @return the body with masked values, the same body if nothing is masked
+     */
+    static String mask(String body, Set<String> names, String mask) {
+        if (names.isEmpty() || body.isEmpty()) {
+            return body;
+        }
+        int start = skipWhitespace(body, 0);
+        if (start < body.length() && (body.charAt(start) == '{' || body.charAt(start) == '[')) {
+            return maskJson(body, names, mask);
+        }
+        return maskForm(body, names, mask);
+    }
+
+    private static String maskJson(String body, Set<String> names, String mask) {
+        StringBuilder masked = null;
+        int copied = 0;
+        int i = 0;
+        while (i < body.length()) {
+            if (body.charAt(i) != '"') {
+                i++;
+                continue;
+            }
+            int nameEnd = endOfString(body, i);
+            int colon = skipWhitespace(body, nameEnd);
+            if (colon >= body.length() || body.charAt(colon) != ':' || !names.contains(body.substring(i + 1, nameEnd - 1))) {
+                i = nameEnd;
+                continue;
+            }
+            int valueStart = skipWhitespace(body, colon + 1);
+            int valueEnd = endOfValue(body, valueStart);
+            if (masked == null) {
+                masked = new StringBuilder(body.length());
+            }
+            masked.append(body, copied, valueStart).append('"').append(mask).append('"');
+            copied = valueEnd;
+            i = valueEnd;
+        }
+        return masked == null ? body : masked.append(body, copied, body.length()).toString();
+    }
+
+    private static String maskForm(String body, Set<String> names, String mask) {
+        StringBuilder masked = null;
+        int copied = 0;
+        int fieldStart = 0;
+        while (fieldStart < body.length()) {
+            int fieldEnd = body.indexOf('&', fieldStart);
+            if (fieldEnd < 0) {
+                fieldEnd = body.length();
+            }
+            int equals = body.indexOf('=', fieldStart);
+            if (equals >= 0 && equals < fieldEnd && names.contains(body.substring(fieldStart, equals))) {
+                if (masked == null) {
+                    masked = new StringBuilder(body.length());
+                }
+                masked.append(body, copied, equals + 1).append(mask);
+                copied = fieldEnd;
+            }
+            fieldStart = fieldEnd + 1;
+        }
+        return masked == null ? body : masked.append(body, copied, body.length()).toString();
+    }
+
+    /**
+     * @param start index of the opening quote
+     * @return index after the closing quote, the length of the body if the string is not closed
+     */
+    private static int endOfString(String body, int start) {
+        int i = start + 1;
+        while (i < body.length()) {
+            char c = body.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == '"') {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return body.length();
+    }
+
+    /**
+     * @param start index of the first character of the value
+     * @return index after the value, the length of the body if the value is not complete
+     */
+    private static int endOfValue(String body, int start) {
+        if (start >= body.length()) {
+            return start;
+        }
+        char first = body.charAt(start);
+        if (first == '"') {
+            return endOfString(body, start);
+        }
+        if (first != '{' && first != '[') {
+            int i = start;
+            while (i < body.length() && ",}] \t\r\n".indexOf(body.charAt(i)) < 0) {
+                i++;
+            }
+            return i;
+        }
+        int depth = 0;
+        int i = start;
+        while (i < body.length()) {
+            char c = body.charAt(i);
+            if (c == '"') {
+                i = endOfString(body, i);
+                continue;
+            }
+            if (c == '{' || c == '[') {
+                depth++;
+            } else if ((c == '}' || c == ']') && --depth == 0) {
+                return i + 1;
+            }
+            i++;
+        }
+        return body.length();
+    }
+
+    private static int skipWhitespace(String body, int start) {
+        int i = start;
+        while (i < body.length() && Character.isWhitespace(body.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+}
@@ -0,0 +1,275 @@
+package com.onedlvb.redaction;
+
+import com.onedlvb.advice.annotation.Redact;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decides which fields of audited values are redacted.
+ * <p>
+ * A field is redacted if it is annotated with {@link Redact} or its name is one of the configured field names.
+ * A class is rendered field by field if it has redacted fields or holds a class which has them, transitively,
+ * by the declared types of its fields, their type arguments or array components, e.g. Order with a Card or a List of Cards,
+ * so toString() of the outer class can not leak the redacted fields. Values of fields declared as Object or as an
+ * interface without such type arguments are inspected by their own class only when they are rendered.
+ * Classes are inspected once, {@link #typeOf(Class)} returns a cached {@link RedactedType} with compiled
+ * {@link MethodHandle} getters of the fields, so rendering a value does not use reflection.
+ * Only classes of the application (not of named modules like the JDK) are inspected.
+ * @author Matushkin Anton
+ */
+public class Redactor {
+
+    public static final String DEFAULT_MASK = "****";
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final RedactedType NOT_REDACTED = new RedactedType(null, false, new String[0], new boolean[0], new MethodHandle[0]);
+
+    private final Set<String> fieldNames;
+
+    private final String mask;
+
+    private final ClassValue<RedactedType> types = new ClassValue<>() {
+        @Override
+        protected RedactedType computeValue(Class<?> type) {
+            return compile(type);
+        }
+    };
+
+    public Redactor() {
+        this(Set.of(), DEFAULT_MASK);
+    }
+
+    /**
+     * @param fieldNames names of the fields redacted in every class, e.g. password
+     * @param mask       replacement of the redacted values
+     */
+    public Redactor(Set<String> fieldNames, String mask) {
+        this.fieldNames = Set.copyOf(fieldNames);
+        this.mask = mask;
+    }
+
+    /**
+     * @return replacement of the redacted values
+     */
+    public String getMask() {
+        return mask;
+    }
+
+    /**
+     * @param name name of a field or a key of a map
+     * @return true if values with this name are redacted in every class
+     */
+    public boolean isRedactedName(String name) {
+        return fieldNames.contains(name);
+    }
+
+    /**
+     * Masks values of the configured field names in a raw JSON or form-urlencoded body, e.g. a body captured from the streams.
+     * Fields annotated with {@link Redact} are not known in raw bodies, only the configured names are masked.
+     * <p>
+     * @param body JSON, form or any other text
+     * @return the body with masked values, the same body if nothing is masked
+     */
+    public String redactBody(String body) {
+        return BodyMasking.mask(body, fieldNames, mask);
+    }
+
+    /**
+     * @param type class of a value
+     * @return compiled fields of the class, null if the class neither has nor holds redacted fields and can be rendered with toString()
+     */
+    public RedactedType typeOf(Class<?> type) {
+        RedactedType redactedType = types.get(type);
+        return redactedType == NOT_REDACTED ? null : redactedType;
+    }
+
+    private RedactedType compile(Class<?> type) {
+        if (type.isArray() || !isInspected(type)) {
+            return NOT_REDACTED;
+        }
+        List<Field> fields = new ArrayList<>();
+        collectFields(type, fields);
+        Set<Class<?>> visited = new HashSet<>();
+        visited.add(type);
+        if (!holdsRedacted(fields, visited)) {
+            return NOT_REDACTED;
+        }
+        String[] names = new String[fields.size()];
+        boolean[] redacted = new boolean[fields.size()];
+        MethodHandle[] getters = new MethodHandle[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            names[i] = field.getName();
+            redacted[i] = isRedacted(field);
+            if (!redacted[i]) {
+                getters[i] = getter(field);
+                redacted[i] = getters[i] == null;
+            }
+        }
+        return new RedactedType(type.getSimpleName(), type.isRecord(), names, redacted, getters);
+    }
+
+    /**
+     * @param fields  fields of a class
+     * @param visited classes already inspected, so cycles of references end
+     * @return true if a field is redacted or its declared type holds a class with redacted fields
+     */
+    private boolean holdsRedacted(List<Field> fields, Set<Class<?>> visited) {
+        for (Field field : fields) {
+            if (isRedacted(field) || holdsRedacted(field.getGenericType(), visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean holdsRedacted(Type type, Set<Class<?>> visited) {
+        if (type instanceof Class<?> rawType) {
+            Class<?> component = rawType;
+            while (component.isArray()) {
+                component = component.getComponentType();
+            }
+            if (!isInspected(component) || !visited.add(component)) {
+                return false;
+            }
+            List<Field> fields = new ArrayList<>();
+            collectFields(component, fields);
+            return holdsRedacted(fields, visited);
+        }
+        if (type instanceof ParameterizedType parameterizedType) {
+            for (Type argument : parameterizedType.getActualTypeArguments()) {
+                if (holdsRedacted(argument, visited)) {
+                    return true;
+                }
+            }
+            return holdsRedacted(parameterizedType.getRawType(), visited);
+        }
+        if (type instanceof GenericArrayType arrayType) {
+            return holdsRedacted(arrayType.getGenericComponentType(), visited);
+        }
+        if (type instanceof WildcardType wildcardType) {
+            for (Type bound : wildcardType.getUpperBounds()) {
+                if (holdsRedacted(bound, visited)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true for classes of the application, which are not primitives or enums
+     */
+    private static boolean isInspected(Class<?> type) {
+        return !type.isPrimitive() && !type.isEnum() && !type.getModule().isNamed();
+    }
+
+    private static void collectFields(Class<?> type, List<Field> fields) {
+        Class<?> superclass = type.getSuperclass();
+        if (superclass != null && superclass != Object.class && !superclass.getModule().isNamed()) {
+            collectFields(superclass, fields);
+        }
+        for (Field field : type.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()) {
+                fields.add(field);
+            }
+        }
+    }
+
+    private boolean isRedacted(Field field) {
+        return field.isAnnotationPresent(Redact.class) || fieldNames.contains(field.getName());
+    }
+
+    /**
+     * @return getter of the field, null if the field is not accessible, so its value is masked
+     */
+    private static MethodHandle getter(Field field) {
+        try {
+            return MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup())
+                    .unreflectGetter(field)
+                    .asType(GETTER_TYPE);
+        } catch (IllegalAccessException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Fields of a class with redacted fields, in the order of declaration, fields of superclasses first.
+     */
+    public static final class RedactedType {
+
+        private final String name;
+
+        private final boolean record;
+
+        private final String[] fieldNames;
+
+        private final boolean[] redacted;
+
+        private final MethodHandle[] getters;
+
+        private RedactedType(String name, boolean record, String[] fieldNames, boolean[] redacted, MethodHandle[] getters) {
+            this.name = name;
+            this.record = record;
+            this.fieldNames = fieldNames;
+            this.redacted = redacted;
+            this.getters = getters;
+        }
+
+        /**
+         * @return simple name of the class
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return true for records, rendered like Name[a=1] instead of Name(a=1)
+         */
+        public boolean isRecord() {
+            return record;
+        }
+
+        public int getFieldCount() {
+            return fieldNames.length;
+        }
+
+        public String getFieldName(int index) {
+            return fieldNames[index];
+        }
+
+        public boolean isRedacted(int index) {
+            return redacted[index];
+        }
+
+        /**
+         * @param target instance of the class
+         * @param index  index of a field, which is not redacted
+         * @return value of the field
+         */
+        public Object getValue(Object target, int index) {
+            try {
+                return (Object) getters[index].invokeExact(target);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Unable to read field " + fieldNames[index] + " of " + name, e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.onedlvb.serialization;
+
+import com.onedlvb.event.AuditEvent;
+
+/**
+ * Converts audit events to the bytes sent to the Kafka.
+ * Declare your own bean of this type to replace the format configured by audit-lib-spring-boot-starter.kafka.wire-format.
+ * @see BinaryAuditEventSerializer
+ * @see LegacyTextAuditEventSerializer
+ * @author Matushkin Anton
+ */
+public interface AuditEventSerializer {
+
+    /**
+     * @param event event to serialize
+     * @return value of the Kafka record
+     */
+    byte[] serialize(AuditEvent event);
+
+}
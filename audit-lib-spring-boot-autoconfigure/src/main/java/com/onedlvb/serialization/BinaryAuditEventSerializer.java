@@ -0,0 +1,296 @@
+package com.onedlvb.serialization;
+
+import com.onedlvb.event.AuditEvent;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializer of the versioned binary format of audit events.
+ * <p>
+ * Layout: {@link #MAGIC}, {@link #VERSION}, then a sequence of fields. Every field is a one byte tag,
+ * the length of the payload as an unsigned varint and the payload itself. Strings are UTF-8,
+ * the timestamp is a big-endian int64 of epoch milliseconds, the start a big-endian int64 of epoch nanoseconds,
+ * the duration is a big-endian int64 of nanoseconds, the truncation flag is a single byte 1
+ * written only for truncated events. The count and the last timestamp of coalesced events are big-endian int64
+ * written only for events merged from more than one call. The status of an HTTP exchange is a big-endian int64
+ * written only for events of HTTP exchanges. Fields with null values are omitted,
+ * fields with unknown tags are skipped by readers, so new fields can be added without a new version.
+ * <p>
+ * Strings are encoded straight into the resulting array, without intermediate byte arrays.
+ * @author Matushkin Anton
+ */
+public class BinaryAuditEventSerializer implements AuditEventSerializer {
+
+    public static final byte MAGIC = (byte) 0xAE;
+
+    public static final byte VERSION = 1;
+
+    public static final byte SERVICE_NAME = 1;
+
+    public static final byte METHOD_NAME = 2;
+
+    public static final byte METHOD_ARGS = 3;
+
+    public static final byte RETURN_VALUE = 4;
+
+    public static final byte EXCEPTION = 5;
+
+    public static final byte TIMESTAMP = 6;
+
+    public static final byte TRUNCATED = 7;
+
+    public static final byte DURATION = 8;
+
+    public static final byte START = 9;
+
+    public static final byte COUNT = 10;
+
+    public static final byte LAST_TIMESTAMP = 11;
+
+    public static final byte HTTP_METHOD = 12;
+
+    public static final byte PATH = 13;
+
+    public static final byte STATUS = 14;
+
+    private static final int HEADER_SIZE = 2;
+
+    private static final int INT64_FIELD_SIZE = 1 + 1 + Long.BYTES;
+
+    private static final int TRUNCATED_FIELD_SIZE = 1 + 1 + 1;
+
+    @Override
+    public byte[] serialize(AuditEvent event) {
+        int serviceNameLength = utf8Length(event.getServiceName());
+        int methodNameLength = utf8Length(event.getMethodName());
+        int methodArgsLength = utf8Length(event.getMethodArgs());
+        int returnValueLength = utf8Length(event.getReturnValue());
+        int exceptionLength = utf8Length(event.getException());
+        int httpMethodLength = utf8Length(event.getHttpMethod());
+        int pathLength = utf8Length(event.getPath());
+
+        byte[] buffer = new byte[HEADER_SIZE
+                + fieldSize(serviceNameLength)
+                + fieldSize(methodNameLength)
+                + fieldSize(methodArgsLength)
+                + fieldSize(returnValueLength)
+                + fieldSize(exceptionLength)
+                + fieldSize(httpMethodLength)
+                + fieldSize(pathLength)
+                + INT64_FIELD_SIZE
+                + INT64_FIELD_SIZE
+                + INT64_FIELD_SIZE
+                + (event.isTruncated() ? TRUNCATED_FIELD_SIZE : 0)
+                + (event.getCount() > 1 ? 2 * INT64_FIELD_SIZE : 0)
+                + (event.getStatus() > 0 ? INT64_FIELD_SIZE : 0)];
+        buffer[0] = MAGIC;
+        buffer[1] = VERSION;
+        int position = HEADER_SIZE;
+        position = writeString(buffer, position, SERVICE_NAME, event.getServiceName(), serviceNameLength);
+        position = writeString(buffer, position, METHOD_NAME, event.getMethodName(), methodNameLength);
+        position = writeString(buffer, position, METHOD_ARGS, event.getMethodArgs(), methodArgsLength);
+        position = writeString(buffer, position, RETURN_VALUE, event.getReturnValue(), returnValueLength);
+        position = writeString(buffer, position, EXCEPTION, event.getException(), exceptionLength);
+        position = writeString(buffer, position, HTTP_METHOD, event.getHttpMethod(), httpMethodLength);
+        position = writeString(buffer, position, PATH, event.getPath(), pathLength);
+        position = writeLong(buffer, position, TIMESTAMP, event.getTimestamp());
+        position = writeLong(buffer, position, DURATION, event.getDurationNs());
+        position = writeLong(buffer, position, START, event.getStartNs());
+        if (event.getCount() > 1) {
+            position = writeLong(buffer, position, COUNT, event.getCount());
+            position = writeLong(buffer, position, LAST_TIMESTAMP, event.getLastTimestamp());
+        }
+        if (event.getStatus() > 0) {
+            position = writeLong(buffer, position, STATUS, event.getStatus());
+        }
+        if (event.isTruncated()) {
+            buffer[position++] = TRUNCATED;
+            buffer[position++] = 1;
+            buffer[position] = 1;
+        }
+        return buffer;
+    }
+
+    /**
+     * Reads an event written by {@link #serialize(AuditEvent)}.
+     * <p>
+     * @param data serialized event
+     * @return deserialized event
+     * @throws IllegalArgumentException if data is not an audit event in the binary format
+     */
+    public static AuditEvent deserialize(byte[] data) {
+        if (!isBinary(data)) {
+            throw new IllegalArgumentException("Not a binary audit event");
+        }
+        AuditEvent.AuditEventBuilder event = AuditEvent.builder();
+        ByteBuffer buffer = ByteBuffer.wrap(data, HEADER_SIZE, data.length - HEADER_SIZE);
+        try {
+            while (buffer.hasRemaining()) {
+                byte tag = buffer.get();
+                int length = readVarint(buffer);
+                switch (tag) {
+                    case SERVICE_NAME -> event.serviceName(readString(buffer, length));
+                    case METHOD_NAME -> event.methodName(readString(buffer, length));
+                    case METHOD_ARGS -> event.methodArgs(readString(buffer, length));
+                    case RETURN_VALUE -> event.returnValue(readString(buffer, length));
+                    case EXCEPTION -> event.exception(readString(buffer, length));
+                    case TIMESTAMP -> event.timestamp(readLong(buffer, length));
+                    case TRUNCATED -> event.truncated(readFlag(buffer, length));
+                    case DURATION -> event.durationNs(readLong(buffer, length));
+                    case START -> event.startNs(readLong(buffer, length));
+                    case COUNT -> event.count(readLong(buffer, length));
+                    case LAST_TIMESTAMP -> event.lastTimestamp(readLong(buffer, length));
+                    case HTTP_METHOD -> event.httpMethod(readString(buffer, length));
+                    case PATH -> event.path(readString(buffer, length));
+                    case STATUS -> event.status((int) readLong(buffer, length));
+                    default -> skip(buffer, length);
+                }
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed binary audit event", e);
+        }
+        return event.build();
+    }
+
+    /**
+     * @param data value of the Kafka record
+     * @return true if data starts with the header of the binary format
+     */
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length >= HEADER_SIZE && data[0] == MAGIC && data[1] == VERSION;
+    }
+
+    private static int fieldSize(int utf8Length) {
+        return utf8Length < 0 ? 0 : 1 + varintSize(utf8Length) + utf8Length;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("Negative length");
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static long readLong(ByteBuffer buffer, int length) {
+        if (length != Long.BYTES) {
+            throw new IllegalArgumentException("Malformed int64 field");
+        }
+        return buffer.getLong();
+    }
+
+    private static boolean readFlag(ByteBuffer buffer, int length) {
+        if (length != 1) {
+            throw new IllegalArgumentException("Malformed flag field");
+        }
+        return buffer.get() != 0;
+    }
+
+    private static void skip(ByteBuffer buffer, int length) {
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        buffer.position(buffer.position() + length);
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * @return number of bytes of the UTF-8 representation, -1 for null.
+     * Unpaired surrogates are replaced with '?' like {@link String#getBytes} does.
+     */
+    private static int utf8Length(String value) {
+        if (value == null) {
+            return -1;
+        }
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static int writeLong(byte[] buffer, int position, byte tag, long value) {
+        buffer[position++] = tag;
+        buffer[position++] = Long.BYTES;
+        for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+            buffer[position++] = (byte) (value >>> shift);
+        }
+        return position;
+    }
+
+    private static int writeString(byte[] buffer, int position, byte tag, String value, int utf8Length) {
+        if (value == null) {
+            return position;
+        }
+        buffer[position++] = tag;
+        int length = utf8Length;
+        while ((length & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        buffer[position++] = (byte) length;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return position;
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.onedlvb.serialization;
+
+import com.onedlvb.event.AuditEvent;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializer of the legacy format: UTF-8 bytes of toString() of {@link AuditEvent#toMessage()},
+ * e.g. {serviceName=app, methodName=add, methodArgs=Args: [5, 10], returnValue=15}.
+ * @author Matushkin Anton
+ */
+public class LegacyTextAuditEventSerializer implements AuditEventSerializer {
+
+    @Override
+    public byte[] serialize(AuditEvent event) {
+        return event.toMessage().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+}
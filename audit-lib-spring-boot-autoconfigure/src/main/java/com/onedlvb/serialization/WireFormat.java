@@ -0,0 +1,15 @@
+package com.onedlvb.serialization;
+
+/**
+ * Enum for formats of audit events sent to the Kafka
+ * Possible formats:
+ * {@link #BINARY} - versioned binary format, see {@link BinaryAuditEventSerializer},
+ * {@link #TEXT} - legacy format, toString() of the message map.
+ * @author Matushkin Anton
+ */
+public enum WireFormat {
+
+    BINARY,
+    TEXT
+
+}
@@ -0,0 +1,35 @@
+package com.onedlvb.util;
+
+import java.time.Instant;
+
+/**
+ * Utility class for wall clock time with nanosecond resolution.
+ * The precision depends on the platform, microseconds on most of them.
+ * Durations are measured with {@link System#nanoTime()}, which is monotonic, and added to the start.
+ * @author Matushkin Anton
+ */
+public final class NanoClock {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private NanoClock() {}
+
+    /**
+     * @return nanoseconds since the epoch
+     */
+    public static long epochNanos() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * NANOS_PER_SECOND + now.getNano();
+    }
+
+    /**
+     * @param epochNanos nanoseconds since the epoch
+     * @return milliseconds since the epoch
+     */
+    public static long toEpochMillis(long epochNanos) {
+        return Math.floorDiv(epochNanos, NANOS_PER_MILLI);
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.onedlvb.util;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Utility class for sampling of audited calls.
+ * Decisions are taken from the {@link ThreadLocalRandom} of the calling thread, so they never contend for a lock.
+ * @author Matushkin Anton
+ */
+public final class Sampling {
+
+    private Sampling() {}
+
+    /**
+     * @param sampleRate share of the audited calls, from 0 to 1
+     * @return true if the call should be audited
+     */
+    public static boolean sample(double sampleRate) {
+        return sampleRate >= 1.0 || sampleRate > 0.0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    /**
+     * Resolves the sample rate of a method, the rate set by properties wins over the rate of the annotation.
+     * <p>
+     * @param qualifiedName  name of the method with its declaring type
+     * @param annotationRate sample rate of the annotation
+     * @param sampleRates    sample rates set by properties by qualified names of methods, null if there are none
+     * @return sample rate of the method
+     * @throws IllegalArgumentException if the rate is not from 0 to 1
+     */
+    public static double resolveSampleRate(String qualifiedName, double annotationRate, Map<String, Double> sampleRates) {
+        Double configuredRate = sampleRates != null ? sampleRates.get(qualifiedName) : null;
+        double sampleRate = configuredRate != null ? configuredRate : annotationRate;
+        if (!(sampleRate >= 0.0 && sampleRate <= 1.0)) {
+            throw new IllegalArgumentException("Sample rate of " + qualifiedName + " must be from 0 to 1, got " + sampleRate);
+        }
+        return sampleRate;
+    }
+
+}
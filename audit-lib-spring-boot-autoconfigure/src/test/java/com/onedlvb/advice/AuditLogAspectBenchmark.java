@@ -0,0 +1,89 @@
+package com.onedlvb.advice;
+
+import com.onedlvb.advice.annotation.AuditLog;
+import com.onedlvb.config.AuditLibProperties;
+import com.onedlvb.kafka.AuditProducer;
+import com.onedlvb.kafka.TransactionalProducerPool;
+import com.onedlvb.serialization.LegacyTextAuditEventSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call overhead of {@link AuditLogAspect}: a direct call of a method against a call through the Spring AOP proxy.
+ * Kafka logging is off and the log level of the method is filtered out, so only the aspect itself is measured.
+ * Run with the main method, compare results of different revisions of the aspect.
+ * @author Matushkin Anton
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuditLogAspectBenchmark {
+
+    private AuditedService target;
+
+    private AuditedService proxy;
+
+    private int argument;
+
+    @Setup
+    public void setUp() {
+        AuditProducer producer = new AuditProducer(
+                new TransactionalProducerPool(1, "benchmark", transactionalId -> {
+                    throw new IllegalStateException("Kafka is not used by the benchmark");
+                }, 0L),
+                new LegacyTextAuditEventSerializer());
+        AuditLogAspect aspect = AuditLogAspect.builder().producer(producer).properties(new AuditLibProperties()).build();
+        ReflectionTestUtils.setField(aspect, "applicationName", "benchmark");
+        ReflectionTestUtils.setField(aspect, "defaultTopic", "fintech-topic-benchmark");
+
+        target = new AuditedService();
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.addAspect(aspect);
+        proxy = proxyFactory.getProxy();
+    }
+
+    @Benchmark
+    public int directCall() {
+        return target.add(argument++, 1);
+    }
+
+    @Benchmark
+    public int auditedCall() {
+        return proxy.add(argument++, 1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AuditLogAspectBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+    public static class AuditedService {
+
+        @AuditLog(logLevel = LogLevel.TRACE)
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+    }
+
+}
@@ -1,29 +1,53 @@
 package com.onedlvb.advice;
 
 import com.onedlvb.advice.annotation.AuditLog;
+import com.onedlvb.advice.annotation.Redact;
 import com.onedlvb.config.AuditLibProperties;
+import com.onedlvb.dispatch.AuditDispatcher;
+import com.onedlvb.event.AuditEvent;
 import com.onedlvb.kafka.AuditProducer;
+import com.onedlvb.kafka.KeyStrategy;
+import com.onedlvb.latency.LatencyHistogram;
+import com.onedlvb.latency.LatencyRegistry;
+import com.onedlvb.metrics.AuditMetrics;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.Signature;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -36,6 +60,12 @@ class AuditLogAspectTests {
     @Mock
     private AuditLibProperties properties;
 
+    @Mock
+    private AuditMetrics metrics;
+
+    @Spy
+    private BoundedRenderer renderer = new BoundedRenderer(32, 3, 2);
+
     @InjectMocks
     private AuditLogAspect aspect;
 
@@ -57,8 +87,7 @@ class AuditLogAspectTests {
         when(joinPoint.getArgs()).thenReturn(new Object[]{5, 10});
         when(joinPoint.proceed()).thenReturn("returnValue");
 
-        AuditLog auditLog = mock(AuditLog.class);
-        when(auditLog.logLevel()).thenReturn(LogLevel.INFO);
+        AuditLog auditLog = auditLog(LogLevel.INFO);
 
         ReflectionTestUtils.setField(aspect, "applicationName", "test-application");
         ReflectionTestUtils.setField(aspect, "defaultTopic", "default-topic");
@@ -67,10 +96,10 @@ class AuditLogAspectTests {
 
         assertEquals(15, aspect.logMethodInfo(joinPoint, auditLog));
 
-        ArgumentCaptor<Map<String, String>> messageCaptor = ArgumentCaptor.forClass(Map.class);
-        verify(producer, times(1)).sendMessage(eq("default-topic"), messageCaptor.capture());
+        ArgumentCaptor<AuditEvent> eventCaptor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(producer, times(1)).sendEvent(eq("default-topic"), eventCaptor.capture());
 
-        Map<String, String> message = messageCaptor.getValue();
+        Map<String, String> message = eventCaptor.getValue().toMessage();
         assertEquals("addIntegers", message.get("methodName"));
         assertEquals("Args: [5, 10]", message.get("methodArgs"));
         assertEquals("15", message.get("returnValue"));
@@ -83,18 +112,17 @@ class AuditLogAspectTests {
         when(joinPoint.getArgs()).thenReturn(new Object[]{"arg1", "arg2"});
         when(joinPoint.proceed()).thenThrow(new RuntimeException("Test exception"));
 
-        AuditLog auditLog = mock(AuditLog.class);
-        when(auditLog.logLevel()).thenReturn(LogLevel.INFO);
+        AuditLog auditLog = auditLog(LogLevel.INFO);
 
         ReflectionTestUtils.setField(aspect, "applicationName", "test-application");
         ReflectionTestUtils.setField(aspect, "defaultTopic", "default-topic");
 
         assertThrows(RuntimeException.class, () -> aspect.logMethodInfo(joinPoint, auditLog));
 
-        ArgumentCaptor<Map<String, String>> messageCaptor = ArgumentCaptor.forClass(Map.class);
-        verify(producer).sendMessage(anyString(), messageCaptor.capture());
+        ArgumentCaptor<AuditEvent> eventCaptor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(producer).sendEvent(anyString(), eventCaptor.capture());
 
-        Map<String, String> message = messageCaptor.getValue();
+        Map<String, String> message = eventCaptor.getValue().toMessage();
         assertEquals("testMethodThatThrowsException", message.get("methodName"));
         assertEquals("Args: " + Arrays.toString(new Object[]{"arg1", "arg2"}), message.get("methodArgs"));
         assertEquals("java.lang.RuntimeException: Test exception", message.get("exception"));
@@ -104,22 +132,450 @@ class AuditLogAspectTests {
     void testIsVoidMethodWithNoArgsGeneratesProperLogAndSendsMessageToKafka() throws Throwable {
         when(signature.getName()).thenReturn("voidMethodWithNoParams");
 
-        AuditLog auditLog = mock(AuditLog.class);
-        when(auditLog.logLevel()).thenReturn(LogLevel.INFO);
+        AuditLog auditLog = auditLog(LogLevel.INFO);
 
         ReflectionTestUtils.setField(aspect, "applicationName", "test-application");
         ReflectionTestUtils.setField(aspect, "defaultTopic", "default-topic");
 
         assertNull(aspect.logMethodInfo(joinPoint, auditLog));
 
-        ArgumentCaptor<Map<String, String>> messageCaptor = ArgumentCaptor.forClass(Map.class);
-        verify(producer, times(1)).sendMessage(eq("default-topic"), messageCaptor.capture());
+        ArgumentCaptor<AuditEvent> eventCaptor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(producer, times(1)).sendEvent(eq("default-topic"), eventCaptor.capture());
 
-        Map<String, String> sentMessage = messageCaptor.getValue();
+        Map<String, String> sentMessage = eventCaptor.getValue().toMessage();
 
         assertEquals("voidMethodWithNoParams", sentMessage.get("methodName"));
         assertEquals("No args", sentMessage.get("methodArgs"));
 
     }
 
+    @Test
+    void testAsyncModeHandsEventToDispatcherInsteadOfSendingIt() throws Throwable {
+        AuditDispatcher dispatcher = mock(AuditDispatcher.class);
+        AuditLogAspect asyncAspect = AuditLogAspect.builder().producer(producer).properties(properties).dispatcher(dispatcher).build();
+        when(signature.getName()).thenReturn("addIntegers");
+        when(joinPoint.getArgs()).thenReturn(new Object[]{5, 10});
+        when(joinPoint.proceed()).thenReturn(15);
+
+        AuditLog auditLog = auditLog(LogLevel.INFO);
+
+        ReflectionTestUtils.setField(asyncAspect, "applicationName", "test-application");
+        ReflectionTestUtils.setField(asyncAspect, "defaultTopic", "default-topic");
+
+        assertEquals(15, asyncAspect.logMethodInfo(joinPoint, auditLog));
+
+        ArgumentCaptor<AuditEvent> eventCaptor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(dispatcher).dispatch(eq("default-topic"), eventCaptor.capture());
+        verify(producer, never()).sendEvent(anyString(), any(AuditEvent.class));
+
+        AuditEvent event = eventCaptor.getValue();
+        assertEquals("addIntegers", event.getMethodName());
+        assertEquals("Args: [5, 10]", event.getMethodArgs());
+        assertEquals("15", event.getReturnValue());
+    }
+
+    @Test
+    void testKeyArgIsUsedAsRecordKey() throws Throwable {
+        when(signature.getName()).thenReturn("withdraw");
+        when(joinPoint.getArgs()).thenReturn(new Object[]{42L, 100});
+        when(joinPoint.proceed()).thenReturn(null);
+
+        AuditLog auditLog = auditLog(LogLevel.INFO);
+        when(auditLog.keyArg()).thenReturn(0);
+
+        AuditLogAspect keyedAspect = AuditLogAspect.builder().producer(producer).properties(properties).keyStrategy(KeyStrategy.SERVICE).build();
+        ReflectionTestUtils.setField(keyedAspect, "applicationName", "test-application");
+        ReflectionTestUtils.setField(keyedAspect, "defaultTopic", "default-topic");
+
+        keyedAspect.logMethodInfo(joinPoint, auditLog);
+
+        ArgumentCaptor<AuditEvent> eventCaptor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(producer).sendEvent(eq("default-topic"), eventCaptor.capture());
+        assertEquals("42", eventCaptor.getValue().getKey());
+    }
+
+    @Test
+    void testLongKeyIsCutOffAtMaxKeyLength() throws Throwable {
+        when(signature.getName()).thenReturn("withdraw");
+        when(joinPoint.getArgs()).thenReturn(new Object[]{"k".repeat(AuditLogAspect.MAX_KEY_LENGTH + 10)});
+        when(joinPoint.proceed()).thenReturn(null);
+
+        AuditLog auditLog = auditLog(LogLevel.INFO);
+        when(auditLog.keyArg()).thenReturn(0);
+
+        AuditLogAspect keyedAspect = AuditLogAspect.builder().producer(producer).properties(properties)
+                .renderer(new BoundedRenderer(1024, 3, 2)).build();
+        ReflectionTestUtils.setField(keyedAspect, "applicationName", "test-application");
+        ReflectionTestUtils.setField(keyedAspect, "defaultTopic", "default-topic");
+
+        keyedAspect.logMethodInfo(joinPoint, auditLog);
+
+        ArgumentCaptor<AuditEvent> eventCaptor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(producer).sendEvent(eq("default-topic"), eventCaptor.capture());
+        assertEquals("k".repeat(AuditLogAspect.MAX_KEY_LENGTH), eventCaptor.getValue().getKey());
+    }
+
+    @Test
+    void testKeyArgIsRenderedWithItsRedactedFieldsMasked() throws Throwable {
+        when(signature.getName()).thenReturn("pay");
+        when(joinPoint.getArgs()).thenReturn(new Object[]{new Card("John", "4111111111111111")});
+        when(joinPoint.proceed()).thenReturn(null);
+
+        AuditLog auditLog = auditLog(LogLevel.INFO);
+        when(auditLog.keyArg()).thenReturn(0);
+
+        ReflectionTestUtils.setField(aspect, "defaultTopic", "default-topic");
+
+        aspect.logMethodInfo(joinPoint, auditLog);
+
+        ArgumentCaptor<AuditEvent> eventCaptor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(producer).sendEvent(eq("default-topic"), eventCaptor.capture());
+        assertEquals("Card(holder=John, number=****)", eventCaptor.getValue().getKey());
+    }
+
+    @Test
+    void testKeyStrategyIsUsedWithoutKeyArg() throws Throwable {
+        when(signature.getName()).thenReturn("withdraw");
+        when(signature.getDeclaringTypeName()).thenReturn("com.example.AccountService");
+        when(joinPoint.proceed()).thenReturn(null);
+
+        AuditLog auditLog = auditLog(LogLevel.INFO);
+        when(auditLog.keyArg()).thenReturn(-1);
+
+        AuditLogAspect keyedAspect = AuditLogAspect.builder().producer(producer).properties(properties).keyStrategy(KeyStrategy.METHOD).build();
+        ReflectionTestUtils.setField(keyedAspect, "applicationName", "test-application");
+        ReflectionTestUtils.setField(keyedAspect, "defaultTopic", "default-topic");
+
+        keyedAspect.logMethodInfo(joinPoint, auditLog);
+
+        ArgumentCaptor<AuditEvent> eventCaptor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(producer).sendEvent(eq("default-topic"), eventCaptor.capture());
+        assertEquals("com.example.AccountService.withdraw", eventCaptor.getValue().getKey());
+    }
+
+    @Test
+    void testMethodMetadataIsResolvedOnceAndOverheadIsRecordedOnEveryCall() throws Throwable {
+        Method method = String.class.getMethod("trim");
+        MethodSignature methodSignature = mock(MethodSignature.class);
+        LongConsumer overheadTimer = mock(LongConsumer.class);
+        when(joinPoint.getSignature()).thenReturn(methodSignature);
+        when(methodSignature.getName()).thenReturn("trim");
+        when(methodSignature.getMethod()).thenReturn(method);
+        when(metrics.aspectOverheadTimer(method)).thenReturn(overheadTimer);
+        when(joinPoint.proceed()).thenReturn("trimmed");
+
+        AuditLog auditLog = auditLog(LogLevel.INFO);
+
+        ReflectionTestUtils.setField(aspect, "applicationName", "test-application");
+        ReflectionTestUtils.setField(aspect, "defaultTopic", "default-topic");
+
+        assertEquals("trimmed", aspect.logMethodInfo(joinPoint, auditLog));
+        assertEquals("trimmed", aspect.logMethodInfo(joinPoint, auditLog));
+
+        verify(metrics, times(1)).aspectOverheadTimer(method);
+        verify(auditLog, times(1)).logLevel();
+        verify(overheadTimer, times(2)).accept(anyLong());
+        ArgumentCaptor<AuditEvent> eventCaptor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(producer, timeout(1000).times(2)).sendEvent(eq("default-topic"), eventCaptor.capture());
+        assertEquals("trim", eventCaptor.getValue().getMethodName());
+        assertEquals("test-application", eventCaptor.getValue().getServiceName());
+    }
+
+    @Test
+    void testDisabledLevelWithoutKafkaSkipsRenderingAndSending() throws Throwable {
+        when(properties.isKafkaLogEnabled()).thenReturn(false);
+        when(signature.getName()).thenReturn("hotMethod");
+        when(joinPoint.proceed()).thenReturn(15);
+
+        AuditLog auditLog = auditLog(LogLevel.TRACE);
+
+        assertEquals(15, aspect.logMethodInfo(joinPoint, auditLog));
+
+        verify(joinPoint, never()).getArgs();
+        verify(producer, never()).sendEvent(anyString(), any(AuditEvent.class));
+    }
+
+    @Test
+    void testArgumentsAreRenderedOnceForLogAndKafka() throws Throwable {
+        AtomicInteger renderings = new AtomicInteger();
+        Object argument = new Object() {
+            @Override
+            public String toString() {
+                renderings.incrementAndGet();
+                return "argument";
+            }
+        };
+        when(signature.getName()).thenReturn("process");
+        when(joinPoint.getArgs()).thenReturn(new Object[]{argument});
+        when(joinPoint.proceed()).thenReturn(null);
+
+        AuditLog auditLog = auditLog(LogLevel.INFO);
+
+        ReflectionTestUtils.setField(aspect, "applicationName", "test-application");
+        ReflectionTestUtils.setField(aspect, "defaultTopic", "default-topic");
+
+        assertNull(aspect.logMethodInfo(joinPoint, auditLog));
+
+        ArgumentCaptor<AuditEvent> eventCaptor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(producer).sendEvent(eq("default-topic"), eventCaptor.capture());
+        assertEquals("Args: [argument]", eventCaptor.getValue().getMethodArgs());
+        assertNull(eventCaptor.getValue().getReturnValue());
+        assertEquals(1, renderings.get());
+    }
+
+    @Test
+    void testArgumentsAreRecordedAsPassedBeforeMethodChangesThem() throws Throwable {
+        List<Integer> argument = new ArrayList<>(List.of(1));
+        when(signature.getName()).thenReturn("append");
+        when(joinPoint.getArgs()).thenReturn(new Object[]{argument});
+        when(joinPoint.proceed()).thenAnswer(invocation -> argument.add(2));
+
+        ReflectionTestUtils.setField(aspect, "defaultTopic", "default-topic");
+
+        aspect.logMethodInfo(joinPoint, auditLog(LogLevel.INFO));
+
+        ArgumentCaptor<AuditEvent> eventCaptor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(producer).sendEvent(eq("default-topic"), eventCaptor.capture());
+        assertEquals("Args: [[1]]", eventCaptor.getValue().getMethodArgs());
+        assertEquals(List.of(1, 2), argument);
+    }
+
+    @Test
+    void testLargeReturnValueIsTruncated() throws Throwable {
+        when(signature.getName()).thenReturn("findAll");
+        when(joinPoint.getArgs()).thenReturn(new Object[]{List.of(1, 2, 3, 4, 5)});
+        when(joinPoint.proceed()).thenReturn("x".repeat(100));
+
+        AuditLog auditLog = auditLog(LogLevel.INFO);
+
+        ReflectionTestUtils.setField(aspect, "applicationName", "test-application");
+        ReflectionTestUtils.setField(aspect, "defaultTopic", "default-topic");
+
+        aspect.logMethodInfo(joinPoint, auditLog);
+
+        ArgumentCaptor<AuditEvent> eventCaptor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(producer).sendEvent(eq("default-topic"), eventCaptor.capture());
+        AuditEvent event = eventCaptor.getValue();
+        assertEquals("Args: [[1, 2, 3, ...]]", event.getMethodArgs());
+        assertEquals("x".repeat(32) + BoundedRenderer.TRUNCATION_MARK, event.getReturnValue());
+        assertTrue(event.isTruncated());
+    }
+
+    @Test
+    void testNotSampledCallIsNotRenderedNorSent() throws Throwable {
+        when(signature.getName()).thenReturn("hotMethod");
+        when(joinPoint.proceed()).thenReturn(15);
+
+        AuditLog auditLog = auditLog(LogLevel.INFO);
+        when(auditLog.sampleRate()).thenReturn(0.0);
+        when(auditLog.keepErrors()).thenReturn(false);
+
+        assertEquals(15, aspect.logMethodInfo(joinPoint, auditLog));
+
+        verify(joinPoint, never()).getArgs();
+        verify(producer, never()).sendEvent(anyString(), any(AuditEvent.class));
+    }
+
+    @Test
+    void testNotSampledCallIsSentWhenItThrowsAndErrorsAreKept() throws Throwable {
+        when(signature.getName()).thenReturn("hotMethod");
+        when(joinPoint.getArgs()).thenReturn(new Object[]{1});
+        when(joinPoint.proceed()).thenThrow(new IllegalStateException("failed"));
+
+        AuditLog auditLog = auditLog(LogLevel.INFO);
+        when(auditLog.sampleRate()).thenReturn(0.0);
+        when(auditLog.keepErrors()).thenReturn(true);
+
+        ReflectionTestUtils.setField(aspect, "defaultTopic", "default-topic");
+
+        assertThrows(IllegalStateException.class, () -> aspect.logMethodInfo(joinPoint, auditLog));
+
+        ArgumentCaptor<AuditEvent> eventCaptor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(producer).sendEvent(eq("default-topic"), eventCaptor.capture());
+        assertEquals("java.lang.IllegalStateException: failed", eventCaptor.getValue().getException());
+    }
+
+    @Test
+    void testSampleRateOfPropertiesOverridesAnnotation() throws Throwable {
+        AuditLogAspect sampledAspect = AuditLogAspect.builder().producer(producer).properties(properties).metrics(metrics).renderer(renderer)
+                .sampleRates(Map.of("com.example.AccountService.withdraw", 0.0))
+                .build();
+        when(signature.getName()).thenReturn("withdraw");
+        when(signature.getDeclaringTypeName()).thenReturn("com.example.AccountService");
+        when(joinPoint.proceed()).thenReturn(null);
+
+        AuditLog auditLog = auditLog(LogLevel.INFO);
+        when(auditLog.keepErrors()).thenReturn(false);
+
+        sampledAspect.logMethodInfo(joinPoint, auditLog);
+
+        verify(producer, never()).sendEvent(anyString(), any(AuditEvent.class));
+    }
+
+    @Test
+    void testCompletableFutureIsAuditedOnCompletion() throws Throwable {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        when(signature.getName()).thenReturn("addAsync");
+        when(joinPoint.getArgs()).thenReturn(new Object[]{5, 10});
+        when(joinPoint.proceed()).thenReturn(future);
+
+        ReflectionTestUtils.setField(aspect, "defaultTopic", "default-topic");
+
+        assertEquals(future, aspect.logMethodInfo(joinPoint, auditLog(LogLevel.INFO)));
+        verify(producer, never()).sendEvent(anyString(), any(AuditEvent.class));
+
+        future.complete(15);
+
+        ArgumentCaptor<AuditEvent> eventCaptor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(producer, timeout(1000)).sendEvent(eq("default-topic"), eventCaptor.capture());
+        assertEquals("Args: [5, 10]", eventCaptor.getValue().getMethodArgs());
+        assertEquals("15", eventCaptor.getValue().getReturnValue());
+        assertTrue(eventCaptor.getValue().getDurationNs() > 0);
+    }
+
+    @Test
+    void testFailedCompletableFutureIsAuditedWithItsException() throws Throwable {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        when(signature.getName()).thenReturn("addAsync");
+        when(joinPoint.getArgs()).thenReturn(new Object[]{5, 10});
+        when(joinPoint.proceed()).thenReturn(future.thenApply(value -> value + 1));
+
+        ReflectionTestUtils.setField(aspect, "defaultTopic", "default-topic");
+
+        aspect.logMethodInfo(joinPoint, auditLog(LogLevel.INFO));
+        future.completeExceptionally(new IllegalStateException("failed"));
+
+        ArgumentCaptor<AuditEvent> eventCaptor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(producer, timeout(1000)).sendEvent(eq("default-topic"), eventCaptor.capture());
+        assertNull(eventCaptor.getValue().getReturnValue());
+        assertEquals("java.lang.IllegalStateException: failed", eventCaptor.getValue().getException());
+    }
+
+    @Test
+    void testEventOfAsyncResultIsSentOffTheCompletingThread() throws Throwable {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        when(signature.getName()).thenReturn("addAsync");
+        when(joinPoint.getArgs()).thenReturn(new Object[]{5, 10});
+        when(joinPoint.proceed()).thenReturn(future);
+        List<Thread> senders = new ArrayList<>();
+        doAnswer(invocation -> senders.add(Thread.currentThread())).when(producer).sendEvent(anyString(), any(AuditEvent.class));
+
+        ReflectionTestUtils.setField(aspect, "defaultTopic", "default-topic");
+
+        aspect.logMethodInfo(joinPoint, auditLog(LogLevel.INFO));
+        future.complete(15);
+        aspect.close();
+
+        verify(producer).sendEvent(eq("default-topic"), any(AuditEvent.class));
+        assertEquals(1, senders.size());
+        assertNotEquals(Thread.currentThread(), senders.get(0));
+    }
+
+    @Test
+    void testMonoIsAuditedOnEverySubscription() throws Throwable {
+        when(signature.getName()).thenReturn("find");
+        when(joinPoint.getArgs()).thenReturn(new Object[]{42});
+        when(joinPoint.proceed()).thenReturn(Mono.fromSupplier(() -> "found"));
+
+        ReflectionTestUtils.setField(aspect, "defaultTopic", "default-topic");
+
+        Mono<?> mono = (Mono<?>) aspect.logMethodInfo(joinPoint, auditLog(LogLevel.INFO));
+        verify(producer, never()).sendEvent(anyString(), any(AuditEvent.class));
+
+        assertEquals("found", mono.block());
+        assertEquals("found", mono.block());
+
+        ArgumentCaptor<AuditEvent> eventCaptor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(producer, timeout(1000).times(2)).sendEvent(eq("default-topic"), eventCaptor.capture());
+        assertEquals("found", eventCaptor.getValue().getReturnValue());
+    }
+
+    @Test
+    void testFluxIsAuditedWithNumberOfElements() throws Throwable {
+        when(signature.getName()).thenReturn("findAll");
+        when(joinPoint.getArgs()).thenReturn(new Object[0]);
+        when(joinPoint.proceed()).thenReturn(Flux.just(1, 2, 3));
+
+        ReflectionTestUtils.setField(aspect, "defaultTopic", "default-topic");
+
+        Flux<?> flux = (Flux<?>) aspect.logMethodInfo(joinPoint, auditLog(LogLevel.INFO));
+
+        assertEquals(3, flux.collectList().block().size());
+
+        ArgumentCaptor<AuditEvent> eventCaptor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(producer, timeout(1000)).sendEvent(eq("default-topic"), eventCaptor.capture());
+        assertEquals("Elements: 3", eventCaptor.getValue().getReturnValue());
+    }
+
+    @Test
+    void testEventCarriesStartInEpochNanosAndLatencyIsRecorded() throws Throwable {
+        LatencyRegistry latencies = new LatencyRegistry();
+        AuditLogAspect timedAspect = AuditLogAspect.builder().producer(producer).properties(properties).metrics(metrics).renderer(renderer)
+                .latencies(latencies)
+                .build();
+        when(signature.getName()).thenReturn("withdraw");
+        when(signature.getDeclaringTypeName()).thenReturn("com.example.AccountService");
+        when(joinPoint.proceed()).thenReturn(15);
+        ReflectionTestUtils.setField(timedAspect, "defaultTopic", "default-topic");
+
+        long beforeNs = System.currentTimeMillis() * 1_000_000L;
+        timedAspect.logMethodInfo(joinPoint, auditLog(LogLevel.INFO));
+
+        ArgumentCaptor<AuditEvent> eventCaptor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(producer).sendEvent(eq("default-topic"), eventCaptor.capture());
+        AuditEvent event = eventCaptor.getValue();
+        assertTrue(event.getStartNs() >= beforeNs);
+        assertEquals(event.getStartNs() / 1_000_000L, event.getTimestamp());
+        assertEquals(event.getStartNs() + event.getDurationNs(), event.getEndNs());
+        LatencyHistogram histogram = latencies.findHistogram("com.example.AccountService.withdraw");
+        assertEquals(1, histogram.getCount());
+        assertEquals(event.getDurationNs(), histogram.getMaxNs());
+    }
+
+    @Test
+    void testLatencyIsRecordedWhenCallIsNeitherLoggedNorSent() throws Throwable {
+        LatencyRegistry latencies = new LatencyRegistry();
+        AuditLogAspect timedAspect = AuditLogAspect.builder().producer(producer).properties(properties).metrics(metrics).renderer(renderer)
+                .latencies(latencies)
+                .build();
+        when(properties.isKafkaLogEnabled()).thenReturn(false);
+        when(signature.getName()).thenReturn("hotMethod");
+        when(signature.getDeclaringTypeName()).thenReturn("com.example.QuoteService");
+        when(joinPoint.proceed()).thenReturn(15);
+
+        AuditLog auditLog = auditLog(LogLevel.TRACE);
+        timedAspect.logMethodInfo(joinPoint, auditLog);
+        timedAspect.logMethodInfo(joinPoint, auditLog);
+
+        verify(joinPoint, never()).getArgs();
+        assertEquals(2, latencies.findHistogram("com.example.QuoteService.hotMethod").getCount());
+    }
+
+    static class Card {
+
+        private final String holder;
+
+        @Redact
+        private final String number;
+
+        Card(String holder, String number) {
+            this.holder = holder;
+            this.number = number;
+        }
+
+        @Override
+        public String toString() {
+            return "Card(holder=" + holder + ", number=" + number + ")";
+        }
+
+    }
+
+    private static AuditLog auditLog(LogLevel level) {
+        AuditLog auditLog = mock(AuditLog.class);
+        when(auditLog.logLevel()).thenReturn(level);
+        when(auditLog.sampleRate()).thenReturn(1.0);
+        when(auditLog.keyArg()).thenReturn(-1);
+        return auditLog;
+    }
+
 }
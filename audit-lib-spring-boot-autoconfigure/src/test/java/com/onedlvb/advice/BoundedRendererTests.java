@@ -0,0 +1,135 @@
+package com.onedlvb.advice;
+
+import com.onedlvb.advice.annotation.Redact;
+import com.onedlvb.redaction.Redactor;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedRendererTests {
+
+    private final BoundedRenderer renderer = new BoundedRenderer(64, 3, 2);
+
+    @Test
+    void testSmallValuesAreRenderedLikeToString() {
+        Map<String, Integer> map = new LinkedHashMap<>();
+        map.put("a", 1);
+        map.put("b", null);
+
+        assertRendered("Args: [5, ten, null]", false, "Args: ", new Object[]{5, "ten", null});
+        assertRendered("[1, 2]", false, "", new int[]{1, 2});
+        assertRendered("{a=1, b=null}", false, "", map);
+        assertRendered("[[1], []]", false, "", List.of(List.of(1), List.of()));
+    }
+
+    @Test
+    void testElementsBeyondTheLimitAreNotIterated() {
+        List<Integer> iterated = new ArrayList<>();
+        Iterable<Integer> source = () -> IntStream.range(0, 100_000).peek(iterated::add).iterator();
+        List<Integer> list = new ArrayList<>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return source.iterator();
+            }
+        };
+
+        assertRendered("[0, 1, 2, ...]", true, "", list);
+        assertEquals(List.of(0, 1, 2, 3), iterated);
+    }
+
+    @Test
+    void testLongValuesAreCutOffAtMaxChars() {
+        assertRendered("Return: " + "x".repeat(64) + BoundedRenderer.TRUNCATION_MARK, true, "Return: ", "x".repeat(10_000));
+        assertRendered("[" + "y".repeat(63) + BoundedRenderer.TRUNCATION_MARK, true, "", new Object[]{"y".repeat(100), "z"});
+    }
+
+    @Test
+    void testNestingBeyondTheDepthIsCollapsed() {
+        assertRendered("[[[...]], {k={...}}]", true, "", new Object[]{
+                List.of(List.of(1)),
+                Map.of("k", Map.of("k", 1))});
+    }
+
+    @Test
+    void testRedactedFieldsAreMasked() {
+        BoundedRenderer redactingRenderer = new BoundedRenderer(256, 10, 3, new Redactor(Set.of("password"), "****"));
+
+        assertEquals("Args: [Payment(payer=John, cardNumber=****, amount=10), Login[user=john, password=****], {password=****}]",
+                redactingRenderer.render("Args: ", new Object[]{
+                        new Payment("John", "4111111111111111", 10),
+                        new Login("john", "secret"),
+                        Map.of("password", "secret")}).toString());
+    }
+
+    @Test
+    void testRedactedFieldsOfNestedObjectsAreMasked() {
+        BoundedRenderer redactingRenderer = new BoundedRenderer(256, 10, 3, new Redactor(Set.of(), "****"));
+
+        assertEquals("Order(id=1, payment=Payment(payer=John, cardNumber=****, amount=10))",
+                redactingRenderer.render("", new Order(1, new Payment("John", "4111111111111111", 10))).toString());
+    }
+
+    @Test
+    void testNonPositiveLimitsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new BoundedRenderer(0, 1, 1));
+    }
+
+    record Login(String user, String password) {}
+
+    static class Payment {
+
+        private final String payer;
+
+        @Redact
+        private final String cardNumber;
+
+        private final int amount;
+
+        Payment(String payer, String cardNumber, int amount) {
+            this.payer = payer;
+            this.cardNumber = cardNumber;
+            this.amount = amount;
+        }
+
+    }
+
+    static class Order {
+
+        private final long id;
+
+        private final Payment payment;
+
+        Order(long id, Payment payment) {
+            this.id = id;
+            this.payment = payment;
+        }
+
+        @Override
+        public String toString() {
+            return "Order(id=" + id + ", payment=" + payment.payer + "/" + payment.cardNumber + ")";
+        }
+
+    }
+
+    private void assertRendered(String expected, boolean truncated, String prefix, Object value) {
+        BoundedRenderer.Buffer buffer = renderer.render(prefix, value);
+        assertEquals(expected, buffer.toString());
+        if (truncated) {
+            assertTrue(buffer.isTruncated());
+        } else {
+            assertFalse(buffer.isTruncated());
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.onedlvb.advice;
+
+import com.onedlvb.advice.annotation.Redact;
+import com.onedlvb.redaction.Redactor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rendering an argument with a redacted field: the hand-written toString() of the class
+ * against the rendering by the {@link BoundedRenderer} with the compiled getters of the {@link Redactor}.
+ * Run with the main method.
+ * @author Matushkin Anton
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedactionBenchmark {
+
+    private final BoundedRenderer renderer = new BoundedRenderer(
+            BoundedRenderer.DEFAULT_MAX_CHARS,
+            BoundedRenderer.DEFAULT_MAX_ELEMENTS,
+            BoundedRenderer.DEFAULT_MAX_DEPTH,
+            new Redactor(Set.of("password"), Redactor.DEFAULT_MASK));
+
+    private final Payment payment = new Payment(42L, "John Smith", "4111111111111111", "secret", 1250);
+
+    @Benchmark
+    public String plainToString() {
+        return payment.toString();
+    }
+
+    @Benchmark
+    public String redactedRendering() {
+        return renderer.render("", payment).toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RedactionBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+    public static class Payment {
+
+        private final long id;
+
+        private final String payer;
+
+        @Redact
+        private final String cardNumber;
+
+        private final String password;
+
+        private final int amount;
+
+        public Payment(long id, String payer, String cardNumber, String password, int amount) {
+            this.id = id;
+            this.payer = payer;
+            this.cardNumber = cardNumber;
+            this.password = password;
+            this.amount = amount;
+        }
+
+        @Override
+        public String toString() {
+            return "Payment(id=" + id + ", payer=" + payer + ", cardNumber=****, password=****, amount=" + amount + ")";
+        }
+
+    }
+
+}
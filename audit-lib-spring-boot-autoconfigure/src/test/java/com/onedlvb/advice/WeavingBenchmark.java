@@ -0,0 +1,119 @@
+package com.onedlvb.advice;
+
+import com.onedlvb.advice.annotation.AuditLog;
+import com.onedlvb.config.AuditLibProperties;
+import com.onedlvb.kafka.AuditProducer;
+import com.onedlvb.kafka.TransactionalProducerPool;
+import com.onedlvb.serialization.LegacyTextAuditEventSerializer;
+import org.aspectj.lang.Aspects;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call overhead of the audit applied by a Spring AOP proxy against the audit woven into the class by AspectJ.
+ * Kafka logging is off and the log level of the method is filtered out, so only the way of applying the advice is measured.
+ * <p>
+ * The classes must be woven, build them with mvn -Paspectj-weaving test-compile and run the main method.
+ * Every benchmark runs in its own fork, the proxied call is woven too, but without a delegate the woven advice just proceeds.
+ * @author Matushkin Anton
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WeavingBenchmark {
+
+    @Benchmark
+    public int proxiedCall(ProxyState state) {
+        return state.proxy.add(state.argument++, 1);
+    }
+
+    @Benchmark
+    public int wovenCall(WovenState state) {
+        return state.target.add(state.argument++, 1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WeavingBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+    private static AuditLogAspect createAspect() {
+        AuditProducer producer = new AuditProducer(
+                new TransactionalProducerPool(1, "benchmark", transactionalId -> {
+                    throw new IllegalStateException("Kafka is not used by the benchmark");
+                }, 0L),
+                new LegacyTextAuditEventSerializer());
+        AuditLogAspect aspect = AuditLogAspect.builder().producer(producer).properties(new AuditLibProperties()).build();
+        ReflectionTestUtils.setField(aspect, "applicationName", "benchmark");
+        ReflectionTestUtils.setField(aspect, "defaultTopic", "fintech-topic-benchmark");
+        return aspect;
+    }
+
+    private static WovenAuditLogAspect wovenAspect() {
+        if (!Aspects.hasAspect(WovenAuditLogAspect.class)) {
+            throw new IllegalStateException("Classes are not woven, build them with mvn -Paspectj-weaving test-compile");
+        }
+        return Aspects.aspectOf(WovenAuditLogAspect.class);
+    }
+
+    @State(Scope.Benchmark)
+    public static class ProxyState {
+
+        private AuditedService proxy;
+
+        private int argument;
+
+        @Setup
+        public void setUp() {
+            wovenAspect().setDelegate(null);
+            AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new AuditedService());
+            proxyFactory.addAspect(createAspect());
+            proxy = proxyFactory.getProxy();
+        }
+
+    }
+
+    @State(Scope.Benchmark)
+    public static class WovenState {
+
+        private AuditedService target;
+
+        private int argument;
+
+        @Setup
+        public void setUp() {
+            wovenAspect().setDelegate(createAspect());
+            target = new AuditedService();
+        }
+
+    }
+
+    public static class AuditedService {
+
+        @AuditLog(logLevel = LogLevel.TRACE)
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.onedlvb.advice;
+
+import com.onedlvb.advice.annotation.AuditLog;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WovenAuditLogAspectTests {
+
+    @Mock
+    private ProceedingJoinPoint joinPoint;
+
+    @Mock
+    private AuditLog auditLog;
+
+    @Mock
+    private AuditLogAspect delegate;
+
+    @Test
+    void testWithoutDelegateMethodIsJustCalled() throws Throwable {
+        when(joinPoint.proceed()).thenReturn(15);
+
+        assertEquals(15, new WovenAuditLogAspect().audit(joinPoint, auditLog));
+        verify(joinPoint).proceed();
+    }
+
+    @Test
+    void testWithDelegateCallIsAuditedByDelegate() throws Throwable {
+        when(delegate.logMethodInfo(joinPoint, auditLog)).thenReturn(15);
+        WovenAuditLogAspect aspect = new WovenAuditLogAspect();
+        aspect.setDelegate(delegate);
+
+        assertEquals(15, aspect.audit(joinPoint, auditLog));
+        verify(delegate).logMethodInfo(joinPoint, auditLog);
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.onedlvb.appender;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.core.layout.PatternLayout;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CustomConsoleAppenderTests {
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    private int writes;
+
+    @Test
+    void testEveryEventIsWrittenRightAwayWithImmediateFlush() {
+        CustomConsoleAppender appender = appender(true, CustomConsoleAppender.DEFAULT_BUFFER_SIZE);
+
+        appender.append(event("first"));
+        assertEquals("first\n", output());
+        appender.append(event("второй"));
+
+        assertEquals("first\nвторой\n", output());
+        assertEquals(2, writes);
+        appender.stop();
+    }
+
+    @Test
+    void testEventsOfBatchAreWrittenOnceAtItsEnd() {
+        CustomConsoleAppender appender = appender(false, CustomConsoleAppender.DEFAULT_BUFFER_SIZE);
+
+        appender.append(event("first"));
+        appender.append(event("second"));
+        assertEquals("", output());
+        LogEvent endOfBatch = event("third");
+        endOfBatch.setEndOfBatch(true);
+        appender.append(endOfBatch);
+
+        assertEquals("first\nsecond\nthird\n", output());
+        assertEquals(1, writes);
+        appender.stop();
+    }
+
+    @Test
+    void testBufferedEventsAreWrittenWhenBufferIsFullAndWhenAppenderIsStopped() {
+        CustomConsoleAppender appender = appender(false, 8);
+
+        appender.append(event("0123456789"));
+        appender.append(event("ok"));
+        assertEquals("01234567", output());
+        appender.stop();
+
+        assertEquals("0123456789\nok\n", output());
+    }
+
+    @Test
+    void testEventsAreWrittenToRedirectedStandardOutput() {
+        CustomConsoleAppender appender = CustomConsoleAppender.createAppender("TestConsoleAppender", null,
+                PatternLayout.newBuilder().withPattern("%m%n").withCharset(StandardCharsets.UTF_8).build(), false, null);
+        PrintStream standardOut = System.out;
+        System.setOut(new PrintStream(output, false, StandardCharsets.UTF_8));
+        try {
+            appender.start();
+            appender.append(event("redirected"));
+            appender.stop();
+        } finally {
+            System.setOut(standardOut);
+        }
+
+        assertEquals("redirected\n", output());
+    }
+
+    private CustomConsoleAppender appender(boolean immediateFlush, int bufferSize) {
+        CustomConsoleAppender appender = CustomConsoleAppender.createAppender("TestConsoleAppender", null,
+                PatternLayout.newBuilder().withPattern("%m%n").withCharset(StandardCharsets.UTF_8).build(), false, null);
+        appender.setChannel(new RecordingChannel());
+        appender.setImmediateFlush(immediateFlush);
+        appender.setBufferSize(bufferSize);
+        appender.start();
+        return appender;
+    }
+
+    private String output() {
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private static LogEvent event(String message) {
+        return Log4jLogEvent.newBuilder()
+                .setLoggerName(CustomConsoleAppenderTests.class.getName())
+                .setLevel(Level.INFO)
+                .setMessage(new SimpleMessage(message))
+                .build();
+    }
+
+    /**
+     * Channel standing in for the standard output, counting its writes.
+     */
+    private final class RecordingChannel implements WritableByteChannel {
+
+        @Override
+        public int write(ByteBuffer src) {
+            int length = src.remaining();
+            byte[] bytes = new byte[length];
+            src.get(bytes);
+            output.write(bytes, 0, length);
+            writes++;
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
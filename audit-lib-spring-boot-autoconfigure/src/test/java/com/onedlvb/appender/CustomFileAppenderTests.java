@@ -0,0 +1,178 @@
+package com.onedlvb.appender;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.core.layout.PatternLayout;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CustomFileAppenderTests {
+
+    private static final long HOUR_MS = 3_600_000L;
+
+    private static final long START_MS = 1_700_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testBufferedEventsAreWrittenWhenAppenderIsStopped() throws IOException {
+        Path file = directory.resolve("audit.log");
+        CustomFileAppender appender = appender(file, FileDurability.BUFFERED, 60_000L);
+
+        appender.append(event("first"));
+        appender.append(event("second"));
+        assertEquals(0L, Files.size(file));
+
+        appender.stop();
+
+        assertEquals("first\nsecond\n", Files.readString(file));
+        assertTrue(appender.isStopped());
+    }
+
+    @Test
+    void testEventIsWrittenRightAwayWithWriteThrough() throws IOException {
+        Path file = directory.resolve("audit.log");
+        CustomFileAppender appender = appender(file, FileDurability.WRITE_THROUGH, 60_000L);
+
+        appender.append(event("first"));
+
+        assertEquals("first\n", Files.readString(file));
+        appender.stop();
+    }
+
+    @Test
+    void testEndOfBatchWritesBufferedEvents() throws IOException {
+        Path file = directory.resolve("audit.log");
+        CustomFileAppender appender = appender(file, FileDurability.FSYNC, 60_000L);
+
+        appender.append(event("first"));
+        LogEvent endOfBatch = event("second");
+        endOfBatch.setEndOfBatch(true);
+        appender.append(endOfBatch);
+
+        assertEquals("first\nsecond\n", Files.readString(file));
+        appender.stop();
+    }
+
+    @Test
+    void testBufferedEventsAreWrittenEveryFlushInterval() throws Exception {
+        Path file = directory.resolve("audit.log");
+        CustomFileAppender appender = appender(file, FileDurability.BUFFERED, 20L);
+
+        appender.append(event("first"));
+
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (Files.size(file) == 0L && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals("first\n", Files.readString(file));
+        appender.stop();
+    }
+
+    @Test
+    void testEventsLargerThanBufferAndMissingDirectoriesAreWritten() throws IOException {
+        Path file = directory.resolve("logs").resolve("audit").resolve("audit.log");
+        CustomFileAppender appender = CustomFileAppender.createAppender("TestFileAppender", null,
+                PatternLayout.newBuilder().withPattern("%m%n").build(), false, null);
+        appender.setPath(file.toString());
+        appender.setBufferSize(8);
+        appender.start();
+
+        appender.append(event("0123456789abcdef"));
+        appender.append(event("ok"));
+        appender.stop();
+
+        assertEquals("0123456789abcdef\nok\n", Files.readString(file));
+    }
+
+    @Test
+    void testAppendingToExistingFileKeepsItsContent() throws IOException {
+        Path file = directory.resolve("audit.log");
+        Files.writeString(file, "before\n");
+        CustomFileAppender appender = appender(file, FileDurability.BUFFERED, 60_000L);
+
+        appender.append(event("after"));
+        appender.stop();
+
+        assertEquals("before\nafter\n", Files.readString(file));
+    }
+
+    @Test
+    void testFileIsRolledOverIntoSegmentWhenItIsFull() throws IOException {
+        Path file = directory.resolve("audit.log");
+        CustomFileAppender appender = appender(file, FileDurability.BUFFERED, 60_000L);
+        appender.setSegmentSize(8L);
+
+        appender.append(event("0123456789"));
+        appender.append(event("abc"));
+        appender.append(event("def"));
+        appender.stop();
+
+        assertEquals(List.of(SegmentFiles.segment(file, 0L)), SegmentFiles.list(file));
+        assertEquals("0123456789\n", Files.readString(SegmentFiles.segment(file, 0L)));
+        assertEquals("abc\ndef\n", Files.readString(file));
+    }
+
+    @Test
+    void testFileIsRolledOverAfterRollIntervalAndSequenceGoesOnAfterRestart() throws IOException {
+        Path file = directory.resolve("audit.log");
+        Files.writeString(SegmentFiles.segment(file, 4L), "old\n");
+        CustomFileAppender appender = appender(file, FileDurability.BUFFERED, 60_000L);
+        appender.setRollIntervalMs(HOUR_MS);
+
+        appender.append(event("first", START_MS));
+        appender.append(event("second", START_MS + HOUR_MS - 1));
+        appender.append(event("third", START_MS + HOUR_MS));
+        appender.stop();
+
+        assertEquals(List.of(SegmentFiles.segment(file, 4L), SegmentFiles.segment(file, 5L)), SegmentFiles.list(file));
+        assertEquals("first\nsecond\n", Files.readString(SegmentFiles.segment(file, 5L)));
+        assertEquals("third\n", Files.readString(file));
+    }
+
+    @Test
+    void testFlushIntervalMustBePositive() {
+        CustomFileAppender appender = CustomFileAppender.createAppender("TestFileAppender", null,
+                PatternLayout.newBuilder().withPattern("%m%n").build(), false, null);
+
+        assertThrows(IllegalArgumentException.class, () -> appender.setFlushIntervalMs(0L));
+        assertFalse(appender.isStarted());
+    }
+
+    private static CustomFileAppender appender(Path file, FileDurability durability, long flushIntervalMs) {
+        CustomFileAppender appender = CustomFileAppender.createAppender("TestFileAppender", null,
+                PatternLayout.newBuilder().withPattern("%m%n").build(), false, null);
+        appender.setPath(file.toString());
+        appender.setDurability(durability);
+        appender.setFlushIntervalMs(flushIntervalMs);
+        appender.start();
+        return appender;
+    }
+
+    private static LogEvent event(String message) {
+        return event(message, START_MS);
+    }
+
+    private static LogEvent event(String message, long timeMillis) {
+        return Log4jLogEvent.newBuilder()
+                .setLoggerName(CustomFileAppenderTests.class.getName())
+                .setLevel(Level.INFO)
+                .setMessage(new SimpleMessage(message))
+                .setTimeMillis(timeMillis)
+                .build();
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.onedlvb.appender;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.core.layout.PatternLayout;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedSegmentFileAppenderTests {
+
+    private static final long HOUR_MS = 3_600_000L;
+
+    private static final long START_MS = 1_700_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testSegmentIsTruncatedToItsRealLengthWhenAppenderIsStopped() throws IOException {
+        Path file = directory.resolve("audit.log");
+        MappedSegmentFileAppender appender = appender(file, 4096L, FileDurability.BUFFERED);
+
+        appender.append(event("first", START_MS));
+        appender.append(event("second", START_MS));
+        assertEquals(4096L, Files.size(SegmentFiles.segment(file, 0L)));
+        appender.stop();
+
+        assertEquals(List.of(SegmentFiles.segment(file, 0L)), SegmentFiles.list(file));
+        assertEquals("first\nsecond\n", Files.readString(SegmentFiles.segment(file, 0L)));
+    }
+
+    @Test
+    void testFullSegmentIsRolledOverWithoutSplittingEvents() throws IOException {
+        Path file = directory.resolve("audit.log");
+        MappedSegmentFileAppender appender = appender(file, 8L, FileDurability.BUFFERED);
+
+        appender.append(event("0123456789abcdef", START_MS));
+        appender.append(event("fedcba", START_MS));
+        appender.append(event("9876543210", START_MS));
+        appender.append(event("last", START_MS));
+        appender.stop();
+
+        assertEquals(List.of("0123456789abcdef\n", "fedcba\n9876543210\n", "last\n"), contents(file));
+    }
+
+    @Test
+    void testSegmentIsRolledOverAfterRollInterval() throws IOException {
+        Path file = directory.resolve("audit.log");
+        MappedSegmentFileAppender appender = appender(file, 4096L, FileDurability.BUFFERED);
+
+        appender.append(event("first", START_MS));
+        appender.append(event("second", START_MS + HOUR_MS - 1));
+        appender.append(event("third", START_MS + HOUR_MS));
+        appender.stop();
+
+        assertEquals(List.of("first\nsecond\n", "third\n"), contents(file));
+    }
+
+    @Test
+    void testLastSegmentOfCrashedRunIsTruncatedAndEventsGoToNextSegment() throws IOException {
+        Path file = directory.resolve("audit.log");
+        byte[] crashed = new byte[4096];
+        byte[] written = "before\n".getBytes();
+        System.arraycopy(written, 0, crashed, 0, written.length);
+        Files.write(SegmentFiles.segment(file, 7L), crashed);
+        MappedSegmentFileAppender appender = appender(file, 4096L, FileDurability.BUFFERED);
+
+        appender.append(event("after", START_MS));
+        appender.stop();
+
+        assertEquals(List.of(SegmentFiles.segment(file, 7L), SegmentFiles.segment(file, 8L)), SegmentFiles.list(file));
+        assertEquals(List.of("before\n", "after\n"), contents(file));
+    }
+
+    @Test
+    void testEverySegmentOfPreviousRunIsTruncated() throws IOException {
+        Path file = directory.resolve("audit.log");
+        byte[] padded = new byte[4096];
+        byte[] written = "padded\n".getBytes();
+        System.arraycopy(written, 0, padded, 0, written.length);
+        Files.write(SegmentFiles.segment(file, 6L), padded);
+        Files.write(SegmentFiles.segment(file, 7L), padded);
+        MappedSegmentFileAppender appender = appender(file, 4096L, FileDurability.BUFFERED);
+
+        appender.append(event("after", START_MS));
+        appender.stop();
+
+        assertEquals(List.of("padded\n", "padded\n", "after\n"), contents(file));
+    }
+
+    @Test
+    void testSegmentsAreCreatedInMissingDirectoriesWithFsync() throws IOException {
+        Path file = directory.resolve("logs").resolve("audit.log");
+        MappedSegmentFileAppender appender = appender(file, 4096L, FileDurability.FSYNC);
+
+        appender.append(event("first", START_MS));
+        appender.stop();
+
+        assertEquals(List.of("first\n"), contents(file));
+    }
+
+    @Test
+    void testSegmentSizeMustFitIntoMapping() {
+        MappedSegmentFileAppender appender = MappedSegmentFileAppender.createAppender("TestMappedAppender", null,
+                PatternLayout.newBuilder().withPattern("%m%n").build(), false, null);
+
+        assertThrows(IllegalArgumentException.class, () -> appender.setSegmentSize(0L));
+        assertThrows(IllegalArgumentException.class, () -> appender.setSegmentSize(Integer.MAX_VALUE + 1L));
+        assertThrows(IllegalArgumentException.class, () -> appender.setRollIntervalMs(0L));
+    }
+
+    private static MappedSegmentFileAppender appender(Path file, long segmentSize, FileDurability durability) {
+        MappedSegmentFileAppender appender = MappedSegmentFileAppender.createAppender("TestMappedAppender", null,
+                PatternLayout.newBuilder().withPattern("%m%n").build(), false, null);
+        appender.setPath(file.toString());
+        appender.setSegmentSize(segmentSize);
+        appender.setRollIntervalMs(HOUR_MS);
+        appender.setFlushIntervalMs(10L);
+        appender.setDurability(durability);
+        appender.start();
+        return appender;
+    }
+
+    private static List<String> contents(Path file) throws IOException {
+        List<String> contents = new ArrayList<>();
+        for (Path segment : SegmentFiles.list(file)) {
+            contents.add(Files.readString(segment));
+        }
+        return contents;
+    }
+
+    private static LogEvent event(String message, long timeMillis) {
+        return Log4jLogEvent.newBuilder()
+                .setLoggerName(MappedSegmentFileAppenderTests.class.getName())
+                .setLevel(Level.INFO)
+                .setMessage(new SimpleMessage(message))
+                .setTimeMillis(timeMillis)
+                .build();
+    }
+
+}
@@ -0,0 +1,181 @@
+package com.onedlvb.appender;
+
+import com.onedlvb.dispatch.OverflowPolicy;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.message.ReusableSimpleMessage;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RingBufferAsyncAppenderTests {
+
+    @Test
+    void testEventsAreCopiedIntoSlotsAndAppendedInOrder() {
+        RecordingAppender delegate = new RecordingAppender(null);
+        RingBufferAsyncAppender appender = appender(delegate, 4, WaitStrategy.BLOCKING, OverflowPolicy.BLOCK);
+        ReusableSimpleMessage message = new ReusableSimpleMessage();
+
+        for (int i = 0; i < 10; i++) {
+            message.set("event-" + i);
+            appender.append(event(message));
+        }
+        appender.stop();
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            expected.add("event-" + i);
+        }
+        assertEquals(expected, delegate.messages);
+        assertTrue(delegate.endOfBatch.get(delegate.endOfBatch.size() - 1));
+        assertTrue(delegate.isStopped());
+        assertEquals(0L, appender.getDroppedCount());
+    }
+
+    @Test
+    void testNewestEventsAreDroppedWhenRingBufferIsFull() throws InterruptedException {
+        CountDownLatch appending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingAppender delegate = new RecordingAppender(() -> {
+            appending.countDown();
+            await(release);
+        });
+        RingBufferAsyncAppender appender = appender(delegate, 2, WaitStrategy.SLEEPING, OverflowPolicy.DROP_NEWEST);
+
+        appender.append(event(new SimpleMessage("taken")));
+        assertTrue(appending.await(5, TimeUnit.SECONDS));
+        appender.append(event(new SimpleMessage("queued")));
+        appender.append(event(new SimpleMessage("dropped")));
+        appender.append(event(new SimpleMessage("dropped")));
+        release.countDown();
+        appender.stop();
+
+        assertEquals(List.of("taken", "queued"), delegate.messages);
+        assertEquals(2L, appender.getDroppedCount());
+    }
+
+    @Test
+    void testLoggingThreadWaitsForFreeSlotWhenRingBufferIsFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingAppender delegate = new RecordingAppender(() -> await(release));
+        RingBufferAsyncAppender appender = appender(delegate, 1, WaitStrategy.YIELDING, OverflowPolicy.BLOCK);
+        Thread logging = new Thread(() -> {
+            for (int i = 0; i < 3; i++) {
+                appender.append(event(new SimpleMessage("event-" + i)));
+            }
+        });
+
+        logging.start();
+        logging.join(200L);
+        assertTrue(logging.isAlive());
+        release.countDown();
+        logging.join(5_000L);
+        appender.stop();
+
+        assertFalse(logging.isAlive());
+        assertEquals(List.of("event-0", "event-1", "event-2"), delegate.messages);
+    }
+
+    @Test
+    void testEventsOfConcurrentThreadsAreAllAppendedInTheirOrder() throws InterruptedException {
+        RecordingAppender delegate = new RecordingAppender(null);
+        RingBufferAsyncAppender appender = appender(delegate, 64, WaitStrategy.BUSY_SPIN, OverflowPolicy.BLOCK);
+        int threads = 4;
+        int events = 10_000;
+        List<Thread> loggingThreads = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String prefix = t + "-";
+            loggingThreads.add(new Thread(() -> {
+                for (int i = 0; i < events; i++) {
+                    appender.append(event(new SimpleMessage(prefix + i)));
+                }
+            }));
+        }
+
+        loggingThreads.forEach(Thread::start);
+        for (Thread thread : loggingThreads) {
+            thread.join();
+        }
+        appender.stop();
+
+        assertEquals(threads * events, delegate.messages.size());
+        int[] nextOfThread = new int[threads];
+        for (String message : delegate.messages) {
+            int separator = message.indexOf('-');
+            int thread = Integer.parseInt(message.substring(0, separator));
+            assertEquals(nextOfThread[thread]++, Integer.parseInt(message.substring(separator + 1)));
+        }
+    }
+
+    @Test
+    void testOldestEventsCanNotBeDropped() {
+        assertThrows(IllegalArgumentException.class,
+                () -> appender(new RecordingAppender(null), 4, WaitStrategy.BLOCKING, OverflowPolicy.DROP_OLDEST));
+    }
+
+    private static RingBufferAsyncAppender appender(RecordingAppender delegate, int bufferSize, WaitStrategy waitStrategy,
+                                                    OverflowPolicy overflowPolicy) {
+        delegate.start();
+        RingBufferAsyncAppender appender = new RingBufferAsyncAppender("TestAsyncAppender", delegate, bufferSize, waitStrategy,
+                overflowPolicy, 5_000L);
+        appender.start();
+        return appender;
+    }
+
+    private static LogEvent event(Message message) {
+        return Log4jLogEvent.newBuilder()
+                .setLoggerName(RingBufferAsyncAppenderTests.class.getName())
+                .setLevel(Level.INFO)
+                .setMessage(message)
+                .build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Appender keeping the messages of events, the events themselves are reused by the ring buffer.
+     */
+    private static final class RecordingAppender extends AbstractAppender {
+
+        private final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+
+        private final List<Boolean> endOfBatch = Collections.synchronizedList(new ArrayList<>());
+
+        private final Runnable beforeAppend;
+
+        private RecordingAppender(Runnable beforeAppend) {
+            super("RecordingAppender", null, null, false, null);
+            this.beforeAppend = beforeAppend;
+        }
+
+        @Override
+        public void append(LogEvent event) {
+            if (beforeAppend != null) {
+                beforeAppend.run();
+            }
+            messages.add(event.getMessage().getFormattedMessage());
+            endOfBatch.add(event.isEndOfBatch());
+        }
+
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.onedlvb.appender;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentArchiverTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testClosedSegmentsAreCompressedAndOpenSegmentIsKept() throws IOException {
+        Path file = directory.resolve("audit.log");
+        Files.writeString(SegmentFiles.segment(file, 0L), "first\n");
+        Files.writeString(SegmentFiles.segment(file, 1L), "second\n");
+        Files.writeString(SegmentFiles.segment(file, 2L), "open\n");
+        SegmentArchiver archiver = new SegmentArchiver(file, FileCompression.GZIP, 0L, 0L, "test");
+
+        archiver.closed(1L);
+        archiver.archive();
+
+        assertEquals(List.of(compressed(file, 0L), compressed(file, 1L), SegmentFiles.segment(file, 2L)), SegmentFiles.list(file));
+        assertEquals("first\n", decompress(compressed(file, 0L)));
+        assertEquals("second\n", decompress(compressed(file, 1L)));
+        assertEquals(List.of(), tempFiles());
+    }
+
+    @Test
+    void testOldestSegmentsOutOfTotalSizeAreDeleted() throws IOException {
+        Path file = directory.resolve("audit.log");
+        for (long sequence = 0; sequence < 4; sequence++) {
+            Files.writeString(SegmentFiles.segment(file, sequence), "0123456789");
+        }
+        SegmentArchiver archiver = new SegmentArchiver(file, FileCompression.NONE, 0L, 25L, "test");
+
+        archiver.closed(2L);
+        archiver.archive();
+
+        assertEquals(List.of(SegmentFiles.segment(file, 1L), SegmentFiles.segment(file, 2L), SegmentFiles.segment(file, 3L)),
+                SegmentFiles.list(file));
+    }
+
+    @Test
+    void testSegmentsOlderThanMaxAgeAreDeleted() throws IOException {
+        Path file = directory.resolve("audit.log");
+        Files.writeString(SegmentFiles.segment(file, 0L), "old\n");
+        Files.writeString(SegmentFiles.segment(file, 1L), "new\n");
+        Files.setLastModifiedTime(SegmentFiles.segment(file, 0L), FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2)));
+        SegmentArchiver archiver = new SegmentArchiver(file, FileCompression.GZIP, TimeUnit.DAYS.toMillis(1), 0L, "test");
+
+        archiver.closed(1L);
+        archiver.archive();
+
+        assertEquals(List.of(compressed(file, 1L)), SegmentFiles.list(file));
+    }
+
+    @Test
+    void testSegmentsAreArchivedInBackground() throws Exception {
+        Path file = directory.resolve("audit.log");
+        Files.writeString(SegmentFiles.segment(file, 0L), "first\n");
+        SegmentArchiver archiver = new SegmentArchiver(file, FileCompression.GZIP, 0L, 0L, "test");
+        archiver.start();
+
+        archiver.closed(0L);
+
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (!Files.exists(compressed(file, 0L)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        archiver.stop(1_000L);
+        assertTrue(Files.exists(compressed(file, 0L)));
+        assertEquals("first\n", decompress(compressed(file, 0L)));
+    }
+
+    @Test
+    void testFilesWithSequenceOutOfRangeAreIgnored() throws Exception {
+        Path file = directory.resolve("audit.log");
+        Path stray = file.resolveSibling("audit.log.99999999999999999999");
+        Files.writeString(stray, "stray\n");
+        Files.writeString(SegmentFiles.segment(file, 0L), "first\n");
+        SegmentArchiver archiver = new SegmentArchiver(file, FileCompression.GZIP, 0L, 0L, "test");
+
+        archiver.closed(0L);
+        archiver.archive();
+
+        assertTrue(Files.exists(compressed(file, 0L)));
+        assertEquals("first\n", decompress(compressed(file, 0L)));
+        assertEquals("stray\n", Files.readString(stray));
+    }
+
+    private List<Path> tempFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".tmp")).toList();
+        }
+    }
+
+    private static Path compressed(Path file, long sequence) {
+        Path segment = SegmentFiles.segment(file, sequence);
+        return segment.resolveSibling(segment.getFileName() + SegmentFiles.COMPRESSED_SUFFIX);
+    }
+
+    private static String decompress(Path path) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+}
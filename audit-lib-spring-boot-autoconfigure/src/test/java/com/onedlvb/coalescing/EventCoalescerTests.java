@@ -0,0 +1,161 @@
+package com.onedlvb.coalescing;
+
+import com.onedlvb.event.AuditEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventCoalescerTests {
+
+    private static final String TOPIC = "fintech-topic-test";
+
+    private static final long WINDOW_MS = 1_000L;
+
+    private final List<AuditEvent> sent = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void testIdenticalEventsWithinWindowAreMergedIntoOne() {
+        EventCoalescer coalescer = new EventCoalescer((topic, event) -> sent.add(event), 16, WINDOW_MS);
+
+        coalescer.coalesce(TOPIC, event("poll", "[]", 1_000L));
+        coalescer.coalesce(TOPIC, event("poll", "[]", 1_400L));
+        coalescer.coalesce(TOPIC, event("poll", "[]", 1_200L));
+
+        assertEquals(0, coalescer.flushExpired(1_999L));
+        assertEquals(1, coalescer.flushExpired(2_000L));
+        assertEquals(1, sent.size());
+        AuditEvent merged = sent.get(0);
+        assertEquals(3, merged.getCount());
+        assertEquals(1_000L, merged.getTimestamp());
+        assertEquals(1_400L, merged.getLastTimestamp());
+        assertEquals(2, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    void testSingleEventIsSentUnchanged() {
+        EventCoalescer coalescer = new EventCoalescer((topic, event) -> sent.add(event), 16, WINDOW_MS);
+        AuditEvent event = event("poll", "[]", 1_000L);
+
+        coalescer.coalesce(TOPIC, event);
+        coalescer.flushExpired(2_000L);
+
+        assertEquals(List.of(event), sent);
+        assertEquals(1, sent.get(0).getCount());
+    }
+
+    @Test
+    void testEventsWithDifferentResultsOrTopicsAreNotMerged() {
+        EventCoalescer coalescer = new EventCoalescer((topic, event) -> sent.add(event), 1024, WINDOW_MS);
+
+        coalescer.coalesce(TOPIC, event("poll", "[]", 1_000L));
+        coalescer.coalesce(TOPIC, event("poll", "[1]", 1_000L));
+        coalescer.coalesce("other-topic", event("poll", "[]", 1_000L));
+        coalescer.flushExpired(Long.MAX_VALUE);
+
+        assertEquals(3, sent.size());
+        assertTrue(sent.stream().allMatch(event -> event.getCount() == 1));
+    }
+
+    @Test
+    void testEventAfterWindowOpensNewWindow() {
+        EventCoalescer coalescer = new EventCoalescer((topic, event) -> sent.add(event), 16, WINDOW_MS);
+
+        coalescer.coalesce(TOPIC, event("poll", "[]", 1_000L));
+        coalescer.coalesce(TOPIC, event("poll", "[]", 2_500L));
+
+        assertEquals(1, sent.size());
+        assertEquals(1_000L, sent.get(0).getTimestamp());
+        coalescer.flushExpired(Long.MAX_VALUE);
+        assertEquals(2_500L, sent.get(1).getTimestamp());
+    }
+
+    @Test
+    void testCollidingEventEvictsHeldEventOfFullTable() {
+        EventCoalescer coalescer = new EventCoalescer((topic, event) -> sent.add(event), 1, WINDOW_MS);
+
+        coalescer.coalesce(TOPIC, event("poll", "[]", 1_000L));
+        coalescer.coalesce(TOPIC, event("poll", "[]", 1_001L));
+        coalescer.coalesce(TOPIC, event("refresh", "ok", 1_002L));
+
+        assertEquals(1, sent.size());
+        assertEquals("poll", sent.get(0).getMethodName());
+        assertEquals(2, sent.get(0).getCount());
+    }
+
+    @Test
+    void testCloseSendsHeldEventsAndLaterEventsDirectly() {
+        EventCoalescer coalescer = new EventCoalescer((topic, event) -> sent.add(event), 16, 60_000L);
+        coalescer.start();
+        coalescer.coalesce(TOPIC, event("poll", "[]", System.currentTimeMillis()));
+
+        coalescer.close();
+        coalescer.coalesce(TOPIC, event("poll", "[]", System.currentTimeMillis()));
+
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    void testConcurrentDuplicatesAreAllCounted() throws InterruptedException {
+        EventCoalescer coalescer = new EventCoalescer((topic, event) -> sent.add(event), 16, 60_000L);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    coalescer.coalesce(TOPIC, event("poll", "[]", 1_000L));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        coalescer.flushExpired(Long.MAX_VALUE);
+
+        assertEquals(40_000, sent.stream().mapToLong(AuditEvent::getCount).sum());
+    }
+
+    @Test
+    void testEventsCoalescedWhileClosingAreAllSent() throws InterruptedException {
+        EventCoalescer coalescer = new EventCoalescer((topic, event) -> sent.add(event), 16, 60_000L);
+        coalescer.start();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    coalescer.coalesce(TOPIC, event("poll", "[" + j % 64 + "]", System.currentTimeMillis()));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        coalescer.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40_000, sent.stream().mapToLong(AuditEvent::getCount).sum());
+    }
+
+    @Test
+    void testInvalidCapacityIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new EventCoalescer((topic, event) -> { }, 0, WINDOW_MS));
+    }
+
+    private static AuditEvent event(String methodName, String returnValue, long timestamp) {
+        return AuditEvent.builder()
+                .serviceName("test-application")
+                .methodName(methodName)
+                .methodArgs("No args")
+                .returnValue(returnValue)
+                .timestamp(timestamp)
+                .build();
+    }
+
+}
@@ -0,0 +1,221 @@
+package com.onedlvb.dispatch;
+
+import com.onedlvb.event.AuditEvent;
+import com.onedlvb.kafka.AuditProducer;
+import com.onedlvb.serialization.AuditEventSerializer;
+import com.onedlvb.serialization.LegacyTextAuditEventSerializer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class AuditDispatcherTests {
+
+    private static final String TOPIC = "fintech-topic-test";
+
+    private final AuditEventSerializer serializer = new LegacyTextAuditEventSerializer();
+
+    @Mock
+    private AuditProducer producer;
+
+    @Test
+    void testDispatchedEventIsSentByDispatcherThread() throws Exception {
+        AuditDispatcher dispatcher = new AuditDispatcher(producer, serializer, 16, OverflowPolicy.BLOCK, 1, 1000L);
+        dispatcher.start();
+
+        dispatcher.dispatch(TOPIC, event("first"));
+
+        ArgumentCaptor<List<ProducerRecord<String, byte[]>>> batchCaptor = ArgumentCaptor.forClass(List.class);
+        verify(producer, timeout(1000L)).sendMessages(batchCaptor.capture());
+        assertEquals(1, batchCaptor.getValue().size());
+        assertEquals(TOPIC, batchCaptor.getValue().get(0).topic());
+        assertTrue(valueOf(batchCaptor.getValue().get(0)).contains("methodName=first"));
+        dispatcher.close();
+    }
+
+    @Test
+    void testDropNewestKeepsQueuedEvents() throws Exception {
+        AuditDispatcher dispatcher = new AuditDispatcher(producer, serializer, 1, OverflowPolicy.DROP_NEWEST, 1, 1000L);
+
+        dispatcher.dispatch(TOPIC, event("first"));
+        dispatcher.dispatch(TOPIC, event("second"));
+        assertEquals(1, dispatcher.getDroppedCount());
+
+        dispatcher.start();
+        dispatcher.close();
+
+        ArgumentCaptor<List<ProducerRecord<String, byte[]>>> batchCaptor = ArgumentCaptor.forClass(List.class);
+        verify(producer).sendMessages(batchCaptor.capture());
+        assertTrue(valueOf(batchCaptor.getValue().get(0)).contains("methodName=first"));
+    }
+
+    @Test
+    void testDropOldestReplacesQueuedEvents() throws Exception {
+        AuditDispatcher dispatcher = new AuditDispatcher(producer, serializer, 1, OverflowPolicy.DROP_OLDEST, 1, 1000L);
+
+        dispatcher.dispatch(TOPIC, event("first"));
+        dispatcher.dispatch(TOPIC, event("second"));
+        assertEquals(1, dispatcher.getDroppedCount());
+
+        dispatcher.start();
+        dispatcher.close();
+
+        ArgumentCaptor<List<ProducerRecord<String, byte[]>>> batchCaptor = ArgumentCaptor.forClass(List.class);
+        verify(producer).sendMessages(batchCaptor.capture());
+        assertTrue(valueOf(batchCaptor.getValue().get(0)).contains("methodName=second"));
+    }
+
+    @Test
+    void testCloseFlushesQueue() throws Exception {
+        AuditDispatcher dispatcher = new AuditDispatcher(producer, serializer, 16, OverflowPolicy.BLOCK, 2, 1000L);
+        for (String methodName : List.of("first", "second", "third")) {
+            dispatcher.dispatch(TOPIC, event(methodName));
+        }
+        verify(producer, never()).sendMessages(anyList());
+
+        dispatcher.start();
+        dispatcher.close();
+
+        verify(producer, times(3)).sendMessages(anyList());
+        assertEquals(0, dispatcher.getQueueSize());
+    }
+
+    @Test
+    void testQueuedEventsAreSentInBatchesOfMaxRecords() throws Exception {
+        AuditDispatcher dispatcher = new AuditDispatcher(producer, serializer, 16, OverflowPolicy.BLOCK, 1, 1000L,
+                2, Long.MAX_VALUE, 1000L);
+        for (String methodName : List.of("first", "second", "third")) {
+            dispatcher.dispatch(TOPIC, event(methodName));
+        }
+
+        dispatcher.start();
+        dispatcher.close();
+
+        ArgumentCaptor<List<ProducerRecord<String, byte[]>>> batchCaptor = ArgumentCaptor.forClass(List.class);
+        verify(producer, times(2)).sendMessages(batchCaptor.capture());
+        assertEquals(2, batchCaptor.getAllValues().get(0).size());
+        assertEquals(1, batchCaptor.getAllValues().get(1).size());
+    }
+
+    @Test
+    void testBatchIsClosedWhenMaxBytesReached() throws Exception {
+        AuditDispatcher dispatcher = new AuditDispatcher(producer, serializer, 16, OverflowPolicy.BLOCK, 1, 1000L,
+                100, 1L, 1000L);
+        for (String methodName : List.of("first", "second")) {
+            dispatcher.dispatch(TOPIC, event(methodName));
+        }
+
+        dispatcher.start();
+        dispatcher.close();
+
+        verify(producer, times(2)).sendMessages(anyList());
+    }
+
+    @Test
+    void testEventsDispatchedAfterCloseAreDropped() throws Exception {
+        AuditDispatcher dispatcher = new AuditDispatcher(producer, serializer, 16, OverflowPolicy.BLOCK, 1, 1000L);
+        dispatcher.start();
+        dispatcher.close();
+
+        dispatcher.dispatch(TOPIC, event("first"));
+
+        assertEquals(1, dispatcher.getDroppedCount());
+        assertEquals(0, dispatcher.getQueueSize());
+        verify(producer, never()).sendMessages(anyList());
+    }
+
+    @Test
+    void testBlockedDispatchIsReleasedByClose() throws Exception {
+        AuditDispatcher dispatcher = new AuditDispatcher(producer, serializer, 1, OverflowPolicy.BLOCK, 1, 1000L);
+        dispatcher.dispatch(TOPIC, event("first"));
+        Thread blocked = new Thread(() -> dispatcher.dispatch(TOPIC, event("second")));
+        blocked.start();
+
+        dispatcher.close();
+        blocked.join(5000L);
+
+        assertFalse(blocked.isAlive());
+        assertEquals(2, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    void testDispatcherKeepsDrainingAfterUnexpectedProducerError() throws Exception {
+        doThrow(new IllegalStateException("unexpected state")).doNothing().when(producer).sendMessages(anyList());
+        AuditDispatcher dispatcher = new AuditDispatcher(producer, serializer, 16, OverflowPolicy.BLOCK, 1, 1000L);
+        for (String methodName : List.of("first", "second")) {
+            dispatcher.dispatch(TOPIC, event(methodName));
+        }
+
+        dispatcher.start();
+        dispatcher.close();
+
+        verify(producer, times(2)).sendMessages(anyList());
+        assertEquals(1, dispatcher.getFailedCount());
+        assertEquals(0, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    void testEventsOfOneKeyAreSentInOrderBySeveralThreads() throws Exception {
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            List<ProducerRecord<String, byte[]>> batch = invocation.getArgument(0);
+            Thread.sleep(1L);
+            batch.forEach(record -> sent.add(record.key() + ":" + valueOf(record)));
+            return null;
+        }).when(producer).sendMessages(anyList());
+        AuditDispatcher dispatcher = new AuditDispatcher(producer, serializer, 256, OverflowPolicy.BLOCK, 4, 5000L);
+        dispatcher.start();
+
+        for (int i = 0; i < 50; i++) {
+            for (String key : List.of("account-1", "account-2", "account-3")) {
+                dispatcher.dispatch(TOPIC, event("call" + i, key));
+            }
+        }
+        dispatcher.close();
+
+        assertEquals(150, sent.size());
+        for (String key : List.of("account-1", "account-2", "account-3")) {
+            List<String> ofKey = sent.stream().filter(record -> record.startsWith(key + ":")).toList();
+            for (int i = 0; i < ofKey.size(); i++) {
+                assertTrue(ofKey.get(i).contains("methodName=call" + i + ","), ofKey.get(i));
+            }
+        }
+    }
+
+    private static String valueOf(ProducerRecord<String, byte[]> record) {
+        return new String(record.value(), StandardCharsets.UTF_8);
+    }
+
+    private static AuditEvent event(String methodName) {
+        return event(methodName, null);
+    }
+
+    private static AuditEvent event(String methodName, String key) {
+        return AuditEvent.builder()
+                .serviceName("test-application")
+                .methodName(methodName)
+                .methodArgs("No args")
+                .key(key)
+                .build();
+    }
+
+}
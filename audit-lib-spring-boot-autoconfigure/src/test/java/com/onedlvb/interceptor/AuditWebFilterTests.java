@@ -0,0 +1,177 @@
+package com.onedlvb.interceptor;
+
+import com.onedlvb.advice.annotation.AuditLogHttp;
+import com.onedlvb.event.AuditEvent;
+import com.onedlvb.redaction.Redactor;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuditWebFilterTests {
+
+    private static final String TOPIC = "fintech-topic-http";
+
+    private final List<AuditEvent> events = new ArrayList<>();
+
+    @Test
+    void testBodiesOfAnnotatedHandlerAreTeedFromDataBuffersAndSent() throws Exception {
+        BodyBufferPool pool = new BodyBufferPool(2, 64);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/accounts/42/transfers")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body("{\"amount\":10}"));
+
+        filter(pool).filter(exchange, echo(handler("transfer"), HttpStatus.CREATED)).block();
+
+        assertEquals("accepted {\"amount\":10}", exchange.getResponse().getBodyAsString().block());
+        AuditEvent event = events.get(0);
+        assertEquals("test-application", event.getServiceName());
+        assertEquals("transfer", event.getMethodName());
+        assertEquals("POST", event.getHttpMethod());
+        assertEquals("/accounts/42/transfers", event.getPath());
+        assertEquals(201, event.getStatus());
+        assertEquals("{\"amount\":10}", event.getMethodArgs());
+        assertEquals("accepted {\"amount\":10}", event.getReturnValue());
+        assertNull(event.getException());
+        assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test
+    void testValuesOfRedactedNamesAreMaskedInCapturedBodies() throws Exception {
+        BodyBufferPool pool = new BodyBufferPool(2, 64);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body("{\"login\":\"john\",\"password\":\"secret\"}"));
+
+        filter(pool).filter(exchange, echo(handler("transfer"), HttpStatus.OK)).block();
+
+        assertEquals("{\"login\":\"john\",\"password\":\"****\"}", events.get(0).getMethodArgs());
+    }
+
+    @Test
+    void testLongBodyIsCutOffAtBufferSize() throws Exception {
+        BodyBufferPool pool = new BodyBufferPool(2, 8);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/upload").body("0123456789abcdef"));
+
+        filter(pool).filter(exchange, echo(handler("transfer"), HttpStatus.OK)).block();
+
+        AuditEvent event = events.get(0);
+        assertEquals("01234567...", event.getMethodArgs());
+        assertEquals("accepted...", event.getReturnValue());
+        assertTrue(event.isTruncated());
+        assertEquals("accepted 0123456789abcdef", exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void testFailedExchangeIsSentWithStatusOfTheException() throws Exception {
+        BodyBufferPool pool = new BodyBufferPool(2, 64);
+        HandlerMethod handler = handler("transfer");
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/accounts/404"));
+        WebFilterChain chain = failingExchange -> {
+            failingExchange.getAttributes().put(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE, handler);
+            return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND));
+        };
+
+        assertThrows(ResponseStatusException.class, () -> filter(pool).filter(exchange, chain).block());
+
+        AuditEvent event = events.get(0);
+        assertEquals(404, event.getStatus());
+        assertTrue(event.getException().contains("404 NOT_FOUND"), event.getException());
+    }
+
+    @Test
+    void testExchangesOfNotAnnotatedOrNotSampledHandlersAreNotSent() throws Exception {
+        BodyBufferPool pool = new BodyBufferPool(2, 64);
+        AuditWebFilter filter = filter(pool);
+
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.post("/health").body("{}")), echo(new Object(), HttpStatus.OK)).block();
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.post("/poll").body("{}")), echo(handler("notSampled"), HttpStatus.OK)).block();
+
+        assertTrue(events.isEmpty());
+        assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test
+    void testBuffersOfCancelledExchangeAreNotReturnedToThePool() throws Exception {
+        BodyBufferPool pool = new BodyBufferPool(2, 64);
+        HandlerMethod handler = handler("transfer");
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/accounts/42/transfers").body("{}"));
+        WebFilterChain chain = hangingExchange -> {
+            hangingExchange.getAttributes().put(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE, handler);
+            return hangingExchange.getRequest().getBody().doOnNext(DataBufferUtils::release).then(Mono.never());
+        };
+
+        filter(pool).filter(exchange, chain).subscribe().dispose();
+
+        assertTrue(events.isEmpty());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    private AuditWebFilter filter(BodyBufferPool pool) {
+        return AuditWebFilter.builder()
+                .pool(pool)
+                .redactor(new Redactor(Set.of("password"), "****"))
+                .serviceName("test-application")
+                .topic(TOPIC)
+                .sink((topic, event) -> events.add(event))
+                .build();
+    }
+
+    private static HandlerMethod handler(String name) throws NoSuchMethodException {
+        return new HandlerMethod(new TestController(), TestController.class.getMethod(name));
+    }
+
+    /**
+     * Chain resolving the handler, reading the whole request body and writing it back.
+     */
+    private static WebFilterChain echo(Object handler, HttpStatus status) {
+        return (ServerWebExchange exchange) -> {
+            exchange.getAttributes().put(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE, handler);
+            return DataBufferUtils.join(exchange.getRequest().getBody())
+                    .map(buffer -> {
+                        String body = buffer.toString(StandardCharsets.UTF_8);
+                        DataBufferUtils.release(buffer);
+                        return body;
+                    })
+                    .flatMap(body -> {
+                        exchange.getResponse().setStatusCode(status);
+                        DataBuffer response = exchange.getResponse().bufferFactory().wrap(("accepted " + body).getBytes(StandardCharsets.UTF_8));
+                        return exchange.getResponse().writeWith(Mono.just(response));
+                    });
+        };
+    }
+
+    static class TestController {
+
+        @AuditLogHttp
+        public String transfer() {
+            return "ok";
+        }
+
+        @AuditLogHttp(sampleRate = 0.0)
+        public String notSampled() {
+            return "ok";
+        }
+
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.onedlvb.interceptor;
+
+import com.onedlvb.redaction.Redactor;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BodyCaptureFilterTests {
+
+    @Test
+    void testRequestAndResponseBodiesAreTeedAndReleased() throws Exception {
+        BodyBufferPool pool = new BodyBufferPool(2, 64);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/transfer");
+        request.setContent("{\"amount\":42}".getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        List<String> captured = new ArrayList<>();
+
+        new BodyCaptureFilter(pool, new Redactor()).doFilter(request, response, chain((req, resp) -> {
+            String body = StreamUtils.copyToString(req.getInputStream(), StandardCharsets.UTF_8);
+            resp.getOutputStream().write(("accepted " + body).getBytes(StandardCharsets.UTF_8));
+            captured.add(req.getAttribute(HttpInterceptor.REQUEST_BODY_ATTRIBUTE).toString());
+            captured.add(req.getAttribute(HttpInterceptor.RESPONSE_BODY_ATTRIBUTE).toString());
+        }));
+
+        assertEquals(List.of("{\"amount\":42}", "accepted {\"amount\":42}"), captured);
+        assertEquals("accepted {\"amount\":42}", response.getContentAsString());
+        assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test
+    void testValuesOfRedactedNamesAreMaskedInCapturedBodies() throws Exception {
+        BodyBufferPool pool = new BodyBufferPool(2, 64);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/login");
+        request.setContent("login=john&password=secret".getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        List<String> captured = new ArrayList<>();
+
+        new BodyCaptureFilter(pool, new Redactor(Set.of("password", "token"), "****")).doFilter(request, response, chain((req, resp) -> {
+            StreamUtils.copyToString(req.getInputStream(), StandardCharsets.UTF_8);
+            resp.getOutputStream().write("{\"login\":\"john\",\"token\":\"abc\"}".getBytes(StandardCharsets.UTF_8));
+            captured.add(req.getAttribute(HttpInterceptor.REQUEST_BODY_ATTRIBUTE).toString());
+            captured.add(req.getAttribute(HttpInterceptor.RESPONSE_BODY_ATTRIBUTE).toString());
+        }));
+
+        assertEquals(List.of("login=john&password=****", "{\"login\":\"john\",\"token\":\"****\"}"), captured);
+        assertEquals("{\"login\":\"john\",\"token\":\"abc\"}", response.getContentAsString());
+    }
+
+    @Test
+    void testLongBodyIsCutOffAtBufferSize() throws Exception {
+        BodyBufferPool pool = new BodyBufferPool(2, 8);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/upload");
+        request.setContent("0123456789abcdef".getBytes(StandardCharsets.UTF_8));
+        List<String> read = new ArrayList<>();
+        List<CapturedBody> bodies = new ArrayList<>();
+
+        new BodyCaptureFilter(pool, new Redactor()).doFilter(request, new MockHttpServletResponse(), chain((req, resp) -> {
+            read.add(req.getReader().readLine());
+            CapturedBody body = (CapturedBody) req.getAttribute(HttpInterceptor.REQUEST_BODY_ATTRIBUTE);
+            bodies.add(body);
+            read.add(body.toString());
+        }));
+
+        assertEquals(List.of("0123456789abcdef", "01234567..."), read);
+        assertTrue(bodies.get(0).isTruncated());
+        assertEquals(16, bodies.get(0).getTotalBytes());
+    }
+
+    @Test
+    void testBodyWrittenByWriterIsCapturedInItsCharset() throws Exception {
+        BodyBufferPool pool = new BodyBufferPool(2, 64);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        List<String> captured = new ArrayList<>();
+
+        new BodyCaptureFilter(pool, new Redactor()).doFilter(new MockHttpServletRequest("GET", "/greeting"), response, chain((req, resp) -> {
+            resp.setCharacterEncoding("UTF-8");
+            resp.getWriter().write("Привет");
+            captured.add(req.getAttribute(HttpInterceptor.RESPONSE_BODY_ATTRIBUTE).toString());
+        }));
+
+        assertEquals(List.of("Привет"), captured);
+        assertEquals("Привет", response.getContentAsString());
+        assertEquals(1, pool.getIdleCount(), "Request without body takes no buffer");
+    }
+
+    @Test
+    void testInterceptorLogsCapturedBodiesAndReleasesThem() throws Exception {
+        BodyBufferPool pool = new BodyBufferPool(2, 64);
+        HttpInterceptor interceptor = new HttpInterceptor();
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/transfer");
+        CapturedBody requestBody = capturedBody(pool, "{\"amount\":42}");
+        CapturedBody responseBody = new CapturedBody(pool);
+        request.setAttribute(HttpInterceptor.REQUEST_BODY_ATTRIBUTE, requestBody);
+        request.setAttribute(HttpInterceptor.RESPONSE_BODY_ATTRIBUTE, responseBody);
+
+        String record = interceptor.buildRecord(request, 200, -1).toString();
+        interceptor.afterCompletion(request, new MockHttpServletResponse(), new Object(), null);
+
+        assertTrue(record.endsWith("POST Status code: 200 Request body: {\"amount\":42}"), record);
+        assertFalse(record.contains("Response body"), record);
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    private static CapturedBody capturedBody(BodyBufferPool pool, String text) {
+        CapturedBody body = new CapturedBody(pool);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        body.capture(bytes, 0, bytes.length);
+        return body;
+    }
+
+    private static MockFilterChain chain(Exchange exchange) {
+        return new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                exchange.handle(req, resp);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface Exchange {
+
+        void handle(HttpServletRequest request, HttpServletResponse response) throws IOException;
+
+    }
+
+}
@@ -0,0 +1,167 @@
+package com.onedlvb.interceptor;
+
+import com.onedlvb.advice.annotation.AuditLogHttp;
+import com.onedlvb.latency.LatencyRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.util.datetime.FixedDateFormat;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpInterceptorAllocationTests {
+
+    private static final int CALLS = 10_000;
+
+    private static final int ROUNDS = 20;
+
+    private static final long START_EPOCH_NANOS = 1_720_000_000_123_456_789L;
+
+    private final HttpInterceptor interceptor = HttpInterceptor.builder().latencies(new LatencyRegistry()).build();
+
+    @Test
+    void testRecordCarriesStartStatusBodiesAndDuration() {
+        MockHttpServletRequest request = request();
+
+        String record = interceptor.buildRecord(request, 200, 1_250_000L).toString();
+
+        String start = FixedDateFormat.create(FixedDateFormat.FixedFormat.DEFAULT_PERIOD).format(1_720_000_000_123L);
+        assertEquals(start + " POST Status code: 200 Request body: {\"amount\":42} Response body: ok Duration: 1250000 ns", record);
+    }
+
+    @Test
+    void testBuildingRecordAllocatesNothing() {
+        MockHttpServletRequest request = request();
+
+        long bytesPerCall = minBytesPerCall(() -> interceptor.buildRecord(request, 200, 1_250_000L));
+
+        assertEquals(0, bytesPerCall, "Bytes allocated per record");
+    }
+
+    @Test
+    void testExchangeWhichIsNotSampledAllocatesNothing() throws Exception {
+        MockHttpServletRequest request = request();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        HandlerMethod handler = new HandlerMethod(new TestController(), TestController.class.getMethod("notSampled"));
+        interceptor.preHandle(request, response, handler);
+
+        long bytesPerCall = minBytesPerCall(() -> {
+            try {
+                interceptor.afterCompletion(request, response, handler, null);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertEquals(0, bytesPerCall, "Bytes allocated per exchange");
+    }
+
+    /**
+     * Log4j turns its thread locals off when the servlet API is present, then the record is copied and the log call allocates.
+     * The exchange must not allocate more than logging a copy of its record directly.
+     */
+    @Test
+    void testSampledExchangeWhichIsLoggedAllocatesNothingBeyondTheLogCall() throws Exception {
+        MockHttpServletRequest request = new StartHoldingRequest();
+        request.setAttribute(HttpInterceptor.REQUEST_BODY_ATTRIBUTE, "{\"amount\":42}");
+        request.setAttribute(HttpInterceptor.RESPONSE_BODY_ATTRIBUTE, "ok");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        HandlerMethod handler = new HandlerMethod(new TestController(), TestController.class.getMethod("sampled"));
+        Logger logger = LogManager.getLogger(HttpInterceptor.class);
+        StringBuilder record = new StringBuilder(interceptor.buildRecord(request, 200, 1_250_000L));
+
+        long bytesPerLogCall = minBytesPerCall(() -> logger.debug(record.toString()));
+        long bytesPerExchange = minBytesPerCall(() -> {
+            try {
+                interceptor.preHandle(request, response, handler);
+                interceptor.afterCompletion(request, response, handler, null);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertTrue(bytesPerExchange <= bytesPerLogCall,
+                "Bytes allocated per exchange: " + bytesPerExchange + ", per log call: " + bytesPerLogCall);
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/transfer");
+        request.setAttribute(HttpInterceptor.START_ATTRIBUTE, HttpInterceptor.ExchangeStart.of(START_EPOCH_NANOS));
+        request.setAttribute(HttpInterceptor.REQUEST_BODY_ATTRIBUTE, "{\"amount\":42}");
+        request.setAttribute(HttpInterceptor.RESPONSE_BODY_ATTRIBUTE, "ok");
+        return request;
+    }
+
+    /**
+     * Runs the action in rounds until it is compiled, so allocations of the interpreter are not counted.
+     */
+    private static long minBytesPerCall(Runnable action) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long min = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS && min > 0; round++) {
+            long before = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < CALLS; i++) {
+                action.run();
+            }
+            min = Math.min(min, (threads.getCurrentThreadAllocatedBytes() - before) / CALLS);
+        }
+        return min;
+    }
+
+    /**
+     * Request keeping the start in a field, so entries of the attribute map of the mock are not counted.
+     */
+    static class StartHoldingRequest extends MockHttpServletRequest {
+
+        private Object start;
+
+        StartHoldingRequest() {
+            super("POST", "/transfer");
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return HttpInterceptor.START_ATTRIBUTE.equals(name) ? start : super.getAttribute(name);
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+            if (HttpInterceptor.START_ATTRIBUTE.equals(name)) {
+                start = value;
+            } else {
+                super.setAttribute(name, value);
+            }
+        }
+
+        @Override
+        public void removeAttribute(String name) {
+            if (HttpInterceptor.START_ATTRIBUTE.equals(name)) {
+                start = null;
+            } else {
+                super.removeAttribute(name);
+            }
+        }
+
+    }
+
+    static class TestController {
+
+        @AuditLogHttp(sampleRate = 0.0)
+        public String notSampled() {
+            return "ok";
+        }
+
+        @AuditLogHttp
+        public String sampled() {
+            return "ok";
+        }
+
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.onedlvb.interceptor;
+
+import com.onedlvb.advice.annotation.AuditLogHttp;
+import com.onedlvb.event.AuditEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpInterceptorKafkaTests {
+
+    private static final String TOPIC = "fintech-topic-http";
+
+    private final List<String> topics = new ArrayList<>();
+
+    private final List<AuditEvent> events = new ArrayList<>();
+
+    private final HttpInterceptor interceptor = HttpInterceptor.builder()
+            .serviceName("test-application")
+            .topic(TOPIC)
+            .sink((topic, event) -> {
+                topics.add(topic);
+                events.add(event);
+            })
+            .build();
+
+    @Test
+    void testExchangeOfAnnotatedMethodIsSentWithMethodPathStatusAndBodies() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/accounts/42/transfers");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setStatus(201);
+        HandlerMethod handler = new HandlerMethod(new TestController(), TestController.class.getMethod("transfer"));
+
+        interceptor.preHandle(request, response, handler);
+        request.setAttribute(HttpInterceptor.REQUEST_BODY_ATTRIBUTE, "{\"amount\":10}");
+        request.setAttribute(HttpInterceptor.RESPONSE_BODY_ATTRIBUTE, "{\"id\":7}");
+        interceptor.afterCompletion(request, response, handler, null);
+
+        assertEquals(List.of(TOPIC), topics);
+        AuditEvent event = events.get(0);
+        assertEquals("test-application", event.getServiceName());
+        assertEquals("transfer", event.getMethodName());
+        assertEquals("POST", event.getHttpMethod());
+        assertEquals("/accounts/42/transfers", event.getPath());
+        assertEquals(201, event.getStatus());
+        assertEquals("{\"amount\":10}", event.getMethodArgs());
+        assertEquals("{\"id\":7}", event.getReturnValue());
+        assertNull(event.getException());
+        assertFalse(event.isTruncated());
+        assertTrue(event.getStartNs() > 0);
+        assertTrue(event.getDurationNs() >= 0);
+    }
+
+    @Test
+    void testLongPathIsCutOffAtMaxPathLength() throws Exception {
+        String path = "/search/" + "q".repeat(HttpExchangeAuditor.MAX_PATH_LENGTH);
+        HandlerMethod handler = new HandlerMethod(new TestController(), TestController.class.getMethod("transfer"));
+
+        interceptor.afterCompletion(new MockHttpServletRequest("GET", path), new MockHttpServletResponse(), handler, null);
+
+        assertEquals(path.substring(0, HttpExchangeAuditor.MAX_PATH_LENGTH), events.get(0).getPath());
+    }
+
+    @Test
+    void testTruncatedCapturedBodyIsRenderedBeforeItsBufferIsReleased() throws Exception {
+        BodyBufferPool pool = new BodyBufferPool(2, 8);
+        CapturedBody requestBody = new CapturedBody(pool);
+        byte[] bytes = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+        requestBody.capture(bytes, 0, bytes.length);
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/upload");
+        request.setAttribute(HttpInterceptor.REQUEST_BODY_ATTRIBUTE, requestBody);
+        HandlerMethod handler = new HandlerMethod(new TestController(), TestController.class.getMethod("transfer"));
+
+        interceptor.afterCompletion(request, new MockHttpServletResponse(), handler, new IllegalStateException("failed"));
+
+        AuditEvent event = events.get(0);
+        assertEquals("01234567...", event.getMethodArgs());
+        assertTrue(event.isTruncated());
+        assertEquals("java.lang.IllegalStateException: failed", event.getException());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    void testExchangesOfNotAnnotatedOrNotSampledHandlersAreNotSent() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/health");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        HandlerMethod notSampled = new HandlerMethod(new TestController(), TestController.class.getMethod("notSampled"));
+
+        interceptor.afterCompletion(request, response, new Object(), null);
+        interceptor.afterCompletion(request, response, notSampled, null);
+
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    void testFailureOfTheSinkDoesNotFailTheExchange() throws Exception {
+        HttpInterceptor failing = HttpInterceptor.builder()
+                .serviceName("test-application")
+                .topic(TOPIC)
+                .sink((topic, event) -> {
+                    throw new IllegalStateException("Queue is closed");
+                })
+                .build();
+        HandlerMethod handler = new HandlerMethod(new TestController(), TestController.class.getMethod("transfer"));
+
+        failing.afterCompletion(new MockHttpServletRequest("POST", "/transfer"), new MockHttpServletResponse(), handler, null);
+    }
+
+    static class TestController {
+
+        @AuditLogHttp
+        public String transfer() {
+            return "ok";
+        }
+
+        @AuditLogHttp(sampleRate = 0.0)
+        public String notSampled() {
+            return "ok";
+        }
+
+    }
+
+}
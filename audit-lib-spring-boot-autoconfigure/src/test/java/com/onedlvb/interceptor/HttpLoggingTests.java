@@ -6,6 +6,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import com.onedlvb.advice.annotation.AuditLogHttp;
 import com.onedlvb.appender.TestAppender;
 import com.onedlvb.config.AuditLibSpringBootStarterAutoConfiguration;
+import com.onedlvb.config.AuditLibWebMvcAutoConfiguration;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.core.LogEvent;
@@ -27,7 +28,8 @@ import org.springframework.web.bind.annotation.RestController;
 import java.util.List;
 
 @WebMvcTest(HttpLoggingTests.AuditLogHttpTestController.class)
-@ContextConfiguration(classes = {HttpLoggingTests.AuditLogHttpTestController.class, AuditLibSpringBootStarterAutoConfiguration.class})
+@ContextConfiguration(classes = {HttpLoggingTests.AuditLogHttpTestController.class, AuditLibSpringBootStarterAutoConfiguration.class,
+        AuditLibWebMvcAutoConfiguration.class})
 class HttpLoggingTests {
 
     @Autowired
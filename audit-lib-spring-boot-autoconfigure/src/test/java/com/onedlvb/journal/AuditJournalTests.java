@@ -0,0 +1,170 @@
+package com.onedlvb.journal;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuditJournalTests {
+
+    private static final String TOPIC = "fintech-topic-test";
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRecordsAreReadInAppendOrder() throws IOException {
+        try (AuditJournal journal = new AuditJournal(directory, SEGMENT_SIZE, 4)) {
+            assertTrue(journal.isEmpty());
+            assertTrue(journal.append(List.of(record(null, "first"), record("key", "second"))));
+            assertTrue(journal.append(List.of(record(null, "third"))));
+
+            List<ProducerRecord<String, byte[]>> records = journal.peek(10);
+
+            assertEquals(List.of("first", "second", "third"), records.stream().map(AuditJournalTests::valueOf).toList());
+            assertEquals(TOPIC, records.get(0).topic());
+            assertNull(records.get(0).key());
+            assertEquals("key", records.get(1).key());
+            assertEquals(3, journal.getPendingCount());
+        }
+    }
+
+    @Test
+    void testCommittedRecordsAreRemoved() throws IOException {
+        try (AuditJournal journal = new AuditJournal(directory, SEGMENT_SIZE, 4)) {
+            journal.append(List.of(record(null, "first"), record(null, "second"), record(null, "third")));
+
+            assertEquals(2, journal.peek(2).size());
+            journal.commit(2);
+            assertEquals(List.of("third"), journal.peek(10).stream().map(AuditJournalTests::valueOf).toList());
+
+            journal.commit(1);
+            assertTrue(journal.isEmpty());
+            assertTrue(journal.peek(10).isEmpty());
+            assertEquals(0, segmentCount());
+        }
+    }
+
+    @Test
+    void testRecordsSpanSeveralSegments() throws IOException {
+        try (AuditJournal journal = new AuditJournal(directory, SEGMENT_SIZE, 4)) {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(journal.append(List.of(record(null, "x".repeat(1500) + i))));
+            }
+            assertEquals(2, segmentCount());
+
+            List<String> replayed = new ArrayList<>();
+            List<ProducerRecord<String, byte[]>> records;
+            while (!(records = journal.peek(10)).isEmpty()) {
+                records.forEach(record -> replayed.add(valueOf(record)));
+                journal.commit(records.size());
+            }
+            assertEquals(List.of("x".repeat(1500) + 0, "x".repeat(1500) + 1, "x".repeat(1500) + 2), replayed);
+            assertTrue(journal.isEmpty());
+            assertEquals(0, segmentCount());
+        }
+    }
+
+    @Test
+    void testFullJournalRejectsRecords() throws IOException {
+        try (AuditJournal journal = new AuditJournal(directory, SEGMENT_SIZE, 1)) {
+            assertTrue(journal.append(List.of(record(null, "x".repeat(3000)))));
+
+            assertFalse(journal.append(List.of(record(null, "x".repeat(3000)))));
+            assertFalse(journal.append(List.of(record(null, "x".repeat(2 * SEGMENT_SIZE)))));
+            assertEquals(1, journal.getPendingCount());
+            assertEquals(2, journal.getRejectedCount());
+        }
+    }
+
+    @Test
+    void testRecordsAreRecoveredAfterRestart() throws IOException {
+        try (AuditJournal journal = new AuditJournal(directory, SEGMENT_SIZE, 4)) {
+            journal.append(List.of(record(null, "first"), record(null, "second"), record(null, "third")));
+            journal.peek(1);
+            journal.commit(1);
+        }
+
+        try (AuditJournal journal = new AuditJournal(directory, SEGMENT_SIZE, 4)) {
+            assertEquals(2, journal.getPendingCount());
+            assertTrue(journal.append(List.of(record(null, "fourth"))));
+            assertEquals(List.of("second", "third", "fourth"), journal.peek(10).stream().map(AuditJournalTests::valueOf).toList());
+        }
+    }
+
+    @Test
+    void testTornRecordIsCutOffOnRecovery() throws IOException {
+        try (AuditJournal journal = new AuditJournal(directory, SEGMENT_SIZE, 4)) {
+            journal.append(List.of(record(null, "first"), record(null, "second")));
+        }
+        Path segment = segments().findFirst().orElseThrow();
+        byte[] content = Files.readAllBytes(segment);
+        int secondValueEnd = indexOf(content, "second") + "second".length();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap("XX".getBytes(StandardCharsets.UTF_8)), secondValueEnd - 2);
+        }
+
+        try (AuditJournal journal = new AuditJournal(directory, SEGMENT_SIZE, 4)) {
+            assertEquals(List.of("first"), journal.peek(10).stream().map(AuditJournalTests::valueOf).toList());
+            assertTrue(journal.append(List.of(record(null, "third"))));
+            assertEquals(List.of("first", "third"), journal.peek(10).stream().map(AuditJournalTests::valueOf).toList());
+        }
+    }
+
+    @Test
+    void testFilesNotNamedLikeSegmentsAreSkippedOnRecovery() throws IOException {
+        try (AuditJournal journal = new AuditJournal(directory, SEGMENT_SIZE, 4)) {
+            journal.append(List.of(record(null, "first")));
+        }
+        Path stray = Files.writeString(directory.resolve("backup.journal"), "stray");
+        Path outOfRange = Files.writeString(directory.resolve("99999999999999999999.journal"), "stray");
+
+        try (AuditJournal journal = new AuditJournal(directory, SEGMENT_SIZE, 4)) {
+            assertEquals(1, journal.getPendingCount());
+            assertTrue(journal.append(List.of(record(null, "second"))));
+            assertEquals(List.of("first", "second"), journal.peek(10).stream().map(AuditJournalTests::valueOf).toList());
+        }
+        assertTrue(Files.exists(stray));
+        assertTrue(Files.exists(outOfRange));
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> segments = segments()) {
+            return segments.count();
+        }
+    }
+
+    private Stream<Path> segments() throws IOException {
+        return Files.list(directory).filter(path -> path.toString().endsWith(".journal")).sorted();
+    }
+
+    private static int indexOf(byte[] content, String value) {
+        return new String(content, StandardCharsets.ISO_8859_1).indexOf(value);
+    }
+
+    private static ProducerRecord<String, byte[]> record(String key, String value) {
+        return new ProducerRecord<>(TOPIC, key, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String valueOf(ProducerRecord<String, byte[]> record) {
+        return new String(record.value(), StandardCharsets.UTF_8);
+    }
+
+}
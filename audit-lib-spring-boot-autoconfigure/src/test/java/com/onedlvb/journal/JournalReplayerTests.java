@@ -0,0 +1,108 @@
+package com.onedlvb.journal;
+
+import com.onedlvb.advice.exception.KafkaSendMessageException;
+import com.onedlvb.kafka.AuditProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class JournalReplayerTests {
+
+    private static final String TOPIC = "fintech-topic-test";
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private AuditProducer producer;
+
+    @Test
+    void testJournalIsReplayedInOrderInBatches() throws Exception {
+        try (AuditJournal journal = new AuditJournal(directory, 4096, 2)) {
+            journal.append(List.of(record("first"), record("second"), record("third")));
+            JournalReplayer replayer = new JournalReplayer(producer, journal, 2, 10L);
+
+            assertEquals(2, replayer.replayBatch());
+            assertEquals(1, replayer.replayBatch());
+            assertEquals(0, replayer.replayBatch());
+
+            ArgumentCaptor<List<ProducerRecord<String, byte[]>>> batchCaptor = ArgumentCaptor.forClass(List.class);
+            verify(producer, times(2)).sendTransaction(batchCaptor.capture());
+            assertEquals("first", valueOf(batchCaptor.getAllValues().get(0).get(0)));
+            assertEquals("second", valueOf(batchCaptor.getAllValues().get(0).get(1)));
+            assertEquals("third", valueOf(batchCaptor.getAllValues().get(1).get(0)));
+            assertTrue(journal.isEmpty());
+        }
+    }
+
+    @Test
+    void testFailedBatchStaysInJournal() throws Exception {
+        try (AuditJournal journal = new AuditJournal(directory, 4096, 2)) {
+            journal.append(List.of(record("first")));
+            doThrow(new KafkaSendMessageException("Unable to send message to kafka broker."))
+                    .when(producer).sendTransaction(anyList());
+            JournalReplayer replayer = new JournalReplayer(producer, journal, 10, 10L);
+
+            assertThrows(KafkaSendMessageException.class, replayer::replayBatch);
+
+            assertEquals(1, journal.getPendingCount());
+        }
+    }
+
+    @Test
+    void testReplayerThreadDrainsJournal() throws IOException, KafkaSendMessageException {
+        try (AuditJournal journal = new AuditJournal(directory, 4096, 2)) {
+            journal.append(List.of(record("first")));
+            JournalReplayer replayer = new JournalReplayer(producer, journal, 10, 10L);
+
+            replayer.start();
+            verify(producer, timeout(1000L)).sendTransaction(anyList());
+            replayer.close();
+
+            assertTrue(journal.isEmpty());
+        }
+    }
+
+    @Test
+    void testReplayerThreadKeepsRunningAfterUnexpectedError() throws IOException, KafkaSendMessageException {
+        try (AuditJournal journal = new AuditJournal(directory, 4096, 2)) {
+            journal.append(List.of(record("first")));
+            doThrow(new IllegalStateException("unexpected state")).doNothing().when(producer).sendTransaction(anyList());
+            JournalReplayer replayer = new JournalReplayer(producer, journal, 10, 10L);
+
+            replayer.start();
+            verify(producer, timeout(1000L).times(2)).sendTransaction(anyList());
+            replayer.close();
+
+            assertTrue(journal.isEmpty());
+        }
+    }
+
+    private static ProducerRecord<String, byte[]> record(String value) {
+        return new ProducerRecord<>(TOPIC, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String valueOf(ProducerRecord<String, byte[]> record) {
+        return new String(record.value(), StandardCharsets.UTF_8);
+    }
+
+}
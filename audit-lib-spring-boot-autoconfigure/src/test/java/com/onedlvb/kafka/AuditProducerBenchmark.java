@@ -0,0 +1,91 @@
+package com.onedlvb.kafka;
+
+import com.onedlvb.advice.exception.KafkaSendMessageException;
+import com.onedlvb.serialization.LegacyTextAuditEventSerializer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call latency of {@link AuditProducer#sendMessage(String, Map)}:
+ * a producer created for every call (previous behaviour) against a pooled long-lived producer.
+ * Needs a running broker, by default the one from message-receiver/docker-compose.yaml.
+ * Run with the main method, the broker can be changed with -Daudit.benchmark.bootstrap-servers=host:port
+ * @author Matushkin Anton
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AuditProducerBenchmark {
+
+    private static final String TOPIC = "fintech-topic-benchmark";
+
+    private static final Map<String, String> MESSAGE = Map.of(
+            "serviceName", "benchmark",
+            "methodName", "sendMessage",
+            "methodArgs", "No args"
+    );
+
+    private TransactionalProducerFactory producerFactory;
+
+    private TransactionalProducerPool producerPool;
+
+    private AuditProducer auditProducer;
+
+    @Setup
+    public void setUp() {
+        producerFactory = new TransactionalProducerFactory(
+                System.getProperty("audit.benchmark.bootstrap-servers", "localhost:29092"));
+        producerPool = new TransactionalProducerPool(1, "benchmark-pooled", producerFactory,
+                TransactionalProducerFactory.MAX_BLOCK_MS);
+        auditProducer = new AuditProducer(producerPool, new LegacyTextAuditEventSerializer());
+    }
+
+    @TearDown
+    public void tearDown() {
+        producerPool.close();
+    }
+
+    @Benchmark
+    public void producerPerCall() {
+        try (Producer<String, byte[]> producer = producerFactory.apply("benchmark-per-call")) {
+            producer.initTransactions();
+            producer.beginTransaction();
+            producer.send(new ProducerRecord<>(TOPIC, MESSAGE.toString().getBytes(StandardCharsets.UTF_8)));
+            producer.commitTransaction();
+        }
+    }
+
+    @Benchmark
+    public void pooledProducer() throws KafkaSendMessageException {
+        auditProducer.sendMessage(TOPIC, MESSAGE);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AuditProducerBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+}
@@ -16,7 +16,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
 import org.testcontainers.junit.jupiter.Testcontainers;
@@ -34,7 +37,6 @@ import java.util.concurrent.TimeUnit;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.springframework.test.util.ReflectionTestUtils.setField;
 
 @Testcontainers
 @SpringJUnitConfig
@@ -49,6 +51,11 @@ class AuditProducerTests {
     @Autowired
     private AuditProducer auditProducer;
 
+    @DynamicPropertySource
+    static void overrideProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.kafka.bootstrap-servers", () -> bootstrapServers);
+    }
+
     @BeforeAll
     static void setup() {
         CustomKafkaContainerCluster kafka = new CustomKafkaContainerCluster
@@ -110,14 +117,12 @@ class AuditProducerTests {
 
         ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(10000L));
         assertEquals(0, records.count());
-        SpringRestarter.getInstance().restart(() -> {
-            setField(auditProducer, "bootstrapServers", bootstrapServers);
-            try {
-                auditProducer.sendMessage(TOPIC, message);
-            } catch (KafkaSendMessageException e) {
-                throw new RuntimeException(e);
-            }
-        });
+        ApplicationContext context = SpringRestarter.getInstance().restart(null);
+        try {
+            context.getBean(AuditProducer.class).sendMessage(TOPIC, message);
+        } catch (KafkaSendMessageException e) {
+            throw new RuntimeException(e);
+        }
 
         Awaitility.await().atMost(10, TimeUnit.SECONDS).untilAsserted(() -> {
             ConsumerRecords<String, String> newRecords = consumer.poll(Duration.ofMillis(10000L));
@@ -142,7 +147,6 @@ class AuditProducerTests {
                 "key3", "val3"
         );
 
-        setField(auditProducer, "bootstrapServers", bootstrapServers);
         auditProducer.sendMessage(TOPIC, message);
 
         ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(10000L));
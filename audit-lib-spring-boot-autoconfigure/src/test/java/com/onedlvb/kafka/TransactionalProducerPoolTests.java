@@ -0,0 +1,100 @@
+package com.onedlvb.kafka;
+
+import com.onedlvb.advice.exception.KafkaSendMessageException;
+import com.onedlvb.serialization.LegacyTextAuditEventSerializer;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionalProducerPoolTests {
+
+    private final List<String> createdTransactionalIds = new ArrayList<>();
+
+    private final List<MockProducer<String, byte[]>> createdProducers = new ArrayList<>();
+
+    private TransactionalProducerPool producerPool;
+
+    @BeforeEach
+    void setUp() {
+        producerPool = new TransactionalProducerPool(2, "test-transactional-id", transactionalId -> {
+            MockProducer<String, byte[]> producer = new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer());
+            createdTransactionalIds.add(transactionalId);
+            createdProducers.add(producer);
+            return producer;
+        }, 100L);
+    }
+
+    @Test
+    void testReleasedProducerIsReusedWithoutNewHandshake() throws KafkaSendMessageException {
+        Producer<String, byte[]> first = producerPool.borrow();
+        producerPool.release(first);
+        Producer<String, byte[]> second = producerPool.borrow();
+
+        assertSame(first, second);
+        assertEquals(1, createdProducers.size());
+        assertTrue(createdProducers.get(0).transactionInitialized());
+    }
+
+    @Test
+    void testConcurrentBorrowersGetProducersWithDifferentTransactionalIds() throws KafkaSendMessageException {
+        Producer<String, byte[]> first = producerPool.borrow();
+        Producer<String, byte[]> second = producerPool.borrow();
+
+        assertNotSame(first, second);
+        assertEquals(List.of("test-transactional-id-0", "test-transactional-id-1"), createdTransactionalIds);
+        assertThrows(KafkaSendMessageException.class, () -> producerPool.borrow());
+    }
+
+    @Test
+    void testInvalidatedProducerIsClosedAndRecreatedWithSameTransactionalId() throws KafkaSendMessageException {
+        Producer<String, byte[]> fenced = producerPool.borrow();
+        producerPool.invalidate(fenced);
+        Producer<String, byte[]> recreated = producerPool.borrow();
+
+        assertNotSame(fenced, recreated);
+        assertTrue(createdProducers.get(0).closed());
+        assertEquals(List.of("test-transactional-id-0", "test-transactional-id-0"), createdTransactionalIds);
+    }
+
+    @Test
+    void testProducerFailingUnexpectedlyIsInvalidatedByAuditProducer() throws KafkaSendMessageException {
+        AuditProducer auditProducer = new AuditProducer(producerPool, new LegacyTextAuditEventSerializer());
+        Producer<String, byte[]> failing = producerPool.borrow();
+        producerPool.release(failing);
+        createdProducers.get(0).beginTransactionException = new IllegalStateException("unexpected state");
+
+        assertThrows(KafkaSendMessageException.class, () -> auditProducer.sendMessage("topic", Map.of("key", "value")));
+
+        assertTrue(createdProducers.get(0).closed());
+        assertNotSame(failing, producerPool.borrow());
+        assertEquals(List.of("test-transactional-id-0", "test-transactional-id-0"), createdTransactionalIds);
+    }
+
+    @Test
+    void testCloseClosesIdleAndReleasedProducers() throws KafkaSendMessageException {
+        Producer<String, byte[]> idle = producerPool.borrow();
+        Producer<String, byte[]> borrowed = producerPool.borrow();
+        producerPool.release(idle);
+
+        producerPool.close();
+        assertTrue(createdProducers.get(0).closed());
+
+        producerPool.release(borrowed);
+        assertTrue(createdProducers.get(1).closed());
+        assertThrows(KafkaSendMessageException.class, () -> producerPool.borrow());
+    }
+
+}
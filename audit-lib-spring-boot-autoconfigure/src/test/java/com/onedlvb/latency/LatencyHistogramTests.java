@@ -0,0 +1,75 @@
+package com.onedlvb.latency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTests {
+
+    @Test
+    void testEveryValueFallsIntoBucketCoveringIt() {
+        LongStream.concat(LongStream.range(0, 100_000), LongStream.of(1L << 40, Long.MAX_VALUE - 1, Long.MAX_VALUE))
+                .forEach(value -> {
+                    int bucket = LatencyHistogram.bucketOf(value);
+                    assertTrue(bucket < LatencyHistogram.BUCKET_COUNT);
+                    assertTrue(LatencyHistogram.highestValueOf(bucket) >= value);
+                    assertTrue(bucket == 0 || LatencyHistogram.highestValueOf(bucket - 1) < value);
+                });
+    }
+
+    @Test
+    void testPercentilesAreWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1_000);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(10_000, snapshot.count());
+        assertEquals(10_000_000, snapshot.maxNs());
+        assertEquals(5_000_500, snapshot.meanNs(), 1.0);
+        assertWithinRelativeError(5_000_000, snapshot.p50Ns());
+        assertWithinRelativeError(9_000_000, snapshot.p90Ns());
+        assertWithinRelativeError(9_900_000, snapshot.p99Ns());
+        assertWithinRelativeError(9_990_000, snapshot.p999Ns());
+    }
+
+    @Test
+    void testEmptyHistogramReportsZeros() {
+        assertEquals(new LatencyHistogram.Snapshot(0, 0.0, 0, 0, 0, 0, 0), new LatencyHistogram().snapshot());
+    }
+
+    @Test
+    void testConcurrentRecordingLosesNoCalls() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 100_000; j++) {
+                    histogram.record(j);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(400_000, histogram.getCount());
+        assertEquals(400_000, histogram.snapshot().count());
+        assertEquals(99_999, histogram.getMaxNs());
+    }
+
+    private static void assertWithinRelativeError(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / LatencyHistogram.SUB_BUCKET_COUNT,
+                "Expected " + expected + " within " + 100.0 / LatencyHistogram.SUB_BUCKET_COUNT + "%, got " + actual);
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.onedlvb.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MicrometerAuditMetricsTests {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final MicrometerAuditMetrics metrics = new MicrometerAuditMetrics(registry);
+
+    @Test
+    void testAspectOverheadIsRecordedByTimerOfMethod() throws NoSuchMethodException {
+        LongConsumer overheadTimer = metrics.aspectOverheadTimer(String.class.getMethod("trim"));
+
+        overheadTimer.accept(1_000L);
+        overheadTimer.accept(3_000L);
+
+        Timer timer = registry.get("audit.aspect.overhead").tag("class", "String").tag("method", "trim").timer();
+        assertEquals(2, timer.count());
+        assertEquals(4_000L, (long) timer.totalTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    void testKafkaTransactionsAreRecorded() {
+        metrics.recordKafkaSend(2_000L);
+        metrics.recordKafkaCommit(5_000L);
+        metrics.recordKafkaFailure(3);
+
+        assertEquals(1, registry.get("audit.kafka.send").timer().count());
+        assertEquals(1, registry.get("audit.kafka.commit").timer().count());
+        assertEquals(3.0, registry.get("audit.kafka.failures").counter().count());
+    }
+
+    @Test
+    void testHttpEventsAreCountedByStatusClass() {
+        metrics.recordHttpEvent(200);
+        metrics.recordHttpEvent(201);
+        metrics.recordHttpEvent(404);
+        metrics.recordHttpEvent(999);
+
+        assertEquals(2.0, registry.get("audit.http.events").tag("status", "2xx").counter().count());
+        assertEquals(1.0, registry.get("audit.http.events").tag("status", "4xx").counter().count());
+        assertEquals(1.0, registry.get("audit.http.events").tag("status", "unknown").counter().count());
+        assertEquals(0.0, registry.get("audit.http.events").tag("status", "5xx").counter().count());
+    }
+
+}
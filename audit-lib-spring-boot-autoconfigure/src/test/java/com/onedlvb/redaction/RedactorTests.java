@@ -0,0 +1,115 @@
+package com.onedlvb.redaction;
+
+import com.onedlvb.advice.annotation.Redact;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RedactorTests {
+
+    private final Redactor redactor = new Redactor(Set.of("password"), "****");
+
+    @Test
+    void testClassesWithoutRedactedFieldsAreRenderedWithToString() {
+        assertNull(redactor.typeOf(Plain.class));
+        assertNull(redactor.typeOf(String.class));
+        assertNull(redactor.typeOf(int[].class));
+    }
+
+    @Test
+    void testAnnotatedAndConfiguredFieldsAreRedacted() {
+        Redactor.RedactedType type = redactor.typeOf(Account.class);
+
+        assertEquals("Account", type.getName());
+        assertEquals(3, type.getFieldCount());
+        assertEquals("id", type.getFieldName(0));
+        assertFalse(type.isRedacted(0));
+        assertEquals(7L, type.getValue(new Account(), 0));
+        assertTrue(type.isRedacted(1));
+        assertTrue(type.isRedacted(2));
+    }
+
+    @Test
+    void testClassesHoldingRedactedClassesAreRenderedFieldByField() {
+        Redactor.RedactedType type = redactor.typeOf(Order.class);
+
+        assertEquals(2, type.getFieldCount());
+        assertEquals("account", type.getFieldName(1));
+        assertFalse(type.isRedacted(1));
+        assertNotNull(redactor.typeOf(Wallet.class));
+        assertNull(redactor.typeOf(Node.class));
+    }
+
+    @Test
+    void testValuesOfConfiguredNamesAreMaskedInJsonAndFormBodies() {
+        assertEquals("{\"login\":\"john\", \"password\": \"****\", \"nested\":{\"password\":\"****\"}}",
+                redactor.redactBody("{\"login\":\"john\", \"password\": \"s\\\"e,c}\", \"nested\":{\"password\":{\"hash\":[1,2]}}}"));
+        assertEquals("[{\"password\":\"****\"}]", redactor.redactBody("[{\"password\":42}]"));
+        assertEquals("{\"password\":\"****\"", redactor.redactBody("{\"password\":\"sec"));
+        assertEquals("login=john&password=****&remember=true", redactor.redactBody("login=john&password=secret&remember=true"));
+        assertEquals("{\"note\":\"password\"}", redactor.redactBody("{\"note\":\"password\"}"));
+        assertEquals("plain text", redactor.redactBody("plain text"));
+    }
+
+    @Test
+    void testClassIsCompiledOnce() {
+        assertSame(redactor.typeOf(Account.class), redactor.typeOf(Account.class));
+    }
+
+    @Test
+    void testConfiguredNamesApplyToMapKeys() {
+        assertTrue(redactor.isRedactedName("password"));
+        assertFalse(redactor.isRedactedName("login"));
+    }
+
+    static class Plain {
+
+        private String value = "plain";
+
+    }
+
+    static class Order {
+
+        private long id = 1L;
+
+        private Account account = new Account();
+
+    }
+
+    static class Wallet {
+
+        private List<Account> accounts = List.of(new Account());
+
+        private Map<String, Account[]> accountsByBank = Map.of();
+
+    }
+
+    static class Node {
+
+        private String value = "node";
+
+        private Node next;
+
+    }
+
+    static class Account {
+
+        private long id = 7L;
+
+        @Redact
+        private String cardNumber = "4111111111111111";
+
+        private String password = "secret";
+
+    }
+
+}
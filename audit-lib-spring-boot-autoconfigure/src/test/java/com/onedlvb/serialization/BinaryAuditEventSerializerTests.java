@@ -0,0 +1,141 @@
+package com.onedlvb.serialization;
+
+import com.onedlvb.event.AuditEvent;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryAuditEventSerializerTests {
+
+    private final BinaryAuditEventSerializer serializer = new BinaryAuditEventSerializer();
+
+    @Test
+    void testSerializedEventIsReadBackWithAllFields() {
+        AuditEvent event = AuditEvent.builder()
+                .serviceName("test-application")
+                .methodName("addIntegers")
+                .methodArgs("Args: [5, 10]")
+                .returnValue("15")
+                .timestamp(1721741512345L)
+                .startNs(1721741512345_678_901L)
+                .durationNs(1_250_000L)
+                .build();
+
+        byte[] data = serializer.serialize(event);
+
+        assertTrue(BinaryAuditEventSerializer.isBinary(data));
+        assertEquals(event, BinaryAuditEventSerializer.deserialize(data));
+    }
+
+    @Test
+    void testTruncationFlagIsWrittenOnlyForTruncatedEvents() {
+        AuditEvent.AuditEventBuilder event = AuditEvent.builder()
+                .methodName("findAll")
+                .returnValue("[1, 2, ...]")
+                .timestamp(1721741512345L);
+
+        byte[] complete = serializer.serialize(event.build());
+        byte[] truncated = serializer.serialize(event.truncated(true).build());
+
+        assertEquals(complete.length + 3, truncated.length);
+        assertFalse(BinaryAuditEventSerializer.deserialize(complete).isTruncated());
+        assertTrue(BinaryAuditEventSerializer.deserialize(truncated).isTruncated());
+    }
+
+    @Test
+    void testCountOfCoalescedEventsIsWrittenOnlyForMergedEvents() {
+        AuditEvent.AuditEventBuilder event = AuditEvent.builder()
+                .methodName("poll")
+                .returnValue("[]")
+                .timestamp(1721741512345L);
+
+        byte[] single = serializer.serialize(event.build());
+        byte[] coalesced = serializer.serialize(event.count(250).lastTimestamp(1721741513245L).build());
+
+        assertEquals(single.length + 20, coalesced.length);
+        assertEquals(1, BinaryAuditEventSerializer.deserialize(single).getCount());
+        AuditEvent deserialized = BinaryAuditEventSerializer.deserialize(coalesced);
+        assertEquals(250, deserialized.getCount());
+        assertEquals(1721741513245L, deserialized.getLastTimestamp());
+    }
+
+    @Test
+    void testHttpExchangeIsReadBackWithMethodPathAndStatus() {
+        AuditEvent event = AuditEvent.builder()
+                .serviceName("test-application")
+                .methodName("transfer")
+                .httpMethod("POST")
+                .path("/accounts/42/transfers")
+                .status(201)
+                .methodArgs("{\"amount\":10}")
+                .returnValue("{\"id\":7}")
+                .timestamp(1721741512345L)
+                .startNs(1721741512345_678_901L)
+                .durationNs(3_500_000L)
+                .build();
+
+        AuditEvent deserialized = BinaryAuditEventSerializer.deserialize(serializer.serialize(event));
+
+        assertEquals(event, deserialized);
+        assertEquals(201, deserialized.getStatus());
+    }
+
+    @Test
+    void testNullFieldsAreOmitted() {
+        AuditEvent event = AuditEvent.builder()
+                .serviceName("test-application")
+                .methodName("voidMethodWithNoParams")
+                .methodArgs("No args")
+                .build();
+
+        AuditEvent deserialized = BinaryAuditEventSerializer.deserialize(serializer.serialize(event));
+
+        assertNull(deserialized.getReturnValue());
+        assertNull(deserialized.getException());
+        assertEquals(event, deserialized);
+    }
+
+    @Test
+    void testNonAsciiAndLongValuesAreEncodedAsUtf8() {
+        String longValue = "ж".repeat(200) + "€😀";
+        AuditEvent event = AuditEvent.builder()
+                .serviceName("test-application")
+                .methodName("echo")
+                .methodArgs("Args: [" + longValue + "]")
+                .returnValue(longValue)
+                .build();
+
+        byte[] data = serializer.serialize(event);
+
+        assertEquals(longValue, BinaryAuditEventSerializer.deserialize(data).getReturnValue());
+        String text = new String(data, StandardCharsets.UTF_8);
+        assertTrue(text.contains(longValue));
+    }
+
+    @Test
+    void testLegacyTextAndTruncatedDataAreRejected() {
+        byte[] legacy = new LegacyTextAuditEventSerializer().serialize(AuditEvent.builder().methodName("test").build());
+        byte[] data = serializer.serialize(AuditEvent.builder().methodName("test").build());
+
+        assertFalse(BinaryAuditEventSerializer.isBinary(legacy));
+        assertThrows(IllegalArgumentException.class, () -> BinaryAuditEventSerializer.deserialize(legacy));
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryAuditEventSerializer.deserialize(Arrays.copyOf(data, data.length - 1)));
+    }
+
+    @Test
+    void testNegativeLengthIsRejected() {
+        byte[] data = {BinaryAuditEventSerializer.MAGIC, BinaryAuditEventSerializer.VERSION,
+                BinaryAuditEventSerializer.METHOD_NAME, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 'x'};
+
+        assertThrows(IllegalArgumentException.class, () -> BinaryAuditEventSerializer.deserialize(data));
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.onedlvb.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SamplingTests {
+
+    @Test
+    void testBoundaryRatesAreDeterministic() {
+        assertTrue(IntStream.range(0, 1000).allMatch(i -> Sampling.sample(1.0)));
+        assertFalse(IntStream.range(0, 1000).anyMatch(i -> Sampling.sample(0.0)));
+    }
+
+    @Test
+    void testShareOfSampledCallsFollowsRate() {
+        long sampled = IntStream.range(0, 100_000).filter(i -> Sampling.sample(0.1)).count();
+
+        assertTrue(sampled > 9_000 && sampled < 11_000, "Sampled " + sampled + " of 100000 calls");
+    }
+
+    @Test
+    void testRateOfPropertiesOverridesAnnotation() {
+        Map<String, Double> sampleRates = Map.of("com.example.PaymentService.pay", 0.25);
+
+        assertEquals(0.25, Sampling.resolveSampleRate("com.example.PaymentService.pay", 1.0, sampleRates));
+        assertEquals(0.5, Sampling.resolveSampleRate("com.example.PaymentService.refund", 0.5, sampleRates));
+        assertEquals(0.5, Sampling.resolveSampleRate("com.example.PaymentService.refund", 0.5, null));
+    }
+
+    @Test
+    void testRateOutOfRangeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Sampling.resolveSampleRate("pay", 1.5, null));
+        assertThrows(IllegalArgumentException.class, () -> Sampling.resolveSampleRate("pay", Double.NaN, null));
+    }
+
+}
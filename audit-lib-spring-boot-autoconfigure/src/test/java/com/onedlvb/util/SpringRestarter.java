@@ -1,5 +1,6 @@
 package com.onedlvb.util;
 
+import org.springframework.context.ApplicationContext;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.TestContextManager;
 
@@ -25,14 +26,19 @@ public class SpringRestarter {
         this.testContextManager = testContextManager;
     }
 
-    public void restart(Runnable stoppedLogic) {
+    /**
+     * Closes the context, runs the logic while it is stopped and starts it again.
+     * @param stoppedLogic logic to run while the context is stopped, may be null
+     * @return restarted context
+     */
+    public ApplicationContext restart(Runnable stoppedLogic) {
         testContextManager.getTestContext().markApplicationContextDirty(DirtiesContext.HierarchyMode.EXHAUSTIVE);
 
         if (stoppedLogic != null) {
             stoppedLogic.run();
         }
 
-        testContextManager.getTestContext().getApplicationContext();
+        return testContextManager.getTestContext().getApplicationContext();
     }
 
 }
\ No newline at end of file
@@ -33,9 +33,84 @@ public class KafkaMessage {
     @Column(nullable = false)
     private String topic;
 
-    @Column(nullable = false)
+    /**
+     * Key of the Kafka record, e.g. id of the audited entity.
+     */
+    @Column(name = "record_key")
+    private String recordKey;
+
+    /**
+     * Message in the legacy text format, null for events in the binary format.
+     */
+    @Column
     private String message;
 
+    @Column(name = "service_name")
+    private String serviceName;
+
+    @Column(name = "method_name")
+    private String methodName;
+
+    @Column(name = "method_args")
+    private String methodArgs;
+
+    @Column(name = "return_value")
+    private String returnValue;
+
+    @Column
+    private String exception;
+
+    /**
+     * True if args or return value were cut off by the rendering limits of audit-lib.
+     */
+    @Column(nullable = false)
+    private boolean truncated;
+
+    /**
+     * Duration of the audited call in nanoseconds, null for events without it.
+     */
+    @Column(name = "duration_ns")
+    private Long durationNs;
+
+    /**
+     * Start of the audited call in epoch nanoseconds, null for events without it.
+     */
+    @Column(name = "start_ns")
+    private Long startNs;
+
+    @Column(name = "event_date")
+    private LocalDateTime eventDate;
+
+    /**
+     * Number of identical calls coalesced into the event by audit-lib, null for a single call.
+     */
+    @Column(name = "event_count")
+    private Long eventCount;
+
+    /**
+     * Date of the last of the coalesced calls, null for a single call.
+     */
+    @Column(name = "last_event_date")
+    private LocalDateTime lastEventDate;
+
+    /**
+     * HTTP method of an audited HTTP exchange, null for events of annotated methods.
+     */
+    @Column(name = "http_method")
+    private String httpMethod;
+
+    /**
+     * Request URI of an audited HTTP exchange, null for events of annotated methods.
+     */
+    @Column
+    private String path;
+
+    /**
+     * Status code of an audited HTTP exchange, null for events of annotated methods.
+     */
+    @Column
+    private Integer status;
+
     @Column(name = "create_date", nullable = false, updatable = false)
     private LocalDateTime createDate;
 
@@ -0,0 +1,153 @@
+package com.onedlvb.messagereceiver.serialization;
+
+import com.onedlvb.messagereceiver.model.KafkaMessage;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Deserializer of audit events sent by audit-lib.
+ * <p>
+ * Events in the binary format are decoded field by field straight from the record bytes into the typed
+ * columns of {@link KafkaMessage}. Everything else is treated as the legacy text format and stored as is
+ * in {@link KafkaMessage#getMessage()}. Fields with unknown tags are skipped.
+ * @author Matushkin Anton
+ */
+public class AuditEventDeserializer implements Deserializer<KafkaMessage> {
+
+    static final byte MAGIC = (byte) 0xAE;
+
+    static final byte VERSION = 1;
+
+    static final byte SERVICE_NAME = 1;
+
+    static final byte METHOD_NAME = 2;
+
+    static final byte METHOD_ARGS = 3;
+
+    static final byte RETURN_VALUE = 4;
+
+    static final byte EXCEPTION = 5;
+
+    static final byte TIMESTAMP = 6;
+
+    static final byte TRUNCATED = 7;
+
+    static final byte DURATION = 8;
+
+    static final byte START = 9;
+
+    static final byte COUNT = 10;
+
+    static final byte LAST_TIMESTAMP = 11;
+
+    static final byte HTTP_METHOD = 12;
+
+    static final byte PATH = 13;
+
+    static final byte STATUS = 14;
+
+    private static final int HEADER_SIZE = 2;
+
+    /**
+     * @param topic topic of the record
+     * @param data  value of the record
+     * @return message to be saved, null for records without value
+     */
+    @Override
+    public KafkaMessage deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        KafkaMessage.KafkaMessageBuilder message = KafkaMessage.builder().topic(topic);
+        if (data.length < HEADER_SIZE || data[0] != MAGIC || data[1] != VERSION) {
+            return message.message(new String(data, StandardCharsets.UTF_8)).build();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data, HEADER_SIZE, data.length - HEADER_SIZE);
+        try {
+            while (buffer.hasRemaining()) {
+                byte tag = buffer.get();
+                int length = readVarint(buffer);
+                switch (tag) {
+                    case SERVICE_NAME -> message.serviceName(readString(buffer, length));
+                    case METHOD_NAME -> message.methodName(readString(buffer, length));
+                    case METHOD_ARGS -> message.methodArgs(readString(buffer, length));
+                    case RETURN_VALUE -> message.returnValue(readString(buffer, length));
+                    case EXCEPTION -> message.exception(readString(buffer, length));
+                    case TIMESTAMP -> message.eventDate(readTimestamp(buffer, length));
+                    case TRUNCATED -> message.truncated(readFlag(buffer, length));
+                    case DURATION -> message.durationNs(readLong(buffer, length));
+                    case START -> message.startNs(readLong(buffer, length));
+                    case COUNT -> message.eventCount(readLong(buffer, length));
+                    case LAST_TIMESTAMP -> message.lastEventDate(readTimestamp(buffer, length));
+                    case HTTP_METHOD -> message.httpMethod(readString(buffer, length));
+                    case PATH -> message.path(readString(buffer, length));
+                    case STATUS -> message.status((int) readLong(buffer, length));
+                    default -> skip(buffer, length);
+                }
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new SerializationException("Malformed binary audit event in topic " + topic, e);
+        }
+        return message.build();
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("Negative length");
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static LocalDateTime readTimestamp(ByteBuffer buffer, int length) {
+        if (length != Long.BYTES) {
+            throw new IllegalArgumentException("Malformed timestamp");
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(buffer.getLong()), ZoneId.systemDefault());
+    }
+
+    private static long readLong(ByteBuffer buffer, int length) {
+        if (length != Long.BYTES) {
+            throw new IllegalArgumentException("Malformed int64");
+        }
+        return buffer.getLong();
+    }
+
+    private static boolean readFlag(ByteBuffer buffer, int length) {
+        if (length != 1) {
+            throw new IllegalArgumentException("Malformed flag");
+        }
+        return buffer.get() != 0;
+    }
+
+    private static void skip(ByteBuffer buffer, int length) {
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        buffer.position(buffer.position() + length);
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+}
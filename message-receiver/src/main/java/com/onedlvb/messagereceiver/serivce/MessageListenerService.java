@@ -1,5 +1,6 @@
 package com.onedlvb.messagereceiver.serivce;
 
+import com.onedlvb.messagereceiver.model.KafkaMessage;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.support.Acknowledgment;
 
@@ -16,9 +17,9 @@ public interface MessageListenerService {
      * The method is invoked for each message consumed from the Kafka topic.
      * </p>
      *
-     * @param record the Kafka {@link ConsumerRecord} containing the message details
+     * @param record the Kafka {@link ConsumerRecord} containing the deserialized message
      * @param acknowledgment the Kafka {@link Acknowledgment}
      */
-    void listen(ConsumerRecord<String, String> record, Acknowledgment acknowledgment);
+    void listen(ConsumerRecord<String, KafkaMessage> record, Acknowledgment acknowledgment);
 
 }
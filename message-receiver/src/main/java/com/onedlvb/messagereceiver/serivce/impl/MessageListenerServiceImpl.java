@@ -25,15 +25,14 @@ public class MessageListenerServiceImpl implements MessageListenerService {
 
     @Override
     @KafkaListener(id = "MessageListener", topicPattern = "fintech-topic-.*")
-    public void listen(ConsumerRecord<String, String> record, Acknowledgment acknowledgment) {
-        String topic = record.topic();
-        String message = record.value();
-        KafkaMessage kafkaMessage = KafkaMessage.builder()
-                .topic(topic)
-                .message(message)
-                .createDate(LocalDateTime.now())
-                .build();
-        kafkaMessageRepository.save(kafkaMessage);
+    public void listen(ConsumerRecord<String, KafkaMessage> record, Acknowledgment acknowledgment) {
+        KafkaMessage kafkaMessage = record.value();
+        if (kafkaMessage != null) {
+            kafkaMessage.setTopic(record.topic());
+            kafkaMessage.setRecordKey(record.key());
+            kafkaMessage.setCreateDate(LocalDateTime.now());
+            kafkaMessageRepository.save(kafkaMessage);
+        }
         acknowledgment.acknowledge();
     }
 
@@ -0,0 +1,162 @@
+package com.onedlvb.messagereceiver.serialization;
+
+import com.onedlvb.messagereceiver.model.KafkaMessage;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuditEventDeserializerTests {
+
+    private static final String TOPIC = "fintech-topic-test";
+
+    private final AuditEventDeserializer deserializer = new AuditEventDeserializer();
+
+    @Test
+    void testDeserializeBinaryEventFillsTypedColumns() {
+        long timestamp = 1_720_000_000_123L;
+        byte[] data = binaryEvent(
+                field(AuditEventDeserializer.SERVICE_NAME, "audit-service"),
+                field(AuditEventDeserializer.METHOD_NAME, "transfer"),
+                field(AuditEventDeserializer.METHOD_ARGS, "[42, счёт]"),
+                field(AuditEventDeserializer.RETURN_VALUE, "ok"),
+                field((byte) 99, "field from the future"),
+                timestampField(timestamp),
+                ByteBuffer.allocate(2 + Long.BYTES).put(AuditEventDeserializer.DURATION).put((byte) Long.BYTES).putLong(1_250_000L).array(),
+                ByteBuffer.allocate(2 + Long.BYTES).put(AuditEventDeserializer.START).put((byte) Long.BYTES).putLong(timestamp * 1_000_000L + 456_789L).array());
+
+        KafkaMessage message = deserializer.deserialize(TOPIC, data);
+
+        assertEquals(TOPIC, message.getTopic());
+        assertEquals("audit-service", message.getServiceName());
+        assertEquals("transfer", message.getMethodName());
+        assertEquals("[42, счёт]", message.getMethodArgs());
+        assertEquals("ok", message.getReturnValue());
+        assertNull(message.getException());
+        assertNull(message.getMessage());
+        assertFalse(message.isTruncated());
+        assertEquals(1_250_000L, message.getDurationNs());
+        assertEquals(timestamp * 1_000_000L + 456_789L, message.getStartNs());
+        assertEquals(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()), message.getEventDate());
+    }
+
+    @Test
+    void testDeserializeTruncationFlag() {
+        byte[] data = binaryEvent(
+                field(AuditEventDeserializer.METHOD_ARGS, "Args: [1, 2, ...]"),
+                new byte[]{AuditEventDeserializer.TRUNCATED, 1, 1});
+
+        KafkaMessage message = deserializer.deserialize(TOPIC, data);
+
+        assertEquals("Args: [1, 2, ...]", message.getMethodArgs());
+        assertTrue(message.isTruncated());
+    }
+
+    @Test
+    void testDeserializeCoalescedEventCountAndLastDate() {
+        long timestamp = 1_720_000_000_123L;
+        byte[] data = binaryEvent(
+                field(AuditEventDeserializer.METHOD_NAME, "poll"),
+                timestampField(timestamp),
+                ByteBuffer.allocate(2 + Long.BYTES).put(AuditEventDeserializer.COUNT).put((byte) Long.BYTES).putLong(250L).array(),
+                ByteBuffer.allocate(2 + Long.BYTES).put(AuditEventDeserializer.LAST_TIMESTAMP).put((byte) Long.BYTES).putLong(timestamp + 900L).array());
+
+        KafkaMessage message = deserializer.deserialize(TOPIC, data);
+
+        assertEquals(250L, message.getEventCount());
+        assertEquals(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp + 900L), ZoneId.systemDefault()), message.getLastEventDate());
+    }
+
+    @Test
+    void testDeserializeHttpExchangeMethodPathAndStatus() {
+        byte[] data = binaryEvent(
+                field(AuditEventDeserializer.METHOD_NAME, "transfer"),
+                field(AuditEventDeserializer.HTTP_METHOD, "POST"),
+                field(AuditEventDeserializer.PATH, "/accounts/42/transfers"),
+                field(AuditEventDeserializer.METHOD_ARGS, "{\"amount\":10}"),
+                ByteBuffer.allocate(2 + Long.BYTES).put(AuditEventDeserializer.STATUS).put((byte) Long.BYTES).putLong(201L).array());
+
+        KafkaMessage message = deserializer.deserialize(TOPIC, data);
+
+        assertEquals("POST", message.getHttpMethod());
+        assertEquals("/accounts/42/transfers", message.getPath());
+        assertEquals(201, message.getStatus());
+        assertEquals("{\"amount\":10}", message.getMethodArgs());
+    }
+
+    @Test
+    void testDeserializeLegacyTextMessage() {
+        String legacy = "{serviceName=audit-service, methodName=transfer, methodArgs=[42]}";
+
+        KafkaMessage message = deserializer.deserialize(TOPIC, legacy.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(TOPIC, message.getTopic());
+        assertEquals(legacy, message.getMessage());
+        assertNull(message.getServiceName());
+    }
+
+    @Test
+    void testDeserializeRecordWithoutValue() {
+        assertNull(deserializer.deserialize(TOPIC, null));
+    }
+
+    @Test
+    void testDeserializeTruncatedBinaryEventFails() {
+        byte[] data = binaryEvent(field(AuditEventDeserializer.METHOD_NAME, "transfer"));
+        byte[] truncated = Arrays.copyOf(data, data.length - 3);
+
+        assertThrows(SerializationException.class, () -> deserializer.deserialize(TOPIC, truncated));
+    }
+
+    @Test
+    void testDeserializeNegativeLengthFails() {
+        byte[] data = binaryEvent(new byte[]{AuditEventDeserializer.METHOD_NAME, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 'x'});
+
+        assertThrows(SerializationException.class, () -> deserializer.deserialize(TOPIC, data));
+    }
+
+    private static byte[] binaryEvent(byte[]... fields) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(AuditEventDeserializer.MAGIC);
+        out.write(AuditEventDeserializer.VERSION);
+        for (byte[] field : fields) {
+            out.writeBytes(field);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] field(byte tag, String value) {
+        byte[] payload = value.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(tag);
+        int length = payload.length;
+        while ((length & ~0x7F) != 0) {
+            out.write((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out.write(length);
+        out.writeBytes(payload);
+        return out.toByteArray();
+    }
+
+    private static byte[] timestampField(long timestamp) {
+        return ByteBuffer.allocate(2 + Long.BYTES)
+                .put(AuditEventDeserializer.TIMESTAMP)
+                .put((byte) Long.BYTES)
+                .putLong(timestamp)
+                .array();
+    }
+
+}
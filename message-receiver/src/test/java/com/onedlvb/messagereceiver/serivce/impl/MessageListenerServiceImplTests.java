@@ -13,6 +13,8 @@ import org.springframework.kafka.support.Acknowledgment;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
@@ -27,12 +29,12 @@ class MessageListenerServiceImplTests {
 
     @Test
     void testListenReceivesAndSavesMessages() {
-        ConsumerRecord<String, String> record = new ConsumerRecord<>(
+        ConsumerRecord<String, KafkaMessage> record = new ConsumerRecord<>(
                 "fintech-topic-test",
                 0,
                 0L,
                 "key1",
-                "value1");
+                KafkaMessage.builder().message("value1").build());
 
         messageListenerService.listen(record, acknowledgment);
 
@@ -42,9 +44,25 @@ class MessageListenerServiceImplTests {
         KafkaMessage capturedMessage = captor.getValue();
 
         assertEquals("fintech-topic-test", capturedMessage.getTopic());
+        assertEquals("key1", capturedMessage.getRecordKey());
         assertEquals("value1", capturedMessage.getMessage());
         assertNotNull(capturedMessage.getCreateDate());
         verify(acknowledgment).acknowledge();
     }
 
+    @Test
+    void testListenAcknowledgesRecordsWithoutValue() {
+        ConsumerRecord<String, KafkaMessage> record = new ConsumerRecord<>(
+                "fintech-topic-test",
+                0,
+                0L,
+                "key1",
+                null);
+
+        messageListenerService.listen(record, acknowledgment);
+
+        verify(kafkaMessageRepository, never()).save(any());
+        verify(acknowledgment).acknowledge();
+    }
+
 }
\ No newline at end of file